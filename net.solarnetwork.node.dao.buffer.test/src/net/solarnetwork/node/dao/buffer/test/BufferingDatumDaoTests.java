@@ -0,0 +1,293 @@
+/* ==================================================================
+ * BufferingDatumDaoTests.java - 18/10/2026 10:24:18 AM
+ *
+ * Copyright 2026 SolarNetwork.net Dev Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ * ==================================================================
+ */
+
+package net.solarnetwork.node.dao.buffer.test;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.capture;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.hamcrest.Matchers.arrayWithSize;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import org.easymock.Capture;
+import org.easymock.EasyMock;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.TaskScheduler;
+import net.solarnetwork.node.dao.DatumDao;
+import net.solarnetwork.node.dao.buffer.BufferingDatumDao;
+import net.solarnetwork.node.domain.GeneralNodeDatum;
+
+/**
+ * Test cases for the {@link BufferingDatumDao} class.
+ *
+ * @author matt
+ * @version 1.0
+ */
+public class BufferingDatumDaoTests {
+
+	private static final String TEST_SOURCE_ID = "test.source";
+
+	@Rule
+	public TemporaryFolder tmpDir = new TemporaryFolder();
+
+	private DatumDao<GeneralNodeDatum> delegate;
+	private TaskScheduler taskScheduler;
+	private File journalDir;
+
+	@SuppressWarnings("unchecked")
+	@Before
+	public void setup() throws Exception {
+		delegate = EasyMock.createMock(DatumDao.class);
+		taskScheduler = EasyMock.createMock(TaskScheduler.class);
+		journalDir = tmpDir.newFolder("journal");
+	}
+
+	@After
+	public void teardown() {
+		EasyMock.verify(delegate, taskScheduler);
+	}
+
+	private void replayAll() {
+		EasyMock.replay(delegate, taskScheduler);
+	}
+
+	private BufferingDatumDao<GeneralNodeDatum> createDao() {
+		BufferingDatumDao<GeneralNodeDatum> dao = new BufferingDatumDao<>(delegate, taskScheduler);
+		dao.setFlushDelayMs(0);
+		dao.setJournalDirectory(journalDir);
+		return dao;
+	}
+
+	private GeneralNodeDatum createDatum(long ts, int watts) {
+		GeneralNodeDatum datum = new GeneralNodeDatum();
+		datum.setCreated(new Date(ts));
+		datum.setSourceId(TEST_SOURCE_ID);
+		datum.putInstantaneousSampleValue("watts", watts);
+		return datum;
+	}
+
+	@SuppressWarnings("rawtypes")
+	@Test
+	public void bufferThenFlush() {
+		// given
+		expect((Class) delegate.getDatumType()).andReturn(GeneralNodeDatum.class);
+		Capture<Collection<GeneralNodeDatum>> batchCaptor = new Capture<>();
+		delegate.storeDatum(capture(batchCaptor));
+
+		replayAll();
+
+		// when
+		BufferingDatumDao<GeneralNodeDatum> dao = createDao();
+		dao.startup();
+		GeneralNodeDatum d1 = createDatum(1000L, 1);
+		GeneralNodeDatum d2 = createDatum(2000L, 2);
+		dao.storeDatum(d1);
+		dao.storeDatum(d2);
+
+		// then
+		assertThat("Buffered count", dao.getBufferSize(), equalTo(2));
+		assertThat("Journal written", journalDir.list(), arrayWithSize(1));
+
+		int count = dao.flush();
+		assertThat("Flushed count", count, equalTo(2));
+		assertThat("Stored batch", batchCaptor.getValue(), contains(d1, d2));
+		assertThat("Buffer empty", dao.getBufferSize(), equalTo(0));
+		assertThat("Journal deleted", journalDir.list(), arrayWithSize(0));
+	}
+
+	@SuppressWarnings("rawtypes")
+	@Test
+	public void flushFailureRetainsDatum() {
+		// given
+		expect((Class) delegate.getDatumType()).andReturn(GeneralNodeDatum.class);
+		delegate.storeDatum(EasyMock.<Collection<GeneralNodeDatum>> anyObject());
+		expectLastCall().andThrow(new RuntimeException("test"));
+		Capture<Collection<GeneralNodeDatum>> batchCaptor = new Capture<>();
+		delegate.storeDatum(capture(batchCaptor));
+
+		replayAll();
+
+		// when
+		BufferingDatumDao<GeneralNodeDatum> dao = createDao();
+		dao.startup();
+		GeneralNodeDatum d1 = createDatum(1000L, 1);
+		dao.storeDatum(d1);
+		try {
+			dao.flush();
+		} catch ( RuntimeException e ) {
+			// expected
+		}
+
+		// then
+		assertThat("Datum retained in buffer", dao.getBufferSize(), equalTo(1));
+		assertThat("Journal retained", journalDir.list(), arrayWithSize(1));
+
+		GeneralNodeDatum d2 = createDatum(2000L, 2);
+		dao.storeDatum(d2);
+		dao.flush();
+		assertThat("Stored batch in order", batchCaptor.getValue(), contains(d1, d2));
+		assertThat("Journals deleted", journalDir.list(), arrayWithSize(0));
+	}
+
+	@SuppressWarnings("rawtypes")
+	@Test
+	public void rejectedDatumDiscarded() {
+		// given
+		expect((Class) delegate.getDatumType()).andReturn(GeneralNodeDatum.class);
+		delegate.storeDatum(EasyMock.<Collection<GeneralNodeDatum>> anyObject());
+		expectLastCall().andThrow(new DataIntegrityViolationException("test"));
+
+		GeneralNodeDatum d1 = createDatum(1000L, 1);
+		GeneralNodeDatum d2 = createDatum(2000L, 2);
+		GeneralNodeDatum d3 = createDatum(3000L, 3);
+		delegate.storeDatum(d1);
+		delegate.storeDatum(d2);
+		expectLastCall().andThrow(new DataIntegrityViolationException("test"));
+		delegate.storeDatum(d3);
+
+		replayAll();
+
+		// when
+		BufferingDatumDao<GeneralNodeDatum> dao = createDao();
+		dao.startup();
+		dao.storeDatum(d1);
+		dao.storeDatum(d2);
+		dao.storeDatum(d3);
+		int count = dao.flush();
+
+		// then
+		assertThat("Flushed count excludes rejected datum", count, equalTo(2));
+		assertThat("Buffer empty", dao.getBufferSize(), equalTo(0));
+		assertThat("Journal deleted", journalDir.list(), arrayWithSize(0));
+	}
+
+	@SuppressWarnings("rawtypes")
+	@Test
+	public void transientFailureDuringIndividualRetryRetainsRemaining() {
+		// given
+		expect((Class) delegate.getDatumType()).andReturn(GeneralNodeDatum.class);
+		delegate.storeDatum(EasyMock.<Collection<GeneralNodeDatum>> anyObject());
+		expectLastCall().andThrow(new DataIntegrityViolationException("test"));
+
+		GeneralNodeDatum d1 = createDatum(1000L, 1);
+		GeneralNodeDatum d2 = createDatum(2000L, 2);
+		GeneralNodeDatum d3 = createDatum(3000L, 3);
+		delegate.storeDatum(d1);
+		delegate.storeDatum(d2);
+		expectLastCall().andThrow(new DataAccessResourceFailureException("test"));
+
+		Capture<Collection<GeneralNodeDatum>> batchCaptor = new Capture<>();
+		delegate.storeDatum(capture(batchCaptor));
+
+		replayAll();
+
+		// when
+		BufferingDatumDao<GeneralNodeDatum> dao = createDao();
+		dao.startup();
+		dao.storeDatum(d1);
+		dao.storeDatum(d2);
+		dao.storeDatum(d3);
+		try {
+			dao.flush();
+			fail("Transient failure should be thrown");
+		} catch ( DataAccessResourceFailureException e ) {
+			// expected
+		}
+
+		// then
+		assertThat("Remaining datum retained", dao.getBufferSize(), equalTo(2));
+		assertThat("Journal retained", journalDir.list(), arrayWithSize(1));
+
+		int count = dao.flush();
+		assertThat("Flushed count", count, equalTo(2));
+		assertThat("Stored remaining in order", batchCaptor.getValue(), contains(d2, d3));
+		assertThat("Journal deleted", journalDir.list(), arrayWithSize(0));
+	}
+
+	@SuppressWarnings("rawtypes")
+	@Test
+	public void recoverJournalOnStartup() {
+		// given
+		expect((Class) delegate.getDatumType()).andReturn(GeneralNodeDatum.class).times(2);
+		Capture<Collection<GeneralNodeDatum>> batchCaptor = new Capture<>();
+		delegate.storeDatum(capture(batchCaptor));
+
+		replayAll();
+
+		// write some datum to the journal, without flushing
+		BufferingDatumDao<GeneralNodeDatum> crashed = createDao();
+		crashed.startup();
+		crashed.storeDatum(createDatum(1000L, 1));
+		crashed.storeDatum(createDatum(2000L, 2));
+
+		// when
+		BufferingDatumDao<GeneralNodeDatum> dao = createDao();
+		dao.startup();
+
+		// then
+		List<GeneralNodeDatum> stored = new ArrayList<>(batchCaptor.getValue());
+		assertThat("Recovered count", stored.size(), equalTo(2));
+		for ( int i = 0; i < 2; i++ ) {
+			GeneralNodeDatum d = stored.get(i);
+			assertThat("Recovered created " + i, d.getCreated(), equalTo(new Date((i + 1) * 1000L)));
+			assertThat("Recovered source " + i, d.getSourceId(), equalTo(TEST_SOURCE_ID));
+			assertThat("Recovered watts " + i, d.getInstantaneousSampleInteger("watts"),
+					equalTo(i + 1));
+		}
+		assertThat("Buffer empty", dao.getBufferSize(), equalTo(0));
+		assertThat("Journal deleted", journalDir.list(), arrayWithSize(0));
+	}
+
+	@Test
+	public void fullBufferStoresDirectly() {
+		// given
+		GeneralNodeDatum d1 = createDatum(1000L, 1);
+		delegate.storeDatum(d1);
+		expect(taskScheduler.schedule(anyObject(Runnable.class), anyObject(Date.class)))
+				.andReturn(null);
+
+		replayAll();
+
+		// when
+		BufferingDatumDao<GeneralNodeDatum> dao = new BufferingDatumDao<>(delegate, taskScheduler);
+		dao.setBufferCapacity(0);
+		dao.storeDatum(d1);
+
+		// then
+		assertThat("Nothing buffered", dao.getBufferSize(), equalTo(0));
+	}
+
+}
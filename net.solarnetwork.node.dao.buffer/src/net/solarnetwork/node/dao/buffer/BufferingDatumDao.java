@@ -0,0 +1,518 @@
+/* ==================================================================
+ * BufferingDatumDao.java - 18/10/2026 9:01:12 AM
+ *
+ * Copyright 2026 SolarNetwork.net Dev Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ * ==================================================================
+ */
+
+package net.solarnetwork.node.dao.buffer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.scheduling.TaskScheduler;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.solarnetwork.node.Constants;
+import net.solarnetwork.node.dao.DatumDao;
+import net.solarnetwork.node.domain.GeneralNodeDatum;
+
+/**
+ * {@link DatumDao} that buffers datum in memory and periodically stores them
+ * in batches to a delegate {@link DatumDao}.
+ *
+ * <p>
+ * Datum passed to {@link #storeDatum(GeneralNodeDatum)} are added to a bounded
+ * lock-free {@link DatumRingBuffer} and, if a {@code journalDirectory} is
+ * configured, appended to an on-disk {@link DatumJournal} first so they are not
+ * lost if the node stops before the buffer is flushed. Journal appends are
+ * serialized, as they share one file, but without a journal adding to the
+ * buffer takes no lock. The buffer is flushed to the delegate
+ * via {@link DatumDao#storeDatum(Collection)} every {@code flushDelayMs}
+ * milliseconds, or sooner when {@code flushCount} datum have accumulated.
+ * Journal writes are forced to storage at most once every
+ * {@code journalSyncMs} milliseconds, and before each flush, rather than after
+ * every datum. Journal segments are deleted only after the delegate has stored
+ * their datum, and any segments left over from a previous run are replayed
+ * into the delegate by {@link #startup()}.
+ * </p>
+ *
+ * <p>
+ * If the delegate fails to store a batch, the datum are kept for the next
+ * flush when the failure looks transient, such as a lost connection.
+ * Otherwise each datum is stored individually: datum the delegate rejects are
+ * logged and discarded, so one bad datum cannot block the buffer, and only
+ * datum that then fail transiently are kept.
+ * </p>
+ *
+ * <p>
+ * If the buffer is full, or the journal cannot be written to, datum are
+ * stored directly to the delegate instead. All other DAO methods are passed
+ * directly to the delegate.
+ * </p>
+ *
+ * @param <T>
+ *        the datum type
+ * @author matt
+ * @version 1.0
+ */
+public class BufferingDatumDao<T extends GeneralNodeDatum> implements DatumDao<T> {
+
+	/** The default value for the {@code bufferCapacity} property. */
+	public static final int DEFAULT_BUFFER_CAPACITY = 1000;
+
+	/** The default value for the {@code flushCount} property. */
+	public static final int DEFAULT_FLUSH_COUNT = 100;
+
+	/** The default value for the {@code flushDelayMs} property. */
+	public static final long DEFAULT_FLUSH_DELAY_MS = 5000L;
+
+	/** The default value for the {@code journalSyncMs} property. */
+	public static final long DEFAULT_JOURNAL_SYNC_MS = 1000L;
+
+	private final DatumDao<T> delegate;
+	private final TaskScheduler taskScheduler;
+	private final AtomicBoolean flushRequested = new AtomicBoolean(false);
+	private final Object journalLock = new Object();
+	private final Object flushLock = new Object();
+	private final Runnable flushTask = new Runnable() {
+
+		@Override
+		public void run() {
+			flushRequested.set(false);
+			try {
+				flush();
+			} catch ( RuntimeException e ) {
+				log.error("Error flushing buffered datum: {}", e.toString(), e);
+			}
+		}
+	};
+
+	private int bufferCapacity = DEFAULT_BUFFER_CAPACITY;
+	private int flushCount = DEFAULT_FLUSH_COUNT;
+	private long flushDelayMs = DEFAULT_FLUSH_DELAY_MS;
+	private File journalDirectory;
+	private long journalSyncMs = DEFAULT_JOURNAL_SYNC_MS;
+	private ObjectMapper objectMapper = new ObjectMapper();
+
+	private volatile DatumRingBuffer<T> buffer = new DatumRingBuffer<>(DEFAULT_BUFFER_CAPACITY);
+
+	// datum to store before those in the buffer, only accessed while holding flushLock
+	private final List<T> pending = new ArrayList<>();
+	private volatile int pendingSize = 0;
+
+	private volatile DatumJournal<T> journal;
+	private ScheduledFuture<?> flushFuture;
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+
+	/**
+	 * Constructor.
+	 *
+	 * @param delegate
+	 *        the DAO to store buffered datum to
+	 * @param taskScheduler
+	 *        the scheduler to flush the buffer with
+	 */
+	public BufferingDatumDao(DatumDao<T> delegate, TaskScheduler taskScheduler) {
+		super();
+		if ( delegate == null ) {
+			throw new IllegalArgumentException("The delegate argument must not be null.");
+		}
+		if ( taskScheduler == null ) {
+			throw new IllegalArgumentException("The taskScheduler argument must not be null.");
+		}
+		this.delegate = delegate;
+		this.taskScheduler = taskScheduler;
+	}
+
+	/**
+	 * Recover any journaled datum and start the periodic flush task.
+	 */
+	public synchronized void startup() {
+		if ( journalDirectory != null ) {
+			journal = new DatumJournal<>(journalDirectory, delegate.getDatumType(), objectMapper,
+					journalSyncMs);
+			recoverJournal();
+		}
+		if ( flushFuture == null && flushDelayMs > 0 ) {
+			flushFuture = taskScheduler.scheduleWithFixedDelay(flushTask,
+					new Date(System.currentTimeMillis() + flushDelayMs), flushDelayMs);
+		}
+	}
+
+	/**
+	 * Stop the periodic flush task and flush any buffered datum.
+	 */
+	public synchronized void shutdown() {
+		if ( flushFuture != null ) {
+			flushFuture.cancel(false);
+			flushFuture = null;
+		}
+		try {
+			flush();
+		} catch ( RuntimeException e ) {
+			log.warn("Error flushing buffered datum on shutdown (journal retained): {}",
+					e.getMessage());
+		}
+		synchronized ( journalLock ) {
+			if ( journal != null ) {
+				journal.close();
+			}
+		}
+	}
+
+	private void recoverJournal() {
+		final List<T> recovered;
+		synchronized ( journalLock ) {
+			try {
+				recovered = journal.recover();
+			} catch ( IOException e ) {
+				log.error("Error recovering datum journal from [{}]: {}", journalDirectory,
+						e.getMessage());
+				return;
+			}
+		}
+		if ( recovered.isEmpty() ) {
+			return;
+		}
+		log.info("Recovered {} datum from journal [{}]", recovered.size(), journalDirectory);
+
+		// add as pending so they get committed along with the journal segments on the next flush
+		synchronized ( flushLock ) {
+			pending.addAll(recovered);
+			pendingSize = pending.size();
+		}
+		try {
+			flush();
+		} catch ( RuntimeException e ) {
+			log.warn("Error storing {} recovered datum; will retry: {}", recovered.size(),
+					e.getMessage());
+		}
+	}
+
+	/**
+	 * Store all buffered datum to the delegate DAO.
+	 *
+	 * <p>
+	 * If the delegate fails to store the batch with a transient error, all the
+	 * datum are kept for the next flush, their journal segments are retained,
+	 * and the exception is re-thrown. For any other error each datum is stored
+	 * individually: datum the delegate rejects are discarded, and if a
+	 * transient error occurs the remaining datum are kept for the next flush
+	 * and the exception is re-thrown.
+	 * </p>
+	 *
+	 * @return the number of datum stored
+	 */
+	public int flush() {
+		synchronized ( flushLock ) {
+			final List<Path> segments;
+			final List<T> batch = new ArrayList<>(pendingSize + buffer.size());
+			batch.addAll(pending);
+			pending.clear();
+			synchronized ( journalLock ) {
+				segments = (journal != null ? journal.roll() : Collections.<Path> emptyList());
+				T datum;
+				while ( (datum = buffer.poll()) != null ) {
+					batch.add(datum);
+				}
+			}
+			pendingSize = 0;
+			if ( batch.isEmpty() && segments.isEmpty() ) {
+				return 0;
+			}
+			int count = batch.size();
+			if ( !batch.isEmpty() ) {
+				try {
+					delegate.storeDatum(batch);
+				} catch ( RuntimeException e ) {
+					if ( isTransientFailure(e) ) {
+						pending.addAll(batch);
+						pendingSize = pending.size();
+						throw e;
+					}
+					log.warn("Error storing {} buffered datum to {}; storing individually: {}",
+							batch.size(), delegate, e.toString());
+					count = storeIndividually(batch);
+				}
+			}
+			if ( !segments.isEmpty() ) {
+				synchronized ( journalLock ) {
+					journal.delete(segments);
+				}
+			}
+			log.debug("Flushed {} buffered datum to {}", count, delegate);
+			return count;
+		}
+	}
+
+	/**
+	 * Store datum one at a time, after the delegate failed to store them as a
+	 * batch.
+	 *
+	 * <p>
+	 * Must be called while holding {@code flushLock}.
+	 * </p>
+	 *
+	 * @param batch
+	 *        the datum to store
+	 * @return the number of datum stored
+	 * @throws RuntimeException
+	 *         if a transient error occurs, after adding the datum not yet
+	 *         stored to {@code pending}
+	 */
+	private int storeIndividually(List<T> batch) {
+		int count = 0;
+		for ( int i = 0, len = batch.size(); i < len; i++ ) {
+			final T datum = batch.get(i);
+			try {
+				delegate.storeDatum(datum);
+				count++;
+			} catch ( RuntimeException e ) {
+				if ( isTransientFailure(e) ) {
+					pending.addAll(batch.subList(i, len));
+					pendingSize = pending.size();
+					throw e;
+				}
+				log.error("Discarding buffered datum {} rejected by {}: {}", datum, delegate,
+						e.toString());
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Test if a delegate failure is likely to succeed if tried again later.
+	 *
+	 * <p>
+	 * Errors that are not a {@link DataAccessException}, for example the
+	 * delegate service not being available, are treated as transient.
+	 * </p>
+	 *
+	 * @param e
+	 *        the exception
+	 * @return {@literal true} if the failure is transient
+	 */
+	private static boolean isTransientFailure(RuntimeException e) {
+		if ( !(e instanceof DataAccessException) ) {
+			return true;
+		}
+		return (e instanceof TransientDataAccessException
+				|| e instanceof RecoverableDataAccessException
+				|| e instanceof DataAccessResourceFailureException);
+	}
+
+	private void requestFlush() {
+		if ( flushRequested.compareAndSet(false, true) ) {
+			taskScheduler.schedule(flushTask, new Date());
+		}
+	}
+
+	@Override
+	public Class<? extends T> getDatumType() {
+		return delegate.getDatumType();
+	}
+
+	@Override
+	public void storeDatum(T datum) {
+		if ( datum == null ) {
+			return;
+		}
+		if ( getBufferSize() >= bufferCapacity ) {
+			log.debug("Datum buffer full; storing datum directly: {}", datum);
+			delegate.storeDatum(datum);
+			requestFlush();
+			return;
+		}
+		boolean buffered = false;
+		if ( journal == null ) {
+			buffered = buffer.offer(datum);
+		} else {
+			synchronized ( journalLock ) {
+				try {
+					journal.append(datum);
+					// if the buffer filled up concurrently the datum is stored directly below, and
+					// a replay of the journal merges it as a duplicate
+					buffered = buffer.offer(datum);
+				} catch ( IOException e ) {
+					log.warn("Error writing datum journal; storing datum directly: {}", e.getMessage());
+				}
+			}
+		}
+		if ( !buffered ) {
+			delegate.storeDatum(datum);
+		} else if ( getBufferSize() >= flushCount ) {
+			requestFlush();
+		}
+	}
+
+	@Override
+	public void storeDatum(Collection<T> datumList) {
+		if ( datumList == null ) {
+			return;
+		}
+		for ( T datum : datumList ) {
+			storeDatum(datum);
+		}
+	}
+
+	@Override
+	public List<T> getDatumNotUploaded(String destination) {
+		return delegate.getDatumNotUploaded(destination);
+	}
+
+	@Override
+	public List<T> getDatumNotUploaded(String destination, Date afterCreated, String afterSourceId,
+			int max) {
+		return delegate.getDatumNotUploaded(destination, afterCreated, afterSourceId, max);
+	}
+
+	@Override
+	public void setDatumUploaded(T datum, Date date, String destination, String trackingId) {
+		delegate.setDatumUploaded(datum, date, destination, trackingId);
+	}
+
+	@Override
+	public void setDatumUploaded(Collection<T> datumList, Date date, String destination) {
+		delegate.setDatumUploaded(datumList, date, destination);
+	}
+
+	@Override
+	public int deleteUploadedDataOlderThan(int hours) {
+		return delegate.deleteUploadedDataOlderThan(hours);
+	}
+
+	/**
+	 * Get the number of datum currently buffered.
+	 *
+	 * @return the buffered datum count
+	 */
+	public int getBufferSize() {
+		return buffer.size() + pendingSize;
+	}
+
+	/**
+	 * Set the maximum number of datum to hold in the buffer.
+	 *
+	 * <p>
+	 * Once full, datum will be stored directly to the delegate DAO. This
+	 * replaces the buffer, so must be set before {@link #startup()}.
+	 * </p>
+	 *
+	 * @param bufferCapacity
+	 *        the capacity; defaults to {@link #DEFAULT_BUFFER_CAPACITY}
+	 */
+	public void setBufferCapacity(int bufferCapacity) {
+		this.bufferCapacity = bufferCapacity;
+		this.buffer = new DatumRingBuffer<>(Math.max(2, bufferCapacity));
+	}
+
+	/**
+	 * Set the number of buffered datum that triggers a flush.
+	 *
+	 * @param flushCount
+	 *        the count; defaults to {@link #DEFAULT_FLUSH_COUNT}
+	 */
+	public void setFlushCount(int flushCount) {
+		this.flushCount = flushCount;
+	}
+
+	/**
+	 * Set the maximum number of milliseconds to delay between flushes.
+	 *
+	 * @param flushDelayMs
+	 *        the delay; defaults to {@link #DEFAULT_FLUSH_DELAY_MS}
+	 */
+	public void setFlushDelayMs(long flushDelayMs) {
+		this.flushDelayMs = flushDelayMs;
+	}
+
+	/**
+	 * Set the directory to write the datum journal to.
+	 *
+	 * @param journalDirectory
+	 *        the directory, or {@literal null} to disable journaling
+	 */
+	public void setJournalDirectory(File journalDirectory) {
+		this.journalDirectory = journalDirectory;
+	}
+
+	/**
+	 * Set the directory to write the datum journal to, as a path.
+	 *
+	 * <p>
+	 * Relative paths are resolved against {@link Constants#solarNodeHome()}.
+	 * </p>
+	 *
+	 * @param journalPath
+	 *        the path, or {@literal null} or empty to disable journaling
+	 */
+	public void setJournalPath(String journalPath) {
+		if ( journalPath == null || journalPath.trim().isEmpty() ) {
+			this.journalDirectory = null;
+			return;
+		}
+		File f = new File(journalPath.trim());
+		if ( !f.isAbsolute() ) {
+			f = new File(Constants.solarNodeHome(), f.getPath());
+		}
+		this.journalDirectory = f;
+	}
+
+	/**
+	 * Set the minimum number of milliseconds between forcing journal writes to
+	 * storage.
+	 *
+	 * <p>
+	 * Datum journaled within this interval of the last force share the next
+	 * one, which happens on a later journal write or on the next flush,
+	 * whichever comes first. Set to {@literal 0} to force every journal write,
+	 * or less than {@literal 0} to never force.
+	 * </p>
+	 *
+	 * @param journalSyncMs
+	 *        the interval; defaults to {@link #DEFAULT_JOURNAL_SYNC_MS}
+	 */
+	public void setJournalSyncMs(long journalSyncMs) {
+		this.journalSyncMs = journalSyncMs;
+	}
+
+	/**
+	 * Set the mapper to use for encoding journal entries.
+	 *
+	 * @param objectMapper
+	 *        the mapper to use
+	 */
+	public void setObjectMapper(ObjectMapper objectMapper) {
+		this.objectMapper = objectMapper;
+	}
+
+}
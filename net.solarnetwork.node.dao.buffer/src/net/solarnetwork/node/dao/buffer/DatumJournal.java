@@ -0,0 +1,323 @@
+/* ==================================================================
+ * DatumJournal.java - 18/10/2026 9:12:40 AM
+ *
+ * Copyright 2026 SolarNetwork.net Dev Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ * ==================================================================
+ */
+
+package net.solarnetwork.node.dao.buffer;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import net.solarnetwork.domain.GeneralDatumSamples;
+import net.solarnetwork.domain.GeneralLocationDatumSamples;
+import net.solarnetwork.domain.GeneralNodeDatumSamples;
+import net.solarnetwork.node.domain.GeneralLocationDatum;
+import net.solarnetwork.node.domain.GeneralNodeDatum;
+
+/**
+ * Append-only journal of datum, stored as a series of segment files.
+ *
+ * <p>
+ * Each datum is written as a single line of JSON to the active segment file.
+ * Forcing the file channel to storage is grouped by time: an append forces the
+ * channel only if at least {@code syncMs} milliseconds have passed since the
+ * last force, and {@link #roll()} forces any remaining unforced appends before
+ * closing the segment. A {@code syncMs} of {@literal 0} forces every append,
+ * and a negative value never forces, leaving it up to the operating system.
+ * Calling {@link #roll()} closes the active segment so that it can be deleted
+ * via {@link #delete(List)} once its datum have been committed elsewhere.
+ * </p>
+ *
+ * <p>
+ * This class is <b>not</b> thread safe; callers must coordinate access.
+ * </p>
+ *
+ * @param <T>
+ *        the datum type
+ * @author matt
+ * @version 1.0
+ */
+public class DatumJournal<T extends GeneralNodeDatum> {
+
+	/** The segment file name prefix. */
+	public static final String SEGMENT_PREFIX = "datum-";
+
+	/** The segment file name suffix. */
+	public static final String SEGMENT_SUFFIX = ".journal";
+
+	private static final byte[] NEWLINE = new byte[] { '\n' };
+
+	private final Path directory;
+	private final Class<? extends T> datumType;
+	private final ObjectMapper objectMapper;
+	private final long syncMs;
+	private final List<Path> closedSegments = new ArrayList<>(4);
+
+	private Path activeSegment;
+	private FileChannel channel;
+	private boolean dirty;
+	private long lastSync;
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+
+	/**
+	 * Constructor.
+	 *
+	 * @param directory
+	 *        the directory to store segment files in
+	 * @param datumType
+	 *        the type of datum to journal
+	 * @param objectMapper
+	 *        the mapper to use for encoding datum samples
+	 * @param syncMs
+	 *        the minimum number of milliseconds between forcing appends to
+	 *        storage, {@literal 0} to force every append, or less than
+	 *        {@literal 0} to never force
+	 */
+	public DatumJournal(File directory, Class<? extends T> datumType, ObjectMapper objectMapper,
+			long syncMs) {
+		super();
+		if ( directory == null ) {
+			throw new IllegalArgumentException("The directory argument must not be null.");
+		}
+		if ( datumType == null ) {
+			throw new IllegalArgumentException("The datumType argument must not be null.");
+		}
+		if ( objectMapper == null ) {
+			throw new IllegalArgumentException("The objectMapper argument must not be null.");
+		}
+		this.directory = directory.toPath();
+		this.datumType = datumType;
+		this.objectMapper = objectMapper;
+		this.syncMs = syncMs;
+	}
+
+	/**
+	 * Append a datum to the active segment.
+	 *
+	 * @param datum
+	 *        the datum to append
+	 * @throws IOException
+	 *         if any IO error occurs
+	 */
+	public void append(T datum) throws IOException {
+		ObjectNode node = objectMapper.createObjectNode();
+		node.put("c", datum.getCreated() != null ? datum.getCreated().getTime() : 0L);
+		node.put("s", datum.getSourceId());
+		if ( datum instanceof GeneralLocationDatum ) {
+			Long locId = ((GeneralLocationDatum) datum).getLocationId();
+			if ( locId != null ) {
+				node.put("l", locId);
+			}
+		}
+		if ( datum.getSamples() != null ) {
+			node.set("d", objectMapper.valueToTree(datum.getSamples()));
+		}
+		byte[] data = objectMapper.writeValueAsBytes(node);
+		FileChannel ch = channel();
+		ch.write(new ByteBuffer[] { ByteBuffer.wrap(data), ByteBuffer.wrap(NEWLINE) });
+		dirty = true;
+		if ( syncMs == 0 || (syncMs > 0 && System.currentTimeMillis() - lastSync >= syncMs) ) {
+			sync();
+		}
+	}
+
+	/**
+	 * Force any appends to the active segment not yet forced to storage.
+	 *
+	 * @throws IOException
+	 *         if any IO error occurs
+	 */
+	public void sync() throws IOException {
+		if ( channel != null && dirty ) {
+			channel.force(false);
+			dirty = false;
+			lastSync = System.currentTimeMillis();
+		}
+	}
+
+	/**
+	 * Close the active segment, if any, so subsequent appends go to a new
+	 * segment.
+	 *
+	 * @return all closed segments not yet deleted, including the one just
+	 *         closed
+	 */
+	public List<Path> roll() {
+		if ( syncMs >= 0 ) {
+			try {
+				sync();
+			} catch ( IOException e ) {
+				log.warn("Error syncing datum journal segment {}: {}", activeSegment, e.getMessage());
+			}
+		}
+		closeChannel();
+		if ( activeSegment != null ) {
+			closedSegments.add(activeSegment);
+			activeSegment = null;
+		}
+		return new ArrayList<>(closedSegments);
+	}
+
+	/**
+	 * Delete closed segments.
+	 *
+	 * @param segments
+	 *        the segments to delete, as previously returned from
+	 *        {@link #roll()}
+	 */
+	public void delete(List<Path> segments) {
+		if ( segments == null ) {
+			return;
+		}
+		for ( Path p : segments ) {
+			try {
+				Files.deleteIfExists(p);
+				closedSegments.remove(p);
+			} catch ( IOException e ) {
+				log.warn("Unable to delete datum journal segment {}: {}", p, e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Read all datum from any segment files present in the journal directory.
+	 *
+	 * <p>
+	 * This is meant to be called on startup, before any datum are appended, to
+	 * recover datum journaled but not committed before the last shutdown. The
+	 * recovered segments are treated as closed segments, so they can be removed
+	 * via {@link #roll()} and {@link #delete(List)} once the datum have been
+	 * committed. A truncated final line, as might be left by a crash mid-write,
+	 * is ignored.
+	 * </p>
+	 *
+	 * @return the recovered datum, never {@literal null}
+	 * @throws IOException
+	 *         if any IO error occurs
+	 */
+	public List<T> recover() throws IOException {
+		if ( !Files.isDirectory(directory) ) {
+			return Collections.emptyList();
+		}
+		List<Path> segments = new ArrayList<>(4);
+		try (DirectoryStream<Path> ds = Files.newDirectoryStream(directory,
+				SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+			for ( Path p : ds ) {
+				segments.add(p);
+			}
+		}
+		Collections.sort(segments);
+		List<T> result = new ArrayList<>(16);
+		for ( Path p : segments ) {
+			try (BufferedReader r = Files.newBufferedReader(p, StandardCharsets.UTF_8)) {
+				String line;
+				while ( (line = r.readLine()) != null ) {
+					if ( line.isEmpty() ) {
+						continue;
+					}
+					try {
+						result.add(parseDatum(objectMapper.readTree(line)));
+					} catch ( IOException e ) {
+						log.warn("Ignoring invalid datum journal entry in {}: {}", p, e.getMessage());
+					}
+				}
+			}
+			if ( !closedSegments.contains(p) ) {
+				closedSegments.add(p);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Close the active segment file.
+	 */
+	public void close() {
+		closeChannel();
+	}
+
+	private T parseDatum(JsonNode node) throws IOException {
+		T datum;
+		try {
+			datum = datumType.newInstance();
+		} catch ( InstantiationException | IllegalAccessException e ) {
+			throw new IOException("Unable to create datum instance: " + e.getMessage(), e);
+		}
+		datum.setCreated(new Date(node.path("c").asLong()));
+		datum.setSourceId(node.path("s").textValue());
+		if ( datum instanceof GeneralLocationDatum && node.hasNonNull("l") ) {
+			((GeneralLocationDatum) datum).setLocationId(node.get("l").asLong());
+		}
+		JsonNode data = node.get("d");
+		if ( data != null && !data.isNull() ) {
+			Class<? extends GeneralDatumSamples> samplesType = (datum instanceof GeneralLocationDatum
+					? GeneralLocationDatumSamples.class
+					: GeneralNodeDatumSamples.class);
+			datum.setSamples(objectMapper.treeToValue(data, samplesType));
+		}
+		return datum;
+	}
+
+	private FileChannel channel() throws IOException {
+		if ( channel == null ) {
+			Files.createDirectories(directory);
+			long ts = System.currentTimeMillis();
+			Path p = directory.resolve(SEGMENT_PREFIX + ts + SEGMENT_SUFFIX);
+			while ( Files.exists(p) ) {
+				ts++;
+				p = directory.resolve(SEGMENT_PREFIX + ts + SEGMENT_SUFFIX);
+			}
+			channel = FileChannel.open(p, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE,
+					StandardOpenOption.APPEND);
+			activeSegment = p;
+		}
+		return channel;
+	}
+
+	private void closeChannel() {
+		if ( channel != null ) {
+			try {
+				channel.close();
+			} catch ( IOException e ) {
+				log.debug("Error closing datum journal segment {}: {}", activeSegment, e.getMessage());
+			}
+			channel = null;
+			dirty = false;
+		}
+	}
+
+}
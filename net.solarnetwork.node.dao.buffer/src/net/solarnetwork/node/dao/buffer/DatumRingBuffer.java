@@ -0,0 +1,160 @@
+/* ==================================================================
+ * DatumRingBuffer.java - 19/10/2026 6:40:22 PM
+ *
+ * Copyright 2026 SolarNetwork.net Dev Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ * ==================================================================
+ */
+
+package net.solarnetwork.node.dao.buffer;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded, lock-free, multi-producer ring buffer.
+ *
+ * <p>
+ * Each slot carries a sequence number that tells producers and consumers
+ * whether the slot is free to write or ready to read, so {@link #offer(Object)}
+ * and {@link #poll()} only ever compare-and-set the shared head and tail
+ * counters and never block. When the buffer is full {@link #offer(Object)}
+ * returns {@literal false} rather than waiting for space.
+ * </p>
+ *
+ * @param <T>
+ *        the element type
+ * @author matt
+ * @version 1.0
+ */
+public class DatumRingBuffer<T> {
+
+	private final int capacity;
+	private final AtomicReferenceArray<T> slots;
+	private final AtomicLongArray sequences;
+	private final AtomicLong head = new AtomicLong(0);
+	private final AtomicLong tail = new AtomicLong(0);
+
+	/**
+	 * Constructor.
+	 *
+	 * @param capacity
+	 *        the maximum number of elements to hold; a single slot cannot
+	 *        distinguish a written slot from a free one, so at least
+	 *        {@literal 2} is required
+	 * @throws IllegalArgumentException
+	 *         if {@code capacity} is less than {@literal 2}
+	 */
+	public DatumRingBuffer(int capacity) {
+		super();
+		if ( capacity < 2 ) {
+			throw new IllegalArgumentException("The capacity argument must be at least 2.");
+		}
+		this.capacity = capacity;
+		this.slots = new AtomicReferenceArray<>(capacity);
+		this.sequences = new AtomicLongArray(capacity);
+		for ( int i = 0; i < capacity; i++ ) {
+			sequences.set(i, i);
+		}
+	}
+
+	/**
+	 * Add an element to the tail of the buffer.
+	 *
+	 * @param element
+	 *        the element to add
+	 * @return {@literal true} if the element was added, {@literal false} if the
+	 *         buffer is full
+	 * @throws IllegalArgumentException
+	 *         if {@code element} is {@literal null}
+	 */
+	public boolean offer(T element) {
+		if ( element == null ) {
+			throw new IllegalArgumentException("The element argument must not be null.");
+		}
+		long pos = tail.get();
+		while ( true ) {
+			final int idx = (int) (pos % capacity);
+			final long diff = sequences.get(idx) - pos;
+			if ( diff == 0 ) {
+				// slot free for this position; claim it
+				if ( tail.compareAndSet(pos, pos + 1) ) {
+					slots.set(idx, element);
+					sequences.set(idx, pos + 1);
+					return true;
+				}
+				pos = tail.get();
+			} else if ( diff < 0 ) {
+				// slot still holds an element from the previous lap: full
+				return false;
+			} else {
+				// another producer claimed this position first
+				pos = tail.get();
+			}
+		}
+	}
+
+	/**
+	 * Remove the element at the head of the buffer.
+	 *
+	 * @return the element, or {@literal null} if the buffer is empty
+	 */
+	public T poll() {
+		long pos = head.get();
+		while ( true ) {
+			final int idx = (int) (pos % capacity);
+			final long diff = sequences.get(idx) - (pos + 1);
+			if ( diff == 0 ) {
+				// slot written for this position; claim it
+				if ( head.compareAndSet(pos, pos + 1) ) {
+					T element = slots.getAndSet(idx, null);
+					sequences.set(idx, pos + capacity);
+					return element;
+				}
+				pos = head.get();
+			} else if ( diff < 0 ) {
+				// slot not written yet: empty
+				return null;
+			} else {
+				// another consumer claimed this position first
+				pos = head.get();
+			}
+		}
+	}
+
+	/**
+	 * Get the approximate number of elements in the buffer.
+	 *
+	 * @return the element count
+	 */
+	public int size() {
+		final long h = head.get();
+		final long t = tail.get();
+		return (int) Math.max(0, Math.min(capacity, t - h));
+	}
+
+	/**
+	 * Get the buffer capacity.
+	 *
+	 * @return the maximum number of elements the buffer can hold
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+}
@@ -24,13 +24,18 @@ package net.solarnetwork.node.dao.jdbc.general.test;
 
 import static org.easymock.EasyMock.expectLastCall;
 import static org.hamcrest.Matchers.arrayContaining;
+import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertThat;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -47,6 +52,7 @@ import org.osgi.service.event.Event;
 import org.osgi.service.event.EventAdmin;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
 import net.solarnetwork.domain.GeneralNodeDatumSamples;
 import net.solarnetwork.node.dao.DatumDao;
 import net.solarnetwork.node.dao.jdbc.DatabaseSetup;
@@ -64,7 +70,7 @@ import net.solarnetwork.util.StaticOptionalService;
  * Test cases for the {@link JdbcGeneralNodeDatumDao} class.
  * 
  * @author matt
- * @version 1.0
+ * @version 1.1
  */
 public class JdbcGeneralNodeDatumDaoTest extends AbstractNodeTransactionalTest {
 
@@ -393,4 +399,219 @@ public class JdbcGeneralNodeDatumDaoTest extends AbstractNodeTransactionalTest {
 		assertDatumStoredEventEqualsDatum(captor.getValues().get(0), datum);
 	}
 
+	@Test
+	public void insertBatch() {
+		final int numDatum = 5;
+		final long now = System.currentTimeMillis();
+		final GeneralNodeDatumSamples samples = samplesInstance();
+
+		Capture<Event> captor = new Capture<Event>(CaptureType.ALL);
+		eventAdmin.postEvent(EasyMock.capture(captor));
+		EasyMock.expectLastCall().times(numDatum);
+
+		replayAll();
+
+		List<GeneralNodeDatum> stored = new ArrayList<GeneralNodeDatum>();
+		for ( int i = 0; i < numDatum; i++ ) {
+			GeneralNodeDatum datum = new GeneralNodeDatum();
+			datum.setCreated(new Date(now + i));
+			datum.setSourceId(String.valueOf(i));
+			datum.setSamples(samples);
+			stored.add(datum);
+		}
+		dao.storeDatum(stored);
+
+		List<GeneralNodeDatum> results = dao.getDatumNotUploaded("test");
+		assertThat(results, equalTo(stored));
+
+		assertThat(captor.getValues(), hasSize(numDatum));
+		for ( int i = 0; i < numDatum; i++ ) {
+			assertDatumStoredEventEqualsDatum(captor.getValues().get(i), stored.get(i));
+		}
+	}
+
+	@Test
+	public void insertBatchWithExisting() {
+		Capture<Event> captor = new Capture<Event>(CaptureType.ALL);
+		eventAdmin.postEvent(EasyMock.capture(captor));
+		expectLastCall().times(4); // two store, one batch insert, one batch update
+
+		replayAll();
+
+		final Date now = new Date();
+		GeneralNodeDatum unchanged = new GeneralNodeDatum();
+		unchanged.setCreated(now);
+		unchanged.setSourceId("A");
+		unchanged.setSamples(samplesInstance());
+		dao.storeDatum(unchanged);
+
+		GeneralNodeDatum existing = new GeneralNodeDatum();
+		existing.setCreated(now);
+		existing.setSourceId("B");
+		existing.setSamples(samplesInstance());
+		dao.storeDatum(existing);
+
+		GeneralNodeDatum changed = new GeneralNodeDatum();
+		changed.setCreated(now);
+		changed.setSourceId("B");
+		changed.setSamples(samplesInstance());
+		changed.getSamples().addTag("foo");
+
+		GeneralNodeDatum inserted = new GeneralNodeDatum();
+		inserted.setCreated(now);
+		inserted.setSourceId("C");
+		inserted.setSamples(samplesInstance());
+
+		dao.storeDatum(Arrays.asList(unchanged, changed, inserted));
+
+		List<GeneralNodeDatum> results = dao.getDatumNotUploaded("test");
+		assertThat(results, hasSize(3));
+		assertThat(results.get(0), equalTo(unchanged));
+		assertThat(results.get(1).getSamples(), equalTo(changed.getSamples()));
+		assertThat(results.get(2), equalTo(inserted));
+
+		assertThat("Event captured", captor.getValues(), hasSize(4));
+		assertDatumStoredEventEqualsDatum(captor.getValues().get(2), inserted);
+		assertDatumStoredEventEqualsDatum(captor.getValues().get(3), changed);
+	}
+
+	@Test
+	public void insertBatchWithoutCreated() {
+		Capture<Event> captor = new Capture<Event>(CaptureType.ALL);
+		eventAdmin.postEvent(EasyMock.capture(captor));
+		expectLastCall().times(3);
+
+		replayAll();
+
+		GeneralNodeDatum undatedA = new GeneralNodeDatum();
+		undatedA.setSourceId("A");
+		undatedA.setSamples(samplesInstance());
+
+		GeneralNodeDatum undatedB = new GeneralNodeDatum();
+		undatedB.setSourceId("B");
+		undatedB.setSamples(samplesInstance());
+
+		GeneralNodeDatum dated = new GeneralNodeDatum();
+		dated.setCreated(new Date());
+		dated.setSourceId("C");
+		dated.setSamples(samplesInstance());
+
+		dao.storeDatum(Arrays.asList(undatedA, undatedB, dated));
+
+		List<GeneralNodeDatum> results = dao.getDatumNotUploaded("test");
+		assertThat("All datum stored", results, hasSize(3));
+		Set<String> sourceIds = new HashSet<String>();
+		for ( GeneralNodeDatum d : results ) {
+			assertThat("Created date stamped", d.getCreated(), notNullValue());
+			sourceIds.add(d.getSourceId());
+		}
+		assertThat("Undated datum not collapsed", sourceIds, containsInAnyOrder("A", "B", "C"));
+		assertThat("Event captured", captor.getValues(), hasSize(3));
+	}
+
+	@Test
+	public void findForUploadPaged() {
+		final int numDatum = 5;
+		final long now = System.currentTimeMillis();
+		final GeneralNodeDatumSamples samples = samplesInstance();
+
+		eventAdmin.postEvent(EasyMock.anyObject(Event.class));
+		EasyMock.expectLastCall().times(numDatum * 2);
+
+		replayAll();
+
+		List<GeneralNodeDatum> stored = new ArrayList<GeneralNodeDatum>();
+		for ( int i = 0; i < numDatum; i++ ) {
+			for ( int j = 0; j < 2; j++ ) {
+				GeneralNodeDatum datum = new GeneralNodeDatum();
+				datum.setCreated(new Date(now + i));
+				datum.setSourceId(String.valueOf(j));
+				datum.setSamples(samples);
+				dao.storeDatum(datum);
+				stored.add(datum);
+			}
+		}
+
+		List<GeneralNodeDatum> found = new ArrayList<GeneralNodeDatum>();
+		GeneralNodeDatum last = null;
+		while ( true ) {
+			List<GeneralNodeDatum> page = dao.getDatumNotUploaded("test",
+					(last != null ? last.getCreated() : null),
+					(last != null ? last.getSourceId() : null), 3);
+			if ( page.isEmpty() ) {
+				break;
+			}
+			assertThat("Page size", page.size() <= 3, equalTo(true));
+			found.addAll(page);
+			last = page.get(page.size() - 1);
+		}
+		assertThat("All datum found in order", found, equalTo(stored));
+	}
+
+	@Test
+	public void markUploadedBatch() {
+		final int numDatum = 5;
+		final int numUploaded = 3;
+		final long now = System.currentTimeMillis();
+		final GeneralNodeDatumSamples samples = samplesInstance();
+
+		eventAdmin.postEvent(EasyMock.anyObject(Event.class));
+		EasyMock.expectLastCall().times(numDatum);
+
+		replayAll();
+
+		for ( int i = 0; i < numDatum; i++ ) {
+			GeneralNodeDatum datum = new GeneralNodeDatum();
+			datum.setCreated(new Date(now));
+			datum.setSourceId(String.valueOf(i));
+			datum.setSamples(samples);
+			dao.storeDatum(datum);
+		}
+		List<GeneralNodeDatum> results = dao.getDatumNotUploaded("test");
+		assertThat(results, hasSize(numDatum));
+
+		dao.setDatumUploaded(results.subList(0, numUploaded), new Date(now + 1000L), "test");
+
+		// now find not uploaded again, should be just 2
+		List<GeneralNodeDatum> remaining = dao.getDatumNotUploaded("test");
+		assertThat(remaining, equalTo(results.subList(numUploaded, numDatum)));
+	}
+
+	@Test
+	public void insertBinary() {
+		eventAdmin.postEvent(EasyMock.anyObject(Event.class));
+		EasyMock.expectLastCall().times(2);
+
+		replayAll();
+
+		// store a legacy JSON datum first
+		GeneralNodeDatum legacy = new GeneralNodeDatum();
+		legacy.setCreated(new Date());
+		legacy.setSourceId("A");
+		legacy.setSamples(samplesInstance());
+		dao.storeDatum(legacy);
+
+		dao.setBinaryObjectMapper(new ObjectMapper(new CBORFactory()));
+		dao.setBinarySamples(true);
+
+		GeneralNodeDatum datum = new GeneralNodeDatum();
+		datum.setCreated(legacy.getCreated());
+		datum.setSourceId("B");
+		datum.setSamples(samplesInstance());
+		dao.storeDatum(datum);
+
+		Map<String, Object> row = jdbcTemplate.queryForMap(
+				"select jdata, bdata from solarnode.sn_general_node_datum where created = ? and source_id = ?",
+				new Timestamp(datum.getCreated().getTime()), datum.getSourceId());
+		assertThat("jdata", row.get("JDATA"), nullValue());
+		assertThat("bdata", row.get("BDATA"), notNullValue());
+
+		List<GeneralNodeDatum> local = dao.getDatumNotUploaded("test");
+		assertThat(local, hasSize(2));
+		assertThat(local.get(0), equalTo(legacy));
+		assertThat("Legacy samples", local.get(0).getSamples(), equalTo(legacy.getSamples()));
+		assertThat(local.get(1), equalTo(datum));
+		assertThat("Binary samples", local.get(1).getSamples(), equalTo(datum.getSamples()));
+	}
+
 }
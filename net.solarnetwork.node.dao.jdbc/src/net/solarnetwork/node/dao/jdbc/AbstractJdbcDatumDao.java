@@ -28,12 +28,20 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import org.osgi.service.event.Event;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.PreparedStatementCreator;
 import org.springframework.jdbc.core.PreparedStatementSetter;
 import org.springframework.jdbc.core.RowMapper;
@@ -46,7 +54,7 @@ import net.solarnetwork.node.domain.Datum;
  * "upload" tasks.
  * 
  * @author matt
- * @version 1.3
+ * @version 1.6
  * @param <T>
  *        the domain object type managed by this DAO
  */
@@ -59,6 +67,13 @@ public abstract class AbstractJdbcDatumDao<T extends Datum> extends AbstractJdbc
 	public static final String SQL_RESOURCE_INSERT = "insert";
 	public static final String SQL_RESOURCE_DELETE_OLD = "delete-old";
 	public static final String SQL_RESOURCE_FIND_FOR_UPLOAD = "find-upload";
+
+	/**
+	 * The SQL resource to find datum not uploaded, after a given primary key.
+	 * 
+	 * @since 1.5
+	 */
+	public static final String SQL_RESOURCE_FIND_FOR_UPLOAD_AFTER = "find-upload-after";
 	public static final String SQL_RESOURCE_FIND_FOR_PRIMARY_KEY = "find-pk";
 	public static final String SQL_RESOURCE_UPDATE_UPLOADED = "update-upload";
 	public static final String SQL_RESOURCE_UPDATE_DATA = "update-data";
@@ -144,6 +159,69 @@ public abstract class AbstractJdbcDatumDao<T extends Datum> extends AbstractJdbc
 		return result;
 	}
 
+	/**
+	 * Find datum entities that have not been uploaded, starting after a given
+	 * primary key.
+	 * 
+	 * <p>
+	 * This executes SQL from the {@link #SQL_RESOURCE_FIND_FOR_UPLOAD_AFTER}
+	 * resource, which must be ordered by creation date and then source ID and
+	 * accept the following parameters:
+	 * </p>
+	 * 
+	 * <ol>
+	 * <li>Timestamp parameter based on {@code afterCreated}</li>
+	 * <li>Timestamp parameter based on {@code afterCreated}</li>
+	 * <li>String parameter based on {@code afterSourceId}</li>
+	 * </ol>
+	 * 
+	 * <p>
+	 * If {@code afterCreated} is {@literal null} then the epoch is used, so
+	 * that all pages share the same ordering.
+	 * </p>
+	 * 
+	 * @param afterCreated
+	 *        the creation date to start after, or {@literal null} to start
+	 *        from the beginning
+	 * @param afterSourceId
+	 *        the source ID to start after
+	 * @param max
+	 *        the maximum number of rows to return
+	 * @param rowMapper
+	 *        a {@link RowMapper} implementation to instantiate entities from
+	 *        found rows
+	 * @return the matching rows, never <em>null</em>
+	 * @since 1.5
+	 */
+	protected List<T> findDatumNotUploaded(final Date afterCreated, final String afterSourceId,
+			final int max, final RowMapper<T> rowMapper) {
+		List<T> result = getJdbcTemplate().query(new PreparedStatementCreator() {
+
+			@Override
+			public PreparedStatement createPreparedStatement(Connection con) throws SQLException {
+				String sql = getSqlResource(SQL_RESOURCE_FIND_FOR_UPLOAD_AFTER);
+				if ( log.isTraceEnabled() ) {
+					log.trace("Preparing SQL to find datum not uploaded [" + sql + "] after ["
+							+ afterCreated + ' ' + afterSourceId + "] with max [" + max + ']');
+				}
+				PreparedStatement ps = con.prepareStatement(sql);
+				ps.setFetchDirection(ResultSet.FETCH_FORWARD);
+				ps.setFetchSize(max);
+				ps.setMaxRows(max);
+				Timestamp ts = new Timestamp(afterCreated != null ? afterCreated.getTime() : 0L);
+				ps.setTimestamp(1, ts);
+				ps.setTimestamp(2, ts);
+				ps.setString(3, afterSourceId == null ? "" : afterSourceId);
+				return ps;
+			}
+		}, rowMapper);
+		if ( log.isDebugEnabled() ) {
+			log.debug("Found " + result.size() + " datum entities not uploaded after [" + afterCreated
+					+ ' ' + afterSourceId + ']');
+		}
+		return result;
+	}
+
 	/**
 	 * Find datum entities.
 	 * 
@@ -226,6 +304,220 @@ public abstract class AbstractJdbcDatumDao<T extends Datum> extends AbstractJdbc
 		postDatumStoredEvent(datum);
 	}
 
+	/**
+	 * Store a collection of domain objects using batched statements.
+	 * 
+	 * <p>
+	 * This method first queries for any existing rows matching the primary key
+	 * of each datum in {@code datumList}, using the
+	 * {@link #SQL_RESOURCE_FIND_FOR_PRIMARY_KEY} SQL executed with a single
+	 * prepared statement. Datum without a matching existing row are then
+	 * inserted in a single batch using the
+	 * {@link #SQL_RESOURCE_INSERT} SQL, while datum with a matching existing
+	 * row for which {@link #isDatumChanged(Datum, Datum)} returns
+	 * <em>true</em> are updated in a single batch using the
+	 * {@link #SQL_RESOURCE_UPDATE_DATA} SQL. This avoids relying on a
+	 * {@link org.springframework.dao.DuplicateKeyException} per existing row.
+	 * If {@code datumList} contains more than one datum with the same primary
+	 * key, the last one wins. Datum without a {@code created} date have no
+	 * primary key to match, so they are inserted individually via
+	 * {@link #storeDomainObject(Datum)}, just as a single datum would be.
+	 * </p>
+	 * 
+	 * <p>
+	 * If {@link #isIgnoreMockData()} returns <em>true</em> then any datum that
+	 * is an instance of {@link Mock} will not be persisted.
+	 * </p>
+	 * 
+	 * <p>
+	 * This method should be invoked within a transaction.
+	 * </p>
+	 * 
+	 * @param datumList
+	 *        the datum to persist
+	 * @param rowMapper
+	 *        a {@link RowMapper} implementation to instantiate existing
+	 *        entities from found rows
+	 * @return the number of datum inserted or updated
+	 * @since 1.4
+	 */
+	protected int storeDomainObjects(final Collection<T> datumList, final RowMapper<T> rowMapper) {
+		if ( datumList == null || datumList.isEmpty() ) {
+			return 0;
+		}
+		final Map<DatumPrimaryKey, T> toStore = new LinkedHashMap<DatumPrimaryKey, T>(
+				datumList.size());
+		final List<T> undated = new ArrayList<T>(2);
+		for ( T datum : datumList ) {
+			if ( datum == null ) {
+				continue;
+			}
+			if ( ignoreMockData && datum instanceof Mock ) {
+				log.debug("Not persisting Mock datum: {}", datum);
+				continue;
+			}
+			if ( datum.getCreated() == null ) {
+				undated.add(datum);
+				continue;
+			}
+			toStore.put(new DatumPrimaryKey(datum.getCreated(), datum.getSourceId()), datum);
+		}
+		for ( T datum : undated ) {
+			storeDomainObject(datum);
+		}
+		if ( toStore.isEmpty() ) {
+			return undated.size();
+		}
+
+		final Map<DatumPrimaryKey, T> existing = findDatumForPrimaryKeys(toStore.keySet(),
+				rowMapper);
+
+		final List<T> inserts = new ArrayList<T>(toStore.size());
+		final List<T> updates = new ArrayList<T>(existing.size());
+		for ( Map.Entry<DatumPrimaryKey, T> me : toStore.entrySet() ) {
+			T curr = existing.get(me.getKey());
+			if ( curr == null ) {
+				inserts.add(me.getValue());
+			} else if ( isDatumChanged(curr, me.getValue()) ) {
+				updates.add(me.getValue());
+			} else {
+				log.debug("Datum unchanged; not persisted: {}", me.getValue());
+			}
+		}
+
+		if ( !inserts.isEmpty() ) {
+			getJdbcTemplate().batchUpdate(getSqlResource(SQL_RESOURCE_INSERT),
+					new BatchPreparedStatementSetter() {
+
+						@Override
+						public void setValues(PreparedStatement ps, int i) throws SQLException {
+							setStoreStatementValues(inserts.get(i), ps);
+						}
+
+						@Override
+						public int getBatchSize() {
+							return inserts.size();
+						}
+					});
+		}
+		if ( !updates.isEmpty() ) {
+			getJdbcTemplate().batchUpdate(getSqlResource(SQL_RESOURCE_UPDATE_DATA),
+					new BatchPreparedStatementSetter() {
+
+						@Override
+						public void setValues(PreparedStatement ps, int i) throws SQLException {
+							setUpdateStatementValues(updates.get(i), ps);
+						}
+
+						@Override
+						public int getBatchSize() {
+							return updates.size();
+						}
+					});
+		}
+		log.debug("Batch stored {} new and {} updated datum", inserts.size(), updates.size());
+
+		for ( T datum : inserts ) {
+			postDatumStoredEvent(datum);
+		}
+		for ( T datum : updates ) {
+			postDatumStoredEvent(datum);
+		}
+		return undated.size() + inserts.size() + updates.size();
+	}
+
+	/**
+	 * Test if a datum has changed compared to an existing persisted datum with
+	 * the same primary key.
+	 * 
+	 * <p>
+	 * This method is called from
+	 * {@link #storeDomainObjects(Collection, RowMapper)} to decide if an
+	 * existing row should be updated. This implementation always returns
+	 * <em>true</em>. Extending classes can override to avoid unnecessary
+	 * updates.
+	 * </p>
+	 * 
+	 * @param existing
+	 *        the existing persisted datum
+	 * @param datum
+	 *        the datum to persist
+	 * @return <em>true</em> if {@code datum} should be persisted
+	 * @since 1.4
+	 */
+	protected boolean isDatumChanged(T existing, T datum) {
+		return true;
+	}
+
+	private Map<DatumPrimaryKey, T> findDatumForPrimaryKeys(final Collection<DatumPrimaryKey> keys,
+			final RowMapper<T> rowMapper) {
+		return getJdbcTemplate().execute(new ConnectionCallback<Map<DatumPrimaryKey, T>>() {
+
+			@Override
+			public Map<DatumPrimaryKey, T> doInConnection(Connection con)
+					throws SQLException, DataAccessException {
+				String sql = getSqlResource(SQL_RESOURCE_FIND_FOR_PRIMARY_KEY);
+				log.trace("Preparing SQL [{}] to find {} datum by primary key", sql, keys.size());
+				Map<DatumPrimaryKey, T> result = new HashMap<DatumPrimaryKey, T>(keys.size());
+				PreparedStatement ps = con.prepareStatement(sql);
+				try {
+					for ( DatumPrimaryKey key : keys ) {
+						ps.setTimestamp(1, new Timestamp(key.created));
+						ps.setString(2, key.sourceId);
+						ResultSet rs = ps.executeQuery();
+						try {
+							if ( rs.next() ) {
+								result.put(key, rowMapper.mapRow(rs, 0));
+							}
+						} finally {
+							rs.close();
+						}
+					}
+				} finally {
+					ps.close();
+				}
+				return result;
+			}
+		});
+	}
+
+	/**
+	 * A datum primary key, used to match datum in batch operations.
+	 */
+	private static final class DatumPrimaryKey {
+
+		private final long created;
+		private final String sourceId;
+
+		private DatumPrimaryKey(Date created, String sourceId) {
+			super();
+			this.created = created.getTime();
+			this.sourceId = (sourceId != null ? sourceId : "");
+		}
+
+		@Override
+		public int hashCode() {
+			final int prime = 31;
+			int result = 1;
+			result = prime * result + (int) (created ^ (created >>> 32));
+			result = prime * result + sourceId.hashCode();
+			return result;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if ( this == obj ) {
+				return true;
+			}
+			if ( !(obj instanceof DatumPrimaryKey) ) {
+				return false;
+			}
+			DatumPrimaryKey other = (DatumPrimaryKey) obj;
+			return created == other.created && sourceId.equals(other.sourceId);
+		}
+
+	}
+
 	/**
 	 * {@inheritDoc}
 	 * 
@@ -296,6 +588,84 @@ public abstract class AbstractJdbcDatumDao<T extends Datum> extends AbstractJdbc
 		});
 	}
 
+	/**
+	 * Mark a collection of Datum as uploaded, using a single batched statement.
+	 * 
+	 * <p>
+	 * This method will execute the {@link #SQL_RESOURCE_UPDATE_UPLOADED} SQL
+	 * as a JDBC batch, calling
+	 * {@link #setUpdateDatumUploadStatementValues(Datum, long, PreparedStatement)}
+	 * for each datum.
+	 * </p>
+	 * 
+	 * @param datumList
+	 *        the datum that were uploaded
+	 * @param timestamp
+	 *        the date the upload happened
+	 * @return the number of updated rows
+	 * @since 1.6
+	 */
+	protected int updateDatumUpload(final Collection<T> datumList, final long timestamp) {
+		if ( datumList == null || datumList.isEmpty() ) {
+			return 0;
+		}
+		final List<T> list = (datumList instanceof List ? (List<T>) datumList
+				: new ArrayList<T>(datumList));
+		int[] counts = getJdbcTemplate().batchUpdate(getSqlResource(SQL_RESOURCE_UPDATE_UPLOADED),
+				new BatchPreparedStatementSetter() {
+
+					@Override
+					public void setValues(PreparedStatement ps, int i) throws SQLException {
+						setUpdateDatumUploadStatementValues(list.get(i), timestamp, ps);
+					}
+
+					@Override
+					public int getBatchSize() {
+						return list.size();
+					}
+				});
+		int result = 0;
+		for ( int count : counts ) {
+			if ( count > 0 ) {
+				result += count;
+			} else if ( count == Statement.SUCCESS_NO_INFO ) {
+				result += 1;
+			}
+		}
+		log.debug("Marked {} datum as uploaded", result);
+		return result;
+	}
+
+	/**
+	 * Set {@link PreparedStatement} values for marking a datum as uploaded.
+	 * 
+	 * <p>
+	 * Called from {@link #updateDatumUpload(Collection, long)}. This
+	 * implementation sets the same parameters as
+	 * {@link #updateDatumUpload(long, Object, long)}, using
+	 * {@link Datum#getSourceId()} as the ID. Extending classes can override
+	 * this if the {@link #SQL_RESOURCE_UPDATE_UPLOADED} SQL requires different
+	 * parameters.
+	 * </p>
+	 * 
+	 * @param datum
+	 *        the datum that was uploaded
+	 * @param timestamp
+	 *        the date the upload happened
+	 * @param ps
+	 *        the statement to set the values on
+	 * @throws SQLException
+	 *         if any SQL error occurs
+	 * @since 1.6
+	 */
+	protected void setUpdateDatumUploadStatementValues(T datum, long timestamp,
+			PreparedStatement ps) throws SQLException {
+		int col = 1;
+		ps.setTimestamp(col++, new java.sql.Timestamp(timestamp));
+		ps.setTimestamp(col++, new java.sql.Timestamp(datum.getCreated().getTime()));
+		ps.setObject(col++, datum.getSourceId());
+	}
+
 	/**
 	 * Post an {@link Event} for the {@link DatumDao#EVENT_TOPIC_DATUM_STORED}
 	 * topic.
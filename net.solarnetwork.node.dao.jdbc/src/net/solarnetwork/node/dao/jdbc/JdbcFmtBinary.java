@@ -0,0 +1,61 @@
+/* ==================================================================
+ * JdbcFmtBinary.java - 18/10/2026 9:12:31 AM
+ * 
+ * Copyright 2007-2026 SolarNetwork.net Dev Team
+ * 
+ * This program is free software; you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, 
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU 
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License 
+ * along with this program; if not, write to the Free Software 
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 
+ * 02111-1307 USA
+ * ==================================================================
+ */
+
+package net.solarnetwork.node.dao.jdbc;
+
+import java.util.Base64;
+import org.supercsv.cellprocessor.CellProcessorAdaptor;
+import org.supercsv.cellprocessor.ift.StringCellProcessor;
+import org.supercsv.exception.SuperCsvCellProcessorException;
+import org.supercsv.util.CsvContext;
+
+/**
+ * Format binary data as a Base64 string.
+ * 
+ * @author matt
+ * @version 1.0
+ * @since 1.19
+ */
+public class JdbcFmtBinary extends CellProcessorAdaptor {
+
+	public JdbcFmtBinary() {
+		super();
+	}
+
+	public JdbcFmtBinary(StringCellProcessor next) {
+		super(next);
+	}
+
+	@Override
+	public <T> T execute(final Object value, final CsvContext context) {
+		validateInputNotNull(value, context);
+
+		if ( !(value instanceof byte[]) ) {
+			throw new SuperCsvCellProcessorException(byte[].class, value, context, this);
+		}
+
+		String result = Base64.getEncoder().encodeToString((byte[]) value);
+
+		return next.execute(result, context);
+	}
+
+}
@@ -39,7 +39,7 @@ import org.supercsv.cellprocessor.ift.CellProcessor;
  * Utilities to help with JDBC.
  * 
  * @author matt
- * @version 1.0
+ * @version 1.1
  * @since 1.17
  */
 public abstract class JdbcUtils {
@@ -78,6 +78,12 @@ public abstract class JdbcUtils {
 				case Types.TIMESTAMP_WITH_TIMEZONE:
 					processor = new ConvertNullTo("", new JdbcFmtDate.Timestamp());
 					break;
+
+				case Types.BINARY:
+				case Types.VARBINARY:
+				case Types.LONGVARBINARY:
+					processor = new ConvertNullTo("", new JdbcFmtBinary());
+					break;
 			}
 			cellProcessors[i] = processor;
 		}
@@ -161,6 +167,12 @@ public abstract class JdbcUtils {
 					case Types.TINYINT:
 						processor = new ParseBigDecimal();
 						break;
+
+					case Types.BINARY:
+					case Types.VARBINARY:
+					case Types.LONGVARBINARY:
+						processor = new JdbcParseBinary();
+						break;
 				}
 				results.put(colName, new ColumnCsvMetaData(colName,
 						(processor == null ? new Optional() : new Optional(processor)), sqlType));
@@ -28,6 +28,7 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import org.springframework.core.io.ClassPathResource;
@@ -47,7 +48,7 @@ import net.solarnetwork.node.domain.GeneralLocationDatum;
  * {@link GeneralLocationDatum} domain objects.
  * 
  * @author matt
- * @version 1.3
+ * @version 1.6
  */
 public class JdbcGeneralLocationDatumDao extends AbstractJdbcDatumDao<GeneralLocationDatum> {
 
@@ -106,6 +107,25 @@ public class JdbcGeneralLocationDatumDao extends AbstractJdbcDatumDao<GeneralLoc
 		}
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @since 1.4
+	 */
+	@Override
+	@Transactional(readOnly = false, propagation = Propagation.REQUIRED)
+	public void storeDatum(Collection<GeneralLocationDatum> datumList) {
+		storeDomainObjects(datumList, rowMapper());
+	}
+
+	@Override
+	protected boolean isDatumChanged(GeneralLocationDatum existing, GeneralLocationDatum datum) {
+		// only update if the samples have changed
+		GeneralDatumSamples existingSamples = existing.getSamples();
+		GeneralDatumSamples newSamples = datum.getSamples();
+		return (newSamples == null ? existingSamples != null : !newSamples.equals(existingSamples));
+	}
+
 	@Override
 	protected void setUpdateStatementValues(GeneralLocationDatum datum, PreparedStatement ps)
 			throws SQLException {
@@ -136,6 +156,27 @@ public class JdbcGeneralLocationDatumDao extends AbstractJdbcDatumDao<GeneralLoc
 		});
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @since 1.6
+	 */
+	@Override
+	@Transactional(readOnly = false, propagation = Propagation.REQUIRED)
+	public void setDatumUploaded(Collection<GeneralLocationDatum> datumList, Date date, String destination) {
+		updateDatumUpload(datumList, date == null ? System.currentTimeMillis() : date.getTime());
+	}
+
+	@Override
+	protected void setUpdateDatumUploadStatementValues(GeneralLocationDatum datum, long timestamp,
+			PreparedStatement ps) throws SQLException {
+		int col = 1;
+		ps.setTimestamp(col++, new java.sql.Timestamp(timestamp));
+		ps.setTimestamp(col++, new java.sql.Timestamp(datum.getCreated().getTime()));
+		ps.setObject(col++, datum.getLocationId());
+		ps.setObject(col++, datum.getSourceId());
+	}
+
 	@Override
 	@Transactional(readOnly = false, propagation = Propagation.REQUIRED)
 	public int deleteUploadedDataOlderThan(int hours) {
@@ -178,6 +219,18 @@ public class JdbcGeneralLocationDatumDao extends AbstractJdbcDatumDao<GeneralLoc
 		return findDatumNotUploaded(rowMapper());
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @since 1.5
+	 */
+	@Override
+	@Transactional(readOnly = true, propagation = Propagation.REQUIRED)
+	public List<GeneralLocationDatum> getDatumNotUploaded(String destination, Date afterCreated,
+			String afterSourceId, int max) {
+		return findDatumNotUploaded(afterCreated, afterSourceId, max, rowMapper());
+	}
+
 	private String jsonForSamples(GeneralLocationDatum datum) {
 		String json;
 		try {
@@ -27,6 +27,8 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import org.springframework.core.io.ClassPathResource;
@@ -44,13 +46,22 @@ import net.solarnetwork.node.domain.GeneralNodeDatum;
  * JDBC-based implementation of {@link net.solarnetwork.node.dao.DatumDao} for
  * {@link GeneralNodeDatum} domain objects.
  * 
+ * <p>
+ * Datum samples are stored as JSON text in the {@code jdata} column by
+ * default. If {@link #setBinaryObjectMapper(ObjectMapper)} is configured with
+ * a binary-encoding mapper (such as CBOR) and {@code binarySamples} is
+ * <em>true</em> then samples are stored in the {@code bdata} column instead.
+ * Rows are read back from whichever column is populated, so legacy JSON rows
+ * remain readable.
+ * </p>
+ * 
  * @author matt
- * @version 1.2
+ * @version 1.6
  */
 public class JdbcGeneralNodeDatumDao extends AbstractJdbcDatumDao<GeneralNodeDatum> {
 
 	/** The default tables version. */
-	public static final int DEFAULT_TABLES_VERSION = 2;
+	public static final int DEFAULT_TABLES_VERSION = 3;
 
 	/** The table name for datum. */
 	public static final String TABLE_GENERAL_NODE_DATUM = "sn_general_node_datum";
@@ -63,6 +74,8 @@ public class JdbcGeneralNodeDatumDao extends AbstractJdbcDatumDao<GeneralNodeDat
 			+ "'solarnode.sn_general_node_datum.version'";
 
 	private ObjectMapper objectMapper;
+	private ObjectMapper binaryObjectMapper;
+	private boolean binarySamples;
 
 	/**
 	 * Default constructor.
@@ -101,15 +114,60 @@ public class JdbcGeneralNodeDatumDao extends AbstractJdbcDatumDao<GeneralNodeDat
 		}
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @since 1.3
+	 */
+	@Override
+	@Transactional(readOnly = false, propagation = Propagation.REQUIRED)
+	public void storeDatum(Collection<GeneralNodeDatum> datumList) {
+		storeDomainObjects(datumList, rowMapper());
+	}
+
+	@Override
+	protected boolean isDatumChanged(GeneralNodeDatum existing, GeneralNodeDatum datum) {
+		// only update if the samples have changed
+		GeneralDatumSamples existingSamples = existing.getSamples();
+		GeneralDatumSamples newSamples = datum.getSamples();
+		return (newSamples == null ? existingSamples != null : !newSamples.equals(existingSamples));
+	}
+
 	@Override
 	protected void setUpdateStatementValues(GeneralNodeDatum datum, PreparedStatement ps)
 			throws SQLException {
 		int col = 1;
-		ps.setString(col++, jsonForSamples(datum));
+		col = setSamplesStatementValues(datum, ps, col);
 		ps.setTimestamp(col++, new Timestamp(datum.getCreated().getTime()));
 		ps.setString(col++, datum.getSourceId());
 	}
 
+	/**
+	 * Set the {@code jdata} and {@code bdata} statement parameters.
+	 * 
+	 * @param datum
+	 *        the datum to get the samples from
+	 * @param ps
+	 *        the statement
+	 * @param col
+	 *        the index of the {@code jdata} parameter
+	 * @return the next parameter index
+	 * @throws SQLException
+	 *         if any SQL error occurs
+	 */
+	private int setSamplesStatementValues(GeneralNodeDatum datum, PreparedStatement ps, int col)
+			throws SQLException {
+		byte[] data = (isBinarySamplesEnabled() ? binaryForSamples(datum) : null);
+		if ( data != null ) {
+			ps.setNull(col++, Types.VARCHAR);
+			ps.setBytes(col++, data);
+		} else {
+			ps.setString(col++, jsonForSamples(datum));
+			ps.setNull(col++, Types.VARBINARY);
+		}
+		return col;
+	}
+
 	@Override
 	@Transactional(readOnly = false, propagation = Propagation.REQUIRED)
 	public void setDatumUploaded(GeneralNodeDatum datum, Date date, String destination,
@@ -117,6 +175,17 @@ public class JdbcGeneralNodeDatumDao extends AbstractJdbcDatumDao<GeneralNodeDat
 		updateDatumUpload(datum, date == null ? System.currentTimeMillis() : date.getTime());
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @since 1.5
+	 */
+	@Override
+	@Transactional(readOnly = false, propagation = Propagation.REQUIRED)
+	public void setDatumUploaded(Collection<GeneralNodeDatum> datumList, Date date, String destination) {
+		updateDatumUpload(datumList, date == null ? System.currentTimeMillis() : date.getTime());
+	}
+
 	@Override
 	@Transactional(readOnly = false, propagation = Propagation.REQUIRED)
 	public int deleteUploadedDataOlderThan(int hours) {
@@ -137,7 +206,21 @@ public class JdbcGeneralNodeDatumDao extends AbstractJdbcDatumDao<GeneralNodeDat
 				datum.setSourceId(rs.getString(++col));
 
 				String jdata = rs.getString(++col);
-				if ( jdata != null ) {
+				byte[] bdata = rs.getBytes(++col);
+				if ( bdata != null ) {
+					if ( binaryObjectMapper != null ) {
+						try {
+							datum.setSamples(
+									binaryObjectMapper.readValue(bdata, GeneralNodeDatumSamples.class));
+						} catch ( IOException e ) {
+							log.error("Error deserializing binary into GeneralNodeDatumSamples: {}",
+									e.getMessage());
+						}
+					} else {
+						log.error("Binary samples found for datum {} @ {} but no binaryObjectMapper "
+								+ "configured to decode them", datum.getSourceId(), datum.getCreated());
+					}
+				} else if ( jdata != null ) {
 					GeneralNodeDatumSamples s;
 					try {
 						s = objectMapper.readValue(jdata, GeneralNodeDatumSamples.class);
@@ -158,6 +241,18 @@ public class JdbcGeneralNodeDatumDao extends AbstractJdbcDatumDao<GeneralNodeDat
 		return findDatumNotUploaded(rowMapper());
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @since 1.4
+	 */
+	@Override
+	@Transactional(readOnly = true, propagation = Propagation.REQUIRED)
+	public List<GeneralNodeDatum> getDatumNotUploaded(String destination, Date afterCreated,
+			String afterSourceId, int max) {
+		return findDatumNotUploaded(afterCreated, afterSourceId, max, rowMapper());
+	}
+
 	private String jsonForSamples(GeneralNodeDatum datum) {
 		String json;
 		try {
@@ -169,6 +264,19 @@ public class JdbcGeneralNodeDatumDao extends AbstractJdbcDatumDao<GeneralNodeDat
 		return json;
 	}
 
+	private byte[] binaryForSamples(GeneralNodeDatum datum) {
+		try {
+			return binaryObjectMapper.writeValueAsBytes(datum.getSamples());
+		} catch ( IOException e ) {
+			log.error("Error serializing GeneralDatumSamples into binary: {}", e.getMessage());
+			return null;
+		}
+	}
+
+	private boolean isBinarySamplesEnabled() {
+		return (binarySamples && binaryObjectMapper != null);
+	}
+
 	@Override
 	protected void setStoreStatementValues(GeneralNodeDatum datum, PreparedStatement ps)
 			throws SQLException {
@@ -176,9 +284,7 @@ public class JdbcGeneralNodeDatumDao extends AbstractJdbcDatumDao<GeneralNodeDat
 		ps.setTimestamp(++col, new java.sql.Timestamp(
 				datum.getCreated() == null ? System.currentTimeMillis() : datum.getCreated().getTime()));
 		ps.setString(++col, datum.getSourceId() == null ? "" : datum.getSourceId());
-
-		String json = jsonForSamples(datum);
-		ps.setString(++col, json);
+		setSamplesStatementValues(datum, ps, ++col);
 	}
 
 	public ObjectMapper getObjectMapper() {
@@ -189,4 +295,58 @@ public class JdbcGeneralNodeDatumDao extends AbstractJdbcDatumDao<GeneralNodeDat
 		this.objectMapper = objectMapper;
 	}
 
+	/**
+	 * Get the binary object mapper.
+	 * 
+	 * @return the binary object mapper
+	 * @since 1.6
+	 */
+	public ObjectMapper getBinaryObjectMapper() {
+		return binaryObjectMapper;
+	}
+
+	/**
+	 * Set an object mapper to encode and decode binary samples data with.
+	 * 
+	 * <p>
+	 * This is expected to be configured with a compact binary data format,
+	 * such as CBOR. It is used to read any row with binary samples data, even
+	 * if {@code binarySamples} is <em>false</em>.
+	 * </p>
+	 * 
+	 * @param binaryObjectMapper
+	 *        the mapper to use
+	 * @since 1.6
+	 */
+	public void setBinaryObjectMapper(ObjectMapper binaryObjectMapper) {
+		this.binaryObjectMapper = binaryObjectMapper;
+	}
+
+	/**
+	 * Get the binary samples storage mode.
+	 * 
+	 * @return <em>true</em> to store samples as binary data
+	 * @since 1.6
+	 */
+	public boolean isBinarySamples() {
+		return binarySamples;
+	}
+
+	/**
+	 * Toggle storing new samples data in binary form.
+	 * 
+	 * <p>
+	 * When <em>true</em> and a {@code binaryObjectMapper} is configured, new
+	 * samples data will be stored in the binary {@code bdata} column rather
+	 * than as JSON in the {@code jdata} column. Defaults to <em>false</em>.
+	 * </p>
+	 * 
+	 * @param binarySamples
+	 *        <em>true</em> to store samples as binary data
+	 * @since 1.6
+	 */
+	public void setBinarySamples(boolean binarySamples) {
+		this.binarySamples = binarySamples;
+	}
+
 }
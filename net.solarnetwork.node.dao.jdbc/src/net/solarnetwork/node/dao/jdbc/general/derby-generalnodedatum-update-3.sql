@@ -0,0 +1,8 @@
+ALTER TABLE solarnode.sn_general_node_datum
+ALTER COLUMN jdata NULL;
+
+ALTER TABLE solarnode.sn_general_node_datum
+ADD COLUMN bdata VARCHAR(8192) FOR BIT DATA;
+
+UPDATE solarnode.sn_settings SET svalue = '3'
+WHERE skey = 'solarnode.sn_general_node_datum.version';
@@ -1,6 +1,7 @@
 SELECT 
 	created,
 	source_id,
-	jdata
+	jdata,
+	bdata
 FROM solarnode.sn_general_node_datum
 WHERE created = ? AND source_id = ?
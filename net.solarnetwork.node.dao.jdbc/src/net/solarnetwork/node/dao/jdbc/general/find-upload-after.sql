@@ -0,0 +1,10 @@
+SELECT 
+	created,
+	source_id,
+	jdata,
+	bdata
+FROM solarnode.sn_general_node_datum
+WHERE uploaded IS NULL
+	AND created >= ?
+	AND (created > ? OR source_id > ?)
+ORDER BY created, source_id
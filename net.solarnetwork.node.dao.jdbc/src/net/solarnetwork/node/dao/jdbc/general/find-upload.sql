@@ -1,7 +1,8 @@
 SELECT 
 	created,
 	source_id,
-	jdata
+	jdata,
+	bdata
 FROM solarnode.sn_general_node_datum
 WHERE uploaded IS NULL
 ORDER BY created, source_id
@@ -0,0 +1,10 @@
+SELECT 
+	created,
+	loc_id,
+	source_id,
+	jdata
+FROM solarnode.sn_general_loc_datum
+WHERE uploaded IS NULL
+	AND created >= ?
+	AND (created > ? OR source_id > ?)
+ORDER BY created, source_id
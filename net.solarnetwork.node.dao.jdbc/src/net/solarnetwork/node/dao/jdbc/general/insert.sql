@@ -1,3 +1,3 @@
 INSERT INTO solarnode.sn_general_node_datum
-			(created, source_id, jdata)
-VALUES (?,?,?)
+			(created, source_id, jdata, bdata)
+VALUES (?,?,?,?)
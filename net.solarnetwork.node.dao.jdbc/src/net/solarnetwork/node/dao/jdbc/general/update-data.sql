@@ -1,3 +1,3 @@
 UPDATE solarnode.sn_general_node_datum
-SET uploaded = NULL, jdata = ? 
+SET uploaded = NULL, jdata = ?, bdata = ? 
 WHERE created = ? AND source_id = ?
@@ -26,6 +26,7 @@ import static java.util.Collections.singletonMap;
 import static net.solarnetwork.util.ByteUtils.decodeHexString;
 import static org.easymock.EasyMock.capture;
 import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expect;
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.greaterThanOrEqualTo;
@@ -40,13 +41,16 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.easymock.Capture;
+import org.easymock.CaptureType;
 import org.easymock.EasyMock;
 import org.junit.After;
 import org.junit.Before;
@@ -55,6 +59,7 @@ import org.osgi.service.event.Event;
 import org.osgi.service.event.EventAdmin;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.util.FileCopyUtils;
 import net.solarnetwork.domain.BitDataType;
 import net.solarnetwork.domain.ByteOrdering;
@@ -62,6 +67,7 @@ import net.solarnetwork.domain.GeneralDatumMetadata;
 import net.solarnetwork.domain.GeneralDatumSamplesType;
 import net.solarnetwork.domain.KeyValuePair;
 import net.solarnetwork.external.indriya.IndriyaMeasurementServiceProvider;
+import net.solarnetwork.javax.measure.MeasurementServiceProvider;
 import net.solarnetwork.node.DatumDataSource;
 import net.solarnetwork.node.DatumMetadataService;
 import net.solarnetwork.node.datum.canbus.CanbusDatumDataSource;
@@ -78,7 +84,7 @@ import systems.uom.ucum.internal.UCUMServiceProvider;
  * Test cases for the {@link CanbusDatumDataSource} class.
  * 
  * @author matt
- * @version 1.0
+ * @version 1.1
  */
 public class CanbusDatumDataSourceTests {
 
@@ -404,4 +410,160 @@ public class CanbusDatumDataSourceTests {
 		assertThat("Datum watts instantaneous value", d.getInstantaneousSampleBigDecimal("watts"),
 				equalTo(new BigDecimal("2842398")));
 	}
+
+	@Test
+	public void frameReceived_incremental() {
+		// GIVEN
+		CanbusMessageConfig message1 = new CanbusMessageConfig(1, ByteOrdering.BigEndian);
+		message1.addPropConfig(new CanbusPropertyConfig("watts", GeneralDatumSamplesType.Instantaneous,
+				0, BitDataType.UInt8, 8, "kW", null));
+		CanbusMessageConfig message2 = new CanbusMessageConfig(2, ByteOrdering.BigEndian);
+		message2.addPropConfig(new CanbusPropertyConfig("voltage", GeneralDatumSamplesType.Instantaneous,
+				0, BitDataType.UInt8, 8, "V", null));
+
+		dataSource.setSourceId(TEST_SOURCE);
+		dataSource.setIncremental(true);
+		dataSource.setMsgConfigs(new CanbusMessageConfig[] { message1, message2 });
+
+		Capture<Event> eventCaptor = new Capture<>(CaptureType.ALL);
+		eventAdmin.postEvent(capture(eventCaptor));
+		EasyMock.expectLastCall().times(3);
+
+		// WHEN
+		replayAll();
+		long start = System.currentTimeMillis();
+		dataSource.canbusFrameReceived(
+				new FrameMessageImpl(1, false, 1, 2, new byte[] { (byte) 0x11 }));
+		dataSource.canbusFrameReceived(
+				new FrameMessageImpl(2, false, 1, 3, new byte[] { (byte) 0xF0 }));
+		dataSource.canbusFrameReceived(
+				new FrameMessageImpl(1, false, 1, 4, new byte[] { (byte) 0x12 }));
+
+		// THEN
+		assertDatumCapturedEvent(eventCaptor.getValues().get(0), start, TEST_SOURCE,
+				Collections.singletonMap("watts", 17000));
+		Map<String, Object> expectedData = new HashMap<>(2);
+		expectedData.put("watts", 17000);
+		expectedData.put("voltage", new BigDecimal("240"));
+		assertDatumCapturedEvent(eventCaptor.getValues().get(1), start, TEST_SOURCE, expectedData);
+		expectedData.put("watts", 18000);
+		assertDatumCapturedEvent(eventCaptor.getValues().get(2), start, TEST_SOURCE, expectedData);
+	}
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	@Test
+	public void frameReceived_capturedEventInterval() {
+		// GIVEN
+		CanbusMessageConfig message = new CanbusMessageConfig(1, ByteOrdering.BigEndian);
+		message.addPropConfig(new CanbusPropertyConfig("watts", GeneralDatumSamplesType.Instantaneous, 0,
+				BitDataType.UInt8, 8, "W", null));
+
+		TaskScheduler scheduler = EasyMock.createMock(TaskScheduler.class);
+		ScheduledFuture<?> future = EasyMock.createMock(ScheduledFuture.class);
+		dataSource.setTaskScheduler(scheduler);
+		dataSource.setSourceId(TEST_SOURCE);
+		dataSource.setCapturedEventInterval(60000L);
+		dataSource.setMsgConfigs(new CanbusMessageConfig[] { message });
+
+		Capture<Event> eventCaptor = new Capture<>(CaptureType.ALL);
+		eventAdmin.postEvent(capture(eventCaptor));
+		EasyMock.expectLastCall().times(2);
+
+		// the second frame is within the interval, so the event is scheduled
+		Capture<Runnable> taskCaptor = new Capture<>();
+		Capture<Date> dateCaptor = new Capture<>();
+		expect(scheduler.schedule(capture(taskCaptor), capture(dateCaptor)))
+				.andReturn((ScheduledFuture) future);
+
+		// WHEN
+		replayAll();
+		EasyMock.replay(scheduler, future);
+		long start = System.currentTimeMillis();
+		dataSource.canbusFrameReceived(
+				new FrameMessageImpl(1, false, 1, 2, new byte[] { (byte) 0x11 }));
+		dataSource.canbusFrameReceived(
+				new FrameMessageImpl(1, false, 1, 3, new byte[] { (byte) 0x12 }));
+		dataSource.canbusFrameReceived(
+				new FrameMessageImpl(1, false, 1, 4, new byte[] { (byte) 0x13 }));
+		taskCaptor.getValue().run();
+
+		// THEN
+		EasyMock.verify(scheduler, future);
+		assertThat("Event scheduled at end of interval", dateCaptor.getValue().getTime(),
+				greaterThanOrEqualTo(start + 60000L));
+		assertThat("Events posted for first frame and scheduled task",
+				eventCaptor.getValues().size(), equalTo(2));
+		assertDatumCapturedEvent(eventCaptor.getValues().get(0), start, TEST_SOURCE,
+				Collections.singletonMap("watts", new BigDecimal("17")));
+		assertDatumCapturedEvent(eventCaptor.getValues().get(1), start, TEST_SOURCE,
+				Collections.singletonMap("watts", new BigDecimal("19")));
+	}
+
+	@Test
+	public void frameReceived_capturedEventIntervalWithoutScheduler() {
+		// GIVEN
+		CanbusMessageConfig message = new CanbusMessageConfig(1, ByteOrdering.BigEndian);
+		message.addPropConfig(new CanbusPropertyConfig("watts", GeneralDatumSamplesType.Instantaneous, 0,
+				BitDataType.UInt8, 8, "W", null));
+
+		dataSource.setSourceId(TEST_SOURCE);
+		dataSource.setCapturedEventInterval(60000L);
+		dataSource.setMsgConfigs(new CanbusMessageConfig[] { message });
+
+		Capture<Event> eventCaptor = new Capture<>(CaptureType.ALL);
+		eventAdmin.postEvent(capture(eventCaptor));
+		EasyMock.expectLastCall().times(2);
+
+		// WHEN
+		replayAll();
+		long start = System.currentTimeMillis();
+		dataSource.canbusFrameReceived(
+				new FrameMessageImpl(1, false, 1, 2, new byte[] { (byte) 0x11 }));
+		dataSource.canbusFrameReceived(
+				new FrameMessageImpl(1, false, 1, 3, new byte[] { (byte) 0x12 }));
+
+		// THEN
+		assertThat("Events posted immediately without a scheduler", eventCaptor.getValues().size(),
+				equalTo(2));
+		assertDatumCapturedEvent(eventCaptor.getValues().get(0), start, TEST_SOURCE,
+				Collections.singletonMap("watts", new BigDecimal("17")));
+		assertDatumCapturedEvent(eventCaptor.getValues().get(1), start, TEST_SOURCE,
+				Collections.singletonMap("watts", new BigDecimal("18")));
+	}
+
+	@Test
+	public void frameReceived_incrementalUnitResolvedLater() {
+		// GIVEN
+		CanbusMessageConfig message = new CanbusMessageConfig(1, ByteOrdering.BigEndian);
+		message.addPropConfig(new CanbusPropertyConfig("watts", GeneralDatumSamplesType.Instantaneous,
+				0, BitDataType.UInt8, 8, "kW", null));
+
+		// no measurement providers available yet
+		dataSource.setMeasurementHelper(new MeasurementHelper(new StaticOptionalServiceCollection<>(
+				Collections.<MeasurementServiceProvider> emptyList())));
+		dataSource.setSourceId(TEST_SOURCE);
+		dataSource.setIncremental(true);
+		dataSource.setMsgConfigs(new CanbusMessageConfig[] { message });
+
+		Capture<Event> eventCaptor = new Capture<>(CaptureType.ALL);
+		eventAdmin.postEvent(capture(eventCaptor));
+		EasyMock.expectLastCall().times(2);
+
+		// WHEN
+		replayAll();
+		dataSource.canbusFrameReceived(
+				new FrameMessageImpl(1, false, 1, 2, new byte[] { (byte) 0x11 }));
+		dataSource.setMeasurementHelper(new MeasurementHelper(new StaticOptionalServiceCollection<>(
+				Arrays.asList(new IndriyaMeasurementServiceProvider(new UCUMServiceProvider())))));
+		dataSource.canbusFrameReceived(
+				new FrameMessageImpl(1, false, 1, 3, new byte[] { (byte) 0x12 }));
+
+		// THEN
+		Object watts = eventProps(eventCaptor.getValues().get(0)).get("watts");
+		assertThat("Unit not converted before providers available", ((Number) watts).intValue(),
+				equalTo(17));
+		assertThat("Unit converted once providers available",
+				eventProps(eventCaptor.getValues().get(1)).get("watts"), equalTo((Object) 18000));
+	}
+
 }
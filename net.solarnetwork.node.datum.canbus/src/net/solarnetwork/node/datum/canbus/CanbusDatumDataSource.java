@@ -38,10 +38,18 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.atomic.AtomicReference;
 import javax.measure.Unit;
+import javax.measure.UnitConverter;
+import org.osgi.service.event.Event;
+import org.springframework.scheduling.TaskScheduler;
 import net.solarnetwork.domain.BitDataType;
 import net.solarnetwork.domain.GeneralDatumMetadata;
+import net.solarnetwork.domain.GeneralDatumSamples;
 import net.solarnetwork.domain.GeneralDatumSamplesType;
 import net.solarnetwork.node.DatumDataSource;
 import net.solarnetwork.node.domain.GeneralNodeDatum;
@@ -52,6 +60,7 @@ import net.solarnetwork.node.io.canbus.CanbusFrame;
 import net.solarnetwork.node.io.canbus.CanbusFrameListener;
 import net.solarnetwork.node.io.canbus.support.CanbusDatumDataSourceSupport;
 import net.solarnetwork.node.io.canbus.support.CanbusSubscription;
+import net.solarnetwork.node.io.canbus.support.MeasurementHelper;
 import net.solarnetwork.node.io.canbus.util.CanbusUtils;
 import net.solarnetwork.node.settings.SettingSpecifier;
 import net.solarnetwork.node.settings.SettingSpecifierProvider;
@@ -64,9 +73,16 @@ import net.solarnetwork.util.ArrayUtils;
 /**
  * Generic CAN bus datum data source.
  * 
+ * <p>
+ * A datum captured event is posted for every received frame, unless
+ * {@link #setCapturedEventInterval(long)} limits how often they are posted.
+ * In {@link #setIncremental(boolean)} mode only the properties of the message
+ * that just arrived are decoded, into samples kept between frames, rather than
+ * all properties being decoded again for every frame.
+ * </p>
  * 
  * @author matt
- * @version 1.0
+ * @version 1.1
  */
 public class CanbusDatumDataSource extends CanbusDatumDataSourceSupport
 		implements DatumDataSource<GeneralNodeDatum>, SettingSpecifierProvider, CanbusFrameListener {
@@ -77,13 +93,33 @@ public class CanbusDatumDataSource extends CanbusDatumDataSourceSupport
 	/** The default {@code debugLog} property value. */
 	private static final String DEFAULT_DEBUG_LOG = "var/log/canbus-%s.log";
 
+	/**
+	 * The default {@code capturedEventInterval} property value.
+	 * 
+	 * @since 1.1
+	 */
+	public static final long DEFAULT_CAPTURED_EVENT_INTERVAL = 0L;
+
 	private final CanbusData sample;
 
+	// samples updated from each frame in incremental mode
+	private final Object incrementalLock = new Object();
+	private GeneralDatumSamples incrementalSamples;
+
+	// cached unit converters for incremental mode, empty for no conversion
+	private final ConcurrentMap<CanbusPropertyConfig, Optional<UnitConverter>> unitConverters;
+
+	private final Object eventLock = new Object();
+	private long lastEventTime;
+	private ScheduledFuture<?> pendingEvent;
+
 	private boolean debug;
 	private String debugLogPath;
 	private final AtomicReference<PrintWriter> debugOut;
 	private String sourceId;
 	private CanbusMessageConfig[] msgConfigs;
+	private boolean incremental;
+	private long capturedEventInterval;
 
 	/**
 	 * Constructor.
@@ -91,6 +127,9 @@ public class CanbusDatumDataSource extends CanbusDatumDataSourceSupport
 	public CanbusDatumDataSource() {
 		super();
 		this.sample = new CanbusData();
+		this.incrementalSamples = new GeneralDatumSamples();
+		this.unitConverters = new ConcurrentHashMap<>(16, 0.9f, 2);
+		this.capturedEventInterval = DEFAULT_CAPTURED_EVENT_INTERVAL;
 		this.debug = false;
 		this.debugLogPath = DEFAULT_DEBUG_LOG;
 		this.debugOut = new AtomicReference<>();
@@ -100,6 +139,12 @@ public class CanbusDatumDataSource extends CanbusDatumDataSourceSupport
 	public synchronized void serviceDidShutdown() {
 		super.serviceDidShutdown();
 		closeDebugLog();
+		synchronized ( eventLock ) {
+			if ( pendingEvent != null ) {
+				pendingEvent.cancel(false);
+				pendingEvent = null;
+			}
+		}
 	}
 
 	@Override
@@ -192,15 +237,178 @@ public class CanbusDatumDataSource extends CanbusDatumDataSourceSupport
 			return;
 		}
 		log.trace("CAN message received for {}: {}", this, frame);
-		CanbusData data = sample.performUpdates(new CanbusDataUpdateAction() {
+		sample.performUpdates(new CanbusDataUpdateAction() {
 
 			@Override
 			public boolean updateCanbusData(MutableCanbusData m) {
 				m.saveData(Collections.singleton(frame));
 				return true;
 			}
-		}).copy();
-		postDatumCapturedEvent(createDatum(data));
+		});
+		if ( incremental ) {
+			updateIncrementalSamples(frame);
+		}
+		datumCaptured();
+	}
+
+	private void updateIncrementalSamples(CanbusFrame frame) {
+		final CanbusMessageConfig[] messages = getMsgConfigs();
+		if ( messages == null ) {
+			return;
+		}
+		final int address = frame.getAddress();
+		for ( CanbusMessageConfig message : messages ) {
+			if ( message.getAddress() != address ) {
+				continue;
+			}
+			CanbusPropertyConfig[] propConfigs = message.getPropConfigs();
+			if ( propConfigs == null ) {
+				continue;
+			}
+			for ( CanbusPropertyConfig prop : propConfigs ) {
+				final BitDataType dataType = prop.getDataType();
+				final GeneralDatumSamplesType propType = prop.getPropertyType();
+				final String propName = prop.getPropertyKey();
+				if ( dataType == null || propType == null || propName == null || propName.isEmpty()
+						|| dataType == BitDataType.StringAscii || dataType == BitDataType.StringUtf8 ) {
+					continue;
+				}
+				Number propVal = null;
+				try {
+					propVal = CanbusData.getNumber(prop, frame);
+				} catch ( Exception e ) {
+					log.error("Error reading property [{}]: {}", prop.getPropertyKey(), e.toString(), e);
+				}
+				if ( propVal != null ) {
+					propVal = prop.applyTransformations(propVal);
+					UnitConverter converter = unitConverter(prop);
+					if ( converter != null ) {
+						propVal = converter.convert(propVal);
+					}
+					synchronized ( incrementalLock ) {
+						incrementalSamples.putSampleValue(propType, propName, propVal);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Get the cached converter from a property's unit to its normalized unit.
+	 * 
+	 * @param prop
+	 *        the property to get the converter for
+	 * @return the converter, or {@literal null} if no conversion is needed
+	 */
+	private UnitConverter unitConverter(CanbusPropertyConfig prop) {
+		Optional<UnitConverter> result = unitConverters.get(prop);
+		if ( result == null ) {
+			result = createUnitConverter(prop.getUnit(), prop.getNormalizedUnit());
+			if ( result == null ) {
+				// not cached, as the unit providers might not be available yet
+				return null;
+			}
+			unitConverters.putIfAbsent(prop, result);
+		}
+		return result.orElse(null);
+	}
+
+	/**
+	 * Create a converter from a unit to its normalized unit.
+	 * 
+	 * @param unit
+	 *        the unit to convert from
+	 * @param normalizedUnit
+	 *        the desired unit to convert to, or {@literal null} for the
+	 *        standard normalized unit
+	 * @return the converter, empty if no conversion is needed, or
+	 *         {@literal null} if {@code unit} cannot be resolved
+	 */
+	private Optional<UnitConverter> createUnitConverter(String unit, String normalizedUnit) {
+		if ( unit == null ) {
+			return Optional.empty();
+		}
+		final MeasurementHelper helper = getMeasurementHelper();
+		if ( helper == null || helper.quantityValue(1, unit, null, null) == null ) {
+			return null;
+		}
+		final Unit<?> src = helper.unitValue(unit);
+		UnitConverter converter = null;
+		if ( normalizedUnit != null ) {
+			try {
+				converter = src.getConverterToAny(helper.unitValue(normalizedUnit));
+			} catch ( Exception e ) {
+				log.warn("Error converting unit [{}] to unit [{}], will not convert: {}", unit,
+						normalizedUnit, e.toString());
+			}
+		}
+		if ( converter == null ) {
+			try {
+				converter = src.getConverterToAny(helper.normalizedUnit(src));
+			} catch ( Exception e ) {
+				log.debug("Unable to normalize unit [{}]: {}", unit, e.toString());
+			}
+		}
+		return Optional.ofNullable(converter != null && !converter.isIdentity() ? converter : null);
+	}
+
+	/**
+	 * Post a datum captured event, or schedule one if one was posted within
+	 * the configured {@code capturedEventInterval}.
+	 * 
+	 * <p>
+	 * If no task scheduler is available, the event is posted immediately.
+	 * </p>
+	 */
+	private void datumCaptured() {
+		final long interval = capturedEventInterval;
+		if ( interval > 0 ) {
+			final long now = System.currentTimeMillis();
+			synchronized ( eventLock ) {
+				if ( pendingEvent != null ) {
+					// this frame will be included in the pending event
+					return;
+				}
+				final long next = lastEventTime + interval;
+				TaskScheduler scheduler = (now < next ? getTaskScheduler() : null);
+				if ( scheduler != null ) {
+					pendingEvent = scheduler.schedule(new PendingDatumCapturedEvent(), new Date(next));
+					return;
+				}
+				// without a scheduler, post now rather than drop the frame
+				lastEventTime = now;
+			}
+		}
+		postCapturedEvent();
+	}
+
+	private final class PendingDatumCapturedEvent implements Runnable {
+
+		@Override
+		public void run() {
+			synchronized ( eventLock ) {
+				pendingEvent = null;
+				lastEventTime = System.currentTimeMillis();
+			}
+			postCapturedEvent();
+		}
+
+	}
+
+	private void postCapturedEvent() {
+		if ( incremental ) {
+			GeneralNodeDatum d = new GeneralNodeDatum();
+			d.setCreated(new Date(sample.getDataTimestamp()));
+			d.setSourceId(sourceId);
+			Event event;
+			synchronized ( incrementalLock ) {
+				d.setSamples(incrementalSamples);
+				event = createDatumCapturedEvent(d);
+			}
+			postEvent(event);
+		} else {
+			postDatumCapturedEvent(createDatum(sample.copy()));
+		}
 	}
 
 	private void handleDebug(CanbusFrame frame) {
@@ -250,6 +458,10 @@ public class CanbusDatumDataSource extends CanbusDatumDataSourceSupport
 	public synchronized void configurationChanged(Map<String, Object> properties) {
 		super.configurationChanged(properties);
 		setupSignalParents(getMsgConfigs());
+		unitConverters.clear();
+		synchronized ( incrementalLock ) {
+			incrementalSamples = new GeneralDatumSamples();
+		}
 		if ( sourceId != null ) {
 			addSourceMetadata(sourceId, createMetadata());
 		}
@@ -369,6 +581,9 @@ public class CanbusDatumDataSource extends CanbusDatumDataSourceSupport
 		List<SettingSpecifier> results = getIdentifiableSettingSpecifiers();
 		results.addAll(canbusDatumDataSourceSettingSpecifiers(""));
 		results.add(new BasicTextFieldSettingSpecifier("sourceId", ""));
+		results.add(new BasicToggleSettingSpecifier("incremental", false));
+		results.add(new BasicTextFieldSettingSpecifier("capturedEventInterval",
+				String.valueOf(DEFAULT_CAPTURED_EVENT_INTERVAL)));
 		results.add(new BasicToggleSettingSpecifier("debug", false));
 		results.add(new BasicTextFieldSettingSpecifier("debugLogPath", DEFAULT_DEBUG_LOG));
 
@@ -456,6 +671,65 @@ public class CanbusDatumDataSource extends CanbusDatumDataSourceSupport
 		this.sourceId = sourceId;
 	}
 
+	/**
+	 * Get the incremental mode.
+	 * 
+	 * @return {@literal true} if incremental mode is enabled
+	 * @since 1.1
+	 */
+	public boolean isIncremental() {
+		return incremental;
+	}
+
+	/**
+	 * Toggle incremental mode.
+	 * 
+	 * <p>
+	 * Incremental mode decodes only the properties of each message as it is
+	 * received, and keeps the resulting values between messages, instead of
+	 * decoding all properties of all messages each time a message is received.
+	 * Unit conversions are also cached per property. This only affects datum
+	 * captured events: {@link #readCurrentDatum()} always decodes all
+	 * properties.
+	 * </p>
+	 * 
+	 * @param incremental
+	 *        {@literal true} to enable incremental mode
+	 * @since 1.1
+	 */
+	public void setIncremental(boolean incremental) {
+		this.incremental = incremental;
+	}
+
+	/**
+	 * Get the minimum interval between datum captured events.
+	 * 
+	 * @return the interval, in milliseconds; defaults to
+	 *         {@link #DEFAULT_CAPTURED_EVENT_INTERVAL}
+	 * @since 1.1
+	 */
+	public long getCapturedEventInterval() {
+		return capturedEventInterval;
+	}
+
+	/**
+	 * Set the minimum interval between datum captured events.
+	 * 
+	 * <p>
+	 * When a frame is received within this interval of the last posted event,
+	 * an event is scheduled for the end of the interval instead. Any other
+	 * frames received before then are included in that event.
+	 * </p>
+	 * 
+	 * @param capturedEventInterval
+	 *        the interval, in milliseconds, or {@literal 0} to post an event
+	 *        for every frame received
+	 * @since 1.1
+	 */
+	public void setCapturedEventInterval(long capturedEventInterval) {
+		this.capturedEventInterval = capturedEventInterval;
+	}
+
 	/**
 	 * Get the debug mode.
 	 * 
@@ -37,6 +37,7 @@ import static org.easymock.EasyMock.capture;
 import static org.easymock.EasyMock.eq;
 import static org.easymock.EasyMock.expect;
 import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.hamcrest.Matchers.hasSize;
@@ -72,6 +73,7 @@ import net.solarnetwork.node.io.modbus.ModbusNetwork;
 import net.solarnetwork.node.io.modbus.ModbusReadFunction;
 import net.solarnetwork.node.io.modbus.ModbusWordOrder;
 import net.solarnetwork.support.ExpressionService;
+import net.solarnetwork.support.ExpressionServiceExpression;
 import net.solarnetwork.util.ByteUtils;
 import net.solarnetwork.util.OptionalServiceCollection;
 import net.solarnetwork.util.StaticOptionalService;
@@ -81,7 +83,7 @@ import net.solarnetwork.util.StaticOptionalServiceCollection;
  * Test cases for the {@link ModbusDatumDataSource} class.
  * 
  * @author matt
- * @version 2.0
+ * @version 2.2
  */
 public class ModbusDatumDataSourceTests {
 
@@ -932,4 +934,107 @@ public class ModbusDatumDataSourceTests {
 		assertThat("raw-add value", datum.getInstantaneousSampleLong("raw-add"),
 				equalTo(0x3330L + ((0x3340 << 16) | 0x3341)));
 	}
+
+	@Test
+	public void readDatumWithExpressionsRepeatedly() throws IOException {
+		// GIVEN
+		dataSource.setSampleCacheMs(-1); // read from device every time
+		ExpressionConfig[] exprConfigs = new ExpressionConfig[] {
+				new ExpressionConfig("raw-add", Instantaneous, "sample.getInt32(0) + 1",
+						SpelExpressionService.class.getName()), };
+		dataSource.setExpressionConfigs(exprConfigs);
+
+		Capture<ModbusConnectionAction<ModbusData>> connActionCapture = new Capture<>();
+		expect(modbusNetwork.performAction(eq(1), capture(connActionCapture)))
+				.andAnswer(new IAnswer<ModbusData>() {
+
+					@Override
+					public ModbusData answer() throws Throwable {
+						ModbusConnectionAction<ModbusData> action = connActionCapture.getValue();
+						return action.doWithConnection(modbusConnection);
+					}
+				}).times(4);
+
+		for ( int i = 0; i < 4; i++ ) {
+			expect(modbusConnection.readWords(ModbusReadFunction.ReadHoldingRegister, 0, 2))
+					.andReturn(shortArray(new int[] { 0, i }));
+		}
+
+		replayAll();
+
+		// WHEN
+		Long[] results = new Long[4];
+		for ( int i = 0; i < 4; i++ ) {
+			if ( i == 2 ) {
+				dataSource.configurationChanged(null);
+			}
+			GeneralNodeDatum datum = dataSource.readCurrentDatum();
+			results[i] = datum.getInstantaneousSampleLong("raw-add");
+		}
+
+		// THEN
+		assertThat("Expression evaluated with current data each time", results,
+				equalTo(new Long[] { 1L, 2L, 3L, 4L }));
+	}
+
+	@Test
+	public void expressionConfigParsesOnce() {
+		// GIVEN
+		ExpressionService service = new SpelExpressionService();
+		ExpressionConfig config = new ExpressionConfig("foo", Instantaneous, "1 + 1",
+				SpelExpressionService.class.getName());
+
+		// WHEN
+		ExpressionServiceExpression expr1 = config.getExpression(Collections.singleton(service));
+		Object result1 = config.evaluate(expr1, null);
+		ExpressionServiceExpression expr2 = config.getExpression(Collections.singleton(service));
+		Object result2 = config.evaluate(expr2, null);
+		config.setExpression("2 + 2");
+		ExpressionServiceExpression expr3 = config.getExpression(Collections.singleton(service));
+
+		// THEN
+		assertThat("Results", Arrays.asList(result1, result2), contains((Object) 2, 2));
+		assertThat("Parsed expression reused", expr2.getExpression(),
+				sameInstance(expr1.getExpression()));
+		assertThat("Changed expression parsed again", expr3.getExpression().getExpressionString(),
+				equalTo("2 + 2"));
+	}
+
+	@Test
+	public void readDatumWithGapsCombined() throws IOException {
+		// GIVEN
+		ModbusPropertyConfig[] propConfigs = new ModbusPropertyConfig[] {
+				new ModbusPropertyConfig("a", Instantaneous, UInt16, 100),
+				new ModbusPropertyConfig("b", Instantaneous, UInt16, 104),
+				new ModbusPropertyConfig("c", Instantaneous, UInt16, 110), };
+		dataSource.setPropConfigs(propConfigs);
+		dataSource.setRequestOverheadWords(8);
+
+		Capture<ModbusConnectionAction<ModbusData>> connActionCapture = new Capture<>();
+		expect(modbusNetwork.performAction(eq(1), capture(connActionCapture)))
+				.andAnswer(new IAnswer<ModbusData>() {
+
+					@Override
+					public ModbusData answer() throws Throwable {
+						ModbusConnectionAction<ModbusData> action = connActionCapture.getValue();
+						return action.doWithConnection(modbusConnection);
+					}
+				});
+
+		final short[] range = shortArray(new int[] { 1, 0, 0, 0, 2, 0, 0, 0, 0, 0, 3 });
+		expect(modbusConnection.readWords(ModbusReadFunction.ReadHoldingRegister, 100, 11))
+				.andReturn(range);
+
+		replayAll();
+
+		// WHEN
+		GeneralNodeDatum datum = dataSource.readCurrentDatum();
+
+		// THEN
+		assertThat("Datum returned", datum, notNullValue());
+		assertThat("A value", datum.getInstantaneousSampleInteger("a"), equalTo(1));
+		assertThat("B value", datum.getInstantaneousSampleInteger("b"), equalTo(2));
+		assertThat("C value", datum.getInstantaneousSampleInteger("c"), equalTo(3));
+	}
+
 }
@@ -33,6 +33,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import org.springframework.expression.Expression;
+import org.springframework.expression.ExpressionException;
+import org.springframework.expression.spel.standard.SpelExpression;
 import net.solarnetwork.domain.GeneralDatumSamplePropertyConfig;
 import net.solarnetwork.domain.GeneralDatumSamplesType;
 import net.solarnetwork.node.settings.SettingSpecifier;
@@ -46,18 +48,30 @@ import net.solarnetwork.util.IntRangeSet;
  * Configuration for a single datum property to be set via an expression.
  * 
  * <p>
- * The {@link #getConfig()} value represents the expression to evaluate.
+ * The {@link #getConfig()} value represents the expression to evaluate. The
+ * expression is parsed once and cached until the expression or service
+ * changes. Expressions parsed by the Spring Expression Language are compiled
+ * to byte code after their first evaluation when possible, reverting to
+ * interpreted evaluation if a compiled expression fails.
  * </p>
  * 
  * @author matt
- * @version 2.0
+ * @version 2.1
  * @since 1.4
  */
 public class ExpressionConfig extends GeneralDatumSamplePropertyConfig<String> {
 
+	private static final int MAX_COMPILE_ATTEMPTS = 3;
+
 	private String expressionServiceId;
 
+	private ExpressionService cachedExpressionService;
 	private Expression cachedExpression;
+	private int compileAttempts;
+	private volatile boolean compiled;
+	private volatile long lastEvaluationNanos;
+	private volatile long evaluationCount;
+	private volatile long evaluationNanos;
 
 	/**
 	 * Default constructor.
@@ -177,10 +191,12 @@ public class ExpressionConfig extends GeneralDatumSamplePropertyConfig<String> {
 	public synchronized ExpressionServiceExpression getExpression(Iterable<ExpressionService> services) {
 		for ( ExpressionService service : services ) {
 			if ( service != null && service.getUid().equalsIgnoreCase(expressionServiceId) ) {
-				Expression expr = cachedExpression;
+				Expression expr = (service == cachedExpressionService ? cachedExpression : null);
 				if ( expr == null ) {
 					expr = service.parseExpression(getExpression());
 					if ( expr != null ) {
+						resetCachedExpression();
+						cachedExpressionService = service;
 						cachedExpression = expr;
 					}
 				}
@@ -192,6 +208,119 @@ public class ExpressionConfig extends GeneralDatumSamplePropertyConfig<String> {
 		return null;
 	}
 
+	/**
+	 * Evaluate an expression returned from {@link #getExpression(Iterable)}.
+	 * 
+	 * <p>
+	 * The evaluation time is recorded, and a Spring Expression Language
+	 * expression is compiled after it has been evaluated, if possible. If a
+	 * compiled expression fails, the expression reverts to interpreted
+	 * evaluation and is evaluated again.
+	 * </p>
+	 * 
+	 * @param expr
+	 *        the expression to evaluate
+	 * @param root
+	 *        the expression root object
+	 * @return the expression result
+	 * @throws ExpressionException
+	 *         if the expression cannot be evaluated
+	 * @since 2.1
+	 */
+	public Object evaluate(ExpressionServiceExpression expr, Object root) {
+		final long start = System.nanoTime();
+		final Expression expression = expr.getExpression();
+		Object result;
+		try {
+			result = expr.getService().evaluateExpression(expression, null, root, null,
+					Object.class);
+		} catch ( ExpressionException e ) {
+			if ( !revertToInterpreted(expression) ) {
+				throw e;
+			}
+			result = expr.getService().evaluateExpression(expression, null, root, null,
+					Object.class);
+		}
+		evaluated(expression, System.nanoTime() - start);
+		return result;
+	}
+
+	private synchronized void evaluated(Expression expression, long nanos) {
+		lastEvaluationNanos = nanos;
+		evaluationCount++;
+		evaluationNanos += nanos;
+		if ( !compiled && compileAttempts < MAX_COMPILE_ATTEMPTS && expression == cachedExpression
+				&& expression instanceof SpelExpression ) {
+			// SpEL can only compile an expression after it has been evaluated
+			compileAttempts++;
+			compiled = compileExpression((SpelExpression) expression);
+		}
+	}
+
+	private synchronized boolean revertToInterpreted(Expression expression) {
+		if ( !compiled || expression != cachedExpression ) {
+			return false;
+		}
+		((SpelExpression) expression).revertToInterpreted();
+		compiled = false;
+		compileAttempts = MAX_COMPILE_ATTEMPTS;
+		return true;
+	}
+
+	private static boolean compileExpression(SpelExpression expression) {
+		// the compiler defines classes with the context class loader, which must see ExpressionRoot
+		final Thread thread = Thread.currentThread();
+		final ClassLoader origClassLoader = thread.getContextClassLoader();
+		thread.setContextClassLoader(ExpressionConfig.class.getClassLoader());
+		try {
+			return expression.compileExpression();
+		} catch ( RuntimeException | LinkageError e ) {
+			return false;
+		} finally {
+			thread.setContextClassLoader(origClassLoader);
+		}
+	}
+
+	private void resetCachedExpression() {
+		cachedExpressionService = null;
+		cachedExpression = null;
+		compileAttempts = 0;
+		compiled = false;
+		lastEvaluationNanos = 0;
+		evaluationCount = 0;
+		evaluationNanos = 0;
+	}
+
+	/**
+	 * Get the compiled status of the cached expression.
+	 * 
+	 * @return {@literal true} if the cached expression has been compiled
+	 * @since 2.1
+	 */
+	public boolean isCompiled() {
+		return compiled;
+	}
+
+	/**
+	 * Get the time taken by the most recent expression evaluation.
+	 * 
+	 * @return the evaluation time, in nanoseconds
+	 * @since 2.1
+	 */
+	public long getLastEvaluationNanos() {
+		return lastEvaluationNanos;
+	}
+
+	/**
+	 * Get the average time taken by expression evaluations.
+	 * 
+	 * @return the average evaluation time, in nanoseconds
+	 * @since 2.1
+	 */
+	public long getAverageEvaluationNanos() {
+		return evaluationNanos / Math.max(1, evaluationCount);
+	}
+
 	/**
 	 * Get a set of referenced Modbus register addresses in the configured
 	 * expression.
@@ -253,7 +382,7 @@ public class ExpressionConfig extends GeneralDatumSamplePropertyConfig<String> {
 	 */
 	public synchronized void setExpression(String expression) {
 		setConfig(expression);
-		this.cachedExpression = null;
+		resetCachedExpression();
 	}
 
 	/**
@@ -275,7 +404,7 @@ public class ExpressionConfig extends GeneralDatumSamplePropertyConfig<String> {
 	 */
 	public synchronized void setExpressionServiceId(String expressionServiceId) {
 		this.expressionServiceId = expressionServiceId;
-		this.cachedExpression = null;
+		resetCachedExpression();
 	}
 
 	/**
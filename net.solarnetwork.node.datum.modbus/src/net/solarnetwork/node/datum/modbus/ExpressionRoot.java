@@ -34,8 +34,13 @@ import net.solarnetwork.util.IntRangeSet;
 /**
  * An object to use as the "root" for {@link ExpressionService} evaluation.
  * 
+ * <p>
+ * The {@link #getProps()} and {@link #getRegs()} maps are created when first
+ * accessed, so expressions that do not use them do not pay for them.
+ * </p>
+ * 
  * @author matt
- * @version 2.0
+ * @version 2.1
  */
 public class ExpressionRoot {
 
@@ -71,9 +76,9 @@ public class ExpressionRoot {
 			"sample\\.get(?:Bytes|.*?String)\\(\\s*(\\d+?)(?:\\s*,\\s*(\\d+))?(?:\\s*,\\s*(?:true|false))?\\s*\\)");
 
 	private final GeneralNodeDatum datum;
-	private final Map<String, ?> datumProps;
 	private final ModbusData sample;
-	private final Map<Integer, Integer> sampleUnsignedData;
+	private Map<String, ?> datumProps;
+	private Map<Integer, Integer> sampleUnsignedData;
 
 	/**
 	 * Constructor.
@@ -86,10 +91,7 @@ public class ExpressionRoot {
 	public ExpressionRoot(GeneralNodeDatum datum, ModbusData sample) {
 		super();
 		this.datum = datum;
-		this.datumProps = (datum != null ? datum.getSampleData() : Collections.emptyMap());
 		this.sample = sample;
-		this.sampleUnsignedData = (sample != null ? sample.getUnsignedDataMap()
-				: Collections.emptyMap());
 	}
 
 	private static IntRangeSet EMPTY_SET = new IntRangeSet().immutableCopy();
@@ -154,7 +156,15 @@ public class ExpressionRoot {
 	 * @return the datum sample data, never {@literal null}
 	 */
 	public Map<String, ?> getProps() {
-		return datumProps;
+		Map<String, ?> props = datumProps;
+		if ( props == null ) {
+			props = (datum != null ? datum.getSampleData() : null);
+			if ( props == null ) {
+				props = Collections.emptyMap();
+			}
+			datumProps = props;
+		}
+		return props;
 	}
 
 	/**
@@ -172,7 +182,12 @@ public class ExpressionRoot {
 	 * @return the sample data as unsigned integer values, never {@literal null}
 	 */
 	public Map<Integer, Integer> getRegs() {
-		return sampleUnsignedData;
+		Map<Integer, Integer> regs = sampleUnsignedData;
+		if ( regs == null ) {
+			regs = (sample != null ? sample.getUnsignedDataMap() : Collections.emptyMap());
+			sampleUnsignedData = regs;
+		}
+		return regs;
 	}
 
 }
@@ -52,6 +52,7 @@ import net.solarnetwork.node.io.modbus.ModbusData.ModbusDataUpdateAction;
 import net.solarnetwork.node.io.modbus.ModbusData.MutableModbusData;
 import net.solarnetwork.node.io.modbus.support.ModbusDeviceDatumDataSourceSupport;
 import net.solarnetwork.node.io.modbus.ModbusReadFunction;
+import net.solarnetwork.node.io.modbus.ModbusReadPlanner;
 import net.solarnetwork.node.io.modbus.ModbusWordOrder;
 import net.solarnetwork.node.settings.SettingSpecifier;
 import net.solarnetwork.node.settings.SettingSpecifierProvider;
@@ -60,6 +61,7 @@ import net.solarnetwork.node.settings.support.BasicMultiValueSettingSpecifier;
 import net.solarnetwork.node.settings.support.BasicTextFieldSettingSpecifier;
 import net.solarnetwork.node.settings.support.BasicTitleSettingSpecifier;
 import net.solarnetwork.node.settings.support.SettingsUtil;
+import net.solarnetwork.settings.SettingsChangeObserver;
 import net.solarnetwork.support.ExpressionService;
 import net.solarnetwork.support.ExpressionServiceExpression;
 import net.solarnetwork.util.ArrayUtils;
@@ -73,11 +75,18 @@ import net.solarnetwork.util.StringUtils;
 /**
  * Generic Modbus device datum data source.
  * 
+ * <p>
+ * Expressions are parsed, cached, and compiled by their
+ * {@link ExpressionConfig}. Expression evaluation times are logged at the
+ * {@literal DEBUG} (per datum) and {@literal TRACE} (per expression) levels.
+ * </p>
+ * 
  * @author matt
- * @version 2.0
+ * @version 2.2
  */
-public class ModbusDatumDataSource extends ModbusDeviceDatumDataSourceSupport implements
-		DatumDataSource<GeneralNodeDatum>, SettingSpecifierProvider, ModbusConnectionAction<ModbusData> {
+public class ModbusDatumDataSource extends ModbusDeviceDatumDataSourceSupport
+		implements DatumDataSource<GeneralNodeDatum>, SettingSpecifierProvider,
+		ModbusConnectionAction<ModbusData>, SettingsChangeObserver {
 
 	/** The datum metadata key for a virtual meter sample value. */
 	public static final String VIRTUAL_METER_VALUE_KEY = "vm-value";
@@ -94,7 +103,7 @@ public class ModbusDatumDataSource extends ModbusDeviceDatumDataSourceSupport im
 
 	private String sourceId;
 	private long sampleCacheMs;
-	private int maxReadWordCount;
+	private final ModbusReadPlanner readPlanner;
 	private ModbusPropertyConfig[] propConfigs;
 	private ExpressionConfig[] expressionConfigs;
 	private VirtualMeterConfig[] virtualMeterConfigs;
@@ -110,10 +119,27 @@ public class ModbusDatumDataSource extends ModbusDeviceDatumDataSourceSupport im
 		sample = new ModbusData();
 		sourceId = "modbus";
 		sampleCacheMs = 5000;
-		maxReadWordCount = 64;
+		readPlanner = new ModbusReadPlanner();
 		setWordOrder(ModbusWordOrder.MostToLeastSignificant);
 	}
 
+	/**
+	 * Call after any of the configuration properties are modified.
+	 * 
+	 * <p>
+	 * This method discards any Modbus device read limits learned by the read
+	 * planner.
+	 * </p>
+	 * 
+	 * @param properties
+	 *        the changed properties
+	 * @since 2.2
+	 */
+	@Override
+	public void configurationChanged(Map<String, Object> properties) {
+		readPlanner.reset();
+	}
+
 	@Override
 	protected Map<String, Object> readDeviceInfo(ModbusConnection conn) {
 		return Collections.emptyMap();
@@ -370,6 +396,8 @@ public class ModbusDatumDataSource extends ModbusDeviceDatumDataSourceSupport im
 				|| d == null ) {
 			return;
 		}
+		final long start = System.nanoTime();
+		int count = 0;
 		for ( ExpressionConfig config : expressionConfs ) {
 			if ( config.getName() == null || config.getName().isEmpty() || config.getExpression() == null
 					|| config.getExpression().isEmpty() ) {
@@ -381,24 +409,36 @@ public class ModbusDatumDataSource extends ModbusDeviceDatumDataSourceSupport im
 			} catch ( ExpressionException e ) {
 				log.warn("Error parsing property [{}] expression `{}`: {}", config.getName(),
 						config.getExpression(), e.getMessage());
-				return;
+				continue;
+			}
+			if ( expr == null ) {
+				continue;
 			}
 
 			Object propValue = null;
-			if ( expr != null ) {
-				ExpressionRoot root = new ExpressionRoot(d, sample);
-				try {
-					propValue = expr.getService().evaluateExpression(expr.getExpression(), null, root,
-							null, Object.class);
-				} catch ( ExpressionException e ) {
-					log.warn("Error evaluating property [{}] expression `{}`: {}", config.getName(),
-							config.getExpression(), e.getMessage());
-				}
+			ExpressionRoot root = new ExpressionRoot(d, sample);
+			try {
+				propValue = config.evaluate(expr, root);
+				count++;
+			} catch ( ExpressionException e ) {
+				log.warn("Error evaluating property [{}] expression `{}`: {}", config.getName(),
+						config.getExpression(), e.getMessage());
+			}
+			if ( log.isTraceEnabled() ) {
+				log.trace("Evaluated property [{}] expression `{}` in {}us ({}, average {}us)",
+						config.getName(), config.getExpression(),
+						config.getLastEvaluationNanos() / 1000,
+						config.isCompiled() ? "compiled" : "interpreted",
+						config.getAverageEvaluationNanos() / 1000);
 			}
 			if ( propValue != null ) {
 				d.putSampleValue(config.getDatumPropertyType(), config.getName(), propValue);
 			}
 		}
+		if ( count > 0 && log.isDebugEnabled() ) {
+			log.debug("Evaluated {} expressions for source {} in {}us", count, sourceId,
+					(System.nanoTime() - start) / 1000);
+		}
 	}
 
 	private DatumMetadataService datumMetadataService() {
@@ -475,7 +515,9 @@ public class ModbusDatumDataSource extends ModbusDeviceDatumDataSourceSupport im
 		results.add(new BasicTextFieldSettingSpecifier("sampleCacheMs",
 				String.valueOf(defaults.sampleCacheMs)));
 		results.add(new BasicTextFieldSettingSpecifier("maxReadWordCount",
-				String.valueOf(defaults.maxReadWordCount)));
+				String.valueOf(defaults.readPlanner.getMaxReadWordCount())));
+		results.add(new BasicTextFieldSettingSpecifier("requestOverheadWords",
+				String.valueOf(defaults.readPlanner.getRequestOverheadWords())));
 
 		// drop-down menu for word order
 		BasicMultiValueSettingSpecifier wordOrderSpec = new BasicMultiValueSettingSpecifier(
@@ -568,13 +610,40 @@ public class ModbusDatumDataSource extends ModbusDeviceDatumDataSourceSupport im
 		return result;
 	}
 
+	private static void readRange(ModbusConnection conn, ModbusReadFunction function, IntRange range,
+			MutableModbusData m) {
+		final int start = range.getMin();
+		final int len = range.length();
+		switch (function) {
+			case ReadCoil:
+				m.saveDataArray(shortArrayForBitSet(conn.readDiscreetValues(start, len), start, len),
+						start);
+				break;
+
+			case ReadDiscreteInput:
+				m.saveDataArray(
+						shortArrayForBitSet(conn.readInputDiscreteValues(start, len), start, len),
+						start);
+				break;
+
+			case ReadHoldingRegister:
+				m.saveDataArray(conn.readWords(ModbusReadFunction.ReadHoldingRegister, start, len),
+						start);
+				break;
+
+			case ReadInputRegister:
+				m.saveDataArray(conn.readWords(ModbusReadFunction.ReadInputRegister, start, len),
+						start);
+				break;
+		}
+	}
+
 	@Override
 	public ModbusData doWithConnection(final ModbusConnection conn) throws IOException {
 		sample.performUpdates(new ModbusDataUpdateAction() {
 
 			@Override
 			public boolean updateModbusData(MutableModbusData m) {
-				final int maxReadLen = maxReadWordCount;
 				Map<ModbusReadFunction, List<ModbusPropertyConfig>> functionMap = getReadFunctionSets(
 						propConfigs);
 				IntRangeSet expressionRegisterSet = expressionRegisterSet();
@@ -583,8 +652,9 @@ public class ModbusDatumDataSource extends ModbusDeviceDatumDataSourceSupport im
 					ModbusReadFunction function = me.getKey();
 					List<ModbusPropertyConfig> configs = me.getValue();
 					// try to read from device as few times as possible by combining ranges of addresses
-					// into single calls, but limited to at most maxReadWordCount addresses at a time
-					// because some devices have trouble returning large word counts
+					// into single calls, as planned by the read planner, which limits the number of
+					// addresses read at a time because some devices have trouble returning large word
+					// counts
 					IntRangeSet addressRangeSet = getRegisterAddressSet(configs);
 					if ( function == ModbusReadFunction.ReadHoldingRegister ) {
 						// add expressions
@@ -598,51 +668,13 @@ public class ModbusDatumDataSource extends ModbusDeviceDatumDataSourceSupport im
 						expressionRegisterSet = null; // so don't handle later
 					}
 					log.debug("Reading modbus {} register ranges: {}", getUnitId(), addressRangeSet);
-					Iterable<IntRange> ranges = addressRangeSet.ranges();
-					for ( IntRange range : ranges ) {
-						for ( int start = range.getMin(), stop = start
-								+ range.length(); start < stop; ) {
-							int len = Math.min(range.length(), maxReadLen);
-							switch (function) {
-								case ReadCoil:
-									m.saveDataArray(shortArrayForBitSet(
-											conn.readDiscreetValues(start, len), start, len), start);
-									break;
-
-								case ReadDiscreteInput:
-									m.saveDataArray(
-											shortArrayForBitSet(conn.readInputDiscreteValues(start, len),
-													start, len),
-											start);
-									break;
-
-								case ReadHoldingRegister:
-									m.saveDataArray(conn.readWords(
-											ModbusReadFunction.ReadHoldingRegister, start, len), start);
-									break;
-
-								case ReadInputRegister:
-									m.saveDataArray(conn.readWords(
-											ModbusReadFunction.ReadInputRegister, start, len), start);
-									break;
-							}
-							start += len;
-						}
-					}
+					readPlanner.read(function, addressRangeSet, 0, r -> readRange(conn, function, r, m));
 				}
 
 				// handle expression references, if not already handled
 				if ( expressionRegisterSet != null ) {
-					Iterable<IntRange> ranges = expressionRegisterSet.ranges();
-					for ( IntRange range : ranges ) {
-						for ( int start = range.getMin(), stop = start
-								+ range.length(); start < stop; ) {
-							int len = Math.min(range.length(), maxReadLen);
-							m.saveDataArray(conn.readWords(ModbusReadFunction.ReadHoldingRegister,
-									start, len), start);
-							start += len;
-						}
-					}
+					readPlanner.read(ModbusReadFunction.ReadHoldingRegister, expressionRegisterSet, 0,
+							r -> readRange(conn, ModbusReadFunction.ReadHoldingRegister, r, m));
 				}
 
 				return true;
@@ -776,10 +808,27 @@ public class ModbusDatumDataSource extends ModbusDeviceDatumDataSourceSupport im
 	 *        the maximum word count; defaults to {@literal 64}
 	 */
 	public void setMaxReadWordCount(int maxReadWordCount) {
-		if ( maxReadWordCount < 1 ) {
-			return;
-		}
-		this.maxReadWordCount = maxReadWordCount;
+		readPlanner.setMaxReadWordCount(maxReadWordCount);
+	}
+
+	/**
+	 * Set the maximum number of unused Modbus registers to read, to avoid
+	 * making another read operation.
+	 * 
+	 * <p>
+	 * Registers separated by a gap of no more than this many registers are
+	 * read in a single read operation. If the device refuses to return the
+	 * gap registers, they are not read again.
+	 * </p>
+	 * 
+	 * @param requestOverheadWords
+	 *        the maximum gap, or {@literal 0} to only combine contiguous
+	 *        registers; defaults to
+	 *        {@link ModbusReadPlanner#DEFAULT_REQUEST_OVERHEAD_WORDS}
+	 * @since 2.1
+	 */
+	public void setRequestOverheadWords(int requestOverheadWords) {
+		readPlanner.setRequestOverheadWords(requestOverheadWords);
 	}
 
 	/**
@@ -0,0 +1,182 @@
+/* ==================================================================
+ * ProcFileActionCommandRunnerTests.java - 18/10/2026 4:48:02 PM
+ *
+ * Copyright 2026 SolarNetwork.net Dev Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ * ==================================================================
+ */
+
+package net.solarnetwork.node.datum.os.stat.test;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasEntry;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.Assert.assertThat;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import net.solarnetwork.node.datum.os.stat.ProcFileActionCommandRunner;
+import net.solarnetwork.node.datum.os.stat.StatAction;
+
+/**
+ * Test cases for the {@link ProcFileActionCommandRunner} class.
+ *
+ * @author matt
+ * @version 1.0
+ */
+public class ProcFileActionCommandRunnerTests {
+
+	@Rule
+	public TemporaryFolder tmpDir = new TemporaryFolder();
+
+	private File procDir;
+	private ProcFileActionCommandRunner runner;
+
+	@Before
+	public void setup() throws IOException {
+		procDir = tmpDir.newFolder("proc");
+		runner = new ProcFileActionCommandRunner();
+		runner.setProcDirectory(procDir);
+	}
+
+	@After
+	public void teardown() {
+		runner.close();
+	}
+
+	private void writeProcFile(String name, String content) throws IOException {
+		File f = new File(procDir, name);
+		f.getParentFile().mkdirs();
+		Files.write(f.toPath(), content.getBytes(StandardCharsets.US_ASCII));
+	}
+
+	@Test
+	public void cpuUse() throws IOException {
+		// given
+		writeProcFile("stat",
+				"cpu  100 0 50 850 0 0 0 0 0 0\ncpu0 100 0 50 850 0 0 0 0 0 0\nintr 1234\n");
+
+		// when
+		List<Map<String, String>> result = runner.executeAction(StatAction.CpuUse.getAction());
+
+		// then
+		assertThat("Row count", result, hasSize(1));
+		assertThat("User since boot", result.get(0), hasEntry("user", "10.0"));
+		assertThat("System since boot", result.get(0), hasEntry("system", "5.0"));
+		assertThat("Idle since boot", result.get(0), hasEntry("idle", "85.0"));
+
+		// when
+		writeProcFile("stat",
+				"cpu  150 10 80 1010 0 0 0 0 0 0\ncpu0 150 10 80 1010 0 0 0 0 0 0\nintr 1234\n");
+		result = runner.executeAction(StatAction.CpuUse.getAction());
+
+		// then
+		assertThat("User since previous", result.get(0), hasEntry("user", "24.0"));
+		assertThat("System since previous", result.get(0), hasEntry("system", "12.0"));
+		assertThat("Idle since previous", result.get(0), hasEntry("idle", "64.0"));
+	}
+
+	@Test
+	public void memoryUse() throws IOException {
+		// given
+		writeProcFile("meminfo", "MemTotal:        1000184 kB\nMemFree:          123456 kB\n"
+				+ "MemAvailable:     756380 kB\nBuffers:           12345 kB\n");
+
+		// when
+		List<Map<String, String>> result = runner.executeAction(StatAction.MemoryUse.getAction());
+
+		// then
+		assertThat("Row count", result, hasSize(1));
+		assertThat("Total", result.get(0), hasEntry("total-kb", "1000184"));
+		assertThat("Available", result.get(0), hasEntry("avail-kb", "756380"));
+	}
+
+	@Test
+	public void systemLoadAndUptime() throws IOException {
+		// given
+		writeProcFile("loadavg", "1.52 1.67 1.65 1/123 4567\n");
+		writeProcFile("uptime", "123122.21 456789.01\n");
+
+		// when
+		List<Map<String, String>> load = runner.executeAction(StatAction.SystemLoad.getAction());
+		List<Map<String, String>> up = runner.executeAction(StatAction.SystemUptime.getAction());
+
+		// then
+		assertThat("Load 1min", load.get(0), hasEntry("1min", "1.52"));
+		assertThat("Load 5min", load.get(0), hasEntry("5min", "1.67"));
+		assertThat("Load 15min", load.get(0), hasEntry("15min", "1.65"));
+		assertThat("Uptime", up.get(0), hasEntry("up-sec", "123122.21"));
+		assertThat("Uptime columns", up.get(0).size(), equalTo(1));
+	}
+
+	@Test
+	public void networkTraffic() throws IOException {
+		// given
+		writeProcFile("net/dev", "Inter-|   Receive                            "
+				+ "                    |  Transmit\n"
+				+ " face |bytes    packets errs drop fifo frame compressed multicast"
+				+ "|bytes    packets errs drop fifo colls carrier compressed\n"
+				+ "    lo:    3393      29    0    0    0     0          0         0"
+				+ "     3393      29    0    0    0     0       0          0\n"
+				+ "  eth0:1770391    7329    0    0    0     0          0         0"
+				+ "  1287753    6542    0    0    0     0       0          0\n");
+
+		// when
+		List<Map<String, String>> result = runner
+				.executeAction(StatAction.NetworkTraffic.getAction());
+
+		// then
+		assertThat("Row count", result, hasSize(2));
+		Map<String, String> eth0 = result.get(1);
+		assertThat("Device", eth0, hasEntry("device", "eth0"));
+		assertThat("Bytes in", eth0, hasEntry("bytes-in", "1770391"));
+		assertThat("Bytes out", eth0, hasEntry("bytes-out", "1287753"));
+		assertThat("Packets in", eth0, hasEntry("packets-in", "7329"));
+		assertThat("Packets out", eth0, hasEntry("packets-out", "6542"));
+	}
+
+	@Test
+	public void filesystemUse() throws IOException {
+		// given
+		File mount = tmpDir.newFolder("my mount");
+		String mountPath = mount.getAbsolutePath();
+		writeProcFile("mounts", "/dev/test " + mountPath.replace(" ", "\\040") + " ext4 rw 0 0\n");
+
+		// when
+		List<Map<String, String>> result = runner
+				.executeAction(StatAction.FilesystemUse.getAction());
+
+		// then
+		assertThat("Row count", result, hasSize(1));
+		Map<String, String> row = result.get(0);
+		assertThat("Mount decoded", row, hasEntry("mount", mountPath));
+		long size = Long.parseLong(row.get("size-kb"));
+		long used = Long.parseLong(row.get("used-kb"));
+		assertThat("Size from file store", size,
+				equalTo(Files.getFileStore(mount.toPath()).getTotalSpace() / 1024));
+		assertThat("Used not more than size", used <= size, equalTo(true));
+	}
+
+}
@@ -121,8 +121,14 @@ import net.solarnetwork.util.StringUtils;
  * </code>
  * </pre>
  * 
+ * <p>
+ * The {@link ProcFileActionCommandRunner} can be configured as the
+ * {@code commandRunner} to read the standard actions directly from the Linux
+ * {@literal /proc} file system instead of executing a helper program.
+ * </p>
+ * 
  * @author matt
- * @version 1.1
+ * @version 1.2
  */
 public class OsStatDatumDataSource extends DatumDataSourceSupport
 		implements DatumDataSource<GeneralNodeDatum>, SettingSpecifierProvider {
@@ -0,0 +1,397 @@
+/* ==================================================================
+ * ProcFileActionCommandRunner.java - 18/10/2026 4:12:31 PM
+ *
+ * Copyright 2026 SolarNetwork.net Dev Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ * ==================================================================
+ */
+
+package net.solarnetwork.node.datum.os.stat;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Implementation of {@link ActionCommandRunner} that reads the Linux
+ * {@literal /proc} file system directly, rather than executing an external OS
+ * command.
+ *
+ * <p>
+ * All the {@link StatAction} actions are supported, and return the same
+ * columns as the {@literal solarstat} helper program does. Each {@literal /proc}
+ * file is opened once and then re-read from the start on each execution, and
+ * file system use is obtained from {@link FileStore} instances, so no process
+ * is started to collect statistics. For the {@literal cpu-use} action the CPU
+ * counters from the previous execution are retained so that utilization is
+ * reported for the period since then; on the first execution utilization since
+ * boot is reported.
+ * </p>
+ *
+ * <p>
+ * Any other action, or any action whose {@literal /proc} file is not
+ * available (for example when not running on Linux), is passed to the external
+ * command configured on the {@link ProcessActionCommandRunner} this class
+ * extends.
+ * </p>
+ *
+ * @author matt
+ * @version 1.0
+ */
+public class ProcFileActionCommandRunner extends ProcessActionCommandRunner {
+
+	/** The default value for the {@code procDirectory} property. */
+	public static final String DEFAULT_PROC_DIRECTORY = "/proc";
+
+	private static final BigDecimal ONE_HUNDRED = new BigDecimal(100);
+
+	private final Map<String, FileChannel> channels = new HashMap<>(8);
+	private final Map<String, FileStore> fileStores = new LinkedHashMap<>(8);
+	private Path procDirectory = Paths.get(DEFAULT_PROC_DIRECTORY);
+	private ByteBuffer buffer = ByteBuffer.allocate(4096);
+	private long[] prevCpuTimes;
+	private String prevMounts;
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+
+	@Override
+	public String getSettingUID() {
+		return "net.solarnetwork.node.datum.os.stat.ProcFileActionCommandRunner";
+	}
+
+	@Override
+	public synchronized List<Map<String, String>> executeAction(final String action) {
+		StatAction stdAction = null;
+		try {
+			stdAction = StatAction.forAction(action);
+		} catch ( IllegalArgumentException e ) {
+			// not a standard action
+		}
+		List<Map<String, String>> result = null;
+		if ( stdAction != null ) {
+			try {
+				result = executeStatAction(stdAction);
+			} catch ( IOException e ) {
+				log.warn("Error reading {} action data: {}", action, e.getMessage());
+				closeChannels();
+			}
+		}
+		if ( result == null ) {
+			result = super.executeAction(action);
+		}
+		return result;
+	}
+
+	private List<Map<String, String>> executeStatAction(StatAction action) throws IOException {
+		switch (action) {
+			case CpuUse:
+				return cpuUse();
+
+			case FilesystemUse:
+				return filesystemUse();
+
+			case MemoryUse:
+				return memoryUse();
+
+			case NetworkTraffic:
+				return networkTraffic();
+
+			case SystemLoad:
+				return systemLoad();
+
+			case SystemUptime:
+				return systemUptime();
+
+			default:
+				return null;
+		}
+	}
+
+	/**
+	 * Release all open resources.
+	 */
+	public synchronized void close() {
+		closeChannels();
+		fileStores.clear();
+		prevMounts = null;
+	}
+
+	private void closeChannels() {
+		for ( FileChannel ch : channels.values() ) {
+			try {
+				ch.close();
+			} catch ( IOException e ) {
+				// ignore
+			}
+		}
+		channels.clear();
+	}
+
+	/**
+	 * Read the full contents of a {@literal /proc} file.
+	 *
+	 * @param name
+	 *        the path of the file, relative to {@code procDirectory}
+	 * @return the file content, or {@literal null} if the file does not exist
+	 * @throws IOException
+	 *         if any IO error occurs
+	 */
+	private String readProcFile(String name) throws IOException {
+		FileChannel ch = channels.get(name);
+		if ( ch == null ) {
+			Path p = procDirectory.resolve(name);
+			if ( !Files.isReadable(p) ) {
+				return null;
+			}
+			ch = FileChannel.open(p, StandardOpenOption.READ);
+			channels.put(name, ch);
+		}
+		buffer.clear();
+		long pos = 0;
+		int count;
+		while ( (count = ch.read(buffer, pos)) > 0 ) {
+			pos += count;
+			if ( !buffer.hasRemaining() ) {
+				ByteBuffer b = ByteBuffer.allocate(buffer.capacity() * 2);
+				buffer.flip();
+				b.put(buffer);
+				buffer = b;
+			}
+		}
+		return new String(buffer.array(), 0, buffer.position(), StandardCharsets.US_ASCII);
+	}
+
+	private static String[] fields(String line) {
+		return line.trim().split("\\s+");
+	}
+
+	private static Map<String, String> row(String[] columns, String... values) {
+		Map<String, String> row = new LinkedHashMap<>(columns.length);
+		for ( int i = 0; i < columns.length && i < values.length; i++ ) {
+			row.put(columns[i], values[i]);
+		}
+		return row;
+	}
+
+	private static String percent(long value, long total) {
+		if ( total < 1 ) {
+			return "0";
+		}
+		return new BigDecimal(value).multiply(ONE_HUNDRED)
+				.divide(new BigDecimal(total), 1, RoundingMode.HALF_UP).toPlainString();
+	}
+
+	private List<Map<String, String>> cpuUse() throws IOException {
+		String data = readProcFile("stat");
+		if ( data == null ) {
+			return null;
+		}
+		int end = data.indexOf('\n');
+		String line = (end < 0 ? data : data.substring(0, end));
+		if ( !line.startsWith("cpu ") ) {
+			throw new IOException("Unexpected stat content: " + line);
+		}
+		// user nice system idle iowait irq softirq steal
+		String[] f = fields(line);
+		long[] times = new long[8];
+		for ( int i = 0; i < times.length && i + 1 < f.length; i++ ) {
+			times[i] = Long.parseLong(f[i + 1]);
+		}
+		long[] delta = times.clone();
+		if ( prevCpuTimes != null ) {
+			for ( int i = 0; i < delta.length; i++ ) {
+				delta[i] -= prevCpuTimes[i];
+			}
+		}
+		prevCpuTimes = times;
+		long total = 0;
+		for ( long t : delta ) {
+			total += t;
+		}
+		return Collections.singletonList(row(new String[] { "user", "system", "idle" },
+				percent(delta[0] + delta[1], total), percent(delta[2] + delta[5] + delta[6], total),
+				percent(delta[3], total)));
+	}
+
+	private List<Map<String, String>> memoryUse() throws IOException {
+		String data = readProcFile("meminfo");
+		if ( data == null ) {
+			return null;
+		}
+		String total = null;
+		String avail = null;
+		for ( String line : data.split("\n") ) {
+			if ( line.startsWith("MemTotal:") ) {
+				total = fields(line)[1];
+			} else if ( line.startsWith("MemAvailable:") ) {
+				avail = fields(line)[1];
+			}
+		}
+		return Collections
+				.singletonList(row(new String[] { "total-kb", "avail-kb" }, total, avail));
+	}
+
+	private List<Map<String, String>> systemLoad() throws IOException {
+		String data = readProcFile("loadavg");
+		if ( data == null ) {
+			return null;
+		}
+		return Collections.singletonList(row(new String[] { "1min", "5min", "15min" }, fields(data)));
+	}
+
+	private List<Map<String, String>> systemUptime() throws IOException {
+		String data = readProcFile("uptime");
+		if ( data == null ) {
+			return null;
+		}
+		return Collections.singletonList(row(new String[] { "up-sec" }, fields(data)));
+	}
+
+	private List<Map<String, String>> networkTraffic() throws IOException {
+		String data = readProcFile("net/dev");
+		if ( data == null ) {
+			return null;
+		}
+		final String[] columns = new String[] { "device", "bytes-in", "bytes-out", "packets-in",
+				"packets-out" };
+		List<Map<String, String>> result = new ArrayList<>(4);
+		for ( String line : data.split("\n") ) {
+			int idx = line.indexOf(':');
+			if ( idx < 0 ) {
+				continue;
+			}
+			String[] f = fields(line.substring(idx + 1));
+			if ( f.length < 10 ) {
+				continue;
+			}
+			result.add(row(columns, line.substring(0, idx).trim(), f[0], f[8], f[1], f[9]));
+		}
+		return result;
+	}
+
+	private List<Map<String, String>> filesystemUse() throws IOException {
+		String data = readProcFile("mounts");
+		if ( data == null ) {
+			return null;
+		}
+		if ( !data.equals(prevMounts) ) {
+			fileStores.clear();
+			for ( String line : data.split("\n") ) {
+				String[] f = fields(line);
+				if ( f.length < 2 || !f[1].startsWith("/") ) {
+					continue;
+				}
+				String mount = decodeMountPath(f[1]);
+				try {
+					fileStores.put(mount, Files.getFileStore(Paths.get(mount)));
+				} catch ( IOException | SecurityException e ) {
+					log.trace("Unable to get file store for mount {}: {}", mount, e.getMessage());
+				}
+			}
+			prevMounts = data;
+		}
+		final String[] columns = new String[] { "mount", "size-kb", "used-kb", "used-percent" };
+		List<Map<String, String>> result = new ArrayList<>(fileStores.size());
+		for ( Map.Entry<String, FileStore> me : fileStores.entrySet() ) {
+			try {
+				FileStore store = me.getValue();
+				long size = store.getTotalSpace();
+				if ( size < 1 ) {
+					// pseudo file system, which df also omits
+					continue;
+				}
+				long used = size - store.getUnallocatedSpace();
+				long avail = store.getUsableSpace();
+				// df rounds the use percentage up
+				long usedPercent = (used + avail > 0 ? (used * 100 + used + avail - 1) / (used + avail)
+						: 0);
+				result.add(row(columns, me.getKey(), String.valueOf(size / 1024),
+						String.valueOf(used / 1024), String.valueOf(usedPercent)));
+			} catch ( IOException e ) {
+				log.debug("Error reading file system use for mount {}: {}", me.getKey(),
+						e.getMessage());
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Decode the octal escapes used for special characters in mount paths.
+	 *
+	 * @param path
+	 *        the path to decode
+	 * @return the decoded path
+	 */
+	private static String decodeMountPath(String path) {
+		if ( path.indexOf('\\') < 0 ) {
+			return path;
+		}
+		StringBuilder buf = new StringBuilder(path.length());
+		for ( int i = 0, len = path.length(); i < len; i++ ) {
+			char c = path.charAt(i);
+			if ( c == '\\' && i + 3 < len ) {
+				try {
+					buf.append((char) Integer.parseInt(path.substring(i + 1, i + 4), 8));
+					i += 3;
+					continue;
+				} catch ( NumberFormatException e ) {
+					// not an escape
+				}
+			}
+			buf.append(c);
+		}
+		return buf.toString();
+	}
+
+	/**
+	 * Set the directory of the {@literal /proc} file system.
+	 *
+	 * <p>
+	 * This defaults to {@link #DEFAULT_PROC_DIRECTORY}.
+	 * </p>
+	 *
+	 * @param procDirectory
+	 *        the directory to set
+	 * @throws IllegalArgumentException
+	 *         if {@code procDirectory} is {@literal null}
+	 */
+	public synchronized void setProcDirectory(File procDirectory) {
+		if ( procDirectory == null ) {
+			throw new IllegalArgumentException("The procDirectory is required.");
+		}
+		close();
+		this.procDirectory = procDirectory.toPath();
+	}
+
+}
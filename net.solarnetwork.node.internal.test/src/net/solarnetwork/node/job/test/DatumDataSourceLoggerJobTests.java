@@ -0,0 +1,163 @@
+/* ==================================================================
+ * DatumDataSourceLoggerJobTests.java - 19/10/2026 6:02:14 PM
+ *
+ * Copyright 2026 SolarNetwork.net Dev Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ * ==================================================================
+ */
+
+package net.solarnetwork.node.job.test;
+
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import org.easymock.EasyMock;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.TransientDataAccessResourceException;
+import net.solarnetwork.node.DatumDataSource;
+import net.solarnetwork.node.MultiDatumDataSource;
+import net.solarnetwork.node.dao.DatumDao;
+import net.solarnetwork.node.domain.GeneralNodeDatum;
+import net.solarnetwork.node.job.DatumDataSourceLoggerJob;
+import net.solarnetwork.node.job.DatumDataSourceManagedLoggerJob;
+import net.solarnetwork.util.StaticOptionalService;
+
+/**
+ * Test cases for the {@link DatumDataSourceLoggerJob} and
+ * {@link DatumDataSourceManagedLoggerJob} classes.
+ *
+ * @author matt
+ * @version 1.0
+ */
+public class DatumDataSourceLoggerJobTests {
+
+	private interface TestDatumDataSource
+			extends DatumDataSource<GeneralNodeDatum>, MultiDatumDataSource<GeneralNodeDatum> {
+		// combined API
+	}
+
+	private TestDatumDataSource dataSource;
+	private DatumDao<GeneralNodeDatum> datumDao;
+
+	@SuppressWarnings("unchecked")
+	@Before
+	public void setup() {
+		dataSource = EasyMock.createMock(TestDatumDataSource.class);
+		datumDao = EasyMock.createMock(DatumDao.class);
+	}
+
+	@After
+	public void teardown() {
+		EasyMock.verify(dataSource, datumDao);
+	}
+
+	private void replayAll() {
+		EasyMock.replay(dataSource, datumDao);
+	}
+
+	private GeneralNodeDatum datum(String sourceId) {
+		GeneralNodeDatum datum = new GeneralNodeDatum();
+		datum.setCreated(new Date());
+		datum.setSourceId(sourceId);
+		datum.putInstantaneousSampleValue("watts", 1);
+		return datum;
+	}
+
+	private Collection<GeneralNodeDatum> expectDatum(GeneralNodeDatum... datum) {
+		Collection<GeneralNodeDatum> result = Arrays.asList(datum);
+		expect(dataSource.getDatumType()).andReturn(GeneralNodeDatum.class).anyTimes();
+		expect(dataSource.getMultiDatumType()).andReturn(GeneralNodeDatum.class).anyTimes();
+		expect(dataSource.readMultipleDatum()).andReturn(result);
+		return result;
+	}
+
+	@Test
+	public void batchFailsWithNonDuplicateException() throws Exception {
+		// given
+		final GeneralNodeDatum bad = datum("bad");
+		final GeneralNodeDatum good = datum("good");
+		expectDatum(bad, good);
+
+		datumDao.storeDatum(Arrays.asList(bad, good));
+		expectLastCall().andThrow(new DataIntegrityViolationException("Bad datum"));
+
+		// each datum then stored individually; the bad one is skipped
+		datumDao.storeDatum(bad);
+		expectLastCall().andThrow(new DataIntegrityViolationException("Bad datum"));
+		datumDao.storeDatum(good);
+
+		replayAll();
+
+		// when
+		DatumDataSourceLoggerJob<GeneralNodeDatum> job = new DatumDataSourceLoggerJob<>();
+		job.setDatumDataSource(dataSource);
+		job.setDatumDao(datumDao);
+		job.setThrowExceptions(true);
+		job.execute(null);
+	}
+
+	@Test
+	public void batchFailsWithTransientException() throws Exception {
+		// given
+		final GeneralNodeDatum d1 = datum("a");
+		final GeneralNodeDatum d2 = datum("b");
+		expectDatum(d1, d2);
+
+		datumDao.storeDatum(Arrays.asList(d1, d2));
+		expectLastCall().andThrow(new TransientDataAccessResourceException("Connection lost"));
+		datumDao.storeDatum(d1);
+		datumDao.storeDatum(d2);
+
+		replayAll();
+
+		// when
+		DatumDataSourceLoggerJob<GeneralNodeDatum> job = new DatumDataSourceLoggerJob<>();
+		job.setDatumDataSource(dataSource);
+		job.setDatumDao(datumDao);
+		job.setThrowExceptions(true);
+		job.execute(null);
+	}
+
+	@Test
+	public void managedBatchFailsWithNonDuplicateException() throws Exception {
+		// given
+		final GeneralNodeDatum bad = datum("bad");
+		final GeneralNodeDatum good = datum("good");
+		final Collection<GeneralNodeDatum> datum = expectDatum(bad, good);
+
+		datumDao.storeDatum(datum);
+		expectLastCall().andThrow(new DataIntegrityViolationException("Bad datum"));
+		datumDao.storeDatum(bad);
+		expectLastCall().andThrow(new DataIntegrityViolationException("Bad datum"));
+		datumDao.storeDatum(good);
+
+		replayAll();
+
+		// when
+		DatumDataSourceManagedLoggerJob<GeneralNodeDatum> job = new DatumDataSourceManagedLoggerJob<>();
+		job.setMultiDatumDataSource(dataSource);
+		job.setDatumDao(new StaticOptionalService<DatumDao<GeneralNodeDatum>>(datumDao));
+		job.setThrowExceptions(true);
+		job.execute(null);
+	}
+
+}
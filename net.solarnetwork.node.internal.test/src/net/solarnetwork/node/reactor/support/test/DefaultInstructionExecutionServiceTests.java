@@ -26,8 +26,17 @@ import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertThat;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.Before;
 import org.junit.Test;
 import net.solarnetwork.node.reactor.FeedbackInstructionHandler;
@@ -43,7 +52,7 @@ import net.solarnetwork.node.reactor.support.DefaultInstructionExecutionService;
  * Test cases for the {@link DefaultInstructionExecutionService} class.
  * 
  * @author matt
- * @version 1.0
+ * @version 1.1
  */
 public class DefaultInstructionExecutionServiceTests {
 
@@ -261,4 +270,91 @@ public class DefaultInstructionExecutionServiceTests {
 		assertThat("Acknoledged state", status.getAcknowledgedInstructionState(), nullValue());
 	}
 
+	@Test
+	public void handlerBoundAfterTopicIndexed() {
+		// given
+		List<InstructionHandler> handlers = new ArrayList<>(2);
+		service.setHandlers(handlers);
+		handlers.add(new TestTopicInstructionHandler() {
+
+			@Override
+			public InstructionState processInstruction(Instruction instruction) {
+				return null;
+			}
+
+		});
+
+		final Date now = new Date();
+		BasicInstruction instr = new BasicInstruction(TEST_TOPIC, now, Instruction.LOCAL_INSTRUCTION_ID,
+				null, null);
+		assertThat("Result status before bind", service.executeInstruction(instr), nullValue());
+
+		InstructionHandler handler2 = new TestTopicInstructionHandler() {
+
+			@Override
+			public InstructionState processInstruction(Instruction instruction) {
+				return InstructionState.Completed;
+			}
+
+		};
+		handlers.add(handler2);
+
+		// when
+		service.onBind(handler2, Collections.<String, Object> emptyMap());
+		InstructionStatus status = service.executeInstruction(instr);
+
+		// then
+		assertThat("Result status", status, notNullValue());
+		assertThat("State", status.getInstructionState(), equalTo(InstructionState.Completed));
+	}
+
+	@Test
+	public void executeInstructionSerialized() throws Exception {
+		// given
+		final CountDownLatch firstEntered = new CountDownLatch(1);
+		final AtomicInteger active = new AtomicInteger();
+		final AtomicInteger maxActive = new AtomicInteger();
+		InstructionHandler handler = new TestTopicInstructionHandler() {
+
+			@Override
+			public InstructionState processInstruction(Instruction instruction) {
+				int count = active.incrementAndGet();
+				maxActive.set(Math.max(maxActive.get(), count));
+				firstEntered.countDown();
+				try {
+					Thread.sleep(200);
+				} catch ( InterruptedException e ) {
+					// ignore
+				} finally {
+					active.decrementAndGet();
+				}
+				return InstructionState.Completed;
+			}
+
+		};
+		service.setHandlers(Arrays.asList(handler));
+
+		final Date now = new Date();
+		final BasicInstruction instr1 = new BasicInstruction(TEST_TOPIC, now,
+				Instruction.LOCAL_INSTRUCTION_ID, null, null);
+		final BasicInstruction instr2 = new BasicInstruction(TEST_TOPIC, now,
+				Instruction.LOCAL_INSTRUCTION_ID, null, null);
+
+		// when
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Future<InstructionStatus> f = executor.submit(() -> service.executeInstruction(instr1));
+			firstEntered.await(5, TimeUnit.SECONDS);
+			InstructionStatus status2 = service.executeInstruction(instr2);
+			InstructionStatus status1 = f.get(5, TimeUnit.SECONDS);
+
+			// then
+			assertThat("Result status 1", status1, notNullValue());
+			assertThat("Result status 2", status2, notNullValue());
+			assertThat("Instructions executed one at a time", maxActive.get(), equalTo(1));
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
 }
@@ -0,0 +1,222 @@
+/* ==================================================================
+ * InstructionExecutionJobTests.java - 19/10/2026 4:12:38 PM
+ *
+ * Copyright 2026 SolarNetwork.net Dev Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ * ==================================================================
+ */
+
+package net.solarnetwork.node.reactor.test;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expect;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.easymock.EasyMock;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import net.solarnetwork.node.reactor.Instruction;
+import net.solarnetwork.node.reactor.InstructionDao;
+import net.solarnetwork.node.reactor.InstructionExecutionJob;
+import net.solarnetwork.node.reactor.InstructionExecutionService;
+import net.solarnetwork.node.reactor.InstructionHandler;
+import net.solarnetwork.node.reactor.InstructionStatus;
+import net.solarnetwork.node.reactor.InstructionStatus.InstructionState;
+import net.solarnetwork.node.reactor.support.BasicInstruction;
+import net.solarnetwork.node.reactor.support.BasicInstructionStatus;
+import net.solarnetwork.node.reactor.support.DefaultInstructionExecutionService;
+
+/**
+ * Test cases for the {@link InstructionExecutionJob} class.
+ *
+ * @author matt
+ * @version 1.0
+ */
+public class InstructionExecutionJobTests {
+
+	private InstructionDao instructionDao;
+	private ExecutorService executor;
+	private InstructionExecutionJob job;
+
+	@Before
+	public void setup() {
+		instructionDao = EasyMock.createMock(InstructionDao.class);
+		executor = Executors.newFixedThreadPool(2);
+		job = new InstructionExecutionJob();
+		job.setInstructionDao(instructionDao);
+		job.setExecutor(executor);
+		job.setThrowExceptions(true);
+	}
+
+	@After
+	public void teardown() {
+		executor.shutdownNow();
+		EasyMock.verify(instructionDao);
+	}
+
+	private BasicInstruction controlInstruction(long id, String controlId) {
+		BasicInstruction instr = new BasicInstruction(id, InstructionHandler.TOPIC_SET_CONTROL_PARAMETER,
+				new Date(), String.valueOf(id), null,
+				new BasicInstructionStatus(id, InstructionState.Received, new Date()));
+		instr.addParameter(controlId, "1");
+		return instr;
+	}
+
+	private void expectInstructions(List<Instruction> instructions) {
+		expect(instructionDao.findInstructionsForState(InstructionState.Received))
+				.andReturn(instructions);
+		expect(instructionDao.compareAndStoreInstructionStatus(EasyMock.anyLong(),
+				eq(InstructionState.Received), anyObject(InstructionStatus.class))).andReturn(true)
+						.times(instructions.size());
+		expect(instructionDao.compareAndStoreInstructionStatus(EasyMock.anyLong(),
+				eq(InstructionState.Executing), anyObject(InstructionStatus.class))).andReturn(true)
+						.times(instructions.size());
+		EasyMock.replay(instructionDao);
+	}
+
+	@Test
+	public void sameControlInOrderOtherControlsInParallel() throws Exception {
+		// given
+		final BasicInstruction a1 = controlInstruction(1L, "/control/a");
+		final BasicInstruction a2 = controlInstruction(2L, "/control/a");
+		final BasicInstruction b1 = controlInstruction(3L, "/control/b");
+		expectInstructions(Arrays.<Instruction> asList(a1, a2, b1));
+
+		final CountDownLatch bStarted = new CountDownLatch(1);
+		final List<Long> executed = Collections.synchronizedList(new ArrayList<Long>(3));
+		final List<Boolean> a1SawB = new ArrayList<>(1);
+		job.setConcurrency(2);
+		job.setInstructionExecutionService(new InstructionExecutionService() {
+
+			@Override
+			public InstructionStatus executeInstruction(Instruction instruction) {
+				if ( instruction == b1 ) {
+					bStarted.countDown();
+				} else if ( instruction == a1 ) {
+					// a1 can only finish promptly if b1 runs at the same time, on another lane
+					try {
+						a1SawB.add(bStarted.await(5, TimeUnit.SECONDS));
+					} catch ( InterruptedException e ) {
+						a1SawB.add(false);
+					}
+				}
+				executed.add(instruction.getId());
+				return instruction.getStatus().newCopyWithState(InstructionState.Completed);
+			}
+		});
+
+		// when
+		job.execute(null);
+
+		// then
+		assertThat("Other control executed in parallel", a1SawB, contains(true));
+		List<Long> controlA = new ArrayList<>(2);
+		synchronized ( executed ) {
+			assertThat("All executed", executed.size(), equalTo(3));
+			for ( Long id : executed ) {
+				if ( id.longValue() != 3L ) {
+					controlA.add(id);
+				}
+			}
+		}
+		assertThat("Same control executed in order", controlA, contains(1L, 2L));
+	}
+
+	@Test
+	public void otherControlsInParallelWithDefaultService() throws Exception {
+		// given
+		final BasicInstruction a1 = controlInstruction(1L, "/control/a");
+		final BasicInstruction b1 = controlInstruction(2L, "/control/b");
+		expectInstructions(Arrays.<Instruction> asList(a1, b1));
+
+		final CountDownLatch bStarted = new CountDownLatch(1);
+		final List<Boolean> a1SawB = new ArrayList<>(1);
+		DefaultInstructionExecutionService service = new DefaultInstructionExecutionService();
+		service.setHandlers(Arrays.<InstructionHandler> asList(new InstructionHandler() {
+
+			@Override
+			public boolean handlesTopic(String topic) {
+				return TOPIC_SET_CONTROL_PARAMETER.equals(topic);
+			}
+
+			@Override
+			public InstructionState processInstruction(Instruction instruction) {
+				if ( instruction == b1 ) {
+					bStarted.countDown();
+				} else if ( instruction == a1 ) {
+					// only possible if the service does not serialize the lanes
+					try {
+						a1SawB.add(bStarted.await(5, TimeUnit.SECONDS));
+					} catch ( InterruptedException e ) {
+						a1SawB.add(false);
+					}
+				}
+				return InstructionState.Completed;
+			}
+		}));
+		job.setConcurrency(2);
+		job.setInstructionExecutionService(service);
+
+		// when
+		job.execute(null);
+
+		// then
+		assertThat("Other control executed in parallel", a1SawB, contains(true));
+	}
+
+	@Test
+	public void sameControlInOrderWithoutConcurrency() throws Exception {
+		// given
+		final BasicInstruction a1 = controlInstruction(1L, "/control/a");
+		final BasicInstruction b1 = controlInstruction(2L, "/control/b");
+		final BasicInstruction a2 = controlInstruction(3L, "/control/a");
+		expectInstructions(Arrays.<Instruction> asList(a1, b1, a2));
+
+		final List<Long> executed = Collections.synchronizedList(new ArrayList<Long>(3));
+		final List<String> threads = Collections.synchronizedList(new ArrayList<String>(3));
+		job.setInstructionExecutionService(new InstructionExecutionService() {
+
+			@Override
+			public InstructionStatus executeInstruction(Instruction instruction) {
+				executed.add(instruction.getId());
+				threads.add(Thread.currentThread().getName());
+				return instruction.getStatus().newCopyWithState(InstructionState.Completed);
+			}
+		});
+
+		// when
+		job.execute(null);
+
+		// then
+		assertThat("Executed lane by lane", executed, contains(1L, 3L, 2L));
+		String jobThread = Thread.currentThread().getName();
+		assertThat("Executed on job thread", threads, contains(jobThread, jobThread, jobThread));
+	}
+
+}
@@ -0,0 +1,247 @@
+/* ==================================================================
+ * DefaultOperationalModesServiceTests.java - 19/10/2026 4:48:21 PM
+ *
+ * Copyright 2026 SolarNetwork.net Dev Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ * ==================================================================
+ */
+
+package net.solarnetwork.node.runtime.test;
+
+import static java.util.Arrays.asList;
+import static net.solarnetwork.node.runtime.DefaultOperationalModesService.SETTING_OP_MODE;
+import static net.solarnetwork.node.runtime.DefaultOperationalModesService.SETTING_OP_MODE_EXPIRE;
+import static org.easymock.EasyMock.anyLong;
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.capture;
+import static org.easymock.EasyMock.expect;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import org.easymock.Capture;
+import org.easymock.CaptureType;
+import org.easymock.EasyMock;
+import org.joda.time.DateTime;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventAdmin;
+import org.springframework.scheduling.TaskScheduler;
+import net.solarnetwork.node.OperationalModesService;
+import net.solarnetwork.node.dao.SettingDao;
+import net.solarnetwork.node.runtime.DefaultOperationalModesService;
+import net.solarnetwork.node.support.KeyValuePair;
+import net.solarnetwork.util.StaticOptionalService;
+
+/**
+ * Test cases for the {@link DefaultOperationalModesService} class.
+ *
+ * @author matt
+ * @version 1.0
+ */
+public class DefaultOperationalModesServiceTests {
+
+	private SettingDao settingDao;
+	private EventAdmin eventAdmin;
+	private TaskScheduler taskScheduler;
+	private DefaultOperationalModesService service;
+
+	@Before
+	public void setup() {
+		settingDao = EasyMock.createMock(SettingDao.class);
+		eventAdmin = EasyMock.createMock(EventAdmin.class);
+		taskScheduler = EasyMock.createMock(TaskScheduler.class);
+		service = new DefaultOperationalModesService(new StaticOptionalService<SettingDao>(settingDao),
+				new StaticOptionalService<EventAdmin>(eventAdmin));
+	}
+
+	@After
+	public void teardown() {
+		EasyMock.verify(settingDao, eventAdmin, taskScheduler);
+	}
+
+	private void replayAll() {
+		EasyMock.replay(settingDao, eventAdmin, taskScheduler);
+	}
+
+	private static Set<String> modes(String... modes) {
+		return new LinkedHashSet<>(asList(modes));
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Set<String> eventModes(Event event) {
+		assertThat("Event topic", event.getTopic(),
+				equalTo(OperationalModesService.EVENT_TOPIC_OPERATIONAL_MODES_CHANGED));
+		return (Set<String>) event
+				.getProperty(OperationalModesService.EVENT_PARAM_ACTIVE_OPERATIONAL_MODES);
+	}
+
+	@Test
+	public void coldStartLoadsSettingsOnce() {
+		// given
+		final long future = System.currentTimeMillis() + 60000L;
+		expect(settingDao.getSettings(SETTING_OP_MODE))
+				.andReturn(asList(new KeyValuePair("b", "b"), new KeyValuePair("a", "a")));
+		expect(settingDao.getSettings(SETTING_OP_MODE_EXPIRE))
+				.andReturn(asList(new KeyValuePair("b", String.valueOf(future))));
+
+		replayAll();
+
+		// when
+		Set<String> active = service.activeOperationalModes();
+
+		// then
+		assertThat("Active modes sorted", active, contains("a", "b"));
+		assertThat("Mode A active", service.isOperationalModeActive("A"), equalTo(true));
+		assertThat("Mode B active", service.isOperationalModeActive("b"), equalTo(true));
+		assertThat("Mode C not active", service.isOperationalModeActive("c"), equalTo(false));
+		assertThat("Active modes from snapshot", service.activeOperationalModes(), contains("a", "b"));
+	}
+
+	@Test
+	public void enableModes() {
+		// given
+		expect(settingDao.getSettings(SETTING_OP_MODE)).andReturn(Collections.emptyList());
+		settingDao.storeSetting(SETTING_OP_MODE, "foo", "foo");
+		expect(settingDao.deleteSetting(SETTING_OP_MODE_EXPIRE, "foo")).andReturn(false);
+		Capture<Event> eventCaptor = new Capture<>();
+		eventAdmin.postEvent(capture(eventCaptor));
+
+		replayAll();
+
+		// when
+		Set<String> active = service.enableOperationalModes(modes("Foo"));
+
+		// then
+		assertThat("Active modes", active, contains("foo"));
+		assertThat("Event modes", eventModes(eventCaptor.getValue()), contains("foo"));
+		assertThat("Mode active", service.isOperationalModeActive("foo"), equalTo(true));
+		assertThat("Active modes from snapshot", service.activeOperationalModes(), contains("foo"));
+	}
+
+	@Test
+	public void enableModesWithExpiration() {
+		// given
+		final DateTime expire = new DateTime().plusHours(1);
+		expect(settingDao.getSettings(SETTING_OP_MODE))
+				.andReturn(asList(new KeyValuePair("a", "a")));
+		expect(settingDao.getSettings(SETTING_OP_MODE_EXPIRE)).andReturn(Collections.emptyList());
+		settingDao.storeSetting(SETTING_OP_MODE, "foo", "foo");
+		settingDao.storeSetting(SETTING_OP_MODE_EXPIRE, "foo", String.valueOf(expire.getMillis()));
+		Capture<Event> eventCaptor = new Capture<>();
+		eventAdmin.postEvent(capture(eventCaptor));
+
+		replayAll();
+
+		// when
+		Set<String> active = service.enableOperationalModes(modes("foo"), expire);
+
+		// then
+		assertThat("Active modes", active, contains("a", "foo"));
+		assertThat("Event modes", eventModes(eventCaptor.getValue()), contains("a", "foo"));
+	}
+
+	@Test
+	public void disableModes() {
+		// given
+		expect(settingDao.getSettings(SETTING_OP_MODE))
+				.andReturn(asList(new KeyValuePair("a", "a"), new KeyValuePair("b", "b")));
+		expect(settingDao.getSettings(SETTING_OP_MODE_EXPIRE)).andReturn(Collections.emptyList());
+		expect(settingDao.deleteSetting(SETTING_OP_MODE, "a")).andReturn(true);
+		Capture<Event> eventCaptor = new Capture<>();
+		eventAdmin.postEvent(capture(eventCaptor));
+
+		replayAll();
+
+		// when
+		Set<String> active = service.disableOperationalModes(modes("A"));
+
+		// then
+		assertThat("Active modes", active, contains("b"));
+		assertThat("Event modes", eventModes(eventCaptor.getValue()), contains("b"));
+		assertThat("Mode A not active", service.isOperationalModeActive("a"), equalTo(false));
+		assertThat("Mode B active", service.isOperationalModeActive("b"), equalTo(true));
+	}
+
+	@Test
+	public void expiredModeRemovedByAutoExpireTask() {
+		// given
+		final String past = String.valueOf(System.currentTimeMillis() - 1000L);
+		Capture<Runnable> taskCaptor = new Capture<>();
+		expect(taskScheduler.scheduleWithFixedDelay(capture(taskCaptor), anyObject(Date.class),
+				anyLong())).andReturn(null);
+
+		// loaded once on startup, and again by the auto-expire task
+		expect(settingDao.getSettings(SETTING_OP_MODE))
+				.andReturn(asList(new KeyValuePair("a", "a"), new KeyValuePair("b", "b"))).times(2);
+		expect(settingDao.getSettings(SETTING_OP_MODE_EXPIRE))
+				.andReturn(asList(new KeyValuePair("a", past))).times(2);
+
+		// initial active modes event
+		Capture<Event> eventCaptor = new Capture<>(CaptureType.ALL);
+		eventAdmin.postEvent(capture(eventCaptor));
+
+		expect(settingDao.deleteSetting(SETTING_OP_MODE, "a")).andReturn(true);
+		expect(settingDao.deleteSetting(SETTING_OP_MODE_EXPIRE, "a")).andReturn(true);
+
+		// expired modes event
+		eventAdmin.postEvent(capture(eventCaptor));
+
+		replayAll();
+
+		// when
+		service.setTaskScheduler(taskScheduler);
+		service.setStartupDelay(0);
+		service.init();
+
+		// then
+		assertThat("Expired mode not in active modes", service.activeOperationalModes(),
+				contains("b"));
+		assertThat("Expired mode active until auto-expired", service.isOperationalModeActive("a"),
+				equalTo(true));
+
+		taskCaptor.getValue().run();
+
+		assertThat("Expired mode no longer active", service.isOperationalModeActive("a"),
+				equalTo(false));
+		assertThat("Active modes after expiry", service.activeOperationalModes(), contains("b"));
+		assertThat("Event count", eventCaptor.getValues().size(), equalTo(2));
+		assertThat("Initial event modes", eventModes(eventCaptor.getValues().get(0)), contains("b"));
+		assertThat("Expired event modes", eventModes(eventCaptor.getValues().get(1)), contains("b"));
+	}
+
+	@Test
+	public void noSettingDao() {
+		// given
+		service = new DefaultOperationalModesService(new StaticOptionalService<SettingDao>(null),
+				new StaticOptionalService<EventAdmin>(eventAdmin));
+
+		replayAll();
+
+		// then
+		assertThat("No active modes", service.activeOperationalModes(), empty());
+		assertThat("Mode not active", service.isOperationalModeActive("a"), equalTo(false));
+		assertThat("Enable ignored", service.enableOperationalModes(modes("a")), empty());
+	}
+
+}
@@ -0,0 +1,168 @@
+/* ==================================================================
+ * SocketcanCanbusConnectionTests.java - 19/10/2026 12:31:40 PM
+ *
+ * Copyright 2026 SolarNetwork.net Dev Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ * ==================================================================
+ */
+
+package net.solarnetwork.node.io.canbus.socketcan.test;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assume.assumeTrue;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import net.solarnetwork.node.io.canbus.CanbusConnection;
+import net.solarnetwork.node.io.canbus.CanbusFrame;
+import net.solarnetwork.node.io.canbus.CanbusFrameFlag;
+import net.solarnetwork.node.io.canbus.socketcan.SocketcanCanbusConnection;
+
+/**
+ * Test cases for the {@link SocketcanCanbusConnection} class.
+ *
+ * <p>
+ * These tests need a {@literal vcan0} virtual CAN interface and the
+ * {@literal cansend} program from can-utils, and are skipped otherwise. The
+ * interface can be created like this:
+ * </p>
+ *
+ * <pre>
+ * <code>sudo modprobe vcan
+ * sudo ip link add dev vcan0 type vcan
+ * sudo ip link set up vcan0</code>
+ * </pre>
+ *
+ * @author matt
+ * @version 1.0
+ */
+public class SocketcanCanbusConnectionTests {
+
+	private static final String BUS_NAME = "vcan0";
+
+	private SocketcanCanbusConnection conn;
+
+	@Before
+	public void setup() throws IOException {
+		assumeTrue("vcan0 interface available", new File("/sys/class/net/" + BUS_NAME).exists());
+		assumeTrue("cansend available", canSend("0#"));
+		conn = new SocketcanCanbusConnection(null, BUS_NAME);
+		conn.open();
+	}
+
+	@After
+	public void teardown() throws IOException {
+		if ( conn != null ) {
+			conn.close();
+		}
+	}
+
+	private static boolean canSend(String frame) {
+		try {
+			Process p = new ProcessBuilder("cansend", BUS_NAME, frame).inheritIO().start();
+			return p.waitFor(5, TimeUnit.SECONDS) && p.exitValue() == 0;
+		} catch ( IOException | InterruptedException e ) {
+			return false;
+		}
+	}
+
+	private static void send(String frame) {
+		assertThat("Sent " + frame, canSend(frame), equalTo(true));
+	}
+
+	@Test
+	public void subscribe() throws Exception {
+		// GIVEN
+		final List<CanbusFrame> frames = new ArrayList<>();
+		final CountDownLatch latch = new CountDownLatch(2);
+		conn.subscribe(0x123, false, null, CanbusConnection.DATA_FILTER_NONE, f -> {
+			frames.add(f);
+			latch.countDown();
+		});
+		conn.subscribe(0x18FF50E5, false, null, CanbusConnection.DATA_FILTER_NONE, f -> {
+			frames.add(f);
+			latch.countDown();
+		});
+
+		// WHEN
+		send("124#01");
+		send("123#11223344");
+		send("18FF50E5#AABB");
+
+		// THEN
+		assertThat("Frames received", latch.await(5, TimeUnit.SECONDS), equalTo(true));
+		assertThat("Unsubscribed address not received", frames, hasSize(2));
+		assertThat("Standard address", frames.get(0).getAddress(), equalTo(0x123));
+		assertThat("Standard data",
+				Arrays.equals(frames.get(0).getData(), new byte[] { 0x11, 0x22, 0x33, 0x44 }),
+				equalTo(true));
+		assertThat("Extended address", frames.get(1).getAddress(), equalTo(0x18FF50E5));
+		assertThat("Extended flag", frames.get(1).isFlagged(CanbusFrameFlag.ExtendedFormat),
+				equalTo(true));
+	}
+
+	@Test
+	public void dataFilter() throws Exception {
+		// GIVEN
+		final List<CanbusFrame> frames = new ArrayList<>();
+		final CountDownLatch latch = new CountDownLatch(2);
+		conn.subscribe(0x123, false, null, 0xFF00000000000000L, f -> {
+			frames.add(f);
+			latch.countDown();
+		});
+
+		// WHEN
+		send("123#0101");
+		send("123#0102");
+		send("123#0202");
+
+		// THEN
+		assertThat("Frames received", latch.await(5, TimeUnit.SECONDS), equalTo(true));
+		assertThat("Unchanged filtered data not received", frames, hasSize(2));
+		assertThat("Second frame data", frames.get(1).getData()[0], equalTo((byte) 2));
+	}
+
+	@Test
+	public void monitor() throws Exception {
+		// GIVEN
+		final List<CanbusFrame> frames = new ArrayList<>();
+		final CountDownLatch latch = new CountDownLatch(2);
+		conn.monitor(f -> {
+			frames.add(f);
+			latch.countDown();
+		});
+
+		// WHEN
+		send("1#01");
+		send("2#02");
+
+		// THEN
+		assertThat("Frames received", latch.await(5, TimeUnit.SECONDS), equalTo(true));
+		assertThat("Monitoring", conn.isMonitoring(), equalTo(true));
+		assertThat("Monitored frames", frames, hasSize(2));
+	}
+
+}
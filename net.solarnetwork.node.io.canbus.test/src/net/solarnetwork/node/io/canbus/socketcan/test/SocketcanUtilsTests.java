@@ -0,0 +1,153 @@
+/* ==================================================================
+ * SocketcanUtilsTests.java - 19/10/2026 12:06:14 PM
+ *
+ * Copyright 2026 SolarNetwork.net Dev Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ * ==================================================================
+ */
+
+package net.solarnetwork.node.io.canbus.socketcan.test;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+import net.solarnetwork.node.io.canbus.CanbusConnection;
+import net.solarnetwork.node.io.canbus.CanbusFrame;
+import net.solarnetwork.node.io.canbus.CanbusFrameFlag;
+import net.solarnetwork.node.io.canbus.socketcan.SocketcanUtils;
+import net.solarnetwork.node.io.canbus.support.CanbusSubscription;
+
+/**
+ * Test cases for the {@link SocketcanUtils} class.
+ *
+ * @author matt
+ * @version 1.0
+ */
+public class SocketcanUtilsTests {
+
+	private static CanbusSubscription sub(int address, boolean forceExtended) {
+		return new CanbusSubscription(address, forceExtended, null, CanbusConnection.DATA_FILTER_NONE,
+				null);
+	}
+
+	@Test
+	public void encodeFilters_empty() {
+		// WHEN
+		byte[] result = SocketcanUtils.encodeFilters(Collections.emptyList(), ByteOrder.BIG_ENDIAN);
+
+		// THEN
+		assertThat("No filters", result.length, equalTo(0));
+	}
+
+	@Test
+	public void encodeFilters() {
+		// WHEN
+		byte[] result = SocketcanUtils.encodeFilters(
+				asList(sub(0x123, false), sub(0x18FF50E5, false), sub(0x7, true)),
+				ByteOrder.LITTLE_ENDIAN);
+
+		// THEN
+		ByteBuffer buf = ByteBuffer.wrap(result).order(ByteOrder.LITTLE_ENDIAN);
+		assertThat("Filter count", result.length, equalTo(3 * SocketcanUtils.CAN_FILTER_SIZE));
+		assertThat("Standard ID", buf.getInt(), equalTo(0x123));
+		assertThat("Standard mask", buf.getInt(), equalTo(0xC00007FF));
+		assertThat("Extended ID", buf.getInt(), equalTo(0x98FF50E5));
+		assertThat("Extended mask", buf.getInt(), equalTo(0xDFFFFFFF));
+		assertThat("Forced extended ID", buf.getInt(), equalTo(0x80000007));
+		assertThat("Forced extended mask", buf.getInt(), equalTo(0xDFFFFFFF));
+	}
+
+	@Test
+	public void encodeFilters_tooMany() {
+		// GIVEN
+		List<CanbusSubscription> subs = new ArrayList<>();
+		for ( int i = 0; i <= SocketcanUtils.CAN_RAW_FILTER_MAX; i++ ) {
+			subs.add(sub(i, false));
+		}
+
+		// WHEN
+		byte[] result = SocketcanUtils.encodeFilters(subs, ByteOrder.BIG_ENDIAN);
+
+		// THEN
+		assertThat("Accept all filter", Arrays.equals(result, new byte[8]), equalTo(true));
+	}
+
+	@Test
+	public void encodeSocketAddress() {
+		// WHEN
+		byte[] result = SocketcanUtils.encodeSocketAddress(3, ByteOrder.LITTLE_ENDIAN);
+
+		// THEN
+		assertThat("Address", Arrays.equals(result,
+				new byte[] { 29, 0, 0, 0, 3, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0 }), equalTo(true));
+	}
+
+	@Test
+	public void encodeTimeval() {
+		// WHEN
+		byte[] result64 = SocketcanUtils.encodeTimeval(1500L, 8, ByteOrder.BIG_ENDIAN);
+		byte[] result32 = SocketcanUtils.encodeTimeval(1500L, 4, ByteOrder.BIG_ENDIAN);
+
+		// THEN
+		ByteBuffer buf = ByteBuffer.wrap(result64);
+		assertThat("64-bit length", result64.length, equalTo(16));
+		assertThat("64-bit seconds", buf.getLong(), equalTo(1L));
+		assertThat("64-bit microseconds", buf.getLong(), equalTo(500000L));
+		buf = ByteBuffer.wrap(result32);
+		assertThat("32-bit length", result32.length, equalTo(8));
+		assertThat("32-bit seconds", buf.getInt(), equalTo(1));
+		assertThat("32-bit microseconds", buf.getInt(), equalTo(500000));
+	}
+
+	@Test
+	public void decodeFrame() {
+		// GIVEN
+		byte[] buf = new byte[] { 0x23, 0x01, 0, 0, 3, 0, 0, 0, 0x11, 0x22, 0x33, 0, 0, 0, 0, 0 };
+
+		// WHEN
+		CanbusFrame f = SocketcanUtils.decodeFrame(buf, ByteOrder.LITTLE_ENDIAN);
+
+		// THEN
+		assertThat("Address", f.getAddress(), equalTo(0x123));
+		assertThat("Standard", f.isFlagged(CanbusFrameFlag.ExtendedFormat), equalTo(false));
+		assertThat("Data", Arrays.equals(f.getData(), new byte[] { 0x11, 0x22, 0x33 }),
+				equalTo(true));
+	}
+
+	@Test
+	public void decodeFrame_extended() {
+		// GIVEN
+		byte[] buf = new byte[] { (byte) 0x98, (byte) 0xFF, 0x50, (byte) 0xE5, 8, 0, 0, 0, 1, 2, 3, 4,
+				5, 6, 7, 8 };
+
+		// WHEN
+		CanbusFrame f = SocketcanUtils.decodeFrame(buf, ByteOrder.BIG_ENDIAN);
+
+		// THEN
+		assertThat("Address", f.getAddress(), equalTo(0x18FF50E5));
+		assertThat("Extended", f.isFlagged(CanbusFrameFlag.ExtendedFormat), equalTo(true));
+		assertThat("Data length", f.getDataLength(), equalTo(8));
+	}
+
+}
@@ -40,6 +40,7 @@ import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
@@ -66,7 +67,7 @@ import net.solarnetwork.node.io.canbus.socketcand.msg.UnsubscribeMessageImpl;
  * Test cases for the {@link SocketcandCanbusConnection} class.
  * 
  * @author matt
- * @version 1.0
+ * @version 1.1
  */
 public class SocketcandCanbusConnectionTests {
 
@@ -368,4 +369,42 @@ public class SocketcandCanbusConnectionTests {
 						new BasicMessage(MessageType.Echo)));
 	}
 
+	@Test
+	public void subscribe_slowListenerDoesNotDelayOthers() throws Exception {
+		// GIVEN
+		expect(socketProvider.createCanbusSocket()).andReturn(socket);
+
+		final CountDownLatch slowReleased = new CountDownLatch(1);
+		final CountDownLatch fastReceived = new CountDownLatch(1);
+		CanbusFrameListener slowListener = f -> {
+			try {
+				slowReleased.await(5, TimeUnit.SECONDS);
+			} catch ( InterruptedException e ) {
+				// ignore
+			}
+		};
+		CanbusFrameListener fastListener = f -> fastReceived.countDown();
+
+		// WHEN
+		replayAll();
+		boolean received;
+		try (SocketcandCanbusConnection conn = new SocketcandCanbusConnection(socketProvider, executor,
+				TEST_HOST, TEST_PORT, TEST_BUS_NAME)) {
+			conn.open();
+			conn.subscribe(1, false, Duration.ZERO, DATA_FILTER_NONE, slowListener);
+			conn.subscribe(0x18FF50E5, true, Duration.ZERO, DATA_FILTER_NONE, fastListener);
+
+			// mock frame messages from the server, first to the slow listener
+			socket.respondMessage(new FrameMessageImpl(asList("1 23.424242 11 22 33 44".split(" "))));
+			socket.respondMessage(
+					new FrameMessageImpl(asList("18FF50E5 23.424243 11 22 33 44".split(" "))));
+
+			received = fastReceived.await(2, TimeUnit.SECONDS);
+			slowReleased.countDown();
+		}
+
+		// THEN
+		assertThat("Frame delivered while other listener busy", received, equalTo(true));
+	}
+
 }
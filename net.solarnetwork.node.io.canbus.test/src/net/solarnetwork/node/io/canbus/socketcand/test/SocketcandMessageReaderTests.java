@@ -0,0 +1,261 @@
+/* ==================================================================
+ * SocketcandMessageReaderTests.java - 19/10/2026 12:31:07 AM
+ *
+ * Copyright 2026 SolarNetwork.net Dev Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ * ==================================================================
+ */
+
+package net.solarnetwork.node.io.canbus.socketcand.test;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import net.solarnetwork.node.io.canbus.CanbusFrameFlag;
+import net.solarnetwork.node.io.canbus.socketcand.FrameMessage;
+import net.solarnetwork.node.io.canbus.socketcand.Message;
+import net.solarnetwork.node.io.canbus.socketcand.MessageType;
+import net.solarnetwork.node.io.canbus.socketcand.SocketcandMessageReader;
+import net.solarnetwork.node.io.canbus.socketcand.SocketcandUtils;
+import net.solarnetwork.node.io.canbus.socketcand.msg.CompactFrameMessage;
+import net.solarnetwork.node.io.canbus.socketcand.msg.FrameMessageImpl;
+
+/**
+ * Test cases for the {@link SocketcandMessageReader} class.
+ *
+ * @author matt
+ * @version 1.0
+ */
+public class SocketcandMessageReaderTests {
+
+	private static final Logger log = LoggerFactory.getLogger(SocketcandMessageReaderTests.class);
+
+	private static InputStream stream(String s) {
+		return new ByteArrayInputStream(s.getBytes(StandardCharsets.US_ASCII));
+	}
+
+	@Test
+	public void readMessage_hi() throws IOException {
+		// GIVEN
+		SocketcandMessageReader reader = new SocketcandMessageReader();
+
+		// WHEN
+		Message m = reader.readMessage(stream("< hi >"));
+
+		// THEN
+		assertThat("Message type", m.getType(), equalTo(MessageType.Hi));
+		assertThat("Message arguments", m.getArguments(), nullValue());
+	}
+
+	@Test
+	public void readMessage_frame() throws IOException {
+		// GIVEN
+		SocketcandMessageReader reader = new SocketcandMessageReader();
+
+		// WHEN
+		Message m = reader.readMessage(stream("< frame 123 23.424242 11 22 33 44 >"));
+
+		// THEN
+		assertThat("Message is a FrameMessage", m, instanceOf(FrameMessage.class));
+		FrameMessage fm = m.asType(FrameMessage.class);
+		assertThat("Address", fm.getAddress(), equalTo(0x123));
+		assertThat("Extended", fm.isFlagged(CanbusFrameFlag.ExtendedFormat), equalTo(false));
+		assertThat("Time", fm.getFractionalSeconds(), equalTo(new BigDecimal("23.424242")));
+		assertThat("Data", Arrays.equals(fm.getData(), new byte[] { 0x11, 0x22, 0x33, 0x44 }),
+				equalTo(true));
+		assertThat("Arguments", fm.getArguments(),
+				contains("123 23.424242 11 22 33 44".split(" ")));
+	}
+
+	@Test
+	public void readMessage_frameEpochSeconds() throws IOException {
+		// GIVEN
+		final String msg = "< frame 123 1760000000.123456 11 22 >";
+		SocketcandMessageReader reader = new SocketcandMessageReader();
+		FrameMessage expected = SocketcandUtils
+				.readMessage(new StringReader(msg), new char[64]).asType(FrameMessage.class);
+
+		// WHEN
+		Message m = reader.readMessage(stream(msg));
+
+		// THEN
+		assertThat("Parsed by fast path", m, instanceOf(CompactFrameMessage.class));
+		FrameMessage fm = m.asType(FrameMessage.class);
+		assertThat("Baseline parsed as FrameMessageImpl", expected,
+				instanceOf(FrameMessageImpl.class));
+		assertThat("Address", fm.getAddress(), equalTo(expected.getAddress()));
+		assertThat("Seconds", fm.getSeconds(), equalTo(1760000000));
+		assertThat("Seconds same as baseline", fm.getSeconds(), equalTo(expected.getSeconds()));
+		assertThat("Microseconds same as baseline", fm.getMicroseconds(),
+				equalTo(expected.getMicroseconds()));
+		assertThat("Time", fm.getFractionalSeconds(),
+				equalTo(new BigDecimal("1760000000.123456")));
+		assertThat("Data same as baseline", Arrays.equals(fm.getData(), expected.getData()),
+				equalTo(true));
+		assertThat("Arguments same as baseline", fm.getArguments(),
+				equalTo(expected.getArguments()));
+	}
+
+	@Test
+	public void readMessage_frameExtendedNoData() throws IOException {
+		// GIVEN
+		SocketcandMessageReader reader = new SocketcandMessageReader();
+
+		// WHEN
+		Message m = reader.readMessage(stream("< frame 18FF50E5 1.0 >"));
+
+		// THEN
+		FrameMessage fm = m.asType(FrameMessage.class);
+		assertThat("Address", fm.getAddress(), equalTo(0x18FF50E5));
+		assertThat("Extended", fm.isFlagged(CanbusFrameFlag.ExtendedFormat), equalTo(true));
+		assertThat("Seconds", fm.getSeconds(), equalTo(1));
+		assertThat("Microseconds", fm.getMicroseconds(), equalTo(0));
+		assertThat("Data length", fm.getDataLength(), equalTo(0));
+	}
+
+	@Test
+	public void readMessage_sequence() throws IOException {
+		// GIVEN
+		SocketcandMessageReader reader = new SocketcandMessageReader();
+		InputStream in = stream("< hi >< ok >junk< frame 1 2.000003 FF >< echo >");
+
+		// WHEN
+		Message m1 = reader.readMessage(in);
+		Message m2 = reader.readMessage(in);
+		Message m3 = reader.readMessage(in);
+		Message m4 = reader.readMessage(in);
+		Message m5 = reader.readMessage(in);
+
+		// THEN
+		assertThat("Message 1", m1.getType(), equalTo(MessageType.Hi));
+		assertThat("Message 2", m2.getType(), equalTo(MessageType.Ok));
+		assertThat("Message 3 frame data", m3.asType(FrameMessage.class).getData()[0],
+				equalTo((byte) 0xFF));
+		assertThat("Message 3 frame microseconds", m3.asType(FrameMessage.class).getMicroseconds(),
+				equalTo(3));
+		assertThat("Message 4", m4.getType(), equalTo(MessageType.Echo));
+		assertThat("End of stream", m5, nullValue());
+	}
+
+	@Test
+	public void readMessage_splitReads() throws IOException {
+		// GIVEN
+		SocketcandMessageReader reader = new SocketcandMessageReader(32);
+		InputStream in = new FilterInputStream(stream("< hi >< frame 7FF 1.5 01 02 >")) {
+
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException {
+				// return one byte at a time
+				return super.read(b, off, 1);
+			}
+		};
+
+		// WHEN
+		Message m1 = reader.readMessage(in);
+		Message m2 = reader.readMessage(in);
+
+		// THEN
+		assertThat("Message 1", m1.getType(), equalTo(MessageType.Hi));
+		FrameMessage fm = m2.asType(FrameMessage.class);
+		assertThat("Frame address", fm.getAddress(), equalTo(0x7FF));
+		assertThat("Frame data", Arrays.equals(fm.getData(), new byte[] { 1, 2 }), equalTo(true));
+	}
+
+	@Test(expected = IOException.class)
+	public void readMessage_bufferOverflow() throws IOException {
+		// GIVEN
+		SocketcandMessageReader reader = new SocketcandMessageReader(8);
+
+		// WHEN
+		reader.readMessage(stream("< hi ;adsf;ajsdfkl;ajsdkl;fjakls;dfjakls >"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void readMessage_frameInvalidAddress() throws IOException {
+		// GIVEN
+		SocketcandMessageReader reader = new SocketcandMessageReader();
+
+		// WHEN
+		reader.readMessage(stream("< frame XYZ 1.0 01 >"));
+	}
+
+	@Test
+	public void readMessage_sameAsReader() throws IOException {
+		// GIVEN
+		final int count = 20000;
+		StringBuilder buf = new StringBuilder();
+		for ( int i = 0; i < count; i++ ) {
+			buf.append(String.format("< frame %X %d.%06d %02X 22 33 44 55 66 77 88 >", i % 0x800, i,
+					i % 1000000, i & 0xFF));
+		}
+		final byte[] data = buf.toString().getBytes(StandardCharsets.US_ASCII);
+
+		// WHEN
+		final long start = System.nanoTime();
+		Reader r = new InputStreamReader(new ByteArrayInputStream(data), StandardCharsets.US_ASCII);
+		char[] charBuffer = new char[4096];
+		FrameMessage[] expected = new FrameMessage[count];
+		for ( int i = 0; i < count; i++ ) {
+			expected[i] = SocketcandUtils.readMessage(r, charBuffer).asType(FrameMessage.class);
+			expected[i].getData();
+		}
+		final long mid = System.nanoTime();
+		InputStream in = new ByteArrayInputStream(data);
+		SocketcandMessageReader reader = new SocketcandMessageReader();
+		FrameMessage[] actual = new FrameMessage[count];
+		for ( int i = 0; i < count; i++ ) {
+			actual[i] = reader.readMessage(in).asType(FrameMessage.class);
+			actual[i].getData();
+		}
+		final long end = System.nanoTime();
+		log.info("Read {} frames via Reader in {}ms, via SocketcandMessageReader in {}ms", count,
+				(mid - start) / 1000000, (end - mid) / 1000000);
+
+		// THEN
+		assertThat("End of stream", reader.readMessage(in), nullValue());
+		for ( int i = 0; i < count; i++ ) {
+			assertThat("Frame " + i, actual[i], notNullValue());
+			assertThat("Frame " + i + " address", actual[i].getAddress(),
+					equalTo(expected[i].getAddress()));
+			assertThat("Frame " + i + " seconds", actual[i].getSeconds(),
+					equalTo(expected[i].getSeconds()));
+			assertThat("Frame " + i + " microseconds", actual[i].getMicroseconds(),
+					equalTo(expected[i].getMicroseconds()));
+			assertThat("Frame " + i + " data",
+					Arrays.equals(actual[i].getData(), expected[i].getData()), equalTo(true));
+			assertThat("Frame " + i + " arguments", actual[i].getArguments(),
+					equalTo(expected[i].getArguments()));
+		}
+	}
+
+}
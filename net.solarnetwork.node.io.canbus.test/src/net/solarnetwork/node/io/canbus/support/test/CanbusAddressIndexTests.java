@@ -0,0 +1,132 @@
+/* ==================================================================
+ * CanbusAddressIndexTests.java - 18/10/2026 11:08:52 PM
+ *
+ * Copyright 2026 SolarNetwork.net Dev Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ * ==================================================================
+ */
+
+package net.solarnetwork.node.io.canbus.support.test;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+import net.solarnetwork.node.io.canbus.Addressed;
+import net.solarnetwork.node.io.canbus.support.CanbusAddressIndex;
+
+/**
+ * Test cases for the {@link CanbusAddressIndex} class.
+ *
+ * @author matt
+ * @version 1.0
+ */
+public class CanbusAddressIndexTests {
+
+	@Test
+	public void empty() {
+		// GIVEN
+		CanbusAddressIndex<String> index = CanbusAddressIndex.empty();
+
+		// THEN
+		assertThat("Size", index.size(), equalTo(0));
+		assertThat("Standard address", index.get(1), nullValue());
+		assertThat("Extended address", index.get(0x18FF50E5), nullValue());
+	}
+
+	@Test
+	public void standardAndExtended() {
+		// GIVEN
+		CanbusAddressIndex<String> index = CanbusAddressIndex.<String> empty().withValue(1, "a")
+				.withValue(Addressed.MAX_STANDARD_ADDRESS, "b").withValue(0x18FF50E5, "c")
+				.withValue(Addressed.MAX_EXTENDED_ADDRESS, "d");
+
+		// THEN
+		assertThat("Size", index.size(), equalTo(4));
+		assertThat("Standard address", index.get(1), equalTo("a"));
+		assertThat("Max standard address", index.get(Addressed.MAX_STANDARD_ADDRESS), equalTo("b"));
+		assertThat("Extended address", index.get(0x18FF50E5), equalTo("c"));
+		assertThat("Max extended address", index.get(Addressed.MAX_EXTENDED_ADDRESS),
+				equalTo("d"));
+		assertThat("Other address", index.get(2), nullValue());
+		assertThat("Other extended address", index.get(0x18FF50E6), nullValue());
+		List<String> values = new ArrayList<>();
+		index.forEach(values::add);
+		assertThat("All values", values, containsInAnyOrder("a", "b", "c", "d"));
+	}
+
+	@Test
+	public void copyOnWrite() {
+		// GIVEN
+		CanbusAddressIndex<String> index = CanbusAddressIndex.<String> empty().withValue(1, "a")
+				.withValue(0x18FF50E5, "b");
+
+		// WHEN
+		CanbusAddressIndex<String> index2 = index.withValue(1, "c").withoutValue(0x18FF50E5);
+
+		// THEN
+		assertThat("Original standard value unchanged", index.get(1), equalTo("a"));
+		assertThat("Original extended value unchanged", index.get(0x18FF50E5), equalTo("b"));
+		assertThat("Original size", index.size(), equalTo(2));
+		assertThat("Standard value replaced", index2.get(1), equalTo("c"));
+		assertThat("Extended value removed", index2.get(0x18FF50E5), nullValue());
+		assertThat("New size", index2.size(), equalTo(1));
+		assertThat("Removing missing address returns same index", index2.withoutValue(2),
+				sameInstance(index2));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void invalidAddress() {
+		CanbusAddressIndex.<String> empty().withValue(Addressed.MAX_EXTENDED_ADDRESS + 1, "a");
+	}
+
+	@Test
+	public void manyExtended() {
+		// GIVEN
+		Random rng = new Random(123);
+		Map<Integer, Integer> expected = new HashMap<>();
+		CanbusAddressIndex<Integer> index = CanbusAddressIndex.empty();
+
+		// WHEN
+		for ( int i = 0; i < 500; i++ ) {
+			int addr = rng.nextInt(Addressed.MAX_EXTENDED_ADDRESS + 1);
+			expected.put(addr, i);
+			index = index.withValue(addr, i);
+		}
+		int i = 0;
+		for ( Integer addr : new ArrayList<>(expected.keySet()) ) {
+			if ( i++ % 3 == 0 ) {
+				expected.remove(addr);
+				index = index.withoutValue(addr);
+			}
+		}
+
+		// THEN
+		assertThat("Size", index.size(), equalTo(expected.size()));
+		for ( Map.Entry<Integer, Integer> e : expected.entrySet() ) {
+			assertThat("Value for " + e.getKey(), index.get(e.getKey()), equalTo(e.getValue()));
+		}
+	}
+
+}
@@ -0,0 +1,132 @@
+/* ==================================================================
+ * CanbusSubscriptionFilterTests.java - 19/10/2026 11:48:31 AM
+ *
+ * Copyright 2026 SolarNetwork.net Dev Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ * ==================================================================
+ */
+
+package net.solarnetwork.node.io.canbus.support.test;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import net.solarnetwork.node.io.canbus.CanbusConnection;
+import net.solarnetwork.node.io.canbus.CanbusFrame;
+import net.solarnetwork.node.io.canbus.cannelloni.BasicCanbusFrame;
+import net.solarnetwork.node.io.canbus.support.CanbusSubscription;
+import net.solarnetwork.node.io.canbus.support.CanbusSubscriptionFilter;
+
+/**
+ * Test cases for the {@link CanbusSubscriptionFilter} class.
+ *
+ * @author matt
+ * @version 1.0
+ */
+public class CanbusSubscriptionFilterTests {
+
+	private static CanbusFrame frame(int... data) {
+		byte[] d = new byte[data.length];
+		for ( int i = 0; i < data.length; i++ ) {
+			d[i] = (byte) data[i];
+		}
+		return new BasicCanbusFrame(1, (byte) 0, d);
+	}
+
+	@Test
+	public void noFilter() {
+		// GIVEN
+		CanbusSubscriptionFilter filter = new CanbusSubscriptionFilter(
+				new CanbusSubscription(1, false, null, CanbusConnection.DATA_FILTER_NONE, null));
+
+		// THEN
+		assertThat("Not filtering", filter.isFiltering(), equalTo(false));
+		assertThat("Frame 1 accepted", filter.accept(frame(1), 0), equalTo(true));
+		assertThat("Same frame accepted", filter.accept(frame(1), 0), equalTo(true));
+	}
+
+	@Test
+	public void limit() {
+		// GIVEN
+		CanbusSubscriptionFilter filter = new CanbusSubscriptionFilter(new CanbusSubscription(1,
+				false, Duration.ofSeconds(1), CanbusConnection.DATA_FILTER_NONE, null));
+		final long start = 1000L;
+		final long second = TimeUnit.SECONDS.toNanos(1);
+
+		// THEN
+		assertThat("Filtering", filter.isFiltering(), equalTo(true));
+		assertThat("First frame accepted", filter.accept(frame(1), start), equalTo(true));
+		assertThat("Frame within limit rejected", filter.accept(frame(2), start + second - 1),
+				equalTo(false));
+		assertThat("Frame after limit accepted", filter.accept(frame(3), start + second),
+				equalTo(true));
+		assertThat("Limit from last accepted frame", filter.accept(frame(4), start + second + 1),
+				equalTo(false));
+	}
+
+	@Test
+	public void dataFilter() {
+		// GIVEN
+		CanbusSubscriptionFilter filter = new CanbusSubscriptionFilter(
+				new CanbusSubscription(1, false, null, 0xFF00000000000000L, null));
+
+		// THEN
+		assertThat("First frame accepted", filter.accept(frame(1, 2), 0), equalTo(true));
+		assertThat("Unfiltered byte change rejected", filter.accept(frame(1, 3), 0),
+				equalTo(false));
+		assertThat("Filtered byte change accepted", filter.accept(frame(2, 3), 0), equalTo(true));
+		assertThat("Length change accepted", filter.accept(frame(2), 0), equalTo(true));
+		assertThat("No change rejected", filter.accept(frame(2), 0), equalTo(false));
+	}
+
+	@Test
+	public void limitDoesNotHideChange() {
+		// GIVEN
+		CanbusSubscriptionFilter filter = new CanbusSubscriptionFilter(
+				new CanbusSubscription(1, false, Duration.ofNanos(10), 0xFFL << 56, null));
+
+		// THEN
+		assertThat("First frame accepted", filter.accept(frame(1), 0), equalTo(true));
+		assertThat("Change within limit rejected", filter.accept(frame(2), 5), equalTo(false));
+		assertThat("Change accepted after limit", filter.accept(frame(2), 10), equalTo(true));
+	}
+
+	@Test
+	public void multiplex() {
+		// GIVEN
+		final long idMask = 0xFF00000000000000L;
+		CanbusSubscriptionFilter filter = new CanbusSubscriptionFilter(new CanbusSubscription(1,
+				false, null, idMask, asList(0x01FF000000000000L, 0x0200FF0000000000L), null));
+
+		// THEN
+		assertThat("Filtering", filter.isFiltering(), equalTo(true));
+		assertThat("Mux 1 accepted", filter.accept(frame(1, 5, 5), 0), equalTo(true));
+		assertThat("Mux 2 accepted", filter.accept(frame(2, 5, 5), 0), equalTo(true));
+		assertThat("Unknown mux rejected", filter.accept(frame(3, 5, 5), 0), equalTo(false));
+		assertThat("Mux 1 unfiltered change rejected", filter.accept(frame(1, 5, 6), 0),
+				equalTo(false));
+		assertThat("Mux 1 filtered change accepted", filter.accept(frame(1, 6, 6), 0),
+				equalTo(true));
+		assertThat("Mux 2 unchanged rejected", filter.accept(frame(2, 6, 5), 0), equalTo(false));
+		assertThat("Mux 2 filtered change accepted", filter.accept(frame(2, 6, 6), 0),
+				equalTo(true));
+	}
+
+}
@@ -45,7 +45,7 @@ import net.solarnetwork.util.ByteUtils;
  * </p>
  * 
  * @author matt
- * @version 1.0
+ * @version 1.1
  */
 public class CanbusData implements DataAccessor {
 
@@ -264,12 +264,44 @@ public class CanbusData implements DataAccessor {
 		if ( type == null ) {
 			type = BitDataType.UInt32;
 		}
-		final int addr = ref.getAddress();
+		final CanbusFrame message = dataFrames.get(ref.getAddress());
+		return numberValue(ref, type, (message != null ? message.getData() : null));
+	}
+
+	/**
+	 * Get a number value from a reference, using the data of a single frame.
+	 * 
+	 * <p>
+	 * This can be used to decode the signals of a frame as it is received,
+	 * without saving the frame first. The address of {@code ref} is not
+	 * checked against the frame.
+	 * </p>
+	 * 
+	 * @param ref
+	 *        the reference to get the number value for
+	 * @param frame
+	 *        the frame to get the data from
+	 * @return the value, or {@literal null} if {@code ref} or {@code frame} is
+	 *         {@literal null}
+	 * @throws IllegalArgumentException
+	 *         if the reference data type is not numeric
+	 * @since 1.1
+	 */
+	public static Number getNumber(CanbusSignalReference ref, CanbusFrame frame) {
+		if ( ref == null ) {
+			return null;
+		}
+		BitDataType type = ref.getDataType();
+		if ( type == null ) {
+			type = BitDataType.UInt32;
+		}
+		return numberValue(ref, type, (frame != null ? frame.getData() : null));
+	}
+
+	private static Number numberValue(CanbusSignalReference ref, BitDataType type, byte[] data) {
 		final int bitOffset = ref.getBitOffset();
 		final int bitLength = ref.getBitLength();
 		final ByteOrdering ordering = ref.getByteOrdering();
-		final CanbusFrame message = dataFrames.get(addr);
-		final byte[] data = (message != null ? message.getData() : null);
 		if ( bitLength % 8 != 0 ) {
 			throw new UnsupportedOperationException("Only byte-aligned number values are supported.");
 		}
@@ -0,0 +1,499 @@
+/* ==================================================================
+ * SocketcanCanbusConnection.java - 19/10/2026 10:38:16 AM
+ *
+ * Copyright 2026 SolarNetwork.net Dev Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ * ==================================================================
+ */
+
+package net.solarnetwork.node.io.canbus.socketcan;
+
+import static net.solarnetwork.node.io.canbus.socketcan.SocketcanUtils.CAN_FRAME_SIZE;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import com.sun.jna.Native;
+import com.sun.jna.NativeLong;
+import net.solarnetwork.node.io.canbus.CanbusConnection;
+import net.solarnetwork.node.io.canbus.CanbusFrame;
+import net.solarnetwork.node.io.canbus.CanbusFrameListener;
+import net.solarnetwork.node.io.canbus.support.CanbusAddressIndex;
+import net.solarnetwork.node.io.canbus.support.CanbusFrameDispatcher;
+import net.solarnetwork.node.io.canbus.support.CanbusSubscription;
+import net.solarnetwork.node.io.canbus.support.CanbusSubscriptionFilter;
+
+/**
+ * Implementation of {@link CanbusConnection} using a Linux SocketCAN raw
+ * socket.
+ *
+ * <p>
+ * The bus name is the name of the CAN network interface, for example
+ * {@literal can0}. Frames are read from the kernel directly, without a
+ * socketcand server in between. Kernel receive filters are maintained for the
+ * subscribed addresses so the kernel only delivers frames for those addresses
+ * to this connection. The subscription limits and data filters are then
+ * applied by a {@link CanbusSubscriptionFilter} and frames are delivered to
+ * listeners by a {@link CanbusFrameDispatcher}, as with the socketcand
+ * connection.
+ * </p>
+ *
+ * <p>
+ * The native C library is accessed via JNA, which must be available at
+ * runtime. If it is not, {@link #open()} will throw an {@link IOException}.
+ * </p>
+ *
+ * @author matt
+ * @version 1.0
+ * @see <a href=
+ *      "https://www.kernel.org/doc/Documentation/networking/can.txt">SocketCAN</a>
+ */
+public class SocketcanCanbusConnection implements CanbusConnection, Runnable {
+
+	/** The default value for the {@code readTimeout} property. */
+	public static final long DEFAULT_READ_TIMEOUT_MS = 1000L;
+
+	/** The default value for the {@code listenerQueueSize} property. */
+	public static final int DEFAULT_LISTENER_QUEUE_SIZE = 256;
+
+	/** The maximum time to wait for queued frames to be delivered on close. */
+	private static final long CLOSE_DISPATCH_WAIT_MS = 1000L;
+
+	private static final int EINTR = 4;
+	private static final int EAGAIN = 11;
+
+	private static final AtomicInteger THREAD_COUNTER = new AtomicInteger(0);
+	private static final Logger log = LoggerFactory.getLogger(SocketcanCanbusConnection.class);
+
+	private final Object subscriptionLock = new Object();
+	private volatile CanbusAddressIndex<SubscriptionHandler> subscriptions = CanbusAddressIndex
+			.empty();
+	private volatile CanbusFrameDispatcher monitorDispatcher;
+
+	private final Executor executor;
+	private final String busName;
+	private long readTimeout = DEFAULT_READ_TIMEOUT_MS;
+	private int listenerQueueSize = DEFAULT_LISTENER_QUEUE_SIZE;
+
+	private SocketcanLibrary lib;
+	private volatile int fd = -1;
+	private Thread readerThread;
+	private volatile boolean closed = false;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param executor
+	 *        the executor to use for calling frame listeners
+	 * @param busName
+	 *        the CAN network interface name to connect to
+	 */
+	public SocketcanCanbusConnection(Executor executor, String busName) {
+		super();
+		this.executor = executor;
+		this.busName = busName;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		builder.append("SocketcanCanbusConnection{");
+		builder.append(busName);
+		builder.append("}");
+		return builder.toString();
+	}
+
+	private static SocketcanLibrary library() throws IOException {
+		try {
+			return SocketcanLibrary.INSTANCE;
+		} catch ( LinkageError e ) {
+			throw new IOException("SocketCAN native support is not available: " + e.toString(), e);
+		}
+	}
+
+	private String lastError() {
+		final int errno = Native.getLastError();
+		return lib.strerror(errno) + " (" + errno + ")";
+	}
+
+	@Override
+	public synchronized void open() throws IOException {
+		if ( fd >= 0 ) {
+			return;
+		}
+		lib = library();
+		final int ifIndex = lib.if_nametoindex(busName);
+		if ( ifIndex == 0 ) {
+			throw new IOException("CAN interface [" + busName + "] not available: " + lastError());
+		}
+		final int s = lib.socket(SocketcanUtils.PF_CAN, SocketcanUtils.SOCK_RAW,
+				SocketcanUtils.CAN_RAW);
+		if ( s < 0 ) {
+			throw new IOException("Error creating CAN socket: " + lastError());
+		}
+		final ByteOrder order = ByteOrder.nativeOrder();
+		try {
+			setOption(s, SocketcanUtils.SOL_SOCKET, SocketcanUtils.SO_RCVTIMEO,
+					SocketcanUtils.encodeTimeval(readTimeout, Native.LONG_SIZE, order));
+			synchronized ( subscriptionLock ) {
+				setOption(s, SocketcanUtils.SOL_CAN_RAW, SocketcanUtils.CAN_RAW_FILTER,
+						encodeFilters(order));
+				fd = s;
+			}
+			byte[] addr = SocketcanUtils.encodeSocketAddress(ifIndex, order);
+			if ( lib.bind(s, addr, addr.length) < 0 ) {
+				throw new IOException(
+						"Error binding CAN socket to interface [" + busName + "]: " + lastError());
+			}
+		} catch ( IOException e ) {
+			fd = -1;
+			lib.close(s);
+			throw e;
+		}
+
+		log.info("Connected to CAN bus {}", this);
+
+		// create reader thread
+		readerThread = new Thread(this);
+		readerThread.setName("SocketcanCanbusConnection-" + THREAD_COUNTER.incrementAndGet());
+		readerThread.setDaemon(true);
+		readerThread.start();
+	}
+
+	private void setOption(int s, int level, int option, byte[] value) throws IOException {
+		final int len = (value != null ? value.length : 0);
+		if ( lib.setsockopt(s, level, option, len > 0 ? value : null, len) < 0 ) {
+			throw new IOException("Error setting CAN socket option " + option + " on bus [" + busName
+					+ "]: " + lastError());
+		}
+	}
+
+	private byte[] encodeFilters(ByteOrder order) {
+		if ( monitorDispatcher != null ) {
+			return SocketcanUtils.encodeAcceptAllFilter(order);
+		}
+		final CanbusAddressIndex<SubscriptionHandler> index = subscriptions;
+		final List<CanbusSubscription> subs = new ArrayList<>(index.size());
+		index.forEach(h -> subs.add(h.filter.getSubscription()));
+		return SocketcanUtils.encodeFilters(subs, order);
+	}
+
+	/**
+	 * Update the kernel receive filters to match the active subscriptions.
+	 *
+	 * <p>
+	 * This must be called while holding the {@code subscriptionLock}.
+	 * </p>
+	 */
+	private void updateFilters() throws IOException {
+		final int s = fd;
+		if ( s < 0 ) {
+			// will be applied when opened
+			return;
+		}
+		setOption(s, SocketcanUtils.SOL_CAN_RAW, SocketcanUtils.CAN_RAW_FILTER,
+				encodeFilters(ByteOrder.nativeOrder()));
+	}
+
+	@Override
+	public void run() {
+		final byte[] buf = new byte[CAN_FRAME_SIZE];
+		final NativeLong count = new NativeLong(CAN_FRAME_SIZE);
+		final ByteOrder order = ByteOrder.nativeOrder();
+		while ( true ) {
+			if ( isClosed() || Thread.interrupted() ) {
+				return;
+			}
+			final int s = fd;
+			if ( s < 0 ) {
+				return;
+			}
+			final long len = lib.read(s, buf, count).longValue();
+			if ( len < 0 ) {
+				final int errno = Native.getLastError();
+				if ( errno == EAGAIN || errno == EINTR ) {
+					log.trace("Timeout waiting for CAN bus frame from {}", this);
+					continue;
+				}
+				if ( !isClosed() ) {
+					log.warn("Error reading from CAN bus {}: {} ({}); closing reader", this,
+							lib.strerror(errno), errno);
+				}
+				return;
+			} else if ( len < CAN_FRAME_SIZE ) {
+				log.debug("Ignoring short CAN frame from {} ({} bytes)", this, len);
+				continue;
+			}
+
+			final CanbusFrame frame = SocketcanUtils.decodeFrame(buf, order);
+			if ( log.isTraceEnabled() ) {
+				log.trace("{} <- {}", busName, frame);
+			}
+			final CanbusFrameDispatcher monitor = monitorDispatcher;
+			if ( monitor != null ) {
+				monitor.dispatch(frame);
+			} else {
+				final SubscriptionHandler handler = subscriptions.get(frame.getAddress());
+				if ( handler != null ) {
+					handler.handle(frame, System.nanoTime());
+				}
+			}
+		}
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if ( closed ) {
+			return;
+		}
+		closed = true;
+		if ( readerThread != null && readerThread.isAlive() ) {
+			try {
+				readerThread.interrupt();
+				// the reader wakes up at least every readTimeout to notice it has been closed
+				readerThread.join(readTimeout * 2);
+			} catch ( Exception e ) {
+				// ignore
+			} finally {
+				readerThread = null;
+			}
+		}
+		final int s = fd;
+		if ( s >= 0 ) {
+			fd = -1;
+			lib.close(s);
+		}
+
+		// give listeners a chance to handle frames already received
+		final List<CanbusFrameDispatcher> dispatchers = new ArrayList<>(subscriptions.size() + 1);
+		final CanbusFrameDispatcher monitor = monitorDispatcher;
+		if ( monitor != null ) {
+			dispatchers.add(monitor);
+		}
+		subscriptions.forEach(h -> dispatchers.add(h.dispatcher));
+		final long deadline = System.currentTimeMillis() + CLOSE_DISPATCH_WAIT_MS;
+		try {
+			for ( CanbusFrameDispatcher dispatcher : dispatchers ) {
+				dispatcher.awaitIdle(deadline);
+			}
+		} catch ( InterruptedException e ) {
+			// ignore
+		}
+	}
+
+	@Override
+	public boolean isClosed() {
+		return closed;
+	}
+
+	@Override
+	public boolean isEstablished() {
+		final Thread t = readerThread;
+		return (!closed && fd >= 0 && t != null && t.isAlive());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * <p>
+	 * A raw socket has no server to test, so this resolves to the result of
+	 * {@link #isEstablished()}.
+	 * </p>
+	 */
+	@Override
+	public Future<Boolean> verifyConnectivity() {
+		return CompletableFuture.completedFuture(isEstablished());
+	}
+
+	/**
+	 * Handles frames for a subscription.
+	 */
+	private static final class SubscriptionHandler {
+
+		private final CanbusSubscriptionFilter filter;
+		private final CanbusFrameDispatcher dispatcher;
+		private final boolean filtering;
+
+		private SubscriptionHandler(CanbusSubscriptionFilter filter,
+				CanbusFrameDispatcher dispatcher) {
+			super();
+			this.filter = filter;
+			this.dispatcher = dispatcher;
+			this.filtering = filter.isFiltering();
+		}
+
+		private void handle(CanbusFrame frame, long nanoTime) {
+			if ( !filtering || filter.accept(frame, nanoTime) ) {
+				dispatcher.dispatch(frame);
+			}
+		}
+
+	}
+
+	@Override
+	public void subscribe(int address, boolean forceExtendedAddress, Duration limit, long dataFilter,
+			CanbusFrameListener listener) throws IOException {
+		subscribe(new CanbusSubscription(address, forceExtendedAddress, limit, dataFilter, listener));
+	}
+
+	@Override
+	public void subscribe(int address, boolean forceExtendedAddress, Duration limit, long identifierMask,
+			Iterable<Long> dataFilters, CanbusFrameListener listener) throws IOException {
+		List<Long> filters;
+		if ( dataFilters instanceof List<?> ) {
+			filters = (List<Long>) dataFilters;
+		} else {
+			filters = StreamSupport.stream(dataFilters.spliterator(), false)
+					.collect(Collectors.toList());
+		}
+		subscribe(new CanbusSubscription(address, forceExtendedAddress, limit, identifierMask,
+				filters, listener));
+	}
+
+	private void subscribe(CanbusSubscription sub) throws IOException {
+		synchronized ( subscriptionLock ) {
+			final CanbusAddressIndex<SubscriptionHandler> index = subscriptions;
+			SubscriptionHandler old = index.get(sub.getAddress());
+			subscriptions = index.withValue(sub.getAddress(),
+					new SubscriptionHandler(new CanbusSubscriptionFilter(sub),
+							new CanbusFrameDispatcher(busName, sub, sub.getListener(), executor,
+									listenerQueueSize)));
+			if ( old != null ) {
+				log.warn("Subscription to CAN bus [{}] {} replaced by new subscription", busName,
+						old.filter.getSubscription());
+			} else {
+				updateFilters();
+			}
+			log.info("Subscribed to CAN bus [{}]: {}", busName, sub);
+		}
+	}
+
+	@Override
+	public void unsubscribe(int address, boolean forceExtendedAddress) throws IOException {
+		synchronized ( subscriptionLock ) {
+			final CanbusAddressIndex<SubscriptionHandler> index = subscriptions;
+			subscriptions = index.withoutValue(address);
+			if ( subscriptions != index ) {
+				updateFilters();
+			}
+			log.info("Unsubscribed to CAN bus [{}] {}", busName, address);
+		}
+	}
+
+	@Override
+	public void monitor(CanbusFrameListener listener) throws IOException {
+		if ( listener == null ) {
+			throw new IllegalArgumentException("The listener must not be null.");
+		}
+		synchronized ( subscriptionLock ) {
+			monitorDispatcher = new CanbusFrameDispatcher(busName, null, listener, executor,
+					listenerQueueSize);
+			updateFilters();
+		}
+	}
+
+	@Override
+	public void unmonitor() throws IOException {
+		synchronized ( subscriptionLock ) {
+			monitorDispatcher = null;
+			updateFilters();
+		}
+	}
+
+	@Override
+	public boolean isMonitoring() {
+		return monitorDispatcher != null;
+	}
+
+	@Override
+	public String getBusName() {
+		return busName;
+	}
+
+	/**
+	 * Get the timeout to use when waiting for CAN frames.
+	 *
+	 * <p>
+	 * The reader thread wakes up at least this often to check if the
+	 * connection has been closed.
+	 * </p>
+	 *
+	 * @return the timeout, in milliseconds; defaults to
+	 *         {@link #DEFAULT_READ_TIMEOUT_MS}
+	 */
+	public long getReadTimeout() {
+		return readTimeout;
+	}
+
+	/**
+	 * Set the timeout to use when waiting for CAN frames.
+	 *
+	 * <p>
+	 * Changes apply to connections opened afterwards.
+	 * </p>
+	 *
+	 * @param readTimeout
+	 *        the timeout to use, in milliseconds
+	 * @throws IllegalArgumentException
+	 *         if {@code readTimeout} is less than {@literal 1}
+	 */
+	public void setReadTimeout(long readTimeout) {
+		if ( readTimeout < 1 ) {
+			throw new IllegalArgumentException("The read timeout must be at least 1.");
+		}
+		this.readTimeout = readTimeout;
+	}
+
+	/**
+	 * Get the maximum number of received frames to queue for each listener.
+	 *
+	 * @return the queue size; defaults to {@link #DEFAULT_LISTENER_QUEUE_SIZE}
+	 */
+	public int getListenerQueueSize() {
+		return listenerQueueSize;
+	}
+
+	/**
+	 * Set the maximum number of received frames to queue for each listener.
+	 *
+	 * <p>
+	 * Frames received for a listener whose queue is full are dropped. Changes
+	 * apply to subscriptions made afterwards.
+	 * </p>
+	 *
+	 * @param listenerQueueSize
+	 *        the queue size to use
+	 * @throws IllegalArgumentException
+	 *         if {@code listenerQueueSize} is less than {@literal 1}
+	 */
+	public void setListenerQueueSize(int listenerQueueSize) {
+		if ( listenerQueueSize < 1 ) {
+			throw new IllegalArgumentException("The listener queue size must be at least 1.");
+		}
+		this.listenerQueueSize = listenerQueueSize;
+	}
+
+}
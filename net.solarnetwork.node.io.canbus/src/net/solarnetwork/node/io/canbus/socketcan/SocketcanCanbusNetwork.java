@@ -0,0 +1,128 @@
+/* ==================================================================
+ * SocketcanCanbusNetwork.java - 19/10/2026 11:20:53 AM
+ *
+ * Copyright 2026 SolarNetwork.net Dev Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ * ==================================================================
+ */
+
+package net.solarnetwork.node.io.canbus.socketcan;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import net.solarnetwork.node.io.canbus.CanbusConnection;
+import net.solarnetwork.node.io.canbus.support.AbstractCanbusNetwork;
+import net.solarnetwork.node.settings.SettingSpecifier;
+import net.solarnetwork.node.settings.SettingSpecifierProvider;
+import net.solarnetwork.node.settings.support.BasicTextFieldSettingSpecifier;
+
+/**
+ * CAN bus network implementation using Linux SocketCAN network interfaces
+ * directly.
+ *
+ * <p>
+ * The bus name passed to {@link #createConnection(String)} is the name of the
+ * CAN network interface to use, for example {@literal can0}.
+ * </p>
+ *
+ * @author matt
+ * @version 1.0
+ */
+public class SocketcanCanbusNetwork extends AbstractCanbusNetwork
+		implements SettingSpecifierProvider {
+
+	/** The default {@code uid} value. */
+	public static final String DEFAULT_UID = "Canbus Port";
+
+	private final Executor executor;
+	private int listenerQueueSize = SocketcanCanbusConnection.DEFAULT_LISTENER_QUEUE_SIZE;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param executor
+	 *        an executor to use for calling frame listeners
+	 */
+	public SocketcanCanbusNetwork(Executor executor) {
+		super();
+		this.executor = executor;
+		setUid(DEFAULT_UID);
+	}
+
+	@Override
+	public String getDisplayName() {
+		return "SocketCAN CAN bus";
+	}
+
+	@Override
+	protected String getNetworkDescription() {
+		return "SocketCAN";
+	}
+
+	@Override
+	protected CanbusConnection createConnectionInternal(String busName) {
+		if ( busName == null || busName.trim().isEmpty() ) {
+			log.info("CAN bus name not provided; cannot create connection.");
+			return null;
+		}
+		SocketcanCanbusConnection conn = new SocketcanCanbusConnection(executor, busName.trim());
+		conn.setListenerQueueSize(listenerQueueSize);
+		return conn;
+	}
+
+	// SettingSpecifierProvider
+
+	@Override
+	public String getSettingUID() {
+		return "net.solarnetwork.node.io.canbus.socketcan";
+	}
+
+	@Override
+	public List<SettingSpecifier> getSettingSpecifiers() {
+		List<SettingSpecifier> results = new ArrayList<SettingSpecifier>(4);
+		results.addAll(baseIdentifiableSettings("", DEFAULT_UID, ""));
+		results.add(new BasicTextFieldSettingSpecifier("listenerQueueSize",
+				String.valueOf(SocketcanCanbusConnection.DEFAULT_LISTENER_QUEUE_SIZE)));
+		return results;
+	}
+
+	// Accessors
+
+	/**
+	 * Get the maximum number of received frames to queue for each listener.
+	 *
+	 * @return the queue size; defaults to
+	 *         {@link SocketcanCanbusConnection#DEFAULT_LISTENER_QUEUE_SIZE}
+	 */
+	public int getListenerQueueSize() {
+		return listenerQueueSize;
+	}
+
+	/**
+	 * Set the maximum number of received frames to queue for each listener.
+	 *
+	 * @param listenerQueueSize
+	 *        the queue size to use; values less than {@literal 1} are ignored
+	 */
+	public void setListenerQueueSize(int listenerQueueSize) {
+		if ( listenerQueueSize > 0 ) {
+			this.listenerQueueSize = listenerQueueSize;
+		}
+	}
+
+}
@@ -0,0 +1,59 @@
+/* ==================================================================
+ * SocketcanLibrary.java - 19/10/2026 10:02:47 AM
+ *
+ * Copyright 2026 SolarNetwork.net Dev Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ * ==================================================================
+ */
+
+package net.solarnetwork.node.io.canbus.socketcan;
+
+import com.sun.jna.Library;
+import com.sun.jna.Native;
+import com.sun.jna.NativeLong;
+
+/**
+ * The C library functions needed to use a SocketCAN raw socket.
+ *
+ * <p>
+ * Structures are passed as byte arrays encoded by {@link SocketcanUtils}, so
+ * no JNA structure mapping is required.
+ * </p>
+ *
+ * @author matt
+ * @version 1.0
+ */
+interface SocketcanLibrary extends Library {
+
+	/** The library instance. */
+	SocketcanLibrary INSTANCE = Native.load("c", SocketcanLibrary.class);
+
+	int socket(int domain, int type, int protocol);
+
+	int bind(int fd, byte[] addr, int addrlen);
+
+	int setsockopt(int fd, int level, int optname, byte[] optval, int optlen);
+
+	NativeLong read(int fd, byte[] buf, NativeLong count);
+
+	int close(int fd);
+
+	int if_nametoindex(String ifname);
+
+	String strerror(int errnum);
+
+}
@@ -0,0 +1,207 @@
+/* ==================================================================
+ * SocketcanUtils.java - 19/10/2026 10:11:30 AM
+ *
+ * Copyright 2026 SolarNetwork.net Dev Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ * ==================================================================
+ */
+
+package net.solarnetwork.node.io.canbus.socketcan;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Collection;
+import net.solarnetwork.node.io.canbus.Addressed;
+import net.solarnetwork.node.io.canbus.CanbusFrame;
+import net.solarnetwork.node.io.canbus.cannelloni.BasicCanbusFrame;
+import net.solarnetwork.node.io.canbus.support.CanbusSubscription;
+
+/**
+ * Utilities for encoding and decoding the Linux SocketCAN structures.
+ *
+ * <p>
+ * Structures are encoded in the byte order given, which for use with the
+ * kernel must be {@link ByteOrder#nativeOrder()}.
+ * </p>
+ *
+ * @author matt
+ * @version 1.0
+ * @see <a href=
+ *      "https://www.kernel.org/doc/Documentation/networking/can.txt">SocketCAN</a>
+ */
+public final class SocketcanUtils {
+
+	/** The CAN protocol family. */
+	public static final int PF_CAN = 29;
+
+	/** The raw socket type. */
+	public static final int SOCK_RAW = 3;
+
+	/** The raw CAN protocol. */
+	public static final int CAN_RAW = 1;
+
+	/** The socket option level for the raw CAN protocol. */
+	public static final int SOL_CAN_RAW = 101;
+
+	/** The raw CAN socket option to set receive filters. */
+	public static final int CAN_RAW_FILTER = 1;
+
+	/** The maximum number of raw CAN receive filters. */
+	public static final int CAN_RAW_FILTER_MAX = 512;
+
+	/** The generic socket option level. */
+	public static final int SOL_SOCKET = 1;
+
+	/** The socket option to set the receive timeout. */
+	public static final int SO_RCVTIMEO = 20;
+
+	/** The extended frame format flag in a CAN ID. */
+	public static final int CAN_EFF_FLAG = 0x80000000;
+
+	/** The remote transmission request flag in a CAN ID. */
+	public static final int CAN_RTR_FLAG = 0x40000000;
+
+	/** The size of a {@code struct can_frame}. */
+	public static final int CAN_FRAME_SIZE = 16;
+
+	/** The size of a {@code struct sockaddr_can}. */
+	public static final int SOCKADDR_CAN_SIZE = 16;
+
+	/** The size of a {@code struct can_filter}. */
+	public static final int CAN_FILTER_SIZE = 8;
+
+	/** The maximum data length of a CAN frame. */
+	public static final int CAN_MAX_DLEN = 8;
+
+	private static final int CAN_DLC_OFFSET = 4;
+	private static final int CAN_DATA_OFFSET = 8;
+
+	/**
+	 * Encode a {@code struct sockaddr_can} for a network interface.
+	 *
+	 * @param ifIndex
+	 *        the network interface index
+	 * @param order
+	 *        the byte order
+	 * @return the encoded structure
+	 */
+	public static byte[] encodeSocketAddress(int ifIndex, ByteOrder order) {
+		ByteBuffer buf = ByteBuffer.allocate(SOCKADDR_CAN_SIZE).order(order);
+		buf.putShort((short) PF_CAN);
+		buf.putShort((short) 0); // padding
+		buf.putInt(ifIndex);
+		return buf.array();
+	}
+
+	/**
+	 * Encode a {@code struct timeval}.
+	 *
+	 * @param millis
+	 *        the time value, in milliseconds
+	 * @param longSize
+	 *        the size of a native {@code long}, in bytes
+	 * @param order
+	 *        the byte order
+	 * @return the encoded structure
+	 */
+	public static byte[] encodeTimeval(long millis, int longSize, ByteOrder order) {
+		ByteBuffer buf = ByteBuffer.allocate(longSize * 2).order(order);
+		final long seconds = millis / 1000L;
+		final long micros = (millis % 1000L) * 1000L;
+		if ( longSize == Long.BYTES ) {
+			buf.putLong(seconds);
+			buf.putLong(micros);
+		} else {
+			buf.putInt((int) seconds);
+			buf.putInt((int) micros);
+		}
+		return buf.array();
+	}
+
+	/**
+	 * Encode an array of {@code struct can_filter} that accept data frames for
+	 * a set of subscriptions.
+	 *
+	 * <p>
+	 * Each subscription is turned into a filter that matches its address
+	 * exactly, taking the frame format into account, and excludes remote
+	 * transmission requests. If there are more subscriptions than
+	 * {@link #CAN_RAW_FILTER_MAX} then a single filter that accepts all frames
+	 * is returned instead. An empty array is returned if there are no
+	 * subscriptions, which causes the kernel to deliver no frames.
+	 * </p>
+	 *
+	 * @param subscriptions
+	 *        the subscriptions
+	 * @param order
+	 *        the byte order
+	 * @return the encoded filters, never {@literal null}
+	 */
+	public static byte[] encodeFilters(Collection<CanbusSubscription> subscriptions,
+			ByteOrder order) {
+		if ( subscriptions == null || subscriptions.isEmpty() ) {
+			return new byte[0];
+		}
+		if ( subscriptions.size() > CAN_RAW_FILTER_MAX ) {
+			return encodeAcceptAllFilter(order);
+		}
+		ByteBuffer buf = ByteBuffer.allocate(subscriptions.size() * CAN_FILTER_SIZE).order(order);
+		for ( CanbusSubscription sub : subscriptions ) {
+			final int address = sub.getAddress();
+			final boolean extended = sub.isForceExtendedAddress()
+					|| address > Addressed.MAX_STANDARD_ADDRESS;
+			buf.putInt(extended ? address | CAN_EFF_FLAG : address);
+			buf.putInt(CAN_EFF_FLAG | CAN_RTR_FLAG
+					| (extended ? Addressed.MAX_EXTENDED_ADDRESS : Addressed.MAX_STANDARD_ADDRESS));
+		}
+		return buf.array();
+	}
+
+	/**
+	 * Encode a single {@code struct can_filter} that accepts all frames.
+	 *
+	 * @param order
+	 *        the byte order
+	 * @return the encoded filter
+	 */
+	public static byte[] encodeAcceptAllFilter(ByteOrder order) {
+		return ByteBuffer.allocate(CAN_FILTER_SIZE).order(order).putInt(0).putInt(0).array();
+	}
+
+	/**
+	 * Decode a {@code struct can_frame}.
+	 *
+	 * @param buf
+	 *        the buffer holding the frame
+	 * @param order
+	 *        the byte order
+	 * @return the frame
+	 * @throws IllegalArgumentException
+	 *         if {@code buf} is shorter than {@link #CAN_FRAME_SIZE}
+	 */
+	public static CanbusFrame decodeFrame(byte[] buf, ByteOrder order) {
+		if ( buf == null || buf.length < CAN_FRAME_SIZE ) {
+			throw new IllegalArgumentException("The CAN frame buffer is too short.");
+		}
+		final int canId = ByteBuffer.wrap(buf).order(order).getInt(0);
+		final int len = Math.min(buf[CAN_DLC_OFFSET] & 0xFF, CAN_MAX_DLEN);
+		return new BasicCanbusFrame(canId, (byte) 0,
+				Arrays.copyOfRange(buf, CAN_DATA_OFFSET, CAN_DATA_OFFSET + len));
+	}
+
+}
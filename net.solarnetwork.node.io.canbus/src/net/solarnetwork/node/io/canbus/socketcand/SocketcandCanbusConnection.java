@@ -27,6 +27,7 @@ import java.io.IOException;
 import java.io.StringWriter;
 import java.net.SocketTimeoutException;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
@@ -51,13 +52,25 @@ import net.solarnetwork.node.io.canbus.socketcand.msg.FilterMessageImpl;
 import net.solarnetwork.node.io.canbus.socketcand.msg.MuxFilterMessageImpl;
 import net.solarnetwork.node.io.canbus.socketcand.msg.SubscribeMessageImpl;
 import net.solarnetwork.node.io.canbus.socketcand.msg.UnsubscribeMessageImpl;
+import net.solarnetwork.node.io.canbus.support.CanbusAddressIndex;
+import net.solarnetwork.node.io.canbus.support.CanbusFrameDispatcher;
 import net.solarnetwork.node.io.canbus.support.CanbusSubscription;
 
 /**
  * Implementation of {@link CanbusNetwork} for socketcand CAN bus servers.
  * 
+ * <p>
+ * Received frames are matched to subscriptions by an address index, so the
+ * cost of handling a frame does not depend on the number of subscriptions.
+ * Listeners are not called by the thread reading from the socket: each
+ * subscription (and the monitor listener) has a bounded queue of frames that
+ * is drained by the configured {@link Executor}, so a slow listener cannot
+ * delay the socket reader or other listeners. Frames for a listener whose
+ * queue is full are dropped.
+ * </p>
+ * 
  * @author matt
- * @version 1.0
+ * @version 1.2
  * @see <a href=
  *      "https://github.com/linux-can/socketcand">linux-can/socketcand</a>
  */
@@ -69,12 +82,23 @@ public class SocketcandCanbusConnection implements CanbusConnection, Runnable {
 	/** The default value for the {@link verifyConnectivityTimeout} property. */
 	public static final long DEFAULT_VERIFY_CONNECTIVITY_TIMEOUT_MS = 3000L;
 
+	/**
+	 * The default value for the {@link listenerQueueSize} property.
+	 * 
+	 * @since 1.1
+	 */
+	public static final int DEFAULT_LISTENER_QUEUE_SIZE = 256;
+
+	/** The maximum time to wait for queued frames to be delivered on close. */
+	private static final long CLOSE_DISPATCH_WAIT_MS = 1000L;
+
 	private static final AtomicInteger THREAD_COUNTER = new AtomicInteger(0);
 	private static final Logger log = LoggerFactory.getLogger(SocketcandCanbusConnection.class);
 
-	private final ConcurrentMap<Integer, CanbusSubscription> subscriptions = new ConcurrentHashMap<>(16,
-			0.9f, 1);
-	private final AtomicReference<CanbusFrameListener> monitorSubscription = new AtomicReference<>();
+	private final Object subscriptionLock = new Object();
+	private volatile CanbusAddressIndex<CanbusFrameDispatcher> subscriptions = CanbusAddressIndex
+			.empty();
+	private final AtomicReference<CanbusFrameDispatcher> monitorSubscription = new AtomicReference<>();
 
 	// a map of message commands -> UUID -> CompletableFuture which are registered "listeners" for 
 	// a specific message type to come in; this provides a way to do things like wait for an < echo > response
@@ -88,6 +112,7 @@ public class SocketcandCanbusConnection implements CanbusConnection, Runnable {
 	private long messageTimeout = DEFAULT_TIMEOUT_MS;
 	private TimeUnit messageTimeoutUnit = TimeUnit.MILLISECONDS;
 	private long verifyConnectivityTimeout = DEFAULT_VERIFY_CONNECTIVITY_TIMEOUT_MS;
+	private int listenerQueueSize = DEFAULT_LISTENER_QUEUE_SIZE;
 	private final Executor executor;
 
 	private Thread readerThread;
@@ -100,7 +125,8 @@ public class SocketcandCanbusConnection implements CanbusConnection, Runnable {
 	 * @param socketProvider
 	 *        the socket provider
 	 * @param executor
-	 *        the executor to use for things like connectivity verification
+	 *        the executor to use for things like connectivity verification and
+	 *        calling frame listeners
 	 * @param host
 	 *        the host
 	 * @param port
@@ -218,19 +244,12 @@ public class SocketcandCanbusConnection implements CanbusConnection, Runnable {
 				// handle frame listeners
 				if ( m instanceof CanbusFrame ) {
 					final CanbusFrame frame = (CanbusFrame) m;
-					CanbusFrameListener listener = monitorSubscription.get();
-					if ( listener != null ) {
-						listener.canbusFrameReceived(frame);
-					} else {
-						final int addr = frame.getAddress();
-						for ( CanbusSubscription sub : subscriptions.values() ) {
-							if ( addr == sub.getAddress() ) {
-								listener = sub.getListener();
-								if ( listener != null ) {
-									listener.canbusFrameReceived(frame);
-								}
-							}
-						}
+					CanbusFrameDispatcher dispatcher = monitorSubscription.get();
+					if ( dispatcher == null ) {
+						dispatcher = subscriptions.get(frame.getAddress());
+					}
+					if ( dispatcher != null ) {
+						dispatcher.dispatch(frame);
 					}
 				}
 
@@ -279,6 +298,22 @@ public class SocketcandCanbusConnection implements CanbusConnection, Runnable {
 				readerThread = null;
 			}
 		}
+
+		// give listeners a chance to handle frames already received
+		final List<CanbusFrameDispatcher> dispatchers = new ArrayList<>(subscriptions.size() + 1);
+		final CanbusFrameDispatcher monitor = monitorSubscription.get();
+		if ( monitor != null ) {
+			dispatchers.add(monitor);
+		}
+		subscriptions.forEach(dispatchers::add);
+		final long deadline = System.currentTimeMillis() + CLOSE_DISPATCH_WAIT_MS;
+		try {
+			for ( CanbusFrameDispatcher dispatcher : dispatchers ) {
+				dispatcher.awaitIdle(deadline);
+			}
+		} catch ( InterruptedException e ) {
+			// ignore
+		}
 	}
 
 	@Override
@@ -393,11 +428,15 @@ public class SocketcandCanbusConnection implements CanbusConnection, Runnable {
 	}
 
 	private void subscribe(Message m, CanbusSubscription sub) throws IOException {
-		synchronized ( subscriptions ) {
+		synchronized ( subscriptionLock ) {
 			writeMessage(getSocket(), m);
-			CanbusSubscription old = subscriptions.put(sub.getAddress(), sub);
+			final CanbusAddressIndex<CanbusFrameDispatcher> index = subscriptions;
+			CanbusFrameDispatcher old = index.get(sub.getAddress());
+			subscriptions = index.withValue(sub.getAddress(), new CanbusFrameDispatcher(busName, sub,
+					sub.getListener(), executor, listenerQueueSize));
 			if ( old != null ) {
-				log.warn("Subscription to CAN bus [{}] {} replaced by new subscription", busName, old);
+				log.warn("Subscription to CAN bus [{}] {} replaced by new subscription", busName,
+						old.getSubscription());
 			}
 			log.info("Subscribed to CAN bus [{}]: {}", busName, sub);
 		}
@@ -423,9 +462,9 @@ public class SocketcandCanbusConnection implements CanbusConnection, Runnable {
 	@Override
 	public void unsubscribe(int address, boolean forceExtendedAddress) throws IOException {
 		Message m = new UnsubscribeMessageImpl(address, forceExtendedAddress);
-		synchronized ( subscriptions ) {
+		synchronized ( subscriptionLock ) {
 			writeMessage(getSocket(), m);
-			subscriptions.remove(address);
+			subscriptions = subscriptions.withoutValue(address);
 			log.info("Unsubscribed to CAN bus [{}] {}", busName, address);
 		}
 	}
@@ -437,7 +476,8 @@ public class SocketcandCanbusConnection implements CanbusConnection, Runnable {
 		}
 		synchronized ( monitorSubscription ) {
 			writeMessage(getSocket(), new BasicMessage(MessageType.Rawmode));
-			monitorSubscription.set(listener);
+			monitorSubscription.set(new CanbusFrameDispatcher(busName, null, listener, executor,
+					listenerQueueSize));
 		}
 
 	}
@@ -531,4 +571,34 @@ public class SocketcandCanbusConnection implements CanbusConnection, Runnable {
 		this.verifyConnectivityTimeout = verifyConnectivityTimeout;
 	}
 
+	/**
+	 * Get the maximum number of received frames to queue for each listener.
+	 * 
+	 * @return the queue size; defaults to {@link #DEFAULT_LISTENER_QUEUE_SIZE}
+	 * @since 1.1
+	 */
+	public int getListenerQueueSize() {
+		return listenerQueueSize;
+	}
+
+	/**
+	 * Set the maximum number of received frames to queue for each listener.
+	 * 
+	 * <p>
+	 * Frames received for a listener whose queue is full are dropped. Changes
+	 * apply to subscriptions made afterwards.
+	 * </p>
+	 * 
+	 * @param listenerQueueSize
+	 *        the queue size to use
+	 * @throws IllegalArgumentException
+	 *         if {@code listenerQueueSize} is less than {@literal 1}
+	 */
+	public void setListenerQueueSize(int listenerQueueSize) {
+		if ( listenerQueueSize < 1 ) {
+			throw new IllegalArgumentException("The listener queue size must be at least 1.");
+		}
+		this.listenerQueueSize = listenerQueueSize;
+	}
+
 }
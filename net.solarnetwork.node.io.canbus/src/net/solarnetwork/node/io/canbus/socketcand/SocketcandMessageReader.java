@@ -0,0 +1,316 @@
+/* ==================================================================
+ * SocketcandMessageReader.java - 18/10/2026 11:58:40 PM
+ *
+ * Copyright 2026 SolarNetwork.net Dev Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ * ==================================================================
+ */
+
+package net.solarnetwork.node.io.canbus.socketcand;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import net.solarnetwork.node.io.canbus.socketcand.msg.CompactFrameMessage;
+
+/**
+ * Read socketcand messages from a byte stream.
+ *
+ * <p>
+ * Data is read into a reusable buffer and frame messages are decoded directly
+ * from the bytes into {@link CompactFrameMessage} instances, so receiving a
+ * frame allocates only the message and its data array. Other messages, which
+ * are rare, are parsed into argument strings like
+ * {@link SocketcandUtils#readMessage(java.io.Reader, char[])} does.
+ * </p>
+ *
+ * <p>
+ * Bytes read after the end of one message are kept for the next call, so an
+ * instance must be used with a single stream. This class is not thread safe.
+ * </p>
+ *
+ * @author matt
+ * @version 1.0
+ * @since 1.1
+ */
+public class SocketcandMessageReader {
+
+	/** The default buffer size. */
+	public static final int DEFAULT_BUFFER_SIZE = 4096;
+
+	private static final byte[] FRAME_COMMAND = MessageType.Frame.getCommand()
+			.getBytes(StandardCharsets.US_ASCII);
+
+	// the maximum number of decimal digits in an int, e.g. epoch seconds
+	private static final int MAX_INT_DIGITS = 10;
+
+	// the maximum number of hex digits in a CAN address
+	private static final int MAX_ADDRESS_DIGITS = 8;
+
+	// holds unparsed bytes between position and limit
+	private final ByteBuffer buffer;
+
+	/**
+	 * Constructor.
+	 *
+	 * <p>
+	 * The {@link #DEFAULT_BUFFER_SIZE} will be used.
+	 * </p>
+	 */
+	public SocketcandMessageReader() {
+		this(DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param bufferSize
+	 *        the buffer size, which must be large enough to hold a complete
+	 *        message
+	 * @throws IllegalArgumentException
+	 *         if {@code bufferSize} is less than {@literal 1}
+	 */
+	public SocketcandMessageReader(int bufferSize) {
+		super();
+		if ( bufferSize < 1 ) {
+			throw new IllegalArgumentException("The buffer size must be at least 1.");
+		}
+		buffer = ByteBuffer.allocate(bufferSize);
+		buffer.flip();
+	}
+
+	/**
+	 * Read a message from a byte stream.
+	 *
+	 * @param in
+	 *        the stream to read from
+	 * @return the message, or {@literal null} if the end of the stream is
+	 *         reached
+	 * @throws IOException
+	 *         if any IO error occurs, or a message is too large for the buffer
+	 * @throws IllegalArgumentException
+	 *         if a message has inappropriate arguments for its type
+	 */
+	public Message readMessage(InputStream in) throws IOException {
+		final byte[] buf = buffer.array();
+		while ( true ) {
+			int start = -1;
+			for ( int i = buffer.position(), limit = buffer.limit(); i < limit; i++ ) {
+				final byte b = buf[i];
+				if ( start < 0 ) {
+					if ( b == '<' ) {
+						start = i;
+					}
+				} else if ( b == '>' ) {
+					buffer.position(i + 1);
+					Message m = parseMessage(buf, start + 1, i);
+					if ( m != null ) {
+						return m;
+					}
+					// ignore empty message
+					start = -1;
+				}
+			}
+
+			// no complete message available: discard anything before the start of a message and read more
+			if ( start < 0 ) {
+				buffer.clear();
+			} else {
+				buffer.position(start);
+				buffer.compact();
+			}
+			if ( !buffer.hasRemaining() ) {
+				buffer.clear();
+				buffer.flip();
+				throw new IOException("The socketcand message is larger than the buffer size "
+						+ buffer.capacity() + ".");
+			}
+			final int len;
+			try {
+				len = in.read(buf, buffer.position(), buffer.remaining());
+			} finally {
+				buffer.flip();
+			}
+			if ( len < 0 ) {
+				buffer.clear();
+				buffer.flip();
+				return null;
+			}
+			buffer.limit(buffer.limit() + len);
+		}
+	}
+
+	private static Message parseMessage(byte[] buf, int from, int to) {
+		final int cmdStart = skipSpaces(buf, from, to);
+		final int cmdEnd = tokenEnd(buf, cmdStart, to);
+		if ( cmdStart == cmdEnd ) {
+			return null;
+		}
+		if ( regionEquals(buf, cmdStart, cmdEnd, FRAME_COMMAND) ) {
+			Message m = parseFrame(buf, cmdEnd, to);
+			if ( m != null ) {
+				return m;
+			}
+		}
+		String command = new String(buf, cmdStart, cmdEnd - cmdStart, StandardCharsets.US_ASCII);
+		List<String> arguments = null;
+		for ( int p = skipSpaces(buf, cmdEnd, to); p < to; p = skipSpaces(buf, p, to) ) {
+			int end = tokenEnd(buf, p, to);
+			if ( arguments == null ) {
+				arguments = new ArrayList<>(8);
+			}
+			arguments.add(new String(buf, p, end - p, StandardCharsets.US_ASCII));
+			p = end;
+		}
+		return SocketcandUtils.createMessage(command, arguments);
+	}
+
+	/**
+	 * Decode frame arguments.
+	 *
+	 * @return the frame, or {@literal null} if the arguments are not in the
+	 *         expected form, in which case they should be parsed as strings
+	 */
+	private static Message parseFrame(byte[] buf, int from, int to) {
+		// address
+		int p = skipSpaces(buf, from, to);
+		int end = tokenEnd(buf, p, to);
+		if ( end == p || end - p > MAX_ADDRESS_DIGITS ) {
+			return null;
+		}
+		int address = 0;
+		for ( ; p < end; p++ ) {
+			int d = hexDigit(buf[p]);
+			if ( d < 0 ) {
+				return null;
+			}
+			address = (address << 4) | d;
+		}
+		if ( address < 0 ) {
+			return null;
+		}
+
+		// time, as seconds.microseconds
+		p = skipSpaces(buf, end, to);
+		end = tokenEnd(buf, p, to);
+		int dot = p;
+		while ( dot < end && buf[dot] != '.' ) {
+			dot++;
+		}
+		final int seconds = decimal(buf, p, dot);
+		final int microseconds = (dot + 1 < end ? decimal(buf, dot + 1, end) : 0);
+		if ( seconds < 0 || microseconds < 0 ) {
+			return null;
+		}
+
+		// data, as one hex byte per argument
+		final int dataStart = end;
+		int count = 0;
+		for ( p = skipSpaces(buf, dataStart, to); p < to; p = skipSpaces(buf, p, to) ) {
+			end = tokenEnd(buf, p, to);
+			if ( end - p > 2 ) {
+				return null;
+			}
+			count++;
+			p = end;
+		}
+		final byte[] data = new byte[count];
+		int i = 0;
+		for ( p = skipSpaces(buf, dataStart, to); p < to; p = skipSpaces(buf, p, to) ) {
+			end = tokenEnd(buf, p, to);
+			int b = 0;
+			for ( ; p < end; p++ ) {
+				int d = hexDigit(buf[p]);
+				if ( d < 0 ) {
+					return null;
+				}
+				b = (b << 4) | d;
+			}
+			data[i++] = (byte) b;
+		}
+		return new CompactFrameMessage(address, seconds, microseconds, data);
+	}
+
+	private static int skipSpaces(byte[] buf, int from, int to) {
+		while ( from < to && buf[from] == ' ' ) {
+			from++;
+		}
+		return from;
+	}
+
+	private static int tokenEnd(byte[] buf, int from, int to) {
+		while ( from < to && buf[from] != ' ' ) {
+			from++;
+		}
+		return from;
+	}
+
+	private static boolean regionEquals(byte[] buf, int from, int to, byte[] value) {
+		if ( to - from != value.length ) {
+			return false;
+		}
+		for ( int i = 0; i < value.length; i++ ) {
+			if ( buf[from + i] != value[i] ) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int hexDigit(byte b) {
+		if ( b >= '0' && b <= '9' ) {
+			return b - '0';
+		} else if ( b >= 'A' && b <= 'F' ) {
+			return b - 'A' + 10;
+		} else if ( b >= 'a' && b <= 'f' ) {
+			return b - 'a' + 10;
+		}
+		return -1;
+	}
+
+	/**
+	 * Parse a non-negative decimal number.
+	 *
+	 * <p>
+	 * The digits are accumulated in a {@code long}, so a 10-digit value such as
+	 * epoch seconds can be checked against {@link Integer#MAX_VALUE} rather
+	 * than overflowing.
+	 * </p>
+	 *
+	 * @return the number, or {@literal -1} if the region is empty, too long,
+	 *         contains something other than digits, or does not fit in an
+	 *         {@code int}
+	 */
+	private static int decimal(byte[] buf, int from, int to) {
+		if ( from == to || to - from > MAX_INT_DIGITS ) {
+			return -1;
+		}
+		long n = 0;
+		for ( int i = from; i < to; i++ ) {
+			final byte b = buf[i];
+			if ( b < '0' || b > '9' ) {
+				return -1;
+			}
+			n = n * 10 + (b - '0');
+		}
+		return (n > Integer.MAX_VALUE ? -1 : (int) n);
+	}
+
+}
@@ -39,7 +39,7 @@ import net.solarnetwork.util.ByteUtils;
  * Utilities for dealing with the socketcand protocol.
  * 
  * @author matt
- * @version 1.0
+ * @version 1.1
  */
 public final class SocketcandUtils {
 
@@ -116,6 +116,22 @@ public final class SocketcandUtils {
 		if ( command == null ) {
 			return null;
 		}
+		return createMessage(command, arguments);
+	}
+
+	/**
+	 * Create a message from a command and its arguments.
+	 * 
+	 * @param command
+	 *        the command
+	 * @param arguments
+	 *        the command arguments, or {@literal null} if there are none
+	 * @return the message, never {@literal null}
+	 * @throws IllegalArgumentException
+	 *         if the arguments are inappropriate for the message type
+	 * @since 1.1
+	 */
+	public static Message createMessage(String command, List<String> arguments) {
 		MessageType type = MessageType.forCommand(command);
 		if ( type != null ) {
 			switch (type) {
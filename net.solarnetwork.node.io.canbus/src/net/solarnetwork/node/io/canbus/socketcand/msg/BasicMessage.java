@@ -34,7 +34,7 @@ import net.solarnetwork.util.StringUtils;
  * A socketcand message.
  * 
  * @author matt
- * @version 1.0
+ * @version 1.1
  */
 public class BasicMessage implements Message {
 
@@ -95,7 +95,7 @@ public class BasicMessage implements Message {
 
 	@Override
 	public int hashCode() {
-		return Objects.hash(arguments, command, type);
+		return Objects.hash(getArguments(), command, type);
 	}
 
 	@Override
@@ -108,7 +108,7 @@ public class BasicMessage implements Message {
 		}
 		BasicMessage other = (BasicMessage) obj;
 		return Objects.equals(getCommand(), other.getCommand())
-				&& Objects.equals(arguments, other.arguments);
+				&& Objects.equals(getArguments(), other.getArguments());
 	}
 
 	@Override
@@ -116,6 +116,7 @@ public class BasicMessage implements Message {
 		StringBuilder builder = new StringBuilder();
 		builder.append(getCommand()).append("{");
 		builder.append(getCommand());
+		final List<String> arguments = getArguments();
 		if ( arguments != null && !arguments.isEmpty() ) {
 			builder.append(" ");
 			builder.append(StringUtils.delimitedStringFromCollection(arguments, " "));
@@ -130,6 +131,7 @@ public class BasicMessage implements Message {
 		out.write(' ');
 		out.write(getCommand());
 
+		final List<String> arguments = getArguments();
 		if ( arguments != null && !arguments.isEmpty() ) {
 			for ( String arg : arguments ) {
 				out.write(' ');
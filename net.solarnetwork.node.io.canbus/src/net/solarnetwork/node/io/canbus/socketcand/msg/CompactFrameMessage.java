@@ -0,0 +1,131 @@
+/* ==================================================================
+ * CompactFrameMessage.java - 18/10/2026 11:52:14 PM
+ *
+ * Copyright 2026 SolarNetwork.net Dev Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ * ==================================================================
+ */
+
+package net.solarnetwork.node.io.canbus.socketcand.msg;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import net.solarnetwork.node.io.canbus.Addressed;
+import net.solarnetwork.node.io.canbus.CanbusFrameFlag;
+import net.solarnetwork.node.io.canbus.Temporal;
+import net.solarnetwork.node.io.canbus.socketcand.FrameMessage;
+import net.solarnetwork.node.io.canbus.socketcand.MessageType;
+import net.solarnetwork.node.io.canbus.socketcand.SocketcandUtils;
+
+/**
+ * Frame message that holds decoded values rather than the raw command
+ * arguments.
+ *
+ * <p>
+ * This is designed for frames decoded directly from the socketcand protocol,
+ * where creating argument strings only to parse them again would be wasteful.
+ * The arguments are created only if {@link #getArguments()} is called.
+ * </p>
+ *
+ * @author matt
+ * @version 1.0
+ * @since 1.1
+ */
+public class CompactFrameMessage extends BasicMessage implements FrameMessage {
+
+	private final int address;
+	private final int seconds;
+	private final int microseconds;
+	private final byte[] data;
+	private volatile List<String> arguments;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param address
+	 *        the frame address
+	 * @param seconds
+	 *        the frame timestamp seconds
+	 * @param microseconds
+	 *        the frame timestamp microseconds
+	 * @param data
+	 *        the frame data, which is <b>not</b> copied
+	 */
+	public CompactFrameMessage(int address, int seconds, int microseconds, byte[] data) {
+		super(MessageType.Frame, null, null);
+		this.address = address;
+		this.seconds = seconds;
+		this.microseconds = microseconds;
+		this.data = (data != null ? data : new byte[0]);
+	}
+
+	@Override
+	public List<String> getArguments() {
+		List<String> args = arguments;
+		if ( args == null ) {
+			args = new ArrayList<>(2 + data.length);
+			args.add(Addressed.hexAddress(address, false));
+			args.add(Temporal.fractionalMicroseconds(seconds, microseconds).toPlainString());
+			List<String> hexData = SocketcandUtils.encodeHexStrings(data, 0, data.length);
+			if ( hexData != null ) {
+				args.addAll(hexData);
+			}
+			args = Collections.unmodifiableList(args);
+			arguments = args;
+		}
+		return args;
+	}
+
+	@Override
+	public int getAddress() {
+		return address;
+	}
+
+	@Override
+	public int getSeconds() {
+		return seconds;
+	}
+
+	@Override
+	public int getMicroseconds() {
+		return microseconds;
+	}
+
+	@Override
+	public int getDataLength() {
+		return data.length;
+	}
+
+	@Override
+	public byte[] getData() {
+		return data;
+	}
+
+	@Override
+	public boolean isFlagged(CanbusFrameFlag flag) {
+		switch (flag) {
+			case ExtendedFormat:
+				return isExtendedAddress();
+
+			default:
+				// not supported
+		}
+		return false;
+	}
+
+}
@@ -0,0 +1,236 @@
+/* ==================================================================
+ * CanbusAddressIndex.java - 18/10/2026 10:42:18 PM
+ *
+ * Copyright 2026 SolarNetwork.net Dev Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ * ==================================================================
+ */
+
+package net.solarnetwork.node.io.canbus.support;
+
+import java.util.function.Consumer;
+import net.solarnetwork.node.io.canbus.Addressed;
+
+/**
+ * Immutable index of values by CAN bus address.
+ *
+ * <p>
+ * This is designed for looking up the handler of every frame received on a
+ * busy bus, so {@link #get(int)} neither allocates nor boxes the address.
+ * Values for standard addresses are stored in an array indexed by address,
+ * and values for extended addresses in an open-addressing hash table.
+ * </p>
+ *
+ * <p>
+ * The {@link #withValue(int, Object)} and {@link #withoutValue(int)} methods
+ * return a new index, so an index can be safely shared between threads and
+ * replaced when subscriptions change, which is expected to be rare compared
+ * to lookups.
+ * </p>
+ *
+ * @param <T>
+ *        the value type
+ * @author matt
+ * @version 1.0
+ * @since 1.1
+ */
+public final class CanbusAddressIndex<T> {
+
+	private static final Object[] EMPTY = new Object[0];
+
+	private static final int[] EMPTY_KEYS = new int[0];
+
+	private static final CanbusAddressIndex<?> EMPTY_INDEX = new CanbusAddressIndex<>(EMPTY,
+			EMPTY_KEYS, EMPTY, 0);
+
+	// values for standard addresses, indexed by address
+	private final Object[] standard;
+
+	// open-addressing table of extended addresses; a value of null marks an empty slot
+	private final int[] extendedKeys;
+	private final Object[] extendedValues;
+
+	private final int size;
+
+	private CanbusAddressIndex(Object[] standard, int[] extendedKeys, Object[] extendedValues,
+			int size) {
+		super();
+		this.standard = standard;
+		this.extendedKeys = extendedKeys;
+		this.extendedValues = extendedValues;
+		this.size = size;
+	}
+
+	/**
+	 * Get an empty index.
+	 *
+	 * @param <T>
+	 *        the value type
+	 * @return the empty index
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> CanbusAddressIndex<T> empty() {
+		return (CanbusAddressIndex<T>) EMPTY_INDEX;
+	}
+
+	private static int slot(int address, int mask) {
+		// spread the bits, as sequential extended addresses often differ only in their upper bits
+		int h = address * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & mask;
+	}
+
+	/**
+	 * Get the value for an address.
+	 *
+	 * @param address
+	 *        the address
+	 * @return the value, or {@literal null} if none
+	 */
+	@SuppressWarnings("unchecked")
+	public T get(int address) {
+		if ( address >= 0 && address < standard.length ) {
+			return (T) standard[address];
+		}
+		if ( address <= Addressed.MAX_STANDARD_ADDRESS || extendedKeys.length == 0 ) {
+			return null;
+		}
+		final int mask = extendedKeys.length - 1;
+		for ( int i = slot(address, mask);; i = (i + 1) & mask ) {
+			Object v = extendedValues[i];
+			if ( v == null ) {
+				return null;
+			} else if ( extendedKeys[i] == address ) {
+				return (T) v;
+			}
+		}
+	}
+
+	/**
+	 * Get the number of addresses with values.
+	 *
+	 * @return the number of values
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Call a consumer for every value in the index.
+	 *
+	 * @param consumer
+	 *        the consumer
+	 */
+	@SuppressWarnings("unchecked")
+	public void forEach(Consumer<? super T> consumer) {
+		for ( Object v : standard ) {
+			if ( v != null ) {
+				consumer.accept((T) v);
+			}
+		}
+		for ( Object v : extendedValues ) {
+			if ( v != null ) {
+				consumer.accept((T) v);
+			}
+		}
+	}
+
+	/**
+	 * Get a copy of this index with a value set for an address.
+	 *
+	 * @param address
+	 *        the address
+	 * @param value
+	 *        the value, or {@literal null} to remove any value for the address
+	 * @return the new index
+	 * @throws IllegalArgumentException
+	 *         if {@code address} is not a valid CAN bus address
+	 */
+	public CanbusAddressIndex<T> withValue(int address, T value) {
+		if ( address < 0 || address > Addressed.MAX_EXTENDED_ADDRESS ) {
+			throw new IllegalArgumentException("Invalid CAN bus address: " + address);
+		}
+		if ( value == null ) {
+			return withoutValue(address);
+		}
+		final boolean replace = get(address) != null;
+		final int newSize = (replace ? size : size + 1);
+		if ( address <= Addressed.MAX_STANDARD_ADDRESS ) {
+			Object[] std = new Object[Addressed.MAX_STANDARD_ADDRESS + 1];
+			System.arraycopy(standard, 0, std, 0, standard.length);
+			std[address] = value;
+			return new CanbusAddressIndex<>(std, extendedKeys, extendedValues, newSize);
+		}
+		return rebuildExtended(address, value, newSize);
+	}
+
+	/**
+	 * Get a copy of this index without a value for an address.
+	 *
+	 * @param address
+	 *        the address
+	 * @return the new index, which is this index if there is no value for the
+	 *         address
+	 */
+	public CanbusAddressIndex<T> withoutValue(int address) {
+		if ( get(address) == null ) {
+			return this;
+		}
+		if ( address >= 0 && address <= Addressed.MAX_STANDARD_ADDRESS ) {
+			Object[] std = standard.clone();
+			std[address] = null;
+			return new CanbusAddressIndex<>(std, extendedKeys, extendedValues, size - 1);
+		}
+		return rebuildExtended(address, null, size - 1);
+	}
+
+	private CanbusAddressIndex<T> rebuildExtended(int address, T value, int newSize) {
+		int count = (value != null ? 1 : 0);
+		for ( int i = 0; i < extendedKeys.length; i++ ) {
+			if ( extendedValues[i] != null && extendedKeys[i] != address ) {
+				count++;
+			}
+		}
+		if ( count == 0 ) {
+			return new CanbusAddressIndex<>(standard, EMPTY_KEYS, EMPTY, newSize);
+		}
+
+		// keep the table at most half full so probe sequences stay short
+		int capacity = Integer.highestOneBit(count * 2 - 1) << 1;
+		int[] keys = new int[capacity];
+		Object[] values = new Object[capacity];
+		for ( int i = 0; i < extendedKeys.length; i++ ) {
+			if ( extendedValues[i] != null && extendedKeys[i] != address ) {
+				put(keys, values, extendedKeys[i], extendedValues[i]);
+			}
+		}
+		if ( value != null ) {
+			put(keys, values, address, value);
+		}
+		return new CanbusAddressIndex<>(standard, keys, values, newSize);
+	}
+
+	private static void put(int[] keys, Object[] values, int address, Object value) {
+		final int mask = keys.length - 1;
+		int i = slot(address, mask);
+		while ( values[i] != null ) {
+			i = (i + 1) & mask;
+		}
+		keys[i] = address;
+		values[i] = value;
+	}
+
+}
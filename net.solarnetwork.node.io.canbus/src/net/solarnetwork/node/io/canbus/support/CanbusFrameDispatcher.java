@@ -0,0 +1,185 @@
+/* ==================================================================
+ * CanbusFrameDispatcher.java - 19/10/2026 9:14:22 AM
+ *
+ * Copyright 2026 SolarNetwork.net Dev Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ * ==================================================================
+ */
+
+package net.solarnetwork.node.io.canbus.support;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import net.solarnetwork.node.io.canbus.CanbusFrame;
+import net.solarnetwork.node.io.canbus.CanbusFrameListener;
+
+/**
+ * Delivers frames to a listener via an executor, one at a time and in the
+ * order received.
+ *
+ * <p>
+ * Frames are added to a bounded queue by {@link #dispatch(CanbusFrame)} and
+ * the queue is drained by a task submitted to the executor, so the thread
+ * reading frames from the bus is never blocked by the listener. Frames for a
+ * listener whose queue is full are dropped. If no executor is configured then
+ * frames are delivered directly by the calling thread.
+ * </p>
+ *
+ * @author matt
+ * @version 1.0
+ * @since 1.2
+ */
+public class CanbusFrameDispatcher implements Runnable {
+
+	private static final Logger log = LoggerFactory.getLogger(CanbusFrameDispatcher.class);
+
+	private final String busName;
+	private final CanbusSubscription subscription;
+	private final CanbusFrameListener listener;
+	private final Executor executor;
+	private final BlockingQueue<CanbusFrame> queue;
+	private final AtomicBoolean scheduled = new AtomicBoolean(false);
+	private long droppedCount;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param busName
+	 *        the bus name, for logging
+	 * @param subscription
+	 *        the subscription, or {@literal null} for a monitor listener
+	 * @param listener
+	 *        the listener to deliver frames to
+	 * @param executor
+	 *        the executor to deliver frames with, or {@literal null} to
+	 *        deliver them on the calling thread
+	 * @param queueSize
+	 *        the maximum number of frames to queue
+	 * @throws IllegalArgumentException
+	 *         if {@code queueSize} is less than {@literal 1}
+	 */
+	public CanbusFrameDispatcher(String busName, CanbusSubscription subscription,
+			CanbusFrameListener listener, Executor executor, int queueSize) {
+		super();
+		this.busName = busName;
+		this.subscription = subscription;
+		this.listener = listener;
+		this.executor = executor;
+		this.queue = new ArrayBlockingQueue<>(queueSize);
+	}
+
+	/**
+	 * Queue a frame for delivery to the listener.
+	 *
+	 * <p>
+	 * This method is designed to be called by a single thread.
+	 * </p>
+	 *
+	 * @param frame
+	 *        the frame to deliver
+	 */
+	public void dispatch(CanbusFrame frame) {
+		if ( listener == null ) {
+			return;
+		}
+		if ( executor == null ) {
+			deliver(frame);
+			return;
+		}
+		if ( !queue.offer(frame) ) {
+			droppedCount++;
+			if ( (droppedCount & (droppedCount - 1)) == 0 ) {
+				// log at exponentially decreasing frequency
+				log.warn("CAN bus [{}] listener for {} is not keeping up; {} frames dropped", busName,
+						subscriptionDescription(), droppedCount);
+			}
+			return;
+		}
+		if ( scheduled.compareAndSet(false, true) ) {
+			try {
+				executor.execute(this);
+			} catch ( RejectedExecutionException e ) {
+				log.warn("CAN bus [{}] listener for {} rejected by executor: {}", busName,
+						subscriptionDescription(), e.getMessage());
+				queue.clear();
+				idle();
+			}
+		}
+	}
+
+	@Override
+	public void run() {
+		do {
+			CanbusFrame frame;
+			while ( (frame = queue.poll()) != null ) {
+				deliver(frame);
+			}
+			idle();
+			// a frame may have been queued after the last poll but before becoming idle
+		} while ( !queue.isEmpty() && scheduled.compareAndSet(false, true) );
+	}
+
+	private Object subscriptionDescription() {
+		return (subscription != null ? subscription : "monitor");
+	}
+
+	private void deliver(CanbusFrame frame) {
+		try {
+			listener.canbusFrameReceived(frame);
+		} catch ( RuntimeException e ) {
+			log.warn("Error handling CAN bus [{}] frame {}: {}", busName, frame, e.toString(), e);
+		}
+	}
+
+	private synchronized void idle() {
+		scheduled.set(false);
+		notifyAll();
+	}
+
+	/**
+	 * Wait for all queued frames to be delivered.
+	 *
+	 * @param deadline
+	 *        the system time, in milliseconds, to stop waiting at
+	 * @throws InterruptedException
+	 *         if interrupted while waiting
+	 */
+	public synchronized void awaitIdle(long deadline) throws InterruptedException {
+		while ( scheduled.get() ) {
+			long wait = deadline - System.currentTimeMillis();
+			if ( wait < 1 ) {
+				return;
+			}
+			wait(wait);
+		}
+	}
+
+	/**
+	 * Get the subscription.
+	 *
+	 * @return the subscription, or {@literal null} for a monitor listener
+	 */
+	public CanbusSubscription getSubscription() {
+		return subscription;
+	}
+
+}
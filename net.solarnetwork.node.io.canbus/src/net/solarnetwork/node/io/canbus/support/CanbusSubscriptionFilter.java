@@ -0,0 +1,183 @@
+/* ==================================================================
+ * CanbusSubscriptionFilter.java - 19/10/2026 9:32:05 AM
+ *
+ * Copyright 2026 SolarNetwork.net Dev Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ * ==================================================================
+ */
+
+package net.solarnetwork.node.io.canbus.support;
+
+import java.util.ArrayList;
+import java.util.List;
+import net.solarnetwork.node.io.canbus.CanbusFrame;
+
+/**
+ * Apply the rate limit and data filters of a {@link CanbusSubscription} to
+ * received frames.
+ *
+ * <p>
+ * This provides, in Java, the filtering a socketcand server performs with the
+ * Linux broadcast manager, for connections that receive every frame for an
+ * address:
+ * </p>
+ *
+ * <ul>
+ * <li>If the subscription has a limit, frames that arrive sooner than the limit
+ * after the last accepted frame are rejected.</li>
+ * <li>If the subscription has a data filter, frames are rejected unless the
+ * data bits in the filter, or the data length, differ from the last accepted
+ * frame.</li>
+ * <li>If the subscription is a multiplex subscription, frames are rejected
+ * unless the multiplex identifier bits match one of the data filters, and the
+ * data bits in that filter differ from the last accepted frame with the same
+ * multiplex identifier.</li>
+ * </ul>
+ *
+ * <p>
+ * The frame data is treated as a big-endian number, so the first data byte
+ * corresponds to the most significant byte of a filter. This class is not
+ * thread safe.
+ * </p>
+ *
+ * @author matt
+ * @version 1.0
+ * @since 1.2
+ */
+public class CanbusSubscriptionFilter {
+
+	private final CanbusSubscription subscription;
+	private final long limitNanos;
+	private final long identifierMask;
+	private final long[] filters;
+	private final long[] lastData;
+	private final int[] lastLength;
+	private boolean accepted;
+	private long lastAcceptTime;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param subscription
+	 *        the subscription
+	 * @throws IllegalArgumentException
+	 *         if {@code subscription} is {@literal null}
+	 */
+	public CanbusSubscriptionFilter(CanbusSubscription subscription) {
+		super();
+		if ( subscription == null ) {
+			throw new IllegalArgumentException("The subscription must be provided.");
+		}
+		this.subscription = subscription;
+		this.limitNanos = (subscription.hasLimit() ? subscription.getLimit().toNanos() : 0L);
+		if ( subscription.isMultiplexFilter() ) {
+			this.identifierMask = subscription.getDataFilter();
+			List<Long> l = new ArrayList<>(8);
+			for ( Long f : subscription.getDataFilters() ) {
+				l.add(f != null ? f : 0L);
+			}
+			this.filters = new long[l.size()];
+			for ( int i = 0; i < filters.length; i++ ) {
+				filters[i] = l.get(i);
+			}
+		} else {
+			this.identifierMask = 0L;
+			this.filters = (subscription.hasFilter() ? new long[] { subscription.getDataFilter() }
+					: new long[0]);
+		}
+		this.lastData = new long[filters.length];
+		this.lastLength = new int[filters.length];
+		for ( int i = 0; i < lastLength.length; i++ ) {
+			lastLength[i] = -1;
+		}
+	}
+
+	/**
+	 * Test if a frame should be delivered to the subscription listener.
+	 *
+	 * <p>
+	 * If this method returns {@literal true} the frame is remembered as the
+	 * last accepted frame.
+	 * </p>
+	 *
+	 * @param frame
+	 *        the frame
+	 * @param nanoTime
+	 *        the time the frame was received, from {@link System#nanoTime()}
+	 * @return {@literal true} if the frame passes the subscription filters
+	 */
+	public boolean accept(CanbusFrame frame, long nanoTime) {
+		if ( limitNanos > 0 && accepted && nanoTime - lastAcceptTime < limitNanos ) {
+			return false;
+		}
+		if ( filters.length > 0 ) {
+			final byte[] d = frame.getData();
+			final int len = (d != null ? d.length : 0);
+			final long data = longForBytes(d);
+			int idx = 0;
+			if ( identifierMask != 0L ) {
+				final long id = data & identifierMask;
+				for ( idx = 0; idx < filters.length; idx++ ) {
+					if ( (filters[idx] & identifierMask) == id ) {
+						break;
+					}
+				}
+				if ( idx >= filters.length ) {
+					return false;
+				}
+			}
+			final long masked = data & filters[idx];
+			if ( lastLength[idx] == len && lastData[idx] == masked ) {
+				return false;
+			}
+			lastData[idx] = masked;
+			lastLength[idx] = len;
+		}
+		accepted = true;
+		lastAcceptTime = nanoTime;
+		return true;
+	}
+
+	private static long longForBytes(byte[] data) {
+		long result = 0L;
+		if ( data != null ) {
+			for ( int i = 0, len = Math.min(data.length, Long.BYTES); i < len; i++ ) {
+				result |= ((long) (data[i] & 0xFF) << ((Long.BYTES - 1 - i) * 8));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Test if this filter can reject any frames.
+	 *
+	 * @return {@literal true} if the subscription has a limit or data filter
+	 */
+	public boolean isFiltering() {
+		return (limitNanos > 0 || filters.length > 0);
+	}
+
+	/**
+	 * Get the subscription.
+	 *
+	 * @return the subscription
+	 */
+	public CanbusSubscription getSubscription() {
+		return subscription;
+	}
+
+}
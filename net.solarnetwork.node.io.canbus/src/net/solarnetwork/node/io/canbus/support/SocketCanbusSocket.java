@@ -22,24 +22,22 @@
 
 package net.solarnetwork.node.io.canbus.support;
 
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
 import java.io.OutputStreamWriter;
-import java.io.Reader;
 import java.io.Writer;
 import java.net.Socket;
 import java.util.concurrent.TimeUnit;
 import net.solarnetwork.node.io.canbus.socketcand.CanbusSocket;
 import net.solarnetwork.node.io.canbus.socketcand.Message;
-import net.solarnetwork.node.io.canbus.socketcand.SocketcandUtils;
+import net.solarnetwork.node.io.canbus.socketcand.SocketcandMessageReader;
 
 /**
  * Standard {@link Socket} based implementation of {@link CanbusSocket}.
  * 
  * @author matt
- * @version 1.0
+ * @version 1.1
  */
 public class SocketCanbusSocket implements CanbusSocket {
 
@@ -58,7 +56,7 @@ public class SocketCanbusSocket implements CanbusSocket {
 	/** The default value for the {@code socketKeepAlive} property. */
 	public static final boolean DEFAULT_SOCKET_KEEP_ALIVE = false;
 
-	private final char[] buffer = new char[4096];
+	private final SocketcandMessageReader reader = new SocketcandMessageReader();
 
 	private int socketTimeout = DEFAULT_SOCKET_TIMEOUT;
 	private boolean socketTcpNoDelay = DEFAULT_SOCKET_TCP_NO_DELAY;
@@ -67,7 +65,7 @@ public class SocketCanbusSocket implements CanbusSocket {
 	private boolean socketKeepAlive = DEFAULT_SOCKET_KEEP_ALIVE;
 
 	private Socket socket;
-	private Reader input;
+	private InputStream input;
 	private Writer output;
 	private boolean established;
 	private boolean closed;
@@ -90,7 +88,7 @@ public class SocketCanbusSocket implements CanbusSocket {
 		// start socket timeout with a more generous value when initiating the connection
 		socket.setSoTimeout(socketTimeout * 10);
 
-		input = new BufferedReader(new InputStreamReader(socket.getInputStream(), "ASCII"), 2048);
+		input = socket.getInputStream();
 		output = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), "ASCII"), 128);
 	}
 
@@ -103,13 +101,13 @@ public class SocketCanbusSocket implements CanbusSocket {
 
 	@Override
 	public Message nextMessage(long timeout, TimeUnit unit) throws IOException {
-		Reader in;
+		InputStream in;
 		synchronized ( this ) {
 			in = this.input;
 		}
 		if ( in != null ) {
-			synchronized ( buffer ) {
-				return SocketcandUtils.readMessage(in, buffer);
+			synchronized ( reader ) {
+				return reader.readMessage(in);
 			}
 		}
 		throw new IOException("Connection not open.");
@@ -29,24 +29,43 @@ import static org.easymock.EasyMock.capture;
 import static org.easymock.EasyMock.expect;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.instanceOf;
 import static org.junit.Assert.assertThat;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import org.easymock.Capture;
 import org.easymock.EasyMock;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.osgi.service.event.Event;
 import org.springframework.core.task.support.TaskExecutorAdapter;
+import com.automatak.dnp3.AnalogInput;
 import com.automatak.dnp3.AnalogOutputInt32;
+import com.automatak.dnp3.BinaryInput;
+import com.automatak.dnp3.Channel;
 import com.automatak.dnp3.ControlRelayOutputBlock;
+import com.automatak.dnp3.Counter;
+import com.automatak.dnp3.Database;
+import com.automatak.dnp3.Outstation;
+import com.automatak.dnp3.OutstationChangeSet;
 import com.automatak.dnp3.enums.CommandStatus;
 import com.automatak.dnp3.enums.ControlCode;
 import com.automatak.dnp3.enums.OperateType;
+import net.solarnetwork.node.DatumDataSource;
+import net.solarnetwork.node.domain.Datum;
 import net.solarnetwork.node.io.dnp3.ChannelService;
 import net.solarnetwork.node.io.dnp3.domain.ControlConfig;
 import net.solarnetwork.node.io.dnp3.domain.ControlType;
+import net.solarnetwork.node.io.dnp3.domain.MeasurementConfig;
+import net.solarnetwork.node.io.dnp3.domain.MeasurementType;
 import net.solarnetwork.node.io.dnp3.impl.OutstationService;
 import net.solarnetwork.node.reactor.Instruction;
 import net.solarnetwork.node.reactor.InstructionHandler;
@@ -60,7 +79,7 @@ import net.solarnetwork.util.StaticOptionalServiceCollection;
  * Test cases for the {@link OutstationService} class.
  * 
  * @author matt
- * @version 1.0
+ * @version 1.1
  */
 public class OutstationServceTests {
 
@@ -194,6 +213,189 @@ public class OutstationServceTests {
 				equalTo(Boolean.FALSE.toString()));
 	}
 
+	@Test
+	public void handleCROBWithMeasurementOffset() {
+		// given
+		TestOutstationService service = createOutstationService();
+
+		final String controlId = "/foo/switch";
+		ControlConfig cConfig = new ControlConfig(null, controlId, ControlType.Binary);
+		service.setControlConfigs(new ControlConfig[] { cConfig });
+		MeasurementConfig mConfig = new MeasurementConfig(null, "/foo/meter", "status",
+				MeasurementType.BinaryOutputStatus);
+		service.setMeasurementConfigs(new MeasurementConfig[] { mConfig });
+
+		expect(instructionHandler.handlesTopic(TOPIC_SET_CONTROL_PARAMETER)).andReturn(true);
+
+		Capture<Instruction> instrCaptor = new Capture<>();
+		expect(instructionHandler.processInstruction(capture(instrCaptor))).andReturn(Completed);
+
+		// when
+		replayAll();
+		ControlRelayOutputBlock crob = new ControlRelayOutputBlock(ControlCode.LATCH_ON, (short) 1, 0, 0,
+				CommandStatus.SUCCESS);
+		CommandStatus status = service.getCommandHandler().operateCROB(crob, 1,
+				OperateType.DirectOperate);
+
+		service.setMeasurementConfigs(null);
+		CommandStatus status2 = service.getCommandHandler().operateCROB(crob, 1,
+				OperateType.DirectOperate);
+
+		// then
+		assertThat("Command OK after binary output status measurements", status,
+				equalTo(CommandStatus.SUCCESS));
+		Instruction instr = instrCaptor.getValue();
+		assertThat("Control ID param", instr.getParameterValue(controlId),
+				equalTo(Boolean.TRUE.toString()));
+		assertThat("Command rejected once measurement offset removed", status2,
+				equalTo(CommandStatus.NOT_AUTHORIZED));
+	}
+
+	private static List<Object[]> appliedUpdates(OutstationChangeSet changes) {
+		final List<Object[]> updates = new ArrayList<>(8);
+		Database db = (Database) Proxy.newProxyInstance(Database.class.getClassLoader(),
+				new Class<?>[] { Database.class }, (proxy, method, args) -> {
+					if ( "update".equals(method.getName()) ) {
+						updates.add(new Object[] { args[0], args[1] });
+					}
+					return null;
+				});
+		changes.apply(db);
+		return updates;
+	}
+
+	private static Event datumCapturedEvent(String sourceId, long ts, Object... props) {
+		Map<String, Object> map = new HashMap<>(8);
+		map.put(Datum.SOURCE_ID, sourceId);
+		map.put(Datum.TIMESTAMP, ts);
+		for ( int i = 0; i < props.length; i += 2 ) {
+			map.put((String) props[i], props[i + 1]);
+		}
+		return new Event(DatumDataSource.EVENT_TOPIC_DATUM_CAPTURED, map);
+	}
+
+	@Test
+	public void datumCapturedUnconfiguredSourceIgnored() {
+		// given
+		TestOutstationService service = createOutstationService();
+		service.setMeasurementConfigs(new MeasurementConfig[] {
+				new MeasurementConfig(null, "/meter/1", "watts", MeasurementType.AnalogInput) });
+
+		// when
+		replayAll();
+		service.handleEvent(datumCapturedEvent("/meter/2", System.currentTimeMillis(), "watts", 1));
+
+		// then no channel access
+	}
+
+	@Test
+	public void datumCapturedScaled() throws Exception {
+		// given
+		TestOutstationService service = createOutstationService();
+		Channel channel = EasyMock.createMock(Channel.class);
+		Outstation outstation = EasyMock.createNiceMock(Outstation.class);
+
+		MeasurementConfig watts = new MeasurementConfig(null, "/meter/1", "watts",
+				MeasurementType.AnalogInput);
+		watts.setUnitMultiplier(new BigDecimal("0.001"));
+		watts.setDecimalScale(1);
+		MeasurementConfig otherWatts = new MeasurementConfig(null, "/meter/2", "watts",
+				MeasurementType.AnalogInput);
+		MeasurementConfig current = new MeasurementConfig(null, "/meter/1", "current",
+				MeasurementType.AnalogInput);
+		MeasurementConfig voltage = new MeasurementConfig(null, "/meter/1", "voltage",
+				MeasurementType.AnalogInput);
+		voltage.setDecimalScale(1);
+		MeasurementConfig wattHours = new MeasurementConfig(null, "/meter/1", "wattHours",
+				MeasurementType.Counter);
+		wattHours.setUnitMultiplier(new BigDecimal("0.001"));
+		MeasurementConfig relay = new MeasurementConfig(null, "/meter/1", "relay",
+				MeasurementType.BinaryInput);
+		service.setMeasurementConfigs(new MeasurementConfig[] { watts, otherWatts, current, voltage,
+				wattHours, relay });
+
+		expect(channelService.dnp3Channel()).andReturn(channel);
+		expect(channel.addOutstation(EasyMock.anyObject(), EasyMock.anyObject(),
+				EasyMock.anyObject(), EasyMock.anyObject())).andReturn(outstation);
+		Capture<OutstationChangeSet> changesCaptor = new Capture<>();
+		outstation.apply(capture(changesCaptor));
+
+		// when
+		replayAll();
+		EasyMock.replay(channel, outstation);
+		service.configurationChanged(null);
+		final long ts = System.currentTimeMillis();
+		service.handleEvent(datumCapturedEvent("/meter/1", ts, "watts", 12345, "current", 7,
+				"voltage", 240.25, "wattHours", 123456789L, "relay", 1));
+
+		// then
+		List<Object[]> updates = appliedUpdates(changesCaptor.getValue());
+		assertThat("Updates for configured source properties only", updates, hasSize(5));
+
+		assertThat("Watts type", updates.get(0)[0], instanceOf(AnalogInput.class));
+		assertThat("Watts index", updates.get(0)[1], equalTo(0));
+		assertThat("Watts multiplied and rounded", ((AnalogInput) updates.get(0)[0]).value,
+				equalTo(12.3));
+
+		assertThat("Current index skips other source", updates.get(1)[1], equalTo(2));
+		assertThat("Integer current unchanged", ((AnalogInput) updates.get(1)[0]).value,
+				equalTo(7.0));
+
+		assertThat("Voltage index", updates.get(2)[1], equalTo(3));
+		assertThat("Voltage rounded half up", ((AnalogInput) updates.get(2)[0]).value,
+				equalTo(240.3));
+
+		assertThat("Energy type", updates.get(3)[0], instanceOf(Counter.class));
+		assertThat("Energy index", updates.get(3)[1], equalTo(0));
+		assertThat("Energy multiplied and rounded", ((Counter) updates.get(3)[0]).value,
+				equalTo(123457L));
+
+		assertThat("Relay type", updates.get(4)[0], instanceOf(BinaryInput.class));
+		assertThat("Relay index", updates.get(4)[1], equalTo(0));
+		assertThat("Relay value", ((BinaryInput) updates.get(4)[0]).value, equalTo(true));
+
+		EasyMock.verify(channel, outstation);
+	}
+
+	@Test
+	public void datumCapturedAfterConfigurationChanged() throws Exception {
+		// given
+		TestOutstationService service = createOutstationService();
+		Channel channel = EasyMock.createMock(Channel.class);
+		Outstation outstation = EasyMock.createNiceMock(Outstation.class);
+
+		MeasurementConfig watts = new MeasurementConfig(null, "/meter/1", "watts",
+				MeasurementType.AnalogInput);
+		service.setMeasurementConfigs(new MeasurementConfig[] { watts });
+
+		expect(channelService.dnp3Channel()).andReturn(channel).times(2);
+		expect(channel.addOutstation(EasyMock.anyObject(), EasyMock.anyObject(),
+				EasyMock.anyObject(), EasyMock.anyObject())).andReturn(outstation).times(2);
+		Capture<OutstationChangeSet> changesCaptor = new Capture<>();
+		outstation.apply(capture(changesCaptor));
+
+		// when
+		replayAll();
+		EasyMock.replay(channel, outstation);
+		service.configurationChanged(null);
+
+		// change the source ID in place, as settings updates do
+		watts.setSourceId("/meter/2");
+		watts.setDecimalScale(-1);
+		service.configurationChanged(null);
+
+		final long ts = System.currentTimeMillis();
+		service.handleEvent(datumCapturedEvent("/meter/1", ts, "watts", 1.23));
+		service.handleEvent(datumCapturedEvent("/meter/2", ts, "watts", 1.23));
+
+		// then
+		List<Object[]> updates = appliedUpdates(changesCaptor.getValue());
+		assertThat("Update from new source only", updates, hasSize(1));
+		assertThat("Value not rounded", ((AnalogInput) updates.get(0)[0]).value, equalTo(1.23));
+
+		EasyMock.verify(channel, outstation);
+	}
+
 	@Test
 	public void handleCROBLatchOnWithTaskExecutor() throws InterruptedException {
 		// given
@@ -23,14 +23,15 @@
 package net.solarnetwork.node.io.dnp3.impl;
 
 import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.math.RoundingMode;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.ListIterator;
 import java.util.Map;
 import org.osgi.service.event.Event;
 import org.osgi.service.event.EventHandler;
@@ -95,7 +96,7 @@ import net.solarnetwork.util.StringUtils;
  * events to DNP3.
  * 
  * @author matt
- * @version 1.2
+ * @version 1.3
  */
 public class OutstationService extends AbstractApplicationService
 		implements EventHandler, SettingSpecifierProvider {
@@ -121,6 +122,7 @@ public class OutstationService extends AbstractApplicationService
 
 	private Outstation outstation;
 	private Runnable initTask;
+	private volatile RoutingPlan routingPlan;
 
 	/**
 	 * Constructor.
@@ -155,6 +157,7 @@ public class OutstationService extends AbstractApplicationService
 	 */
 	@Override
 	public synchronized void configurationChanged(Map<String, Object> properties) {
+		this.routingPlan = new RoutingPlan(getMeasurementConfigs(), getControlConfigs());
 		super.configurationChanged(properties);
 		if ( initTask != null ) {
 			// init task already underway
@@ -226,9 +229,9 @@ public class OutstationService extends AbstractApplicationService
 	}
 
 	private OutstationStackConfig createOutstationStackConfig() {
-		Map<MeasurementType, List<MeasurementConfig>> configs = measurementTypeMap(
-				getMeasurementConfigs());
-		Map<ControlType, List<ControlConfig>> controlConfigs = controlTypeMap(getControlConfigs());
+		RoutingPlan plan = routingPlan();
+		Map<MeasurementType, List<MeasurementConfig>> configs = plan.measurementTypes;
+		Map<ControlType, List<ControlConfig>> controlConfigs = plan.controlTypes;
 		OutstationStackConfig config = new OutstationStackConfig(
 				createDatabaseConfig(configs, controlConfigs),
 				createEventBufferConfig(configs, controlConfigs));
@@ -237,7 +240,7 @@ public class OutstationService extends AbstractApplicationService
 		return config;
 	}
 
-	private Map<MeasurementType, List<MeasurementConfig>> measurementTypeMap(
+	private static Map<MeasurementType, List<MeasurementConfig>> measurementTypeMap(
 			MeasurementConfig[] configs) {
 		Map<MeasurementType, List<MeasurementConfig>> map = new LinkedHashMap<>(
 				configs != null ? configs.length : 0);
@@ -253,7 +256,7 @@ public class OutstationService extends AbstractApplicationService
 		return map;
 	}
 
-	private Map<ControlType, List<ControlConfig>> controlTypeMap(ControlConfig[] configs) {
+	private static Map<ControlType, List<ControlConfig>> controlTypeMap(ControlConfig[] configs) {
 		Map<ControlType, List<ControlConfig>> map = new LinkedHashMap<>(
 				configs != null ? configs.length : 0);
 		if ( configs != null ) {
@@ -457,7 +460,7 @@ public class OutstationService extends AbstractApplicationService
 
 	private void handleDatumCapturedEvent(Event event) {
 		Object sourceId = event.getProperty(Datum.SOURCE_ID);
-		if ( sourceId == null ) {
+		if ( sourceId == null || !routingPlan().hasRoutes(sourceId.toString()) ) {
 			return;
 		}
 
@@ -477,7 +480,7 @@ public class OutstationService extends AbstractApplicationService
 
 	private void handleControlInfoCapturedEvent(Event event) {
 		Object sourceId = event.getProperty(Datum.SOURCE_ID);
-		if ( sourceId == null ) {
+		if ( sourceId == null || !routingPlan().hasRoutes(sourceId.toString()) ) {
 			return;
 		}
 
@@ -511,10 +514,13 @@ public class OutstationService extends AbstractApplicationService
 
 	private OutstationChangeSet changeSetForDatumCapturedEvent(final String sourceId,
 			final Event event) {
-		Map<MeasurementType, List<MeasurementConfig>> map = measurementTypeMap(getMeasurementConfigs());
-		Map<ControlType, List<ControlConfig>> controlMap = controlTypeMap(getControlConfigs());
-		if ( event == null
-				|| ((map == null || map.isEmpty()) && (controlMap == null || controlMap.isEmpty())) ) {
+		if ( event == null ) {
+			return null;
+		}
+		final RoutingPlan plan = routingPlan();
+		final List<MeasurementRoute> measRoutes = plan.measurementRoutes.get(sourceId);
+		final List<ControlRoute> controlRoutes = plan.controlRoutes.get(sourceId);
+		if ( measRoutes == null && controlRoutes == null ) {
 			return null;
 		}
 		Object timestamp = event.getProperty(Datum.TIMESTAMP);
@@ -523,149 +529,109 @@ public class OutstationService extends AbstractApplicationService
 		}
 		final long ts = ((Number) timestamp).longValue();
 		OutstationChangeSet changes = null;
-		if ( map != null ) {
-			for ( Map.Entry<MeasurementType, List<MeasurementConfig>> me : map.entrySet() ) {
-				MeasurementType type = me.getKey();
-				List<MeasurementConfig> list = me.getValue();
-				for ( ListIterator<MeasurementConfig> itr = list.listIterator(); itr.hasNext(); ) {
-					MeasurementConfig config = itr.next();
-					if ( sourceId.equals(config.getSourceId()) ) {
-						Object propVal = event.getProperty(config.getPropertyName());
-						if ( propVal != null ) {
-							if ( propVal instanceof Number ) {
-								if ( config.getUnitMultiplier() != null ) {
-									propVal = applyUnitMultiplier((Number) propVal,
-											config.getUnitMultiplier());
-								}
-								if ( config.getDecimalScale() >= 0 ) {
-									propVal = applyDecimalScale((Number) propVal,
-											config.getDecimalScale());
-								}
-							}
-							if ( changes == null ) {
-								changes = new OutstationChangeSet();
-							}
-							log.debug("Updating DNP3 {}[{}] from [{}].{} -> {}", type,
-									itr.previousIndex(), sourceId, config.getPropertyName(), propVal);
-							switch (type) {
-								case AnalogInput:
-									if ( propVal instanceof Number ) {
-										changes.update(
-												new AnalogInput(((Number) propVal).doubleValue(),
-														(byte) AnalogQuality.ONLINE.toType(), ts),
-												itr.previousIndex());
-									}
-									break;
-
-								case AnalogOutputStatus:
-									if ( propVal instanceof Number ) {
-										changes.update(
-												new AnalogOutputStatus(((Number) propVal).doubleValue(),
-														(byte) AnalogOutputStatusQuality.ONLINE.toType(),
-														ts),
-												itr.previousIndex());
-									}
-									break;
-
-								case BinaryInput:
-									changes.update(
-											new BinaryInput(booleanPropertyValue(propVal),
-													(byte) BinaryQuality.ONLINE.toType(), ts),
-											itr.previousIndex());
-									break;
-
-								case BinaryOutputStatus:
-									changes.update(new BinaryOutputStatus(booleanPropertyValue(propVal),
-											(byte) BinaryOutputStatusQuality.ONLINE.toType(), ts),
-											itr.previousIndex());
-									break;
-
-								case Counter:
-									if ( propVal instanceof Number ) {
-										changes.update(
-												new Counter(((Number) propVal).longValue(),
-														(byte) CounterQuality.ONLINE.toType(), ts),
-												itr.previousIndex());
-									}
-									break;
-
-								case DoubleBitBinaryInput:
-									changes.update(new DoubleBitBinaryInput(
-											booleanPropertyValue(propVal) ? DoubleBit.DETERMINED_ON
-													: DoubleBit.DETERMINED_OFF,
-											(byte) DoubleBitBinaryQuality.ONLINE.toType(), ts),
-											itr.previousIndex());
-									break;
-
-								case FrozenCounter:
-									if ( propVal instanceof Number ) {
-										changes.update(
-												new FrozenCounter(((Number) propVal).longValue(),
-														(byte) FrozenCounterQuality.ONLINE.toType(), ts),
-												itr.previousIndex());
-									}
-									break;
-							}
+		if ( measRoutes != null ) {
+			for ( MeasurementRoute route : measRoutes ) {
+				Object propVal = event.getProperty(route.propertyName);
+				if ( propVal == null ) {
+					continue;
+				}
+				if ( propVal instanceof Number ) {
+					propVal = route.applyScaling((Number) propVal);
+				}
+				if ( changes == null ) {
+					changes = new OutstationChangeSet();
+				}
+				log.debug("Updating DNP3 {}[{}] from [{}].{} -> {}", route.type, route.index, sourceId,
+						route.propertyName, propVal);
+				switch (route.type) {
+					case AnalogInput:
+						if ( propVal instanceof Number ) {
+							changes.update(new AnalogInput(((Number) propVal).doubleValue(),
+									(byte) AnalogQuality.ONLINE.toType(), ts), route.index);
 						}
-					}
+						break;
+
+					case AnalogOutputStatus:
+						if ( propVal instanceof Number ) {
+							changes.update(new AnalogOutputStatus(((Number) propVal).doubleValue(),
+									(byte) AnalogOutputStatusQuality.ONLINE.toType(), ts),
+									route.index);
+						}
+						break;
+
+					case BinaryInput:
+						changes.update(new BinaryInput(booleanPropertyValue(propVal),
+								(byte) BinaryQuality.ONLINE.toType(), ts), route.index);
+						break;
+
+					case BinaryOutputStatus:
+						changes.update(new BinaryOutputStatus(booleanPropertyValue(propVal),
+								(byte) BinaryOutputStatusQuality.ONLINE.toType(), ts), route.index);
+						break;
+
+					case Counter:
+						if ( propVal instanceof Number ) {
+							changes.update(new Counter(((Number) propVal).longValue(),
+									(byte) CounterQuality.ONLINE.toType(), ts), route.index);
+						}
+						break;
+
+					case DoubleBitBinaryInput:
+						changes.update(new DoubleBitBinaryInput(
+								booleanPropertyValue(propVal) ? DoubleBit.DETERMINED_ON
+										: DoubleBit.DETERMINED_OFF,
+								(byte) DoubleBitBinaryQuality.ONLINE.toType(), ts), route.index);
+						break;
+
+					case FrozenCounter:
+						if ( propVal instanceof Number ) {
+							changes.update(new FrozenCounter(((Number) propVal).longValue(),
+									(byte) FrozenCounterQuality.ONLINE.toType(), ts), route.index);
+						}
+						break;
 				}
 			}
-			if ( controlMap != null ) {
-				int analogStatusOffset = typeConfigCount(MeasurementType.AnalogOutputStatus, map);
-				int binaryStatusOffset = typeConfigCount(MeasurementType.BinaryOutputStatus, map);
-				for ( Map.Entry<ControlType, List<ControlConfig>> me : controlMap.entrySet() ) {
-					ControlType type = me.getKey();
-					List<ControlConfig> list = me.getValue();
-					for ( ListIterator<ControlConfig> itr = list.listIterator(); itr.hasNext(); ) {
-						ControlConfig config = itr.next();
-						if ( sourceId.equals(config.getControlId()) ) {
-							if ( changes == null ) {
-								changes = new OutstationChangeSet();
+		}
+		if ( controlRoutes != null ) {
+			Object propVal = event.getProperty("value");
+			for ( ControlRoute route : controlRoutes ) {
+				if ( changes == null ) {
+					changes = new OutstationChangeSet();
+				}
+				log.debug("Updating DNP3 control {}[{}] from [{}].value -> {}", route.type,
+						route.index, sourceId, propVal);
+				switch (route.type) {
+					case Analog:
+						try {
+							Number n = null;
+							if ( propVal instanceof Number ) {
+								n = (Number) propVal;
+							} else {
+								n = new BigDecimal(propVal.toString());
 							}
+							changes.update(new AnalogOutputStatus(n.doubleValue(),
+									(byte) AnalogOutputStatusQuality.ONLINE.toType(), ts),
+									route.index);
+						} catch ( NumberFormatException e ) {
+							log.warn("Cannot convert control [{}] value [{}] to number: {}", sourceId,
+									propVal, e.getMessage());
+						}
+						break;
 
-							int index = (type == ControlType.Analog ? analogStatusOffset
-									: binaryStatusOffset) + itr.previousIndex();
-
-							Object propVal = event.getProperty("value");
-							log.debug("Updating DNP3 control {}[{}] from [{}].value -> {}", type, index,
-									sourceId, propVal);
-							switch (type) {
-								case Analog:
-									try {
-										Number n = null;
-										if ( propVal instanceof Number ) {
-											n = (Number) propVal;
-										} else {
-											n = new BigDecimal(propVal.toString());
-										}
-										changes.update(new AnalogOutputStatus(n.doubleValue(),
-												(byte) AnalogOutputStatusQuality.ONLINE.toType(), ts),
-												index);
-									} catch ( NumberFormatException e ) {
-										log.warn("Cannot convert control [{}] value [{}] to number: {}",
-												sourceId, propVal, e.getMessage());
-									}
-									break;
-
-								case Binary:
-									changes.update(new BinaryOutputStatus(booleanPropertyValue(propVal),
-											(byte) BinaryOutputStatusQuality.ONLINE.toType(), ts),
-											index);
-									break;
+					case Binary:
+						changes.update(new BinaryOutputStatus(booleanPropertyValue(propVal),
+								(byte) BinaryOutputStatusQuality.ONLINE.toType(), ts), route.index);
+						break;
 
-							}
-						}
-					}
 				}
 			}
-
 		}
 
 		return changes;
 
 	}
 
-	private <T, C> int typeConfigCount(T key, Map<T, List<C>> map) {
+	private static <T, C> int typeConfigCount(T key, Map<T, List<C>> map) {
 		if ( map == null || map.isEmpty() ) {
 			return 0;
 		}
@@ -683,23 +649,133 @@ public class OutstationService extends AbstractApplicationService
 		}
 	}
 
-	private Number applyDecimalScale(Number value, int decimalScale) {
-		if ( decimalScale < 0 ) {
-			return value;
+	private RoutingPlan routingPlan() {
+		RoutingPlan plan = this.routingPlan;
+		if ( plan == null ) {
+			// configurations set without configurationChanged() being called, e.g. in tests
+			plan = new RoutingPlan(getMeasurementConfigs(), getControlConfigs());
+			this.routingPlan = plan;
 		}
-		BigDecimal v = NumberUtils.bigDecimalForNumber(value);
-		if ( v.scale() > decimalScale ) {
-			v = v.setScale(decimalScale, RoundingMode.HALF_UP);
+		return plan;
+	}
+
+	/**
+	 * An immutable snapshot of the configured DNP3 points, organized by the
+	 * source (or control) ID that updates them.
+	 * 
+	 * <p>
+	 * This is computed once per configuration change so that handling an event
+	 * only has to visit the points associated with the event's source, and
+	 * events from sources without any points can be discarded immediately.
+	 * </p>
+	 */
+	private static final class RoutingPlan {
+
+		private final Map<MeasurementType, List<MeasurementConfig>> measurementTypes;
+		private final Map<ControlType, List<ControlConfig>> controlTypes;
+		private final Map<String, List<MeasurementRoute>> measurementRoutes;
+		private final Map<String, List<ControlRoute>> controlRoutes;
+
+		private RoutingPlan(MeasurementConfig[] measurementConfigs, ControlConfig[] controlConfigs) {
+			super();
+			this.measurementTypes = Collections
+					.unmodifiableMap(measurementTypeMap(measurementConfigs));
+			this.controlTypes = Collections.unmodifiableMap(controlTypeMap(controlConfigs));
+
+			Map<String, List<MeasurementRoute>> measRoutes = new HashMap<>(8);
+			for ( Map.Entry<MeasurementType, List<MeasurementConfig>> me : measurementTypes
+					.entrySet() ) {
+				int index = 0;
+				for ( MeasurementConfig config : me.getValue() ) {
+					if ( config.getSourceId() != null ) {
+						measRoutes.computeIfAbsent(config.getSourceId(), k -> new ArrayList<>(4))
+								.add(new MeasurementRoute(me.getKey(), index, config));
+					}
+					index++;
+				}
+			}
+			this.measurementRoutes = measRoutes;
+
+			final int analogStatusOffset = typeConfigCount(MeasurementType.AnalogOutputStatus,
+					measurementTypes);
+			final int binaryStatusOffset = typeConfigCount(MeasurementType.BinaryOutputStatus,
+					measurementTypes);
+			Map<String, List<ControlRoute>> ctrlRoutes = new HashMap<>(8);
+			for ( Map.Entry<ControlType, List<ControlConfig>> me : controlTypes.entrySet() ) {
+				ControlType type = me.getKey();
+				int index = (type == ControlType.Analog ? analogStatusOffset : binaryStatusOffset);
+				for ( ControlConfig config : me.getValue() ) {
+					ctrlRoutes.computeIfAbsent(config.getControlId(), k -> new ArrayList<>(2))
+							.add(new ControlRoute(type, index));
+					index++;
+				}
+			}
+			this.controlRoutes = ctrlRoutes;
 		}
-		return v;
+
+		private boolean hasRoutes(String sourceId) {
+			return (measurementRoutes.containsKey(sourceId) || controlRoutes.containsKey(sourceId));
+		}
+
+	}
+
+	/**
+	 * A measurement point to update from a datum property.
+	 */
+	private static final class MeasurementRoute {
+
+		private final MeasurementType type;
+		private final int index;
+		private final String propertyName;
+		private final BigDecimal unitMultiplier;
+		private final int decimalScale;
+
+		private MeasurementRoute(MeasurementType type, int index, MeasurementConfig config) {
+			super();
+			this.type = type;
+			this.index = index;
+			this.propertyName = config.getPropertyName();
+			BigDecimal m = config.getUnitMultiplier();
+			this.unitMultiplier = (m != null && BigDecimal.ONE.compareTo(m) != 0 ? m : null);
+			this.decimalScale = config.getDecimalScale();
+		}
+
+		private Number applyScaling(Number value) {
+			if ( unitMultiplier == null && (decimalScale < 0 || isIntegral(value)) ) {
+				// nothing to scale, and rounding an integer has no effect
+				return value;
+			}
+			BigDecimal v = NumberUtils.bigDecimalForNumber(value);
+			if ( unitMultiplier != null ) {
+				v = v.multiply(unitMultiplier);
+			}
+			if ( decimalScale >= 0 && v.scale() > decimalScale ) {
+				v = v.setScale(decimalScale, RoundingMode.HALF_UP);
+			}
+			return v;
+		}
+
+		private static boolean isIntegral(Number value) {
+			return (value instanceof Integer || value instanceof Long || value instanceof Short
+					|| value instanceof Byte || value instanceof BigInteger);
+		}
+
 	}
 
-	private Number applyUnitMultiplier(Number value, BigDecimal multiplier) {
-		if ( BigDecimal.ONE.compareTo(multiplier) == 0 ) {
-			return value;
+	/**
+	 * A control output status point to update from a control value.
+	 */
+	private static final class ControlRoute {
+
+		private final ControlType type;
+		private final int index;
+
+		private ControlRoute(ControlType type, int index) {
+			super();
+			this.type = type;
+			this.index = index;
 		}
-		BigDecimal v = NumberUtils.bigDecimalForNumber(value);
-		return v.multiply(multiplier);
+
 	}
 
 	/*
@@ -811,7 +887,7 @@ public class OutstationService extends AbstractApplicationService
 		MeasurementType measType = (controlType == ControlType.Analog
 				? MeasurementType.AnalogOutputStatus
 				: MeasurementType.BinaryOutputStatus);
-		int binaryStatusOffset = typeConfigCount(measType, measurementTypeMap(getMeasurementConfigs()));
+		int binaryStatusOffset = typeConfigCount(measType, routingPlan().measurementTypes);
 		int controlConfigIndex = index - binaryStatusOffset;
 		ControlConfig[] configs = getControlConfigs();
 		if ( configs != null && controlConfigIndex < configs.length ) {
@@ -985,6 +1061,7 @@ public class OutstationService extends AbstractApplicationService
 	 */
 	public void setMeasurementConfigs(MeasurementConfig[] measurementConfigs) {
 		this.measurementConfigs = measurementConfigs;
+		this.routingPlan = null;
 	}
 
 	/**
@@ -1011,6 +1088,7 @@ public class OutstationService extends AbstractApplicationService
 	public void setMeasurementConfigsCount(int count) {
 		this.measurementConfigs = ArrayUtils.arrayWithLength(this.measurementConfigs, count,
 				MeasurementConfig.class, null);
+		this.routingPlan = null;
 	}
 
 	/**
@@ -1030,6 +1108,7 @@ public class OutstationService extends AbstractApplicationService
 	 */
 	public void setControlConfigs(ControlConfig[] controlConfigs) {
 		this.controlConfigs = controlConfigs;
+		this.routingPlan = null;
 	}
 
 	/**
@@ -1056,6 +1135,7 @@ public class OutstationService extends AbstractApplicationService
 	public void setControlConfigsCount(int count) {
 		this.controlConfigs = ArrayUtils.arrayWithLength(this.controlConfigs, count, ControlConfig.class,
 				null);
+		this.routingPlan = null;
 	}
 
 	/**
@@ -0,0 +1,164 @@
+/* ==================================================================
+ * JamodTcpConnectionPoolTests.java - 18/10/2026 8:05:33 PM
+ *
+ * Copyright 2026 SolarNetwork.net Dev Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ * ==================================================================
+ */
+
+package net.solarnetwork.node.io.modbus.jamod.test;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import net.solarnetwork.node.LockTimeoutException;
+import net.solarnetwork.node.io.modbus.jamod.JamodTcpConnectionPool;
+import net.solarnetwork.node.io.modbus.jamod.JamodTcpConnectionPool.PooledConnection;
+import net.wimpi.modbus.net.TCPMasterConnection;
+
+/**
+ * Test cases for the {@link JamodTcpConnectionPool} class.
+ *
+ * @author matt
+ * @version 1.0
+ */
+public class JamodTcpConnectionPoolTests {
+
+	private static final long KEEP_OPEN = TimeUnit.MINUTES.toMillis(1);
+
+	private ServerSocket server;
+	private String key;
+	private AtomicInteger createCount;
+	private Callable<TCPMasterConnection> factory;
+	private JamodTcpConnectionPool pool;
+
+	@Before
+	public void setup() throws IOException {
+		server = new ServerSocket(0, 10, InetAddress.getLoopbackAddress());
+		key = "localhost:" + server.getLocalPort();
+		createCount = new AtomicInteger();
+		factory = () -> {
+			createCount.incrementAndGet();
+			TCPMasterConnection conn = new TCPMasterConnection(InetAddress.getLoopbackAddress());
+			conn.setPort(server.getLocalPort());
+			return conn;
+		};
+		pool = new JamodTcpConnectionPool();
+	}
+
+	@After
+	public void teardown() throws IOException {
+		pool.shutdown();
+		server.close();
+	}
+
+	@Test
+	public void connectionReused() throws IOException {
+		// given
+		PooledConnection pc = pool.acquire(key, factory, KEEP_OPEN, 1, TimeUnit.SECONDS);
+		TCPMasterConnection conn = pc.getConnection();
+		pc.release(true);
+
+		// when
+		PooledConnection pc2 = pool.acquire(key, factory, KEEP_OPEN, 1, TimeUnit.SECONDS);
+
+		// then
+		assertThat("Same connection returned", pc2.getConnection(), sameInstance(conn));
+		assertThat("Connection still connected", conn.isConnected(), equalTo(true));
+		assertThat("Connection created once", createCount.get(), equalTo(1));
+		pc2.release(true);
+	}
+
+	@Test
+	public void unhealthyConnectionClosed() throws IOException {
+		// given
+		PooledConnection pc = pool.acquire(key, factory, KEEP_OPEN, 1, TimeUnit.SECONDS);
+		TCPMasterConnection conn = pc.getConnection();
+		pc.release(false);
+
+		// when
+		PooledConnection pc2 = pool.acquire(key, factory, KEEP_OPEN, 1, TimeUnit.SECONDS);
+
+		// then
+		assertThat("Unhealthy connection closed", conn.isConnected(), equalTo(false));
+		assertThat("New connection returned", pc2.getConnection(), not(sameInstance(conn)));
+		assertThat("Connection created twice", createCount.get(), equalTo(2));
+		pc2.release(true);
+	}
+
+	@Test
+	public void idleConnectionEvicted() throws Exception {
+		// given
+		PooledConnection pc = pool.acquire(key, factory, 1, 1, TimeUnit.SECONDS);
+		TCPMasterConnection conn = pc.getConnection();
+		pc.release(true);
+		Thread.sleep(20);
+
+		// when
+		pool.evictIdleConnections();
+
+		// then
+		assertThat("Idle connection closed", conn.isConnected(), equalTo(false));
+	}
+
+	@Test
+	public void activeConnectionNotEvicted() throws Exception {
+		// given
+		PooledConnection pc = pool.acquire(key, factory, 1, 1, TimeUnit.SECONDS);
+		Thread.sleep(20);
+
+		// when
+		pool.evictIdleConnections();
+
+		// then
+		assertThat("Connection in use not closed", pc.getConnection().isConnected(), equalTo(true));
+		pc.release(true);
+	}
+
+	@Test(expected = LockTimeoutException.class)
+	public void connectionInUseByOtherThread() throws Throwable {
+		PooledConnection pc = pool.acquire(key, factory, KEEP_OPEN, 1, TimeUnit.SECONDS);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Future<PooledConnection> f = executor
+					.submit(() -> pool.acquire(key, factory, KEEP_OPEN, 100, TimeUnit.MILLISECONDS));
+			try {
+				f.get();
+			} catch ( ExecutionException e ) {
+				throw e.getCause();
+			}
+		} finally {
+			pc.release(true);
+			executor.shutdown();
+		}
+	}
+
+}
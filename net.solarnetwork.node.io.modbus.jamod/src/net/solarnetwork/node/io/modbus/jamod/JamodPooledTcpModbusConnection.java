@@ -0,0 +1,252 @@
+/* ==================================================================
+ * JamodPooledTcpModbusConnection.java - 18/10/2026 7:41:26 PM
+ *
+ * Copyright 2026 SolarNetwork.net Dev Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ * ==================================================================
+ */
+
+package net.solarnetwork.node.io.modbus.jamod;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.BitSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import net.solarnetwork.node.io.modbus.ModbusConnection;
+import net.solarnetwork.node.io.modbus.ModbusReadFunction;
+import net.solarnetwork.node.io.modbus.ModbusWriteFunction;
+import net.solarnetwork.node.io.modbus.support.AbstractModbusConnection;
+import net.wimpi.modbus.ModbusSlaveException;
+import net.wimpi.modbus.net.TCPMasterConnection;
+
+/**
+ * Jamod TCP implementation of {@link ModbusConnection} that uses a connection
+ * from a {@link JamodTcpConnectionPool}.
+ *
+ * <p>
+ * The pooled connection is acquired by {@link #open()} and released back to
+ * the pool by {@link #close()}, so the socket stays connected between uses.
+ * If any Modbus operation fails for a reason other than an exception response
+ * from the device, the socket is released as unhealthy so that the pool closes
+ * it and the next user reconnects.
+ * </p>
+ *
+ * @author matt
+ * @version 1.0
+ * @since 1.1
+ */
+public class JamodPooledTcpModbusConnection extends AbstractModbusConnection
+		implements ModbusConnection {
+
+	private final JamodTcpConnectionPool pool;
+	private final String key;
+	private final Callable<TCPMasterConnection> connectionFactory;
+	private long keepOpenMillis;
+	private long timeoutMillis;
+
+	private JamodTcpConnectionPool.PooledConnection pooled;
+	private JamodTcpModbusConnection delegate;
+	private boolean healthy;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param pool
+	 *        the pool to obtain connections from
+	 * @param key
+	 *        the pool key, i.e. {@literal host:port}
+	 * @param connectionFactory
+	 *        a factory for new (not yet connected) connections
+	 * @param unitId
+	 *        the unit ID
+	 * @param headless
+	 *        the headless flag
+	 */
+	public JamodPooledTcpModbusConnection(JamodTcpConnectionPool pool, String key,
+			Callable<TCPMasterConnection> connectionFactory, int unitId, boolean headless) {
+		super(unitId, headless);
+		this.pool = pool;
+		this.key = key;
+		this.connectionFactory = connectionFactory;
+	}
+
+	@Override
+	public String toString() {
+		return "JamodPooledTcpModbusConnection{host=" + key + ",unit=" + getUnitId() + '}';
+	}
+
+	@Override
+	protected void finalize() throws Throwable {
+		close();
+		super.finalize();
+	}
+
+	@Override
+	public void open() throws IOException {
+		if ( pooled != null ) {
+			return;
+		}
+		pooled = pool.acquire(key, connectionFactory, keepOpenMillis, timeoutMillis,
+				TimeUnit.MILLISECONDS);
+		delegate = new LeasedTcpModbusConnection(pooled.getConnection(), getUnitId(), isHeadless());
+		delegate.setRetries(getRetries());
+		delegate.setRetryDelayMs(getRetryDelayMs());
+		delegate.setRetryReconnect(isRetryReconnect());
+		healthy = true;
+	}
+
+	@Override
+	public void close() {
+		if ( pooled != null ) {
+			pooled.release(healthy);
+			pooled = null;
+			delegate = null;
+		}
+	}
+
+	/**
+	 * A connection on a pooled socket, which leaves the socket open when
+	 * closed.
+	 */
+	private static class LeasedTcpModbusConnection extends JamodTcpModbusConnection {
+
+		private LeasedTcpModbusConnection(TCPMasterConnection conn, int unitId, boolean headless) {
+			super(conn, unitId, headless);
+		}
+
+		@Override
+		public void close() {
+			// the socket is managed by the pool
+		}
+
+	}
+
+	private <T> T doWithDelegate(Function<JamodTcpModbusConnection, T> action) {
+		if ( delegate == null ) {
+			throw new IllegalStateException("Connection " + this + " is not open");
+		}
+		try {
+			return action.apply(delegate);
+		} catch ( RuntimeException e ) {
+			if ( !(e.getCause() instanceof ModbusSlaveException) ) {
+				healthy = false;
+			}
+			throw e;
+		}
+	}
+
+	@Override
+	public BitSet readDiscreetValues(final int[] addresses, final int count) {
+		return doWithDelegate(c -> c.readDiscreetValues(addresses, count));
+	}
+
+	@Override
+	public BitSet readDiscreetValues(final int address, final int count) {
+		return doWithDelegate(c -> c.readDiscreetValues(address, count));
+	}
+
+	@Override
+	public void writeDiscreetValues(final int[] addresses, final BitSet bits) {
+		doWithDelegate(c -> {
+			c.writeDiscreetValues(addresses, bits);
+			return null;
+		});
+	}
+
+	@Override
+	public BitSet readInputDiscreteValues(final int address, final int count) {
+		return doWithDelegate(c -> c.readInputDiscreteValues(address, count));
+	}
+
+	@Override
+	public short[] readWords(ModbusReadFunction function, int address, int count) {
+		return doWithDelegate(c -> c.readWords(function, address, count));
+	}
+
+	@Override
+	public void writeWords(ModbusWriteFunction function, int address, short[] values) {
+		doWithDelegate(c -> {
+			c.writeWords(function, address, values);
+			return null;
+		});
+	}
+
+	@Override
+	public int[] readWordsUnsigned(ModbusReadFunction function, int address, int count) {
+		return doWithDelegate(c -> c.readWordsUnsigned(function, address, count));
+	}
+
+	@Override
+	public void writeWords(ModbusWriteFunction function, int address, int[] values) {
+		doWithDelegate(c -> {
+			c.writeWords(function, address, values);
+			return null;
+		});
+	}
+
+	@Override
+	public byte[] readBytes(ModbusReadFunction function, int address, int count) {
+		return doWithDelegate(c -> c.readBytes(function, address, count));
+	}
+
+	@Override
+	public void writeBytes(ModbusWriteFunction function, int address, byte[] values) {
+		doWithDelegate(c -> {
+			c.writeBytes(function, address, values);
+			return null;
+		});
+	}
+
+	@Override
+	public String readString(ModbusReadFunction function, int address, int count, boolean trim,
+			Charset charset) {
+		return doWithDelegate(c -> c.readString(function, address, count, trim, charset));
+	}
+
+	@Override
+	public void writeString(ModbusWriteFunction function, int address, String value, Charset charset) {
+		doWithDelegate(c -> {
+			c.writeString(function, address, value, charset);
+			return null;
+		});
+	}
+
+	/**
+	 * Set the maximum number of milliseconds the pooled connection may remain
+	 * idle after being closed before the pool closes the socket.
+	 *
+	 * @param keepOpenMillis
+	 *        the milliseconds
+	 */
+	public void setKeepOpenMillis(long keepOpenMillis) {
+		this.keepOpenMillis = keepOpenMillis;
+	}
+
+	/**
+	 * Set the maximum number of milliseconds to wait for the pooled connection
+	 * to become available in {@link #open()}.
+	 *
+	 * @param timeoutMillis
+	 *        the milliseconds
+	 */
+	public void setTimeoutMillis(long timeoutMillis) {
+		this.timeoutMillis = timeoutMillis;
+	}
+
+}
@@ -0,0 +1,334 @@
+/* ==================================================================
+ * JamodTcpConnectionPool.java - 18/10/2026 7:14:52 PM
+ *
+ * Copyright 2026 SolarNetwork.net Dev Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ * ==================================================================
+ */
+
+package net.solarnetwork.node.io.modbus.jamod;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import org.springframework.scheduling.TaskScheduler;
+import net.solarnetwork.node.LockTimeoutException;
+import net.wimpi.modbus.net.TCPMasterConnection;
+
+/**
+ * A pool of persistent {@link TCPMasterConnection} instances, keyed by
+ * {@literal host:port}.
+ *
+ * <p>
+ * At most one connection is maintained per key, and it is shared by every
+ * {@link JamodTcpModbusNetwork} (and thus every unit ID) configured with the
+ * same host and port. Access to each connection is serialized by a fair lock,
+ * so that only one Modbus transaction is ever outstanding on a socket. Before a
+ * connection is handed out it is checked, and re-created if it is no longer
+ * connected or has been idle longer than the keep-open time requested by the
+ * caller. A connection released as unhealthy is closed immediately.
+ * </p>
+ *
+ * <p>
+ * When a {@link TaskScheduler} is configured, {@link #startup()} schedules a
+ * task to run every {@code evictionIntervalSeconds} to close connections that
+ * have been idle longer than their keep-open time, so that remote devices are
+ * not left holding sockets that are no longer being used.
+ * </p>
+ *
+ * @author matt
+ * @version 1.0
+ * @since 1.1
+ */
+public class JamodTcpConnectionPool {
+
+	/** The default value for the {@code evictionIntervalSeconds} property. */
+	public static final int DEFAULT_EVICTION_INTERVAL_SECONDS = 30;
+
+	private final ConcurrentMap<String, PooledConnection> connections = new ConcurrentHashMap<>(8);
+
+	private TaskScheduler taskScheduler;
+	private int evictionIntervalSeconds = DEFAULT_EVICTION_INTERVAL_SECONDS;
+	private ScheduledFuture<?> evictionFuture;
+
+	/**
+	 * A pooled connection, obtained via
+	 * {@link JamodTcpConnectionPool#acquire(String, Callable, long, long, TimeUnit)}
+	 * and returned via {@link #release(boolean)}.
+	 */
+	public static final class PooledConnection {
+
+		private final String key;
+		private final ReentrantLock lock = new ReentrantLock(true); // use fair lock to prevent starvation
+		private TCPMasterConnection connection;
+		private long keepOpenMillis;
+		private long lastUsed;
+		private volatile boolean discard;
+
+		private PooledConnection(String key) {
+			super();
+			this.key = key;
+		}
+
+		/**
+		 * Get the connection.
+		 *
+		 * <p>
+		 * This method should only be called while the connection is held, that
+		 * is after
+		 * {@link JamodTcpConnectionPool#acquire(String, Callable, long, long, TimeUnit)}
+		 * and before {@link #release(boolean)}.
+		 * </p>
+		 *
+		 * @return the connection
+		 */
+		public TCPMasterConnection getConnection() {
+			return connection;
+		}
+
+		/**
+		 * Get the pool key.
+		 *
+		 * @return the key
+		 */
+		public String getKey() {
+			return key;
+		}
+
+		/**
+		 * Return the connection to the pool.
+		 *
+		 * <p>
+		 * This method is safe to call even if the connection has already been
+		 * released.
+		 * </p>
+		 *
+		 * @param healthy
+		 *        {@literal false} if the connection should be closed because a
+		 *        communication error occurred while using it
+		 */
+		public void release(boolean healthy) {
+			if ( !lock.isHeldByCurrentThread() ) {
+				return;
+			}
+			try {
+				lastUsed = System.currentTimeMillis();
+				if ( !healthy || discard || (connection != null && !connection.isConnected()) ) {
+					closeConnection();
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		private void lock(long timeout, TimeUnit unit) {
+			try {
+				if ( lock.tryLock(timeout, unit) ) {
+					return;
+				}
+			} catch ( InterruptedException e ) {
+				// fall through
+			}
+			throw new LockTimeoutException("Could not acquire connection " + key + " lock");
+		}
+
+		private void open(Callable<TCPMasterConnection> factory, long keepOpenMillis)
+				throws IOException {
+			final long now = System.currentTimeMillis();
+			if ( connection != null
+					&& (!connection.isConnected() || now - lastUsed > keepOpenMillis) ) {
+				closeConnection();
+			}
+			this.keepOpenMillis = keepOpenMillis;
+			this.lastUsed = now;
+			if ( connection != null ) {
+				return;
+			}
+			TCPMasterConnection conn;
+			try {
+				conn = factory.call();
+				conn.connect();
+			} catch ( IOException e ) {
+				throw e;
+			} catch ( Exception e ) {
+				throw new IOException(e);
+			}
+			connection = conn;
+			discard = false;
+		}
+
+		private void closeIfIdle(long now, boolean all) {
+			if ( !lock.tryLock() ) {
+				if ( all ) {
+					// close when the current holder releases
+					discard = true;
+				}
+				return;
+			}
+			try {
+				if ( lock.getHoldCount() > 1 ) {
+					// in use by the current thread
+					if ( all ) {
+						discard = true;
+					}
+					return;
+				}
+				if ( connection != null && (all || now - lastUsed > keepOpenMillis) ) {
+					closeConnection();
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		private void closeConnection() {
+			if ( connection == null ) {
+				return;
+			}
+			try {
+				if ( connection.isConnected() ) {
+					connection.close();
+				}
+			} catch ( RuntimeException e ) {
+				// ignore this
+			}
+			connection = null;
+		}
+	}
+
+	/**
+	 * Schedule the idle connection eviction task.
+	 */
+	public synchronized void startup() {
+		if ( evictionFuture != null || taskScheduler == null || evictionIntervalSeconds < 1 ) {
+			return;
+		}
+		final long interval = TimeUnit.SECONDS.toMillis(evictionIntervalSeconds);
+		evictionFuture = taskScheduler.scheduleWithFixedDelay(this::evictIdleConnections,
+				new Date(System.currentTimeMillis() + interval), interval);
+	}
+
+	/**
+	 * Stop the idle connection eviction task and close all connections.
+	 *
+	 * <p>
+	 * Connections in use when this method is called are closed when they are
+	 * released.
+	 * </p>
+	 */
+	public synchronized void shutdown() {
+		if ( evictionFuture != null ) {
+			evictionFuture.cancel(false);
+			evictionFuture = null;
+		}
+		final long now = System.currentTimeMillis();
+		for ( PooledConnection pc : connections.values() ) {
+			pc.closeIfIdle(now, true);
+		}
+	}
+
+	/**
+	 * Acquire exclusive use of the connection for a given key.
+	 *
+	 * <p>
+	 * If no connection is open for {@code key}, or the open connection is not
+	 * connected or has been idle for more than {@code keepOpenMillis}, a new
+	 * connection is obtained from {@code factory} and connected. The returned
+	 * connection must be passed to {@link PooledConnection#release(boolean)}
+	 * when finished being used.
+	 * </p>
+	 *
+	 * @param key
+	 *        the pool key, i.e. {@literal host:port}
+	 * @param factory
+	 *        a factory for new (not yet connected) connections
+	 * @param keepOpenMillis
+	 *        the maximum number of milliseconds the connection may remain idle
+	 *        after being released before it is closed
+	 * @param timeout
+	 *        the maximum amount of time to wait for the connection to become
+	 *        available
+	 * @param unit
+	 *        the timeout unit
+	 * @return the connected, pooled connection
+	 * @throws IOException
+	 *         if a new connection cannot be opened
+	 * @throws LockTimeoutException
+	 *         if the connection does not become available within the timeout
+	 */
+	public PooledConnection acquire(String key, Callable<TCPMasterConnection> factory,
+			long keepOpenMillis, long timeout, TimeUnit unit) throws IOException {
+		PooledConnection pc = connections.get(key);
+		if ( pc == null ) {
+			pc = new PooledConnection(key);
+			PooledConnection existing = connections.putIfAbsent(key, pc);
+			if ( existing != null ) {
+				pc = existing;
+			}
+		}
+		pc.lock(timeout, unit);
+		try {
+			pc.open(factory, keepOpenMillis);
+		} catch ( IOException | RuntimeException e ) {
+			pc.lock.unlock();
+			throw e;
+		}
+		return pc;
+	}
+
+	/**
+	 * Close all connections that have been idle longer than their keep-open
+	 * time.
+	 *
+	 * <p>
+	 * Connections currently in use are skipped.
+	 * </p>
+	 */
+	public void evictIdleConnections() {
+		final long now = System.currentTimeMillis();
+		for ( PooledConnection pc : connections.values() ) {
+			pc.closeIfIdle(now, false);
+		}
+	}
+
+	/**
+	 * Set the task scheduler to use for evicting idle connections.
+	 *
+	 * @param taskScheduler
+	 *        the task scheduler
+	 */
+	public void setTaskScheduler(TaskScheduler taskScheduler) {
+		this.taskScheduler = taskScheduler;
+	}
+
+	/**
+	 * Set the number of seconds between idle connection eviction runs.
+	 *
+	 * @param evictionIntervalSeconds
+	 *        the seconds, or {@literal 0} to disable; defaults to
+	 *        {@link #DEFAULT_EVICTION_INTERVAL_SECONDS}
+	 */
+	public void setEvictionIntervalSeconds(int evictionIntervalSeconds) {
+		this.evictionIntervalSeconds = evictionIntervalSeconds;
+	}
+
+}
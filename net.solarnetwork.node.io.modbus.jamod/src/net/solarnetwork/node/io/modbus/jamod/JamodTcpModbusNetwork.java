@@ -28,6 +28,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import net.solarnetwork.node.io.modbus.ModbusConnection;
 import net.solarnetwork.node.io.modbus.ModbusNetwork;
@@ -47,16 +48,33 @@ import net.wimpi.modbus.net.TCPMasterConnection;
  * {@code retryReconnect} to {@literal true} by default for this implementation.
  * </p>
  * 
+ * <p>
+ * When a {@link JamodTcpConnectionPool} is configured and
+ * {@code keepOpenSeconds} is greater than {@literal 0}, connections are
+ * obtained from the pool so the socket to the device is kept open between
+ * actions, and shared with any other network configured with the same host and
+ * port. Otherwise a new socket is connected and closed for every action.
+ * </p>
+ * 
  * @author matt
- * @version 1.0
+ * @version 1.1
  */
 public class JamodTcpModbusNetwork extends AbstractModbusNetwork implements SettingSpecifierProvider {
 
+	/**
+	 * The default value for the {@code keepOpenSeconds} property.
+	 * 
+	 * @since 1.1
+	 */
+	public static final int DEFAULT_KEEP_OPEN_SECONDS = 90;
+
 	private String host;
 	private int port = net.wimpi.modbus.Modbus.DEFAULT_PORT;
 	private boolean socketReuseAddress = true;
 	private int socketLinger = 1;
 	private boolean socketKeepAlive = true;
+	private JamodTcpConnectionPool connectionPool;
+	private int keepOpenSeconds = DEFAULT_KEEP_OPEN_SECONDS;
 
 	/**
 	 * Default constructor.
@@ -70,27 +88,46 @@ public class JamodTcpModbusNetwork extends AbstractModbusNetwork implements Sett
 
 	@Override
 	public ModbusConnection createConnection(int unitId) {
-		try {
-			TCPMasterConnection conn = new LockingTcpConnection(InetAddress.getByName(host));
-			conn.setPort(port);
-			conn.setTimeout((int) getTimeoutUnit().toMillis(getTimeout()));
-
-			// SN extended feature support; don't assume we are using this
-			Map<String, Object> extendedProperties = new HashMap<String, Object>(4);
-			extendedProperties.put("socketKeepAlive", isSocketKeepAlive());
-			extendedProperties.put("socketLinger", getSocketLinger());
-			extendedProperties.put("socketReuseAddress", isSocketReuseAddress());
-			ClassUtils.setBeanProperties(conn, extendedProperties, true);
-
-			JamodTcpModbusConnection mbconn = new JamodTcpModbusConnection(conn, unitId, isHeadless());
+		final JamodTcpConnectionPool pool = connectionPool;
+		if ( pool != null && keepOpenSeconds > 0 ) {
+			final InetAddress addr = hostAddress();
+			JamodPooledTcpModbusConnection mbconn = new JamodPooledTcpModbusConnection(pool,
+					getNetworkDescription(), () -> configureConnection(new TCPMasterConnection(addr)),
+					unitId, isHeadless());
 			mbconn.setRetries(getRetries());
 			mbconn.setRetryReconnect(isRetryReconnect());
+			mbconn.setKeepOpenMillis(TimeUnit.SECONDS.toMillis(keepOpenSeconds));
+			mbconn.setTimeoutMillis(getTimeoutUnit().toMillis(getTimeout()));
 			return mbconn;
+		}
+		TCPMasterConnection conn = configureConnection(new LockingTcpConnection(hostAddress()));
+		JamodTcpModbusConnection mbconn = new JamodTcpModbusConnection(conn, unitId, isHeadless());
+		mbconn.setRetries(getRetries());
+		mbconn.setRetryReconnect(isRetryReconnect());
+		return mbconn;
+	}
+
+	private InetAddress hostAddress() {
+		try {
+			return InetAddress.getByName(host);
 		} catch ( UnknownHostException e ) {
 			throw new RuntimeException("Unknown modbus host [" + host + "]");
 		}
 	}
 
+	private TCPMasterConnection configureConnection(TCPMasterConnection conn) {
+		conn.setPort(port);
+		conn.setTimeout((int) getTimeoutUnit().toMillis(getTimeout()));
+
+		// SN extended feature support; don't assume we are using this
+		Map<String, Object> extendedProperties = new HashMap<String, Object>(4);
+		extendedProperties.put("socketKeepAlive", isSocketKeepAlive());
+		extendedProperties.put("socketLinger", getSocketLinger());
+		extendedProperties.put("socketReuseAddress", isSocketReuseAddress());
+		ClassUtils.setBeanProperties(conn, extendedProperties, true);
+		return conn;
+	}
+
 	@Override
 	protected String getNetworkDescription() {
 		return host + ":" + port;
@@ -162,6 +199,8 @@ public class JamodTcpModbusNetwork extends AbstractModbusNetwork implements Sett
 		results.add(new BasicTextFieldSettingSpecifier("socketLinger",
 				String.valueOf(defaults.socketLinger)));
 		results.add(new BasicToggleSettingSpecifier("socketKeepAlive", defaults.socketKeepAlive));
+		results.add(new BasicTextFieldSettingSpecifier("keepOpenSeconds",
+				String.valueOf(defaults.keepOpenSeconds)));
 		return results;
 	}
 
@@ -265,4 +304,52 @@ public class JamodTcpModbusNetwork extends AbstractModbusNetwork implements Sett
 	public void setSocketKeepAlive(boolean keepAlive) {
 		this.socketKeepAlive = keepAlive;
 	}
+
+	/**
+	 * Get the connection pool.
+	 * 
+	 * @return the pool, or {@literal null}
+	 * @since 1.1
+	 */
+	public JamodTcpConnectionPool getConnectionPool() {
+		return connectionPool;
+	}
+
+	/**
+	 * Set a connection pool to keep sockets open between actions.
+	 * 
+	 * @param connectionPool
+	 *        the pool to use, or {@literal null} to open and close a new socket
+	 *        for every action
+	 * @since 1.1
+	 */
+	public void setConnectionPool(JamodTcpConnectionPool connectionPool) {
+		this.connectionPool = connectionPool;
+	}
+
+	/**
+	 * Get the number of seconds to keep an idle connection open.
+	 * 
+	 * @return the seconds; defaults to {@link #DEFAULT_KEEP_OPEN_SECONDS}
+	 * @since 1.1
+	 */
+	public int getKeepOpenSeconds() {
+		return keepOpenSeconds;
+	}
+
+	/**
+	 * Set the number of seconds to keep an idle connection open.
+	 * 
+	 * <p>
+	 * This only applies when a {@code connectionPool} is configured.
+	 * </p>
+	 * 
+	 * @param keepOpenSeconds
+	 *        the seconds, or {@literal 0} to close the connection after every
+	 *        action
+	 * @since 1.1
+	 */
+	public void setKeepOpenSeconds(int keepOpenSeconds) {
+		this.keepOpenSeconds = keepOpenSeconds;
+	}
 }
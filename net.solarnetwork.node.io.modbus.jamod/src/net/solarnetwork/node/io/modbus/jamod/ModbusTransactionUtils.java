@@ -27,9 +27,11 @@ import java.nio.charset.Charset;
 import java.util.BitSet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import net.solarnetwork.node.io.modbus.ModbusDeviceException;
 import net.solarnetwork.node.io.modbus.ModbusReadFunction;
 import net.solarnetwork.node.io.modbus.ModbusWriteFunction;
 import net.wimpi.modbus.ModbusException;
+import net.wimpi.modbus.ModbusSlaveException;
 import net.wimpi.modbus.io.ModbusTransaction;
 import net.wimpi.modbus.msg.ModbusRequest;
 import net.wimpi.modbus.msg.ModbusResponse;
@@ -56,12 +58,32 @@ import net.wimpi.modbus.util.BitVector;
  * Utility methods for Modbus actions.
  * 
  * @author matt
- * @version 2.0
+ * @version 2.1
  */
 public class ModbusTransactionUtils {
 
 	private static final Logger LOG = LoggerFactory.getLogger(ModbusTransactionUtils.class);
 
+	/**
+	 * Wrap a Modbus exception in a runtime exception.
+	 * 
+	 * <p>
+	 * Exception responses returned by the device are wrapped in a
+	 * {@link ModbusDeviceException} so callers can tell them apart from
+	 * communication errors. The original exception is preserved as the cause.
+	 * </p>
+	 * 
+	 * @param e
+	 *        the exception to wrap
+	 * @return the runtime exception
+	 */
+	private static RuntimeException runtimeException(ModbusException e) {
+		if ( e instanceof ModbusSlaveException ) {
+			return new ModbusDeviceException(((ModbusSlaveException) e).getType(), e);
+		}
+		return new RuntimeException(e);
+	}
+
 	/**
 	 * Get the values of a set of "coil" type registers, as a BitSet.
 	 * 
@@ -91,7 +113,7 @@ public class ModbusTransactionUtils {
 		try {
 			trans.execute();
 		} catch ( ModbusException e ) {
-			throw new RuntimeException(e);
+			throw runtimeException(e);
 		}
 		ReadCoilsResponse res = (ReadCoilsResponse) trans.getResponse();
 		if ( LOG.isTraceEnabled() ) {
@@ -177,7 +199,7 @@ public class ModbusTransactionUtils {
 			try {
 				trans.execute();
 			} catch ( ModbusException e ) {
-				throw new RuntimeException(e);
+				throw runtimeException(e);
 			}
 			WriteCoilResponse res = (WriteCoilResponse) trans.getResponse();
 			if ( LOG.isTraceEnabled() ) {
@@ -217,7 +239,7 @@ public class ModbusTransactionUtils {
 		try {
 			trans.execute();
 		} catch ( ModbusException e ) {
-			throw new RuntimeException(e);
+			throw runtimeException(e);
 		}
 		ReadInputDiscretesResponse res = (ReadInputDiscretesResponse) trans.getResponse();
 		if ( LOG.isTraceEnabled() ) {
@@ -353,7 +375,7 @@ public class ModbusTransactionUtils {
 		try {
 			trans.execute();
 		} catch ( ModbusException e ) {
-			throw new RuntimeException(e);
+			throw runtimeException(e);
 		}
 		ModbusResponse response = trans.getResponse();
 		short[] result = new short[count];
@@ -444,7 +466,7 @@ public class ModbusTransactionUtils {
 		try {
 			trans.execute();
 		} catch ( ModbusException e ) {
-			throw new RuntimeException(e);
+			throw runtimeException(e);
 		}
 
 		if ( LOG.isTraceEnabled() ) {
@@ -515,7 +537,7 @@ public class ModbusTransactionUtils {
 		try {
 			trans.execute();
 		} catch ( ModbusException e ) {
-			throw new RuntimeException(e);
+			throw runtimeException(e);
 		}
 		ModbusResponse response = trans.getResponse();
 		int[] result = new int[count];
@@ -588,7 +610,7 @@ public class ModbusTransactionUtils {
 		try {
 			trans.execute();
 		} catch ( ModbusException e ) {
-			throw new RuntimeException(e);
+			throw runtimeException(e);
 		}
 		ReadMultipleRegistersResponse res = (ReadMultipleRegistersResponse) trans.getResponse();
 		InputRegister[] registers = res.getRegisters();
@@ -0,0 +1,190 @@
+/* ==================================================================
+ * CachedRegistersModbusConnectionTests.java - 18/10/2026 9:38:05 PM
+ *
+ * Copyright 2026 SolarNetwork.net Dev Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ * ==================================================================
+ */
+
+package net.solarnetwork.node.io.modbus.test;
+
+import static org.easymock.EasyMock.expect;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+import java.io.IOException;
+import org.easymock.EasyMock;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import net.solarnetwork.node.io.modbus.ModbusConnection;
+import net.solarnetwork.node.io.modbus.ModbusReadFunction;
+import net.solarnetwork.node.io.modbus.ModbusWriteFunction;
+import net.solarnetwork.node.io.modbus.support.AbstractModbusNetwork;
+import net.solarnetwork.node.io.modbus.support.CachedRegistersModbusConnection;
+
+/**
+ * Test cases for the {@link CachedRegistersModbusConnection} class, via
+ * {@link AbstractModbusNetwork}.
+ *
+ * @author matt
+ * @version 1.0
+ */
+public class CachedRegistersModbusConnectionTests {
+
+	private static final int TEST_UNIT_ID = 1;
+
+	private ModbusConnection conn;
+	private AbstractModbusNetwork network;
+
+	@Before
+	public void setup() {
+		conn = EasyMock.createMock(ModbusConnection.class);
+		expect(conn.getUnitId()).andReturn(TEST_UNIT_ID).anyTimes();
+		network = new AbstractModbusNetwork() {
+
+			@Override
+			public ModbusConnection createConnection(int unitId) {
+				return conn;
+			}
+		};
+		network.setRegisterCacheMs(60000);
+	}
+
+	@After
+	public void teardown() {
+		EasyMock.verify(conn);
+	}
+
+	private short[] readWords(int address, int count) throws IOException {
+		return network.performAction(TEST_UNIT_ID,
+				c -> c.readWords(ModbusReadFunction.ReadHoldingRegister, address, count));
+	}
+
+	@Test
+	public void overlappingReadShared() throws IOException {
+		// given
+		conn.open();
+		expect(conn.readWords(ModbusReadFunction.ReadHoldingRegister, 0, 4))
+				.andReturn(new short[] { 1, 2, 3, 4 });
+		conn.close();
+		EasyMock.replay(conn);
+
+		// when
+		short[] first = readWords(0, 4);
+		short[] second = readWords(1, 2);
+
+		// then
+		assertThat("First read from device", first, equalTo(new short[] { 1, 2, 3, 4 }));
+		assertThat("Second read from cache without opening", second,
+				equalTo(new short[] { 2, 3 }));
+	}
+
+	@Test
+	public void onlyMissingRangeRead() throws IOException {
+		// given
+		conn.open();
+		expect(conn.readWords(ModbusReadFunction.ReadHoldingRegister, 0, 4))
+				.andReturn(new short[] { 1, 2, 3, 4 });
+		conn.close();
+		conn.open();
+		expect(conn.readWords(ModbusReadFunction.ReadHoldingRegister, 4, 2))
+				.andReturn(new short[] { 5, 6 });
+		conn.close();
+		EasyMock.replay(conn);
+
+		// when
+		readWords(0, 4);
+		short[] result = readWords(2, 4);
+
+		// then
+		assertThat("Result combined from cache and device", result,
+				equalTo(new short[] { 3, 4, 5, 6 }));
+	}
+
+	@Test
+	public void otherFunctionNotShared() throws IOException {
+		// given
+		conn.open();
+		expect(conn.readWords(ModbusReadFunction.ReadHoldingRegister, 0, 2))
+				.andReturn(new short[] { 1, 2 });
+		conn.close();
+		conn.open();
+		expect(conn.readWords(ModbusReadFunction.ReadInputRegister, 0, 2))
+				.andReturn(new short[] { 3, 4 });
+		conn.close();
+		EasyMock.replay(conn);
+
+		// when
+		readWords(0, 2);
+		short[] result = network.performAction(TEST_UNIT_ID,
+				c -> c.readWords(ModbusReadFunction.ReadInputRegister, 0, 2));
+
+		// then
+		assertThat("Input registers read from device", result, equalTo(new short[] { 3, 4 }));
+	}
+
+	@Test
+	public void writeDiscardsShared() throws IOException {
+		// given
+		conn.open();
+		expect(conn.readWords(ModbusReadFunction.ReadHoldingRegister, 0, 2))
+				.andReturn(new short[] { 1, 2 });
+		conn.close();
+		conn.open();
+		conn.writeWords(ModbusWriteFunction.WriteHoldingRegister, 5, new short[] { 9 });
+		conn.close();
+		conn.open();
+		expect(conn.readWords(ModbusReadFunction.ReadHoldingRegister, 0, 2))
+				.andReturn(new short[] { 7, 8 });
+		conn.close();
+		EasyMock.replay(conn);
+
+		// when
+		readWords(0, 2);
+		network.performAction(TEST_UNIT_ID, c -> {
+			c.writeWords(ModbusWriteFunction.WriteHoldingRegister, 5, new short[] { 9 });
+			return null;
+		});
+		short[] result = readWords(0, 2);
+
+		// then
+		assertThat("Read after write from device", result, equalTo(new short[] { 7, 8 }));
+	}
+
+	@Test
+	public void disabled() throws IOException {
+		// given
+		network.setRegisterCacheMs(0);
+		conn.open();
+		expect(conn.readWords(ModbusReadFunction.ReadHoldingRegister, 0, 2))
+				.andReturn(new short[] { 1, 2 });
+		conn.close();
+		conn.open();
+		expect(conn.readWords(ModbusReadFunction.ReadHoldingRegister, 0, 2))
+				.andReturn(new short[] { 3, 4 });
+		conn.close();
+		EasyMock.replay(conn);
+
+		// when
+		readWords(0, 2);
+		short[] result = readWords(0, 2);
+
+		// then
+		assertThat("Each read from device", result, equalTo(new short[] { 3, 4 }));
+	}
+
+}
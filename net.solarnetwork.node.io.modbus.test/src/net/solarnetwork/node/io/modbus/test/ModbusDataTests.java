@@ -42,7 +42,7 @@ import net.solarnetwork.util.ByteUtils;
  * Test cases for the {@link ModbusData} class.
  * 
  * @author matt
- * @version 2.0
+ * @version 2.1
  */
 public class ModbusDataTests {
 
@@ -465,4 +465,64 @@ public class ModbusDataTests {
 						hasEntry(9, 0x9999), hasEntry(1000, 0xFF01), hasEntry(1001, 0xFF02),
 						hasEntry(1002, 0xFF03), hasEntry(1003, 0xFF04), hasEntry(1004, 0xFF05)));
 	}
+
+	@Test
+	public void copyUnaffectedByLaterUpdates() {
+		ModbusData d = new ModbusData();
+		d.performUpdates(new ModbusDataUpdateAction() {
+
+			@Override
+			public boolean updateModbusData(MutableModbusData m) {
+				m.saveDataArray(new int[] { 1, 2 }, 0);
+				return true;
+			}
+		});
+
+		ModbusData copy = new ModbusData(d);
+		d.performUpdates(new ModbusDataUpdateAction() {
+
+			@Override
+			public boolean updateModbusData(MutableModbusData m) {
+				m.saveDataArray(new int[] { 3 }, 0);
+				return true;
+			}
+		});
+
+		assertThat("Copy timestamp", copy.getDataTimestamp(), greaterThanOrEqualTo(1L));
+		assertThat("Copy value unchanged", copy.getUnsignedInt16(0), equalTo(1));
+		assertThat("Copy value unchanged", copy.getUnsignedInt16(1), equalTo(2));
+		assertThat("Updated value", d.getUnsignedInt16(0), equalTo(3));
+		assertThat("Other value kept", d.getUnsignedInt16(1), equalTo(2));
+	}
+
+	@Test
+	public void nestedUpdatesVisibleWithinUpdate() {
+		final ModbusData d = new ModbusData();
+		final Integer[] seen = new Integer[2];
+		d.performUpdates(new ModbusDataUpdateAction() {
+
+			@Override
+			public boolean updateModbusData(MutableModbusData m) {
+				m.saveDataArray(new int[] { 1 }, 0);
+				d.performUpdates(new ModbusDataUpdateAction() {
+
+					@Override
+					public boolean updateModbusData(MutableModbusData m2) {
+						m2.saveDataArray(new int[] { 2 }, 1);
+						return true;
+					}
+				});
+				seen[0] = d.getUnsignedInt16(0);
+				seen[1] = d.getUnsignedInt16(1);
+				return false;
+			}
+		});
+
+		assertThat("Own update visible within update", seen[0], equalTo(1));
+		assertThat("Nested update visible within update", seen[1], equalTo(2));
+		assertThat("Nested update timestamp published", d.getDataTimestamp(),
+				greaterThanOrEqualTo(1L));
+		assertThat("Nested update published", d.getUnsignedInt16(1), equalTo(2));
+	}
+
 }
@@ -0,0 +1,232 @@
+/* ==================================================================
+ * ModbusReadPlannerTests.java - 18/10/2026 6:02:17 PM
+ *
+ * Copyright 2026 SolarNetwork.net Dev Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ * ==================================================================
+ */
+
+package net.solarnetwork.node.io.modbus.test;
+
+import static net.solarnetwork.util.IntRange.rangeOf;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import net.solarnetwork.node.io.modbus.ModbusDeviceException;
+import net.solarnetwork.node.io.modbus.ModbusReadFunction;
+import net.solarnetwork.node.io.modbus.ModbusReadPlanner;
+import net.solarnetwork.util.IntRange;
+import net.solarnetwork.util.IntRangeSet;
+
+/**
+ * Test cases for the {@link ModbusReadPlanner} class.
+ *
+ * @author matt
+ * @version 1.1
+ */
+public class ModbusReadPlannerTests {
+
+	private static IntRangeSet addressSet(int... addresses) {
+		IntRangeSet set = new IntRangeSet();
+		for ( int addr : addresses ) {
+			set.add(addr);
+		}
+		return set;
+	}
+
+	@Test
+	public void combineAcrossSmallGaps() {
+		ModbusReadPlanner planner = new ModbusReadPlanner(64, 8);
+		List<IntRange> plan = planner.plan(ModbusReadFunction.ReadHoldingRegister,
+				addressSet(100, 104, 110, 200), 0);
+		assertThat("Small gaps combined, large gap split", plan,
+				contains(rangeOf(100, 110), rangeOf(200)));
+	}
+
+	@Test
+	public void contiguousOnly() {
+		ModbusReadPlanner planner = new ModbusReadPlanner(64, 0);
+		List<IntRange> plan = planner.plan(ModbusReadFunction.ReadHoldingRegister,
+				addressSet(100, 101, 104, 110), 0);
+		assertThat("Only contiguous ranges combined", plan,
+				contains(rangeOf(100, 101), rangeOf(104), rangeOf(110)));
+	}
+
+	@Test
+	public void limitedByMaxLength() {
+		ModbusReadPlanner planner = new ModbusReadPlanner(64, 8);
+		IntRangeSet set = new IntRangeSet();
+		set.addRange(0, 9);
+		set.addRange(12, 14);
+		List<IntRange> plan = planner.plan(ModbusReadFunction.ReadHoldingRegister, set, 4);
+		assertThat("Ranges split by max length", plan,
+				contains(rangeOf(0, 3), rangeOf(4, 7), rangeOf(8, 9), rangeOf(12, 14)));
+	}
+
+	@Test
+	public void planCached() {
+		ModbusReadPlanner planner = new ModbusReadPlanner(64, 8);
+		List<IntRange> plan = planner.plan(ModbusReadFunction.ReadHoldingRegister,
+				addressSet(100, 104), 0);
+		List<IntRange> plan2 = planner.plan(ModbusReadFunction.ReadHoldingRegister,
+				addressSet(100, 104), 0);
+		assertThat("Same plan returned for same addresses", plan2, sameInstance(plan));
+	}
+
+	@Test
+	public void learnUnreadableGap() {
+		// given
+		ModbusReadPlanner planner = new ModbusReadPlanner(64, 8);
+		IntRangeSet set = addressSet(100, 104, 110);
+		List<IntRange> reads = new ArrayList<>(8);
+
+		// when
+		planner.read(ModbusReadFunction.ReadHoldingRegister, set, 0, r -> {
+			reads.add(r);
+			if ( r.getMin() <= 106 && r.getMax() >= 106 ) {
+				throw new ModbusDeviceException(ModbusDeviceException.ILLEGAL_DATA_ADDRESS, null);
+			}
+		});
+
+		// then
+		assertThat("Combined read failed, then requested addresses read", reads,
+				contains(rangeOf(100, 110), rangeOf(100), rangeOf(104), rangeOf(110)));
+		assertThat("Gap no longer read", planner.plan(ModbusReadFunction.ReadHoldingRegister, set, 0),
+				contains(rangeOf(100), rangeOf(104), rangeOf(110)));
+		assertThat("Other function not affected",
+				planner.plan(ModbusReadFunction.ReadInputRegister, set, 0),
+				contains(rangeOf(100, 110)));
+	}
+
+	@Test
+	public void learnMaxLength() {
+		// given
+		ModbusReadPlanner planner = new ModbusReadPlanner(64, 8);
+		IntRangeSet set = new IntRangeSet();
+		set.addRange(0, 19);
+		List<IntRange> reads = new ArrayList<>(8);
+
+		// when
+		planner.read(ModbusReadFunction.ReadHoldingRegister, set, 0, r -> {
+			reads.add(r);
+			if ( r.length() > 10 ) {
+				throw new ModbusDeviceException(ModbusDeviceException.ILLEGAL_DATA_VALUE, null);
+			}
+		});
+
+		// then
+		assertThat("Read failed, then halves read", reads,
+				contains(rangeOf(0, 19), rangeOf(0, 9), rangeOf(10, 19)));
+		assertThat("Learned max length", planner.plan(ModbusReadFunction.ReadHoldingRegister, set, 0),
+				contains(rangeOf(0, 9), rangeOf(10, 19)));
+
+		planner.reset();
+		assertThat("Limits reset", planner.plan(ModbusReadFunction.ReadHoldingRegister, set, 0),
+				contains(rangeOf(0, 19)));
+	}
+
+	@Test
+	public void communicationErrorNotLearned() {
+		// given
+		ModbusReadPlanner planner = new ModbusReadPlanner(64, 8);
+		IntRangeSet set = addressSet(100, 104);
+		List<IntRange> reads = new ArrayList<>(8);
+
+		// when
+		try {
+			planner.read(ModbusReadFunction.ReadHoldingRegister, set, 0, r -> {
+				reads.add(r);
+				throw new RuntimeException("Timeout");
+			});
+			fail("Communication error should be thrown");
+		} catch ( ModbusDeviceException e ) {
+			fail("Communication error should not be translated");
+		} catch ( RuntimeException e ) {
+			assertThat("Original exception thrown", e.getMessage(), equalTo("Timeout"));
+		}
+
+		// then
+		assertThat("Read not retried in pieces", reads, contains(rangeOf(100, 104)));
+		assertThat("Nothing learned", planner.plan(ModbusReadFunction.ReadHoldingRegister, set, 0),
+				contains(rangeOf(100, 104)));
+	}
+
+	@Test
+	public void otherDeviceExceptionNotLearned() {
+		// given
+		ModbusReadPlanner planner = new ModbusReadPlanner(64, 8);
+		IntRangeSet set = addressSet(100, 104);
+		List<IntRange> reads = new ArrayList<>(8);
+
+		// when
+		try {
+			planner.read(ModbusReadFunction.ReadHoldingRegister, set, 0, r -> {
+				reads.add(r);
+				// slave device busy
+				throw new ModbusDeviceException(6, null);
+			});
+			fail("Device exception should be thrown");
+		} catch ( ModbusDeviceException e ) {
+			assertThat("Original exception thrown", e.getExceptionCode(), equalTo(6));
+		}
+
+		// then
+		assertThat("Read not retried in pieces", reads, contains(rangeOf(100, 104)));
+		assertThat("Nothing learned", planner.plan(ModbusReadFunction.ReadHoldingRegister, set, 0),
+				contains(rangeOf(100, 104)));
+	}
+
+	@Test
+	public void transientErrorOnPiecesNotLearned() {
+		// given
+		ModbusReadPlanner planner = new ModbusReadPlanner(64, 8);
+		IntRangeSet set = new IntRangeSet();
+		set.addRange(0, 19);
+
+		// when
+		try {
+			planner.read(ModbusReadFunction.ReadHoldingRegister, set, 0, r -> {
+				if ( r.length() > 10 ) {
+					throw new ModbusDeviceException(ModbusDeviceException.ILLEGAL_DATA_VALUE, null);
+				}
+				throw new RuntimeException("Timeout");
+			});
+			fail("Device exception should be thrown");
+		} catch ( ModbusDeviceException e ) {
+			// expected
+		}
+
+		// then
+		assertThat("Nothing learned", planner.plan(ModbusReadFunction.ReadHoldingRegister, set, 0),
+				contains(rangeOf(0, 19)));
+	}
+
+	@Test
+	public void defaultCombinesOnlyContiguous() {
+		ModbusReadPlanner planner = new ModbusReadPlanner();
+		List<IntRange> plan = planner.plan(ModbusReadFunction.ReadHoldingRegister,
+				addressSet(100, 101, 104), 0);
+		assertThat("Only contiguous ranges combined by default", plan,
+				contains(rangeOf(100, 101), rangeOf(104)));
+	}
+
+}
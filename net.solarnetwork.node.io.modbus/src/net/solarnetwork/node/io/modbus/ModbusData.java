@@ -48,15 +48,35 @@ import net.solarnetwork.util.IntShortMap;
  * {@link #copy()} are invoked to get a copy of the data.
  * </p>
  * 
+ * <p>
+ * The saved data is copy-on-write: each call to
+ * {@link #performUpdates(ModbusDataUpdateAction)} applies its changes to a new
+ * copy of the registers, which is then published in place of the previous
+ * registers. Published registers are never modified, so copies share them
+ * with the object they were created from, and creating a copy neither copies
+ * the data nor waits for updates in progress.
+ * </p>
+ * 
+ * <p>
+ * If a {@link ModbusReadPlanner} is configured via
+ * {@link #setReadPlanner(ModbusReadPlanner)} then
+ * {@link #refreshData(ModbusConnection, ModbusReadFunction, IntRangeSet, int)}
+ * uses it to plan the read requests, and copies share the same planner.
+ * </p>
+ * 
  * @author matt
- * @version 2.0
+ * @version 2.2
  * @since 2.3
  */
 public class ModbusData implements DataAccessor {
 
-	private final IntShortMap dataRegisters;
-	private long dataTimestamp = 0;
+	private final Object updateLock = new Object();
+	private volatile IntShortMap dataRegisters;
+	private volatile long dataTimestamp = 0;
+	private IntShortMap pendingRegisters;
+	private long pendingTimestamp;
 	private ModbusWordOrder wordOrder;
+	private ModbusReadPlanner readPlanner;
 
 	/**
 	 * Default constructor.
@@ -72,17 +92,19 @@ public class ModbusData implements DataAccessor {
 	 * 
 	 * <p>
 	 * This method provides a thread-safe way to get a copy of the current data.
+	 * The copy shares the current registers of {@code other}, which are never
+	 * modified.
 	 * </p>
 	 * 
 	 * @param other
 	 *        the object to copy
 	 */
 	public ModbusData(ModbusData other) {
-		synchronized ( other.dataRegisters ) {
-			this.dataRegisters = (IntShortMap) other.dataRegisters.clone();
-			this.dataTimestamp = other.dataTimestamp;
-			this.wordOrder = other.wordOrder;
-		}
+		// updates publish registers before the timestamp, so read the timestamp first
+		this.dataTimestamp = other.dataTimestamp;
+		this.dataRegisters = other.dataRegisters;
+		this.wordOrder = other.wordOrder;
+		this.readPlanner = other.readPlanner;
 	}
 
 	@Override
@@ -177,6 +199,24 @@ public class ModbusData implements DataAccessor {
 		}
 	}
 
+	/**
+	 * Get the registers to read from.
+	 * 
+	 * <p>
+	 * While an update is in progress, the thread performing it reads the
+	 * registers being updated, so it sees its own changes.
+	 * </p>
+	 * 
+	 * @return the registers
+	 */
+	private IntShortMap registers() {
+		final IntShortMap pending = pendingRegisters;
+		if ( pending != null && Thread.holdsLock(updateLock) ) {
+			return pending;
+		}
+		return dataRegisters;
+	}
+
 	/**
 	 * Construct a 1-bit boolean from a data register address.
 	 * 
@@ -185,7 +225,7 @@ public class ModbusData implements DataAccessor {
 	 * @return the boolean, never {@literal null}
 	 */
 	public final Boolean getBoolean(final int addr) {
-		short s = dataRegisters.getValue(addr);
+		short s = registers().getValue(addr);
 		return (s != 0);
 	}
 
@@ -196,7 +236,7 @@ public class ModbusData implements DataAccessor {
 	 * @return the integer, never {@literal null}
 	 */
 	public final Integer getUnsignedInt16(final int addr) {
-		short s = dataRegisters.getValue(addr);
+		short s = registers().getValue(addr);
 		return s & 0xFFFF;
 	}
 
@@ -207,7 +247,7 @@ public class ModbusData implements DataAccessor {
 	 * @return the short, never {@literal null}
 	 */
 	public final Short getInt16(final int addr) {
-		return dataRegisters.getValue(addr);
+		return registers().getValue(addr);
 	}
 
 	/**
@@ -220,8 +260,8 @@ public class ModbusData implements DataAccessor {
 	 * @return the parsed value, or {@literal null} if not available
 	 */
 	public final Long getUnsignedInt32(final int hiAddr, final int loAddr) {
-		return ModbusDataUtils.parseUnsignedInt32(dataRegisters.getValue(hiAddr),
-				dataRegisters.getValue(loAddr));
+		final IntShortMap data = registers();
+		return ModbusDataUtils.parseUnsignedInt32(data.getValue(hiAddr), data.getValue(loAddr));
 	}
 
 	/**
@@ -235,8 +275,8 @@ public class ModbusData implements DataAccessor {
 	 * @since 1.1
 	 */
 	public final Integer getInt32(final int hiAddr, final int loAddr) {
-		return ModbusDataUtils.parseInt32(dataRegisters.getValue(hiAddr),
-				dataRegisters.getValue(loAddr));
+		final IntShortMap data = registers();
+		return ModbusDataUtils.parseInt32(data.getValue(hiAddr), data.getValue(loAddr));
 	}
 
 	/**
@@ -285,8 +325,8 @@ public class ModbusData implements DataAccessor {
 	 * @return the parsed value, or {@literal null} if not available.
 	 */
 	public final Float getFloat32(final int hiAddr, final int loAddr) {
-		return ModbusDataUtils.parseFloat32(dataRegisters.getValue(hiAddr),
-				dataRegisters.getValue(loAddr));
+		final IntShortMap data = registers();
+		return ModbusDataUtils.parseFloat32(data.getValue(hiAddr), data.getValue(loAddr));
 	}
 
 	/**
@@ -320,8 +360,9 @@ public class ModbusData implements DataAccessor {
 	 * @return the parsed long
 	 */
 	public final Long getInt64(final int h1Addr, final int h2Addr, final int l1Addr, final int l2Addr) {
-		return ModbusDataUtils.parseInt64(dataRegisters.getValue(h1Addr), dataRegisters.getValue(h2Addr),
-				dataRegisters.getValue(l1Addr), dataRegisters.getValue(l2Addr));
+		final IntShortMap data = registers();
+		return ModbusDataUtils.parseInt64(data.getValue(h1Addr), data.getValue(h2Addr),
+				data.getValue(l1Addr), data.getValue(l2Addr));
 	}
 
 	/**
@@ -359,9 +400,9 @@ public class ModbusData implements DataAccessor {
 	 */
 	public final BigInteger getUnsignedInt64(final int h1Addr, final int h2Addr, final int l1Addr,
 			final int l2Addr) {
-		return ModbusDataUtils.parseUnsignedInt64(dataRegisters.getValue(h1Addr),
-				dataRegisters.getValue(h2Addr), dataRegisters.getValue(l1Addr),
-				dataRegisters.getValue(l2Addr));
+		final IntShortMap data = registers();
+		return ModbusDataUtils.parseUnsignedInt64(data.getValue(h1Addr), data.getValue(h2Addr),
+				data.getValue(l1Addr), data.getValue(l2Addr));
 	}
 
 	/**
@@ -399,9 +440,9 @@ public class ModbusData implements DataAccessor {
 	 */
 	public final Double getFloat64(final int h1Addr, final int h2Addr, final int l1Addr,
 			final int l2Addr) {
-		return ModbusDataUtils.parseFloat64(dataRegisters.getValue(h1Addr),
-				dataRegisters.getValue(h2Addr), dataRegisters.getValue(l1Addr),
-				dataRegisters.getValue(l2Addr));
+		final IntShortMap data = registers();
+		return ModbusDataUtils.parseFloat64(data.getValue(h1Addr), data.getValue(h2Addr),
+				data.getValue(l1Addr), data.getValue(l2Addr));
 	}
 
 	/**
@@ -437,10 +478,11 @@ public class ModbusData implements DataAccessor {
 	 * @return the byte array, which will have a length of {@code count * 2}
 	 */
 	public byte[] getBytes(final int addr, final int count) {
+		final IntShortMap data = registers();
 		byte[] result = new byte[count * 2];
 		for ( int i = addr, end = addr + count, index = 0; i < end; i++, index += 2 ) {
-			short word = (wordOrder == ModbusWordOrder.MostToLeastSignificant ? dataRegisters.getValue(i)
-					: dataRegisters.getValue(end - i - 1));
+			short word = (wordOrder == ModbusWordOrder.MostToLeastSignificant ? data.getValue(i)
+					: data.getValue(end - i - 1));
 			result[index] = (byte) ((word >> 8) & 0xFF);
 			result[index + 1] = (byte) (word & 0xFF);
 		}
@@ -628,15 +670,43 @@ public class ModbusData implements DataAccessor {
 	/**
 	 * Perform a set of updates to saved register data.
 	 * 
+	 * <p>
+	 * The updates are applied to a copy of the current registers, which
+	 * replaces the current registers once {@code action} completes, even if it
+	 * throws an exception. Updates performed by {@code action} itself via this
+	 * method are applied to the same copy, and values read from this object by
+	 * {@code action} include its changes. Other threads continue to read the
+	 * previous registers until {@code action} completes.
+	 * </p>
+	 * 
 	 * @param action
 	 *        the callback to perform the updates on
 	 * @return this object to allow method chaining
 	 */
 	public final ModbusData performUpdates(ModbusDataUpdateAction action) {
-		synchronized ( dataRegisters ) {
+		synchronized ( updateLock ) {
 			final long now = System.currentTimeMillis();
-			if ( action.updateModbusData(new MutableModbusDataView(dataRegisters, wordOrder)) ) {
-				dataTimestamp = now;
+			final IntShortMap pending = pendingRegisters;
+			if ( pending != null ) {
+				// nested within another update on this thread
+				if ( action.updateModbusData(new MutableModbusDataView(pending, wordOrder)) ) {
+					pendingTimestamp = now;
+				}
+				return this;
+			}
+			final IntShortMap registers = (IntShortMap) dataRegisters.clone();
+			pendingRegisters = registers;
+			pendingTimestamp = 0;
+			try {
+				if ( action.updateModbusData(new MutableModbusDataView(registers, wordOrder)) ) {
+					pendingTimestamp = now;
+				}
+			} finally {
+				pendingRegisters = null;
+				dataRegisters = registers;
+				if ( pendingTimestamp > 0 ) {
+					dataTimestamp = pendingTimestamp;
+				}
 			}
 		}
 		return this;
@@ -654,7 +724,7 @@ public class ModbusData implements DataAccessor {
 	 * @since 1.2
 	 */
 	public final ModbusData expire() {
-		synchronized ( dataRegisters ) {
+		synchronized ( updateLock ) {
 			dataTimestamp = 0;
 		}
 		return this;
@@ -760,7 +830,8 @@ public class ModbusData implements DataAccessor {
 	 * writes.
 	 * 
 	 * <p>
-	 * All methods are assumed to be synchronized on {@code dataRegsiters}.
+	 * The registers are assumed to be accessed only by the thread performing
+	 * the updates.
 	 * </p>
 	 */
 	public static class MutableModbusDataView implements MutableModbusData {
@@ -772,8 +843,8 @@ public class ModbusData implements DataAccessor {
 		 * Construct with data registers to mutate.
 		 * 
 		 * @param dataRegisters
-		 *        the registers to mutate; calling code should by synchronized
-		 *        on this instance
+		 *        the registers to mutate; calling code should ensure no other
+		 *        thread accesses this instance during the updates
 		 * @param wordOrder
 		 *        the word order to use
 		 */
@@ -864,9 +935,10 @@ public class ModbusData implements DataAccessor {
 	 */
 	public final String dataDebugString() {
 		final StringBuilder buf = new StringBuilder(getClass().getSimpleName()).append("{");
-		if ( !dataRegisters.isEmpty() ) {
+		final IntShortMap data = registers();
+		if ( !data.isEmpty() ) {
 			final int[] last = new int[] { -2 };
-			dataRegisters.forEachOrdered((k, v) -> {
+			data.forEachOrdered((k, v) -> {
 				boolean odd = k % 2 == 1 ? true : false;
 				if ( k > last[0] + 1 ) {
 					int rowAddr = odd ? k - 1 : k;
@@ -904,7 +976,7 @@ public class ModbusData implements DataAccessor {
 	 * @since 2.0
 	 */
 	public final void slice(short[] dest, int destFrom, int address, int length) {
-		dataRegisters.forEachOrdered(address, address + length, (i, v) -> {
+		registers().forEachOrdered(address, address + length, (i, v) -> {
 			int idx = i - address + destFrom;
 			if ( idx < dest.length ) {
 				dest[idx] = v;
@@ -969,8 +1041,22 @@ public class ModbusData implements DataAccessor {
 	 */
 	public final void refreshData(final ModbusConnection conn, final ModbusReadFunction readFunction,
 			final IntRangeSet rangeSet, final int maxResults) {
-		final List<IntRange> ranges = CollectionUtils.coveringIntRanges(rangeSet, maxResults);
-		refreshData(conn, readFunction, ranges);
+		final ModbusReadPlanner planner = this.readPlanner;
+		if ( planner == null ) {
+			final List<IntRange> ranges = CollectionUtils.coveringIntRanges(rangeSet, maxResults);
+			refreshData(conn, readFunction, ranges);
+			return;
+		}
+		performUpdates(new ModbusDataUpdateAction() {
+
+			@Override
+			public boolean updateModbusData(MutableModbusData m) {
+				planner.read(readFunction, rangeSet, maxResults, r -> {
+					m.saveDataArray(conn.readWords(readFunction, r.getMin(), r.length()), r.getMin());
+				});
+				return true;
+			}
+		});
 	}
 
 	/**
@@ -1018,16 +1104,44 @@ public class ModbusData implements DataAccessor {
 		}
 	}
 
+	/**
+	 * Get the read planner.
+	 * 
+	 * @return the read planner, or {@literal null} if not configured
+	 * @since 2.1
+	 */
+	public ModbusReadPlanner getReadPlanner() {
+		return readPlanner;
+	}
+
+	/**
+	 * Set a read planner to use for planning read requests in
+	 * {@link #refreshData(ModbusConnection, ModbusReadFunction, IntRangeSet, int)}.
+	 * 
+	 * @param readPlanner
+	 *        the read planner, or {@literal null} to read the ranges returned
+	 *        by
+	 *        {@link CollectionUtils#coveringIntRanges(IntRangeSet, int)}
+	 * @since 2.1
+	 */
+	public void setReadPlanner(ModbusReadPlanner readPlanner) {
+		this.readPlanner = readPlanner;
+	}
+
 	/**
 	 * Get a read-only Map view of all modbus registers as unsigned integer
 	 * values.
 	 * 
+	 * <p>
+	 * The view is of the registers current when this method is called, and
+	 * does not reflect any later updates.
+	 * </p>
+	 * 
 	 * @return the data map, never {@literal null}
 	 * @since 1.7
 	 */
 	public Map<Integer, Integer> getUnsignedDataMap() {
-		final IntShortMap data = (IntShortMap) this.dataRegisters.clone();
-		return data.unsignedMap();
+		return registers().unsignedMap();
 	}
 
 }
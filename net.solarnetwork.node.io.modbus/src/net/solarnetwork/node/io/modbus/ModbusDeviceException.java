@@ -0,0 +1,83 @@
+/* ==================================================================
+ * ModbusDeviceException.java - 19/10/2026 2:14:07 PM
+ *
+ * Copyright 2026 SolarNetwork.net Dev Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ * ==================================================================
+ */
+
+package net.solarnetwork.node.io.modbus;
+
+/**
+ * Exception thrown when a Modbus device returns an exception response to a
+ * request.
+ *
+ * <p>
+ * This is distinct from communication errors such as timeouts or closed
+ * connections: the device received the request and refused it.
+ * </p>
+ *
+ * @author matt
+ * @version 1.0
+ * @since 3.1
+ */
+public class ModbusDeviceException extends RuntimeException {
+
+	private static final long serialVersionUID = -2650284916430567301L;
+
+	/** The Modbus "illegal data address" exception code. */
+	public static final int ILLEGAL_DATA_ADDRESS = 2;
+
+	/** The Modbus "illegal data value" exception code. */
+	public static final int ILLEGAL_DATA_VALUE = 3;
+
+	private final int exceptionCode;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param exceptionCode
+	 *        the Modbus exception code returned by the device
+	 * @param cause
+	 *        the cause
+	 */
+	public ModbusDeviceException(int exceptionCode, Throwable cause) {
+		super(cause);
+		this.exceptionCode = exceptionCode;
+	}
+
+	/**
+	 * Get the Modbus exception code returned by the device.
+	 *
+	 * @return the exception code
+	 */
+	public int getExceptionCode() {
+		return exceptionCode;
+	}
+
+	/**
+	 * Test if the device refused the request because of the addresses or
+	 * number of registers requested.
+	 *
+	 * @return {@literal true} if the exception code is
+	 *         {@link #ILLEGAL_DATA_ADDRESS} or {@link #ILLEGAL_DATA_VALUE}
+	 */
+	public boolean isIllegalAddressOrValue() {
+		return (exceptionCode == ILLEGAL_DATA_ADDRESS || exceptionCode == ILLEGAL_DATA_VALUE);
+	}
+
+}
@@ -0,0 +1,390 @@
+/* ==================================================================
+ * ModbusReadPlanner.java - 18/10/2026 5:21:44 PM
+ *
+ * Copyright 2026 SolarNetwork.net Dev Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ * ==================================================================
+ */
+
+package net.solarnetwork.node.io.modbus;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import net.solarnetwork.util.IntRange;
+import net.solarnetwork.util.IntRangeSet;
+
+/**
+ * Plan the read requests needed to read a set of Modbus register addresses
+ * from a single device.
+ *
+ * <p>
+ * Address ranges are combined into as few requests as possible. Ranges
+ * separated by a gap of unused addresses are combined into one request when
+ * the number of gap addresses is not more than {@code requestOverheadWords},
+ * which represents the cost of making another request expressed as the number
+ * of words that could have been read instead. No request reads more than
+ * {@code maxReadWordCount} addresses. Plans are cached, so planning the same
+ * set of addresses again is cheap.
+ * </p>
+ *
+ * <p>
+ * The limits of the device are learned as requests fail, when
+ * {@link #read(ModbusReadFunction, IntRangeSet, int, Consumer)} is used. Only
+ * {@link ModbusDeviceException} failures with an "illegal data address" or
+ * "illegal data value" exception code are learned from; communication errors
+ * such as timeouts are rethrown without changing anything. If a request that
+ * spanned unused addresses fails but reading just the requested addresses
+ * within it succeeds, the unused addresses are remembered as unreadable and
+ * not requested again. If a request without any unused addresses fails but
+ * reading it as two halves succeeds, the maximum request length is reduced to
+ * match. Once learned, the limits apply until {@link #reset()} is called.
+ * </p>
+ *
+ * <p>
+ * This class is thread-safe.
+ * </p>
+ *
+ * @author matt
+ * @version 1.0
+ * @since 3.1
+ */
+public class ModbusReadPlanner {
+
+	/** The default value for the {@code maxReadWordCount} property. */
+	public static final int DEFAULT_MAX_READ_WORD_COUNT = 64;
+
+	/** The default value for the {@code requestOverheadWords} property. */
+	public static final int DEFAULT_REQUEST_OVERHEAD_WORDS = 0;
+
+	private static final int MAX_CACHED_PLANS = 16;
+
+	private final Map<ModbusReadFunction, BitSet> unreadableAddresses = new EnumMap<>(
+			ModbusReadFunction.class);
+	private final Map<PlanKey, List<IntRange>> plans = new HashMap<>(8);
+	private int maxReadWordCount;
+	private int requestOverheadWords;
+	private int learnedMaxReadWordCount;
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+
+	/**
+	 * Default constructor.
+	 */
+	public ModbusReadPlanner() {
+		this(DEFAULT_MAX_READ_WORD_COUNT, DEFAULT_REQUEST_OVERHEAD_WORDS);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param maxReadWordCount
+	 *        the maximum number of addresses to read in one request
+	 * @param requestOverheadWords
+	 *        the maximum number of unused addresses to read to avoid making
+	 *        another request
+	 */
+	public ModbusReadPlanner(int maxReadWordCount, int requestOverheadWords) {
+		super();
+		setMaxReadWordCount(maxReadWordCount);
+		setRequestOverheadWords(requestOverheadWords);
+	}
+
+	private static final class PlanKey {
+
+		private final ModbusReadFunction function;
+		private final int maxLength;
+		private final int[] ranges;
+		private final int hash;
+
+		private PlanKey(ModbusReadFunction function, int maxLength, IntRangeSet addresses) {
+			super();
+			this.function = function;
+			this.maxLength = maxLength;
+			int[] r = new int[8];
+			int i = 0;
+			for ( IntRange range : addresses.ranges() ) {
+				if ( i + 2 > r.length ) {
+					r = Arrays.copyOf(r, r.length * 2);
+				}
+				r[i++] = range.getMin();
+				r[i++] = range.getMax();
+			}
+			this.ranges = Arrays.copyOf(r, i);
+			this.hash = 31 * (31 * function.hashCode() + maxLength) + Arrays.hashCode(this.ranges);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if ( this == obj ) {
+				return true;
+			}
+			if ( !(obj instanceof PlanKey) ) {
+				return false;
+			}
+			PlanKey other = (PlanKey) obj;
+			return function == other.function && maxLength == other.maxLength
+					&& Arrays.equals(ranges, other.ranges);
+		}
+
+	}
+
+	/**
+	 * Get the effective maximum read length.
+	 *
+	 * @param maxLength
+	 *        a maximum length requested by the caller, or {@literal 0} for no
+	 *        limit
+	 * @return the maximum read length, taking into account any learned limit
+	 */
+	private int effectiveMaxLength(int maxLength) {
+		int max = maxReadWordCount;
+		if ( maxLength > 0 && maxLength < max ) {
+			max = maxLength;
+		}
+		if ( learnedMaxReadWordCount > 0 && learnedMaxReadWordCount < max ) {
+			max = learnedMaxReadWordCount;
+		}
+		return max;
+	}
+
+	/**
+	 * Get the ranges of addresses to request to read a set of addresses.
+	 *
+	 * @param function
+	 *        the read function
+	 * @param addresses
+	 *        the addresses to read
+	 * @param maxLength
+	 *        the maximum number of addresses to read per request, or
+	 *        {@literal 0} to use {@code maxReadWordCount}
+	 * @return the ranges to read, never {@literal null}
+	 */
+	public synchronized List<IntRange> plan(ModbusReadFunction function, IntRangeSet addresses,
+			int maxLength) {
+		if ( addresses == null ) {
+			return Collections.emptyList();
+		}
+		final int maxLen = effectiveMaxLength(maxLength);
+		PlanKey key = new PlanKey(function, maxLen, addresses);
+		List<IntRange> result = plans.get(key);
+		if ( result == null ) {
+			result = Collections.unmodifiableList(createPlan(function, key.ranges, maxLen));
+			if ( plans.size() >= MAX_CACHED_PLANS ) {
+				plans.clear();
+			}
+			plans.put(key, result);
+			log.debug("Planned Modbus {} reads {} for addresses {}", function, result, addresses);
+		}
+		return result;
+	}
+
+	private List<IntRange> createPlan(ModbusReadFunction function, int[] ranges, int maxLen) {
+		final BitSet unreadable = unreadableAddresses.get(function);
+		List<IntRange> result = new ArrayList<>(ranges.length / 2);
+		int curMin = -1;
+		int curMax = -1;
+		for ( int i = 0; i < ranges.length; i += 2 ) {
+			int min = ranges[i];
+			final int max = ranges[i + 1];
+			if ( curMin >= 0 ) {
+				final int gap = min - curMax - 1;
+				if ( gap <= requestOverheadWords && max - curMin + 1 <= maxLen
+						&& isReadable(unreadable, curMax + 1, min) ) {
+					curMax = max;
+					continue;
+				}
+				result.add(new IntRange(curMin, curMax));
+			}
+			while ( max - min + 1 > maxLen ) {
+				result.add(new IntRange(min, min + maxLen - 1));
+				min += maxLen;
+			}
+			curMin = min;
+			curMax = max;
+		}
+		if ( curMin >= 0 ) {
+			result.add(new IntRange(curMin, curMax));
+		}
+		return result;
+	}
+
+	private static boolean isReadable(BitSet unreadable, int from, int to) {
+		if ( unreadable == null || from >= to ) {
+			return true;
+		}
+		int next = unreadable.nextSetBit(from);
+		return (next < 0 || next >= to);
+	}
+
+	/**
+	 * Read a set of addresses, learning the limits of the device from failed
+	 * requests.
+	 *
+	 * <p>
+	 * The {@code reader} is called once for each planned range. If it throws a
+	 * {@link ModbusDeviceException} for an illegal address or value, the range
+	 * is read again in smaller pieces as described in the class documentation.
+	 * If that also fails, or any other exception is thrown, the original
+	 * exception is thrown.
+	 * </p>
+	 *
+	 * @param function
+	 *        the read function
+	 * @param addresses
+	 *        the addresses to read
+	 * @param maxLength
+	 *        the maximum number of addresses to read per request, or
+	 *        {@literal 0} to use {@code maxReadWordCount}
+	 * @param reader
+	 *        a callback to read and save the data for one range of addresses
+	 */
+	public void read(ModbusReadFunction function, IntRangeSet addresses, int maxLength,
+			Consumer<IntRange> reader) {
+		for ( IntRange range : plan(function, addresses, maxLength) ) {
+			try {
+				reader.accept(range);
+			} catch ( ModbusDeviceException e ) {
+				if ( !e.isIllegalAddressOrValue() || !readPieces(function, addresses, range, reader) ) {
+					throw e;
+				}
+			}
+		}
+	}
+
+	private boolean readPieces(ModbusReadFunction function, IntRangeSet addresses, IntRange range,
+			Consumer<IntRange> reader) {
+		List<IntRange> pieces = new ArrayList<>(4);
+		for ( IntRange r : addresses.ranges() ) {
+			if ( r.getMax() < range.getMin() ) {
+				continue;
+			} else if ( r.getMin() > range.getMax() ) {
+				break;
+			}
+			pieces.add(new IntRange(Math.max(r.getMin(), range.getMin()),
+					Math.min(r.getMax(), range.getMax())));
+		}
+		final boolean bridged = pieces.size() > 1;
+		if ( !bridged ) {
+			if ( range.length() < 2 ) {
+				return false;
+			}
+			int half = (range.length() + 1) / 2;
+			pieces.clear();
+			pieces.add(new IntRange(range.getMin(), range.getMin() + half - 1));
+			pieces.add(new IntRange(range.getMin() + half, range.getMax()));
+		}
+		try {
+			for ( IntRange piece : pieces ) {
+				reader.accept(piece);
+			}
+		} catch ( RuntimeException e ) {
+			return false;
+		}
+		synchronized ( this ) {
+			if ( bridged ) {
+				BitSet unreadable = unreadableAddresses.get(function);
+				if ( unreadable == null ) {
+					unreadable = new BitSet();
+					unreadableAddresses.put(function, unreadable);
+				}
+				for ( int i = 1; i < pieces.size(); i++ ) {
+					unreadable.set(pieces.get(i - 1).getMax() + 1, pieces.get(i).getMin());
+				}
+				log.info("Learned unreadable Modbus {} addresses {}", function, unreadable);
+			} else {
+				learnedMaxReadWordCount = (range.length() + 1) / 2;
+				log.info("Learned maximum Modbus read length {}", learnedMaxReadWordCount);
+			}
+			plans.clear();
+		}
+		return true;
+	}
+
+	/**
+	 * Forget all learned device limits and cached plans.
+	 */
+	public synchronized void reset() {
+		unreadableAddresses.clear();
+		learnedMaxReadWordCount = 0;
+		plans.clear();
+	}
+
+	/**
+	 * Get the maximum number of addresses to read in one request.
+	 *
+	 * @return the maximum word count
+	 */
+	public synchronized int getMaxReadWordCount() {
+		return maxReadWordCount;
+	}
+
+	/**
+	 * Set the maximum number of addresses to read in one request.
+	 *
+	 * @param maxReadWordCount
+	 *        the maximum word count; defaults to
+	 *        {@link #DEFAULT_MAX_READ_WORD_COUNT}
+	 */
+	public synchronized void setMaxReadWordCount(int maxReadWordCount) {
+		if ( maxReadWordCount < 1 ) {
+			return;
+		}
+		this.maxReadWordCount = maxReadWordCount;
+		this.plans.clear();
+	}
+
+	/**
+	 * Get the request overhead, as a number of words.
+	 *
+	 * @return the overhead
+	 */
+	public synchronized int getRequestOverheadWords() {
+		return requestOverheadWords;
+	}
+
+	/**
+	 * Set the request overhead, as a number of words.
+	 *
+	 * <p>
+	 * This is the maximum number of unused addresses that will be read to
+	 * avoid making another request. Set to {@literal 0} to combine only
+	 * contiguous address ranges.
+	 * </p>
+	 *
+	 * @param requestOverheadWords
+	 *        the overhead; defaults to {@link #DEFAULT_REQUEST_OVERHEAD_WORDS}
+	 */
+	public synchronized void setRequestOverheadWords(int requestOverheadWords) {
+		this.requestOverheadWords = Math.max(0, requestOverheadWords);
+		this.plans.clear();
+	}
+
+}
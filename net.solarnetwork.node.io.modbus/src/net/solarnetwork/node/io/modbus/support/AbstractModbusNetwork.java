@@ -23,6 +23,7 @@
 package net.solarnetwork.node.io.modbus.support;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedHashSet;
@@ -44,8 +45,17 @@ import net.solarnetwork.node.settings.support.BasicToggleSettingSpecifier;
 /**
  * Abstract implementation of {@link ModbusNetwork}.
  * 
+ * <p>
+ * When {@code registerCacheMs} is greater than {@literal 0}, the connections
+ * passed to actions by {@link #performAction(int, ModbusConnectionAction)} are
+ * {@link CachedRegistersModbusConnection} instances sharing one
+ * {@link ModbusRegisterCache}. Components polling overlapping registers of the
+ * same device then share the results of a single read, and need exclusive use
+ * of the network only when registers must actually be read from the device.
+ * </p>
+ * 
  * @author matt
- * @version 2.0
+ * @version 2.1
  * @since 2.4
  */
 public abstract class AbstractModbusNetwork implements ModbusNetwork {
@@ -53,6 +63,13 @@ public abstract class AbstractModbusNetwork implements ModbusNetwork {
 	/** A default value for the {@code retryDelay} property. */
 	public static final long DEFAULT_RETRY_DELAY_MILLIS = 60;
 
+	/**
+	 * A default value for the {@code registerCacheMs} property.
+	 * 
+	 * @since 2.1
+	 */
+	public static final long DEFAULT_REGISTER_CACHE_MS = 0;
+
 	private String uid = "Modbus Port";
 	private String groupUID;
 	private long timeout = 10L;
@@ -63,6 +80,7 @@ public abstract class AbstractModbusNetwork implements ModbusNetwork {
 	private long retryDelay = DEFAULT_RETRY_DELAY_MILLIS;
 	private TimeUnit retryDelayUnit = TimeUnit.MILLISECONDS;
 	private boolean retryReconnect = false;
+	private long registerCacheMs = DEFAULT_REGISTER_CACHE_MS;
 
 	private Set<String> classNamesToTreatAsIoException = defaultClassNamesToTreatAsIoException();
 
@@ -71,6 +89,7 @@ public abstract class AbstractModbusNetwork implements ModbusNetwork {
 	}
 
 	private final ReentrantLock lock = new ReentrantLock(true); // use fair lock to prevent starvation
+	private final ModbusRegisterCache registerCache = new ModbusRegisterCache();
 
 	/** A class-level logger. */
 	protected final Logger log = LoggerFactory.getLogger(getClass());
@@ -145,8 +164,15 @@ public abstract class AbstractModbusNetwork implements ModbusNetwork {
 		ModbusConnection conn = null;
 		try {
 			conn = createConnection(unitId);
+			final long cacheMs = registerCacheMs;
+			if ( cacheMs > 0 ) {
+				conn = new CachedRegistersModbusConnection(conn, registerCache, cacheMs);
+			}
 			conn.open();
 			return action.doWithConnection(conn);
+		} catch ( UncheckedIOException e ) {
+			// from CachedRegistersModbusConnection opening the connection
+			throw e.getCause();
 		} catch ( RuntimeException e ) {
 			// unwrap ModbusIOException into IOException to cut down chatter
 			Throwable t = e;
@@ -255,13 +281,15 @@ public abstract class AbstractModbusNetwork implements ModbusNetwork {
 			};
 		}
 
-		List<SettingSpecifier> results = new ArrayList<SettingSpecifier>(5);
+		List<SettingSpecifier> results = new ArrayList<SettingSpecifier>(6);
 		results.add(new BasicToggleSettingSpecifier("headless", defaults.headless));
 		results.add(new BasicTextFieldSettingSpecifier("timeout", String.valueOf(defaults.timeout)));
 		results.add(new BasicTextFieldSettingSpecifier("retries", String.valueOf(defaults.retries)));
 		results.add(
 				new BasicTextFieldSettingSpecifier("retryDelay", String.valueOf(defaults.retryDelay)));
 		results.add(new BasicToggleSettingSpecifier("retryReconnect", defaults.retryReconnect));
+		results.add(new BasicTextFieldSettingSpecifier("registerCacheMs",
+				String.valueOf(defaults.registerCacheMs)));
 		return results;
 	}
 
@@ -474,4 +502,37 @@ public abstract class AbstractModbusNetwork implements ModbusNetwork {
 	public void setRetryReconnect(boolean retryReconnect) {
 		this.retryReconnect = retryReconnect;
 	}
+
+	/**
+	 * Get the maximum age of register values to share between actions.
+	 * 
+	 * @return the maximum age, in milliseconds; defaults to
+	 *         {@link #DEFAULT_REGISTER_CACHE_MS}
+	 * @since 2.1
+	 */
+	public long getRegisterCacheMs() {
+		return registerCacheMs;
+	}
+
+	/**
+	 * Set the maximum age of register values to share between actions.
+	 * 
+	 * <p>
+	 * When greater than {@literal 0}, register values read by any action
+	 * performed via {@link #performAction(int, ModbusConnectionAction)} are
+	 * returned to other actions reading the same registers for at most this
+	 * many milliseconds, without reading them from the device again. Any
+	 * write to a device discards all values shared for that device.
+	 * </p>
+	 * 
+	 * @param registerCacheMs
+	 *        the maximum age, in milliseconds, or {@literal 0} to disable
+	 * @since 2.1
+	 */
+	public void setRegisterCacheMs(long registerCacheMs) {
+		this.registerCacheMs = registerCacheMs;
+		if ( registerCacheMs < 1 ) {
+			registerCache.clear();
+		}
+	}
 }
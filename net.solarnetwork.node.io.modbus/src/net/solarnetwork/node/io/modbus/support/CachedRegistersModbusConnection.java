@@ -0,0 +1,234 @@
+/* ==================================================================
+ * CachedRegistersModbusConnection.java - 18/10/2026 9:06:44 PM
+ *
+ * Copyright 2026 SolarNetwork.net Dev Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ * ==================================================================
+ */
+
+package net.solarnetwork.node.io.modbus.support;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.util.BitSet;
+import net.solarnetwork.node.LockTimeoutException;
+import net.solarnetwork.node.io.modbus.ModbusConnection;
+import net.solarnetwork.node.io.modbus.ModbusReadFunction;
+import net.solarnetwork.node.io.modbus.ModbusWriteFunction;
+import net.solarnetwork.util.IntRange;
+
+/**
+ * {@link ModbusConnection} that answers register reads from a
+ * {@link ModbusRegisterCache} shared by all connections to the same network
+ * when possible.
+ *
+ * <p>
+ * The delegate connection is not opened until an operation needs to
+ * communicate with the device, so an action whose reads are all answered from
+ * the cache does not need exclusive use of the network at all. When registers
+ * must be read, the cache is checked again once the delegate has been opened,
+ * so a component that waited for another to finish reading the same registers
+ * uses those results instead of reading them again. Only the smallest range
+ * covering the registers not cached is read from the device.
+ * </p>
+ *
+ * <p>
+ * Any write removes all cached values for the unit ID, so values read after a
+ * write always come from the device.
+ * </p>
+ *
+ * @author matt
+ * @version 1.0
+ * @since 3.2
+ */
+public class CachedRegistersModbusConnection implements ModbusConnection {
+
+	private final ModbusConnection delegate;
+	private final ModbusRegisterCache cache;
+	private final long maxAgeMs;
+	private boolean opened;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param delegate
+	 *        the connection to the device
+	 * @param cache
+	 *        the cache to use
+	 * @param maxAgeMs
+	 *        the maximum age of cached values to use, in milliseconds
+	 */
+	public CachedRegistersModbusConnection(ModbusConnection delegate, ModbusRegisterCache cache,
+			long maxAgeMs) {
+		super();
+		this.delegate = delegate;
+		this.cache = cache;
+		this.maxAgeMs = maxAgeMs;
+	}
+
+	@Override
+	public String toString() {
+		return "CachedRegistersModbusConnection{" + delegate + '}';
+	}
+
+	@Override
+	public int getUnitId() {
+		return delegate.getUnitId();
+	}
+
+	/**
+	 * Open the connection.
+	 *
+	 * <p>
+	 * This method does nothing: the delegate connection is opened when first
+	 * required. An {@link IOException} thrown when opening the delegate is
+	 * re-thrown as an {@link UncheckedIOException}.
+	 * </p>
+	 */
+	@Override
+	public void open() throws IOException, LockTimeoutException {
+		// delegate opened when needed
+	}
+
+	@Override
+	public void close() {
+		if ( opened ) {
+			opened = false;
+			delegate.close();
+		}
+	}
+
+	private ModbusConnection device() {
+		if ( !opened ) {
+			try {
+				delegate.open();
+			} catch ( IOException e ) {
+				throw new UncheckedIOException(e);
+			}
+			opened = true;
+		}
+		return delegate;
+	}
+
+	@Override
+	public short[] readWords(ModbusReadFunction function, int address, int count) {
+		final int unitId = delegate.getUnitId();
+		final short[] result = new short[count];
+		IntRange missing = cache.read(unitId, function, address, result,
+				System.currentTimeMillis() - maxAgeMs);
+		if ( missing != null && !opened ) {
+			device();
+			// another component may have read the registers while we waited
+			missing = cache.read(unitId, function, address, result,
+					System.currentTimeMillis() - maxAgeMs);
+		}
+		if ( missing == null ) {
+			return result;
+		}
+		short[] data = delegate.readWords(function, missing.getMin(), missing.length());
+		if ( data != null ) {
+			cache.put(unitId, function, missing.getMin(), data, System.currentTimeMillis());
+			System.arraycopy(data, 0, result, missing.getMin() - address,
+					Math.min(data.length, missing.length()));
+		}
+		return result;
+	}
+
+	@Override
+	public int[] readWordsUnsigned(ModbusReadFunction function, int address, int count) {
+		short[] data = readWords(function, address, count);
+		int[] result = new int[data.length];
+		for ( int i = 0; i < data.length; i++ ) {
+			result[i] = data[i] & 0xFFFF;
+		}
+		return result;
+	}
+
+	@Override
+	public BitSet readDiscreetValues(int address, int count) {
+		return device().readDiscreetValues(address, count);
+	}
+
+	@Override
+	public BitSet readDiscreetValues(int[] addresses, int count) {
+		return device().readDiscreetValues(addresses, count);
+	}
+
+	@Override
+	public BitSet readInputDiscreteValues(int address, int count) {
+		return device().readInputDiscreteValues(address, count);
+	}
+
+	@Override
+	public byte[] readBytes(ModbusReadFunction function, int address, int count) {
+		return device().readBytes(function, address, count);
+	}
+
+	@Override
+	public String readString(ModbusReadFunction function, int address, int count, boolean trim,
+			Charset charset) {
+		return device().readString(function, address, count, trim, charset);
+	}
+
+	@Override
+	public void writeDiscreetValues(int[] addresses, BitSet bits) {
+		try {
+			device().writeDiscreetValues(addresses, bits);
+		} finally {
+			cache.invalidate(delegate.getUnitId());
+		}
+	}
+
+	@Override
+	public void writeWords(ModbusWriteFunction function, int address, short[] values) {
+		try {
+			device().writeWords(function, address, values);
+		} finally {
+			cache.invalidate(delegate.getUnitId());
+		}
+	}
+
+	@Override
+	public void writeWords(ModbusWriteFunction function, int address, int[] values) {
+		try {
+			device().writeWords(function, address, values);
+		} finally {
+			cache.invalidate(delegate.getUnitId());
+		}
+	}
+
+	@Override
+	public void writeBytes(ModbusWriteFunction function, int address, byte[] values) {
+		try {
+			device().writeBytes(function, address, values);
+		} finally {
+			cache.invalidate(delegate.getUnitId());
+		}
+	}
+
+	@Override
+	public void writeString(ModbusWriteFunction function, int address, String value,
+			Charset charset) {
+		try {
+			device().writeString(function, address, value, charset);
+		} finally {
+			cache.invalidate(delegate.getUnitId());
+		}
+	}
+
+}
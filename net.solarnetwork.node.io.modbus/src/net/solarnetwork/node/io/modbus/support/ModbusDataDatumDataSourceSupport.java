@@ -30,6 +30,7 @@ import net.solarnetwork.node.io.modbus.ModbusConnection;
 import net.solarnetwork.node.io.modbus.ModbusConnectionAction;
 import net.solarnetwork.node.io.modbus.ModbusData;
 import net.solarnetwork.node.io.modbus.ModbusNetwork;
+import net.solarnetwork.node.io.modbus.ModbusReadPlanner;
 
 /**
  * A base helper class to support {@link ModbusNetwork} based
@@ -37,7 +38,7 @@ import net.solarnetwork.node.io.modbus.ModbusNetwork;
  * object.
  * 
  * @author matt
- * @version 1.2
+ * @version 1.3
  * @since 2.9
  */
 public abstract class ModbusDataDatumDataSourceSupport<T extends ModbusData & DataAccessor>
@@ -49,6 +50,10 @@ public abstract class ModbusDataDatumDataSourceSupport<T extends ModbusData & Da
 	public ModbusDataDatumDataSourceSupport(T data) {
 		super();
 		this.sample = data;
+		if ( data.getReadPlanner() == null ) {
+			// combine ranges across any gap, limited by the maximum length given to refreshData()
+			data.setReadPlanner(new ModbusReadPlanner(Integer.MAX_VALUE, Integer.MAX_VALUE));
+		}
 	}
 
 	/**
@@ -31,6 +31,7 @@ import net.solarnetwork.node.io.modbus.ModbusConnection;
 import net.solarnetwork.node.io.modbus.ModbusConnectionAction;
 import net.solarnetwork.node.io.modbus.ModbusData;
 import net.solarnetwork.node.io.modbus.ModbusNetwork;
+import net.solarnetwork.node.io.modbus.ModbusReadPlanner;
 import net.solarnetwork.node.settings.SettingSpecifier;
 import net.solarnetwork.node.settings.support.BasicTextFieldSettingSpecifier;
 
@@ -41,7 +42,7 @@ import net.solarnetwork.node.settings.support.BasicTextFieldSettingSpecifier;
  * @param <T>
  *        the {@link ModbusData} type
  * @author matt
- * @version 1.0
+ * @version 1.1
  * @since 2.14
  */
 public abstract class ModbusDataDeviceSupport<T extends ModbusData & DataAccessor>
@@ -56,6 +57,10 @@ public abstract class ModbusDataDeviceSupport<T extends ModbusData & DataAccesso
 	public ModbusDataDeviceSupport(T data) {
 		super();
 		this.sample = data;
+		if ( data.getReadPlanner() == null ) {
+			// combine ranges across any gap, limited by the maximum length given to refreshData()
+			data.setReadPlanner(new ModbusReadPlanner(Integer.MAX_VALUE, Integer.MAX_VALUE));
+		}
 	}
 
 	/**
@@ -0,0 +1,177 @@
+/* ==================================================================
+ * ModbusRegisterCache.java - 18/10/2026 8:47:19 PM
+ *
+ * Copyright 2026 SolarNetwork.net Dev Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ * ==================================================================
+ */
+
+package net.solarnetwork.node.io.modbus.support;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import net.solarnetwork.node.io.modbus.ModbusReadFunction;
+import net.solarnetwork.util.IntRange;
+
+/**
+ * A cache of register values read from the devices on a Modbus network.
+ *
+ * <p>
+ * Values are stored per unit ID, read function, and address, along with the
+ * time they were read, so that overlapping reads of the same registers made by
+ * different components within a short time can be answered from memory instead
+ * of the network. Registers are stored in fixed-size pages so that memory use
+ * is proportional to the number of distinct registers read.
+ * </p>
+ *
+ * <p>
+ * This class is thread-safe.
+ * </p>
+ *
+ * @author matt
+ * @version 1.0
+ * @since 3.2
+ */
+public class ModbusRegisterCache {
+
+	private static final int PAGE_SHIFT = 7;
+	private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+	private static final int PAGE_MASK = PAGE_SIZE - 1;
+	private static final int UNIT_SHIFT = 13;
+
+	private final Map<Integer, Page> pages = new HashMap<>(16);
+
+	private static final class Page {
+
+		private final short[] values = new short[PAGE_SIZE];
+		private final long[] times = new long[PAGE_SIZE];
+	}
+
+	private static int pageKey(int unitId, ModbusReadFunction function, int address) {
+		// page index uses bits 0-8, function bits 9-12, unit ID bits 13-20
+		return ((unitId & 0xFF) << UNIT_SHIFT) | ((function.getCode() & 0xF) << 9)
+				| ((address & 0xFFFF) >> PAGE_SHIFT);
+	}
+
+	/**
+	 * Copy cached register values into an array.
+	 *
+	 * <p>
+	 * Every element of {@code dest} for which a cached value read at or after
+	 * {@code minTime} exists is populated. The smallest range of addresses
+	 * that covers all other elements is returned.
+	 * </p>
+	 *
+	 * @param unitId
+	 *        the unit ID
+	 * @param function
+	 *        the read function
+	 * @param address
+	 *        the address of the first register to copy
+	 * @param dest
+	 *        the destination array, whose length is the number of registers to
+	 *        copy
+	 * @param minTime
+	 *        the minimum read time, as an epoch millisecond, of the values to
+	 *        copy
+	 * @return the range of addresses not available in the cache, or
+	 *         {@literal null} if all values were copied
+	 */
+	public synchronized IntRange read(int unitId, ModbusReadFunction function, int address,
+			short[] dest, long minTime) {
+		int missingMin = -1;
+		int missingMax = -1;
+		Page page = null;
+		int pageKey = -1;
+		for ( int i = 0; i < dest.length; i++ ) {
+			final int addr = address + i;
+			final int key = pageKey(unitId, function, addr);
+			if ( key != pageKey ) {
+				page = pages.get(key);
+				pageKey = key;
+			}
+			final int idx = addr & PAGE_MASK;
+			if ( page != null && page.times[idx] > 0 && page.times[idx] >= minTime ) {
+				dest[i] = page.values[idx];
+			} else {
+				if ( missingMin < 0 ) {
+					missingMin = addr;
+				}
+				missingMax = addr;
+			}
+		}
+		return (missingMin < 0 ? null : new IntRange(missingMin, missingMax));
+	}
+
+	/**
+	 * Store register values.
+	 *
+	 * @param unitId
+	 *        the unit ID
+	 * @param function
+	 *        the read function
+	 * @param address
+	 *        the address of the first register to store
+	 * @param data
+	 *        the register values
+	 * @param time
+	 *        the time the values were read, as an epoch millisecond
+	 */
+	public synchronized void put(int unitId, ModbusReadFunction function, int address, short[] data,
+			long time) {
+		Page page = null;
+		int pageKey = -1;
+		for ( int i = 0; i < data.length; i++ ) {
+			final int addr = address + i;
+			final int key = pageKey(unitId, function, addr);
+			if ( key != pageKey ) {
+				page = pages.get(key);
+				if ( page == null ) {
+					page = new Page();
+					pages.put(key, page);
+				}
+				pageKey = key;
+			}
+			final int idx = addr & PAGE_MASK;
+			page.values[idx] = data[i];
+			page.times[idx] = time;
+		}
+	}
+
+	/**
+	 * Remove all cached values for a unit ID.
+	 *
+	 * @param unitId
+	 *        the unit ID
+	 */
+	public synchronized void invalidate(int unitId) {
+		for ( Iterator<Integer> itr = pages.keySet().iterator(); itr.hasNext(); ) {
+			if ( (itr.next() >> UNIT_SHIFT) == (unitId & 0xFF) ) {
+				itr.remove();
+			}
+		}
+	}
+
+	/**
+	 * Remove all cached values.
+	 */
+	public synchronized void clear() {
+		pages.clear();
+	}
+
+}
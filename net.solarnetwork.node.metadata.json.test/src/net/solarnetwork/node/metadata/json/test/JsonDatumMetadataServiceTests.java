@@ -22,6 +22,7 @@
 
 package net.solarnetwork.node.metadata.json.test;
 
+import static org.easymock.EasyMock.anyObject;
 import static org.easymock.EasyMock.capture;
 import static org.easymock.EasyMock.eq;
 import static org.easymock.EasyMock.expect;
@@ -36,7 +37,10 @@ import java.io.InputStreamReader;
 import java.nio.charset.Charset;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Date;
 import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 import javax.servlet.http.HttpServletRequest;
@@ -48,6 +52,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.springframework.core.io.ByteArrayResource;
 import org.springframework.core.io.Resource;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.util.DigestUtils;
 import org.springframework.util.FileCopyUtils;
 import com.fasterxml.jackson.databind.DeserializationFeature;
@@ -62,7 +67,7 @@ import net.solarnetwork.util.ObjectMapperFactoryBean;
  * Test cases for the {@link JsonDatumMetadataService} class.
  * 
  * @author matt
- * @version 1.0
+ * @version 1.2
  */
 public class JsonDatumMetadataServiceTests extends AbstractHttpClientTests {
 
@@ -140,6 +145,55 @@ public class JsonDatumMetadataServiceTests extends AbstractHttpClientTests {
 				equalTo("558.857455"));
 	}
 
+	@Test
+	public void requestMetadataCachedThenRevalidated() throws Exception {
+		// GIVEN
+		service.setMetadataTtlMs(300);
+		expect(identityService.getNodeId()).andReturn(TEST_NODE_ID).anyTimes();
+		expect(identityService.getSolarInBaseUrl()).andReturn(getHttpServerBaseUrl()).anyTimes();
+
+		final String etag = "\"test-etag\"";
+		final AtomicInteger requestCount = new AtomicInteger(0);
+		TestHttpHandler handler = new TestHttpHandler() {
+
+			@Override
+			protected boolean handleInternal(HttpServletRequest request, HttpServletResponse response)
+					throws Exception {
+				assertThat("Request method", request.getMethod(), equalTo("GET"));
+				if ( requestCount.incrementAndGet() == 1 ) {
+					assertThat("No conditional header on first request",
+							request.getHeader("If-None-Match"), nullValue());
+					response.setHeader("ETag", etag);
+					respondWithJsonResource(response, "meta-01.json");
+				} else {
+					assertThat("Conditional header on revalidate request",
+							request.getHeader("If-None-Match"), equalTo(etag));
+					response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+				}
+				response.flushBuffer();
+				return true;
+			}
+
+		};
+		getHttpServer().addHandler(handler);
+
+		// WHEN
+		replayAll();
+
+		GeneralDatumMetadata meta1 = service.getSourceMetadata(TEST_SOUCE_ID);
+		GeneralDatumMetadata meta2 = service.getSourceMetadata(TEST_SOUCE_ID);
+		int cachedRequestCount = requestCount.get();
+		Thread.sleep(400);
+		GeneralDatumMetadata meta3 = service.getSourceMetadata(TEST_SOUCE_ID);
+
+		// THEN
+		assertThat("Metadata returned", meta1, notNullValue());
+		assertThat("Second call served from cache", cachedRequestCount, equalTo(1));
+		assertThat("Cached metadata", meta2, equalTo(meta1));
+		assertThat("Expired metadata revalidated", requestCount.get(), equalTo(2));
+		assertThat("Not modified metadata", meta3, equalTo(meta1));
+	}
+
 	@Test
 	public void postMetadataNotCached() throws Exception {
 		// GIVEN
@@ -148,14 +202,13 @@ public class JsonDatumMetadataServiceTests extends AbstractHttpClientTests {
 		expect(identityService.getNodeId()).andReturn(TEST_NODE_ID).anyTimes();
 		expect(identityService.getSolarInBaseUrl()).andReturn(getHttpServerBaseUrl()).anyTimes();
 
-		// no cached metadata available (first to look up, second before saving)
-		// called twice: first when looking to load cached data, 2nd when saving to cache
+		// no cached metadata available; loaded once then held in memory
 		expect(settingsService.getSettingResources(service.getSettingUID(), null, settingKey))
-				.andReturn(Collections.emptyList()).times(2);
+				.andReturn(Collections.emptyList());
 
 		// also fall back to legacy data
 		expect(settingDao.getSetting(JsonDatumMetadataService.SETTING_KEY_SOURCE_META, TEST_SOUCE_ID))
-				.andReturn(null).times(2);
+				.andReturn(null);
 
 		// then store as settings resource
 		Capture<Iterable<Resource>> resourcesCaptor = new Capture<>();
@@ -209,14 +262,13 @@ public class JsonDatumMetadataServiceTests extends AbstractHttpClientTests {
 		expect(identityService.getNodeId()).andReturn(TEST_NODE_ID).anyTimes();
 		expect(identityService.getSolarInBaseUrl()).andReturn(getHttpServerBaseUrl()).anyTimes();
 
-		// no cached metadata available (first to look up, second before saving)
-		// called twice: first when looking to load cached data, 2nd when saving to cache
+		// no cached metadata available; loaded once then held in memory
 		expect(settingsService.getSettingResources(service.getSettingUID(), null, settingKey))
-				.andReturn(Collections.emptyList()).times(2);
+				.andReturn(Collections.emptyList());
 
-		// legacy cached metadata *is* available (first to look up, second before saving)
+		// legacy cached metadata *is* available
 		expect(settingDao.getSetting(JsonDatumMetadataService.SETTING_KEY_SOURCE_META, TEST_SOUCE_ID))
-				.andReturn("{\"m\":{\"foo\":\"bar\"}}").times(2);
+				.andReturn("{\"m\":{\"foo\":\"bar\"}}");
 
 		// then store as settings resource
 		Capture<Iterable<Resource>> resourcesCaptor = new Capture<>();
@@ -270,11 +322,11 @@ public class JsonDatumMetadataServiceTests extends AbstractHttpClientTests {
 		expect(identityService.getNodeId()).andReturn(TEST_NODE_ID).anyTimes();
 		expect(identityService.getSolarInBaseUrl()).andReturn(getHttpServerBaseUrl()).anyTimes();
 
-		// no cached metadata available (first to look up, second before saving)
+		// cached metadata available; loaded once then held in memory
 		ByteArrayResource jsonResource = new ByteArrayResource(
 				"{\"m\":{\"foo\":\"bar\"}}".getBytes(Charset.forName("UTF-8")));
 		expect(settingsService.getSettingResources(service.getSettingUID(), null, settingKey))
-				.andReturn(Collections.singleton(jsonResource)).times(2);
+				.andReturn(Collections.singleton(jsonResource));
 
 		// then store as settings resource
 		Capture<Iterable<Resource>> resourcesCaptor = new Capture<>();
@@ -344,4 +396,85 @@ public class JsonDatumMetadataServiceTests extends AbstractHttpClientTests {
 		// THEN
 	}
 
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	@Test
+	public void postMetadataAsyncMergesChanges() throws Exception {
+		// GIVEN
+		final String settingKey = DigestUtils
+				.md5DigestAsHex(TEST_SOUCE_ID.getBytes(Charset.forName("UTF-8")));
+		TaskScheduler taskScheduler = EasyMock.createMock(TaskScheduler.class);
+		service.setTaskScheduler(taskScheduler);
+		service.setSyncDelayMs(1000);
+
+		expect(identityService.getNodeId()).andReturn(TEST_NODE_ID).anyTimes();
+		expect(identityService.getSolarInBaseUrl()).andReturn(getHttpServerBaseUrl()).anyTimes();
+
+		// cached metadata available; loaded once then held in memory
+		ByteArrayResource jsonResource = new ByteArrayResource(
+				"{\"m\":{\"foo\":\"bar\"}}".getBytes(Charset.forName("UTF-8")));
+		expect(settingsService.getSettingResources(service.getSettingUID(), null, settingKey))
+				.andReturn(Collections.singleton(jsonResource));
+
+		// sync scheduled once for both changes
+		Capture<Runnable> taskCaptor = new Capture<>();
+		ScheduledFuture<?> future = EasyMock.createNiceMock(ScheduledFuture.class);
+		expect(taskScheduler.schedule(capture(taskCaptor), anyObject(Date.class)))
+				.andReturn((ScheduledFuture) future);
+
+		// then store as settings resource
+		Capture<Iterable<Resource>> resourcesCaptor = new Capture<>();
+		settingsService.importSettingResources(eq(service.getSettingUID()), isNull(), eq(settingKey),
+				capture(resourcesCaptor));
+
+		final AtomicInteger postCount = new AtomicInteger(0);
+		TestHttpHandler handler = new TestHttpHandler() {
+
+			@Override
+			protected boolean handleInternal(HttpServletRequest request, HttpServletResponse response)
+					throws Exception {
+				postCount.incrementAndGet();
+				assertThat("Request method", request.getMethod(), equalTo("POST"));
+				String body = FileCopyUtils.copyToString(request.getReader());
+				assertThat("JSON body", body,
+						equalTo("{\"m\":{\"foo\":\"bar\",\"bim\":\"bam\",\"boo\":\"baa\"}}"));
+				respondWithJson(response, "{\"success\":true}");
+				response.flushBuffer();
+				return true;
+			}
+
+		};
+		getHttpServer().addHandler(handler);
+
+		// WHEN
+		replayAll();
+		EasyMock.replay(taskScheduler, future);
+
+		GeneralDatumMetadata meta = new GeneralDatumMetadata();
+		meta.putInfoValue("bim", "bam");
+		service.addSourceMetadata(TEST_SOUCE_ID, meta);
+
+		meta = new GeneralDatumMetadata();
+		meta.putInfoValue("boo", "baa");
+		service.addSourceMetadata(TEST_SOUCE_ID, meta);
+
+		// no change
+		service.addSourceMetadata(TEST_SOUCE_ID, meta);
+
+		assertThat("Nothing posted before sync", postCount.get(), equalTo(0));
+
+		taskCaptor.getValue().run();
+
+		// THEN
+		EasyMock.verify(taskScheduler);
+		assertThat("Single post for merged changes", postCount.get(), equalTo(1));
+		Iterable<Resource> savedResources = resourcesCaptor.getValue();
+		List<Resource> rsrcs = StreamSupport.stream(savedResources.spliterator(), false)
+				.collect(Collectors.toList());
+		assertThat("Saved single resource", rsrcs, hasSize(1));
+		String json = FileCopyUtils.copyToString(
+				new InputStreamReader(rsrcs.get(0).getInputStream(), Charset.forName("UTF-8")));
+		assertThat("Cached metadata json", json,
+				equalTo("{\"m\":{\"foo\":\"bar\",\"bim\":\"bam\",\"boo\":\"baa\"}}"));
+	}
+
 }
@@ -25,11 +25,21 @@ package net.solarnetwork.node.metadata.json;
 import static java.util.Collections.singleton;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URLConnection;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Date;
 import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.springframework.core.io.ByteArrayResource;
 import org.springframework.core.io.Resource;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.util.DigestUtils;
 import net.solarnetwork.domain.GeneralDatumMetadata;
 import net.solarnetwork.node.DatumMetadataService;
@@ -45,23 +55,100 @@ import net.solarnetwork.node.support.JsonHttpClientSupport;
  * <p>
  * This implementation caches the metadata for each source using
  * {@link SettingsService} using the {@link SettingResourceHandler} API, saving
- * one JSON resource per source ID.
+ * one JSON resource per source ID. The cached metadata is also held in memory,
+ * so the resources are only read once per source.
+ * </p>
+ * 
+ * <p>
+ * If a {@code syncDelayMs} greater than {@literal 0} and a
+ * {@link TaskScheduler} are configured, then
+ * {@link #addSourceMetadata(String, GeneralDatumMetadata)} merges the metadata
+ * into the in-memory cache and returns immediately. All sources with changes
+ * are then posted to SolarNet, and their cached resources saved, together by
+ * a background task after {@code syncDelayMs} milliseconds. Any number of
+ * changes to a source within that time results in a single post.
+ * </p>
+ * 
+ * <p>
+ * If a {@code metadataTtlMs} greater than {@literal 0} is configured, then
+ * {@link #getSourceMetadata(String)} caches the metadata returned by SolarNet
+ * for that many milliseconds. Once expired the metadata is revalidated with a
+ * conditional request using the {@literal ETag} returned by SolarNet. If a
+ * {@link TaskScheduler} is configured the revalidation happens in the
+ * background while the expired metadata continues to be returned. Sources
+ * without any metadata are cached for {@code negativeTtlMs} milliseconds. If
+ * SolarNet cannot be reached, the expired or locally cached metadata is
+ * returned instead.
  * </p>
  * 
  * @author matt
- * @version 1.4
+ * @version 1.6
  */
 public class JsonDatumMetadataService extends JsonHttpClientSupport
 		implements DatumMetadataService, SettingResourceHandler {
 
 	public static final String SETTING_KEY_SOURCE_META = "JsonDatumMetadataService.sourceMeta";
 
+	/**
+	 * The default value for the {@code syncDelayMs} property.
+	 * 
+	 * @since 1.5
+	 */
+	public static final long DEFAULT_SYNC_DELAY_MS = 0L;
+
+	/**
+	 * The default value for the {@code metadataTtlMs} property.
+	 * 
+	 * @since 1.6
+	 */
+	public static final long DEFAULT_METADATA_TTL_MS = 0L;
+
+	/**
+	 * The default value for the {@code negativeTtlMs} property.
+	 * 
+	 * @since 1.6
+	 */
+	public static final long DEFAULT_NEGATIVE_TTL_MS = 60000L;
+
 	private static final Charset UTF8 = Charset.forName("UTF-8");
 
 	private String baseUrl = "/api/v1/sec/datum/meta";
 
 	private final SettingsService settingsService;
 	private SettingDao settingDao;
+	private TaskScheduler taskScheduler;
+	private long syncDelayMs = DEFAULT_SYNC_DELAY_MS;
+
+	private final ConcurrentMap<String, GeneralDatumMetadata> metadataCache = new ConcurrentHashMap<>(16,
+			0.9f, 2);
+	private final Set<String> pendingSync = ConcurrentHashMap.newKeySet();
+	private long metadataTtlMs = DEFAULT_METADATA_TTL_MS;
+	private long negativeTtlMs = DEFAULT_NEGATIVE_TTL_MS;
+	private final ConcurrentMap<String, RemoteMetadata> remoteCache = new ConcurrentHashMap<>(16, 0.9f,
+			2);
+	private ScheduledFuture<?> syncFuture;
+
+	/**
+	 * Metadata returned by SolarNet, cached until an expiration date.
+	 */
+	private static final class RemoteMetadata {
+
+		private final GeneralDatumMetadata metadata;
+		private final String etag;
+		private final long expires;
+		private final AtomicBoolean refreshing = new AtomicBoolean(false);
+
+		private RemoteMetadata(GeneralDatumMetadata metadata, String etag, long expires) {
+			super();
+			this.metadata = metadata;
+			this.etag = etag;
+			this.expires = expires;
+		}
+
+		private GeneralDatumMetadata metadataCopy() {
+			return (metadata != null ? new GeneralDatumMetadata(metadata) : null);
+		}
+	}
 
 	/**
 	 * Constructor.
@@ -74,6 +161,24 @@ public class JsonDatumMetadataService extends JsonHttpClientSupport
 		this.settingsService = settingsService;
 	}
 
+	/**
+	 * Cancel any pending background sync task.
+	 * 
+	 * <p>
+	 * Metadata changes not yet posted will be posted again the next time
+	 * metadata is added to the affected sources, as the changes are not saved
+	 * to the cached resources until they have been posted.
+	 * </p>
+	 * 
+	 * @since 1.5
+	 */
+	public synchronized void close() {
+		if ( syncFuture != null ) {
+			syncFuture.cancel(false);
+			syncFuture = null;
+		}
+	}
+
 	@Override
 	public String getSettingUID() {
 		return "net.solarnetwork.node.metadata.json.JsonDatumMetadataService";
@@ -101,15 +206,100 @@ public class JsonDatumMetadataService extends JsonHttpClientSupport
 
 	@Override
 	public GeneralDatumMetadata getSourceMetadata(String sourceId) {
+		if ( metadataTtlMs < 1 ) {
+			return fetchSourceMetadata(sourceId, null).metadata;
+		}
+		final RemoteMetadata entry = remoteCache.get(sourceId);
+		if ( entry != null ) {
+			if ( System.currentTimeMillis() < entry.expires ) {
+				return entry.metadataCopy();
+			}
+			final TaskScheduler scheduler = this.taskScheduler;
+			if ( scheduler != null ) {
+				// return stale metadata while revalidating in the background
+				if ( entry.refreshing.compareAndSet(false, true) ) {
+					scheduler.schedule(new Runnable() {
+
+						@Override
+						public void run() {
+							try {
+								refreshSourceMetadata(sourceId, entry);
+							} catch ( RuntimeException e ) {
+								// already logged
+							} finally {
+								entry.refreshing.set(false);
+							}
+						}
+					}, new Date());
+				}
+				return entry.metadataCopy();
+			}
+		}
+		try {
+			return refreshSourceMetadata(sourceId, entry).metadataCopy();
+		} catch ( RuntimeException e ) {
+			if ( entry != null ) {
+				log.info("Using expired metadata for source {} because of error: {}", sourceId,
+						e.getMessage());
+				return entry.metadataCopy();
+			}
+			GeneralDatumMetadata local = cachedMetadata(sourceId);
+			if ( local != null ) {
+				log.info("Using locally cached metadata for source {} because of error: {}", sourceId,
+						e.getMessage());
+				return new GeneralDatumMetadata(local);
+			}
+			throw e;
+		}
+	}
+
+	private RemoteMetadata refreshSourceMetadata(String sourceId, RemoteMetadata prev) {
+		RemoteMetadata result = fetchSourceMetadata(sourceId, prev);
+		if ( result.metadata != null || negativeTtlMs > 0 ) {
+			remoteCache.put(sourceId, result);
+		} else {
+			remoteCache.remove(sourceId, prev);
+		}
+		return result;
+	}
+
+	/**
+	 * Request the metadata for a source from SolarNet.
+	 * 
+	 * @param sourceId
+	 *        the source ID to get the metadata for
+	 * @param prev
+	 *        the previously fetched metadata, to make a conditional request
+	 *        with, or {@literal null}
+	 * @return the metadata, never {@literal null}
+	 * @throws RuntimeException
+	 *         if any communication error occurs
+	 */
+	private RemoteMetadata fetchSourceMetadata(String sourceId, RemoteMetadata prev) {
 		final String url = nodeSourceMetadataUrl(sourceId);
 		try {
-			final InputStream in = jsonGET(url);
-			Collection<GeneralDatumMetadata> results = extractFilterResultsCollectionResponseData(in,
-					GeneralDatumMetadata.class);
-			if ( results != null && !results.isEmpty() ) {
-				return results.iterator().next();
+			URLConnection conn = getURLConnection(url, HTTP_METHOD_GET, JSON_MIME_TYPE);
+			if ( prev != null && prev.etag != null ) {
+				conn.setRequestProperty("If-None-Match", prev.etag);
 			}
-			return null;
+			final long now = System.currentTimeMillis();
+			if ( prev != null && conn instanceof HttpURLConnection
+					&& ((HttpURLConnection) conn)
+							.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED ) {
+				log.debug("Metadata not modified for source {}", sourceId);
+				return new RemoteMetadata(prev.metadata, prev.etag,
+						now + (prev.metadata != null ? metadataTtlMs : negativeTtlMs));
+			}
+			GeneralDatumMetadata meta = null;
+			try (InputStream in = getInputStreamFromURLConnection(conn)) {
+				Collection<GeneralDatumMetadata> results = extractFilterResultsCollectionResponseData(
+						in, GeneralDatumMetadata.class);
+				if ( results != null && !results.isEmpty() ) {
+					meta = results.iterator().next();
+				}
+			}
+			return new RemoteMetadata(meta, conn.getHeaderField("ETag"),
+					now + (meta != null ? metadataTtlMs : negativeTtlMs));
 		} catch ( IOException e ) {
 			if ( log.isTraceEnabled() ) {
 				log.trace("IOException querying for source metadata at " + url, e);
@@ -120,7 +310,32 @@ public class JsonDatumMetadataService extends JsonHttpClientSupport
 		}
 	}
 
+	/**
+	 * Get the cached metadata for a source.
+	 * 
+	 * <p>
+	 * The returned instance is shared and must not be modified.
+	 * </p>
+	 * 
+	 * @param sourceId
+	 *        the source ID
+	 * @return the cached metadata, or {@literal null} if none available
+	 */
 	private GeneralDatumMetadata cachedMetadata(String sourceId) {
+		GeneralDatumMetadata meta = metadataCache.get(sourceId);
+		if ( meta == null ) {
+			meta = loadCachedMetadata(sourceId);
+			if ( meta != null ) {
+				GeneralDatumMetadata existing = metadataCache.putIfAbsent(sourceId, meta);
+				if ( existing != null ) {
+					meta = existing;
+				}
+			}
+		}
+		return meta;
+	}
+
+	private GeneralDatumMetadata loadCachedMetadata(String sourceId) {
 		final String sourceKey = DigestUtils.md5DigestAsHex(sourceId.getBytes(UTF8));
 		try {
 			Iterable<Resource> resources = settingsService.getSettingResources(getSettingUID(), null,
@@ -157,49 +372,59 @@ public class JsonDatumMetadataService extends JsonHttpClientSupport
 		return null;
 	}
 
-	private synchronized void cacheMetadata(final String sourceId, final GeneralDatumMetadata meta) {
+	private void saveCachedMetadata(final String sourceId, final GeneralDatumMetadata meta) {
+		try {
+			final String sourceKey = DigestUtils.md5DigestAsHex(sourceId.getBytes(UTF8));
+			byte[] json = getObjectMapper().writeValueAsBytes(meta);
+			ByteArrayResource r = new ByteArrayResource(json, sourceId + " metadata");
+			settingsService.importSettingResources(getSettingUID(), null, sourceKey, singleton(r));
+		} catch ( IOException e ) {
+			log.error("Error generating cached metadata JSON for source {}: {}", sourceId,
+					e.getMessage());
+		}
+	}
+
+	/**
+	 * Merge metadata into the cached metadata for a source.
+	 * 
+	 * @param sourceId
+	 *        the source ID
+	 * @param meta
+	 *        the metadata to merge
+	 * @return the merged metadata, or {@literal null} if {@code meta} does not
+	 *         change the cached metadata
+	 */
+	private GeneralDatumMetadata mergedMetadata(String sourceId, GeneralDatumMetadata meta) {
 		GeneralDatumMetadata currMeta = cachedMetadata(sourceId);
-		GeneralDatumMetadata newMeta;
 		if ( currMeta == null ) {
-			newMeta = meta;
-		} else {
-			newMeta = new GeneralDatumMetadata(currMeta);
-			newMeta.merge(meta, true);
+			return meta;
 		}
-		if ( newMeta != null && newMeta.equals(currMeta) == false ) {
-			// have changes, so persist
-			try {
-				final String sourceKey = DigestUtils.md5DigestAsHex(sourceId.getBytes(UTF8));
-				byte[] json = getObjectMapper().writeValueAsBytes(newMeta);
-				ByteArrayResource r = new ByteArrayResource(json, sourceId + " metadata");
-				settingsService.importSettingResources(getSettingUID(), null, sourceKey, singleton(r));
-			} catch ( IOException e ) {
-				log.error("Error generating cached metadata JSON for source {}: {}", sourceId,
-						e.getMessage());
-			}
+		log.debug("Merging metadata for source {} into {}", sourceId, currMeta.getPm());
+		GeneralDatumMetadata mergedMeta = new GeneralDatumMetadata(currMeta);
+		mergedMeta.merge(meta, true);
+		if ( currMeta.equals(mergedMeta) ) {
+			log.debug("Metadata has not changed for source {}", sourceId);
+			return null;
 		}
+		return mergedMeta;
 	}
 
-	@Override
-	public void addSourceMetadata(String sourceId, GeneralDatumMetadata meta) {
-		log.debug("Adding metadata to source {}: {}", sourceId, meta.getPm());
-		GeneralDatumMetadata currMeta = cachedMetadata(sourceId);
-		if ( currMeta != null ) {
-			log.debug("Merging metadata for source {} into {}", sourceId, currMeta.getPm());
-			GeneralDatumMetadata mergedMeta = new GeneralDatumMetadata(currMeta);
-			mergedMeta.merge(meta, true);
-			if ( currMeta.equals(mergedMeta) ) {
-				log.debug("Metadata has not changed for source {}", sourceId);
-				return;
-			}
-			meta = mergedMeta;
+	private synchronized void cacheMetadata(final String sourceId, final GeneralDatumMetadata meta) {
+		GeneralDatumMetadata newMeta = mergedMetadata(sourceId, meta);
+		if ( newMeta != null ) {
+			// have changes, so persist
+			metadataCache.put(sourceId, new GeneralDatumMetadata(newMeta));
+			saveCachedMetadata(sourceId, newMeta);
 		}
+	}
+
+	private void postMetadata(String sourceId, GeneralDatumMetadata meta) {
 		final String url = nodeSourceMetadataUrl(sourceId);
 		log.info("Posting metadata for source {}", sourceId);
 		try {
 			final InputStream in = jsonPOST(url, meta);
 			verifyResponseSuccess(in);
-			cacheMetadata(sourceId, meta);
+			remoteCache.remove(sourceId);
 		} catch ( IOException e ) {
 			if ( log.isTraceEnabled() ) {
 				log.trace("IOException posting source metadata at " + url, e);
@@ -210,6 +435,79 @@ public class JsonDatumMetadataService extends JsonHttpClientSupport
 		}
 	}
 
+	@Override
+	public void addSourceMetadata(String sourceId, GeneralDatumMetadata meta) {
+		log.debug("Adding metadata to source {}: {}", sourceId, meta.getPm());
+		if ( syncDelayMs > 0 && taskScheduler != null ) {
+			synchronized ( this ) {
+				GeneralDatumMetadata newMeta = mergedMetadata(sourceId, meta);
+				if ( newMeta == null ) {
+					return;
+				}
+				metadataCache.put(sourceId, new GeneralDatumMetadata(newMeta));
+				pendingSync.add(sourceId);
+				scheduleSync();
+			}
+			return;
+		}
+		GeneralDatumMetadata newMeta = mergedMetadata(sourceId, meta);
+		if ( newMeta == null ) {
+			return;
+		}
+		postMetadata(sourceId, newMeta);
+		cacheMetadata(sourceId, newMeta);
+	}
+
+	private synchronized void scheduleSync() {
+		if ( syncFuture != null || pendingSync.isEmpty() ) {
+			return;
+		}
+		syncFuture = taskScheduler.schedule(new Runnable() {
+
+			@Override
+			public void run() {
+				syncPendingMetadata();
+			}
+		}, new Date(System.currentTimeMillis() + syncDelayMs));
+	}
+
+	/**
+	 * Post the cached metadata of all sources with pending changes to
+	 * SolarNet, saving the cached resource of each source once posted.
+	 * 
+	 * <p>
+	 * If posting fails, the remaining sources are left pending and another
+	 * sync is scheduled.
+	 * </p>
+	 */
+	private void syncPendingMetadata() {
+		try {
+			for ( String sourceId : new ArrayList<>(pendingSync) ) {
+				if ( !pendingSync.remove(sourceId) ) {
+					continue;
+				}
+				GeneralDatumMetadata meta = metadataCache.get(sourceId);
+				if ( meta == null ) {
+					continue;
+				}
+				try {
+					postMetadata(sourceId, meta);
+				} catch ( RuntimeException e ) {
+					log.warn("Error posting metadata for source {}; will retry: {}", sourceId,
+							e.getMessage());
+					pendingSync.add(sourceId);
+					break;
+				}
+				saveCachedMetadata(sourceId, meta);
+			}
+		} finally {
+			synchronized ( this ) {
+				syncFuture = null;
+				scheduleSync();
+			}
+		}
+	}
+
 	/**
 	 * Get the setting DAO.
 	 * 
@@ -234,6 +532,93 @@ public class JsonDatumMetadataService extends JsonHttpClientSupport
 		this.settingDao = settingDao;
 	}
 
+	/**
+	 * Set a task scheduler to use for background metadata syncing.
+	 * 
+	 * @param taskScheduler
+	 *        the task scheduler
+	 * @since 1.5
+	 */
+	public void setTaskScheduler(TaskScheduler taskScheduler) {
+		this.taskScheduler = taskScheduler;
+	}
+
+	/**
+	 * Get the background sync delay.
+	 * 
+	 * @return the delay, in milliseconds; defaults to
+	 *         {@link #DEFAULT_SYNC_DELAY_MS}
+	 * @since 1.5
+	 */
+	public long getSyncDelayMs() {
+		return syncDelayMs;
+	}
+
+	/**
+	 * Set the background sync delay.
+	 * 
+	 * @param syncDelayMs
+	 *        the number of milliseconds to wait after metadata is added before
+	 *        posting the changes to SolarNet, or {@literal 0} to post changes
+	 *        immediately
+	 * @since 1.5
+	 */
+	public void setSyncDelayMs(long syncDelayMs) {
+		this.syncDelayMs = syncDelayMs;
+	}
+
+	/**
+	 * Get the source metadata cache time to live.
+	 * 
+	 * @return the time to live, in milliseconds; defaults to
+	 *         {@link #DEFAULT_METADATA_TTL_MS}
+	 * @since 1.6
+	 */
+	public long getMetadataTtlMs() {
+		return metadataTtlMs;
+	}
+
+	/**
+	 * Set the source metadata cache time to live.
+	 * 
+	 * @param metadataTtlMs
+	 *        the number of milliseconds to cache metadata returned by
+	 *        {@link #getSourceMetadata(String)}, or {@literal 0} to disable
+	 *        caching
+	 * @since 1.6
+	 */
+	public void setMetadataTtlMs(long metadataTtlMs) {
+		this.metadataTtlMs = metadataTtlMs;
+	}
+
+	/**
+	 * Get the time to live for sources without any metadata.
+	 * 
+	 * @return the time to live, in milliseconds; defaults to
+	 *         {@link #DEFAULT_NEGATIVE_TTL_MS}
+	 * @since 1.6
+	 */
+	public long getNegativeTtlMs() {
+		return negativeTtlMs;
+	}
+
+	/**
+	 * Set the time to live for sources without any metadata.
+	 * 
+	 * <p>
+	 * This is only used when {@code metadataTtlMs} is greater than
+	 * {@literal 0}.
+	 * </p>
+	 * 
+	 * @param negativeTtlMs
+	 *        the number of milliseconds to remember that a source has no
+	 *        metadata, or {@literal 0} to not cache missing metadata
+	 * @since 1.6
+	 */
+	public void setNegativeTtlMs(long negativeTtlMs) {
+		this.negativeTtlMs = negativeTtlMs;
+	}
+
 	/**
 	 * Get the SolarIn relative source-level metadata base URL path.
 	 * 
@@ -26,6 +26,7 @@ import static org.easymock.EasyMock.capture;
 import static org.easymock.EasyMock.eq;
 import static org.easymock.EasyMock.expect;
 import static org.hamcrest.Matchers.arrayContaining;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasSize;
 import static org.junit.Assert.assertEquals;
@@ -452,6 +453,158 @@ public class BulkJsonWebPostUploadServiceTests extends AbstractHttpTests {
 				(GeneralNodeEnergyDatum) data.get(2));
 	}
 
+	@Test
+	public void uploadMultiDatumMiddleSampleFilteredOutStreaming() throws Exception {
+		GeneralDatumSamplesTransformer xform = new GeneralDatumSamplesTransformer() {
+
+			@Override
+			public GeneralDatumSamples transformSamples(Datum datum, GeneralDatumSamples samples) {
+				return ("B".equals(datum.getSourceId()) ? null : samples);
+			}
+		};
+
+		generalNodeDatumSerializer.setSampleTransformers(Collections.singletonList(xform));
+
+		final Date now = new Date();
+		final Date datumDate = new Date(now.getTime() - 1000);
+
+		TestBulkUploadHttpHandler handler = new TestBulkUploadHttpHandler() {
+
+			// we expect to receive just 2 datum in request, and respond with 2 datum results
+
+			@Override
+			protected void handleJsonPost(HttpServletRequest request, HttpServletResponse response,
+					String json) throws Exception {
+				JSONAssert.assertEquals(
+						"[" + "{\"created\":" + datumDate.getTime()
+								+ ",\"sourceId\":\"A\",\"samples\":{\"i\":{\"watts\":1}}},"
+								+ "{\"created\":" + datumDate.getTime()
+								+ ",\"sourceId\":\"C\",\"samples\":{\"i\":{\"watts\":1}}}" + "]",
+						json, true);
+
+				respondWithJsonString(response, true,
+						"{\"success\":true,\"data\":{\"datum\":[" + "{\"id\":\"abc123\",\"created\":\""
+								+ snTimestampString(datumDate)
+								+ "\",\"sourceId\":\"A\"},{\"id\":\"def123\",\"created\":\""
+								+ snTimestampString(datumDate) + "\",\"sourceId\":\"C\"}]}}");
+			}
+
+		};
+		getHttpServer().addHandler(handler);
+
+		List<Datum> data = new ArrayList<Datum>();
+		GeneralNodeEnergyDatum d = new GeneralNodeEnergyDatum();
+		d.setCreated(datumDate);
+		d.setSourceId("A");
+		d.setWatts(1);
+		data.add(d);
+
+		d = new GeneralNodeEnergyDatum();
+		d.setCreated(datumDate);
+		d.setSourceId("B");
+		d.setWatts(1);
+		data.add(d);
+
+		d = new GeneralNodeEnergyDatum();
+		d.setCreated(datumDate);
+		d.setSourceId("C");
+		d.setWatts(1);
+		data.add(d);
+
+		Capture<Event> eventCaptor = new Capture<Event>(CaptureType.ALL);
+		eventAdmin.postEvent(EasyMock.capture(eventCaptor));
+		EasyMock.expectLastCall().times(2);
+
+		replayAll();
+
+		service.setStreaming(true);
+
+		// when we upload datum that get filtered out, we still want to treat the filtered out
+		// datum as "uploaded" so it is marked as such and eventually deleted from the local db
+
+		List<BulkUploadResult> result = service.uploadBulkDatum(data);
+		assertNotNull(result);
+		assertEquals("All 3 datum uploaded, even though B skipped", 3, result.size());
+
+		String[] expectedTids = new String[] { "abc123", tid(data.get(1)), "def123" };
+
+		for ( int i = 0; i < 3; i++ ) {
+			BulkUploadResult datumResult = result.get(i);
+			assertEquals(datumResult.getId(), expectedTids[i]);
+			assertEquals(data.get(i), datumResult.getDatum());
+		}
+
+		assertThat("Event count", eventCaptor.getValues(), hasSize(2));
+		assertDatumUploadEventEqualsDatum(eventCaptor.getValues().get(0),
+				(GeneralNodeEnergyDatum) data.get(0));
+		assertDatumUploadEventEqualsDatum(eventCaptor.getValues().get(1),
+				(GeneralNodeEnergyDatum) data.get(2));
+	}
+
+	@Test
+	public void uploadSingleDatumTransformedStreaming() throws Exception {
+		GeneralDatumSamplesTransformer xform = new GeneralDatumSamplesTransformer() {
+
+			@Override
+			public GeneralDatumSamples transformSamples(Datum datum, GeneralDatumSamples samples) {
+				GeneralDatumSamples result = new GeneralDatumSamples();
+				result.putInstantaneousSampleValue("watts", 2);
+				return result;
+			}
+		};
+
+		generalNodeDatumSerializer.setSampleTransformers(Collections.singletonList(xform));
+
+		final Date now = new Date();
+		final List<String> transferEncodings = new ArrayList<String>(1);
+
+		TestBulkUploadHttpHandler handler = new TestBulkUploadHttpHandler() {
+
+			@Override
+			protected void handleJsonPost(HttpServletRequest request, HttpServletResponse response,
+					String json) throws Exception {
+				transferEncodings.add(request.getHeader("Transfer-Encoding"));
+				JSONAssert.assertEquals(
+						"[{\"created\":" + now.getTime() + ",\"sourceId\":\"" + TEST_SOURCE_ID
+								+ "\",\"samples\":{\"i\":{\"watts\":2}}}]",
+						json, true);
+
+				respondWithJsonString(response, true,
+						"{\"success\":true,\"data\":{\"datum\":[{\"id\":\"abc123\",\"created\":\""
+								+ snTimestampString(now) + "\",\"sourceId\":\"" + TEST_SOURCE_ID + "\""
+								+ "}]}}");
+			}
+
+		};
+		getHttpServer().addHandler(handler);
+
+		List<Datum> data = new ArrayList<Datum>();
+		GeneralNodeEnergyDatum d = new GeneralNodeEnergyDatum();
+		d.setCreated(now);
+		d.setSourceId(TEST_SOURCE_ID);
+		d.setWatts(1);
+		data.add(d);
+
+		Capture<Event> eventCaptor = new Capture<Event>(CaptureType.ALL);
+		eventAdmin.postEvent(EasyMock.capture(eventCaptor));
+
+		replayAll();
+
+		service.setStreaming(true);
+		List<BulkUploadResult> result = service.uploadBulkDatum(data);
+
+		assertNotNull(result);
+		assertEquals(1, result.size());
+		assertEquals("abc123", result.get(0).getId());
+		assertThat("Request streamed in chunks", transferEncodings, contains("chunked"));
+
+		// the event shows the transformed, uploaded samples rather than the original datum
+		assertThat("Event count", eventCaptor.getValues(), hasSize(1));
+		Event event = eventCaptor.getValue();
+		assertThat("Source ID", (String) event.getProperty("sourceId"), equalTo(TEST_SOURCE_ID));
+		assertThat("Transformed watts", event.getProperty("watts"), equalTo((Object) 2));
+	}
+
 	@Test
 	public void uploadMultiDatumLastSampleFilteredOut() throws Exception {
 		GeneralDatumSamplesTransformer xform = new GeneralDatumSamplesTransformer() {
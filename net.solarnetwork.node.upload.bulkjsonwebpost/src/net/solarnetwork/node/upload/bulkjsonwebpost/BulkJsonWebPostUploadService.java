@@ -24,19 +24,28 @@ package net.solarnetwork.node.upload.bulkjsonwebpost;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URLConnection;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.zip.GZIPOutputStream;
 import org.joda.time.format.DateTimeFormatter;
 import org.joda.time.format.ISODateTimeFormat;
 import org.osgi.service.event.Event;
 import org.osgi.service.event.EventAdmin;
 import org.springframework.context.MessageSource;
 import org.springframework.util.DigestUtils;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 import net.solarnetwork.node.BulkUploadResult;
 import net.solarnetwork.node.BulkUploadService;
 import net.solarnetwork.node.UploadService;
@@ -57,8 +66,15 @@ import net.solarnetwork.util.OptionalService;
  * {@link BulkUploadService} that uses an HTTP POST with body content formed as
  * a JSON document containing all data to upload.
  * 
+ * <p>
+ * When {@code streaming} is enabled, the data is written to the HTTP request
+ * one object at a time and the HTTP response is parsed with a streaming
+ * parser, rather than building JSON trees of the entire request and
+ * response.
+ * </p>
+ * 
  * @author matt
- * @version 1.5
+ * @version 1.6
  */
 public class BulkJsonWebPostUploadService extends JsonHttpClientSupport
 		implements BulkUploadService, InstructionAcknowledgementService, SettingSpecifierProvider {
@@ -70,6 +86,7 @@ public class BulkJsonWebPostUploadService extends JsonHttpClientSupport
 	private boolean uploadEmptyDataset = false;
 	private MessageSource messageSource;
 	private OptionalService<EventAdmin> eventAdmin;
+	private boolean streaming = false;
 
 	/**
 	 * Default constructor.
@@ -152,6 +169,9 @@ public class BulkJsonWebPostUploadService extends JsonHttpClientSupport
 	 *         if any processing error occurs
 	 */
 	private List<BulkUploadResult> upload(Collection<?> data) throws IOException {
+		if ( streaming ) {
+			return uploadStreaming(data);
+		}
 		// NOTE: serializing JSON into intermediate tree, because of possibility of
 		// datum filtering during serialization, to prevent logging of tree from
 		// inadvertently triggering serialization changes. This also allows us
@@ -173,72 +193,22 @@ public class BulkJsonWebPostUploadService extends JsonHttpClientSupport
 					child = root.path("data");
 					if ( child.isObject() ) {
 						JsonNode datumArray = child.get("datum");
-						Iterator<JsonNode> reqJsonItr = null;
-						JsonNode currReqJsonNode = null;
-						Iterator<JsonNode> jsonItr = null;
-						JsonNode currJsonNode = null;
+						List<ResponseDatum> responseDatum = null;
 						if ( datumArray != null && datumArray.isArray() ) {
 							assert datumArray.size() == jsonData.size();
-							reqJsonItr = jsonData.iterator();
-							currReqJsonNode = reqJsonItr.hasNext() ? reqJsonItr.next() : null;
-							jsonItr = datumArray.iterator();
-							currJsonNode = jsonItr.hasNext() ? jsonItr.next() : null;
-						}
-
-						for ( Object obj : data ) {
-							String id = null;
-							Datum datum = null;
-							if ( obj instanceof Instruction ) {
-								Instruction instr = (Instruction) obj;
-								if ( currJsonNode != null ) {
-									id = currJsonNode.path("id").textValue();
-									if ( instr.getRemoteInstructionId().equals(id) ) {
-										currReqJsonNode = reqJsonItr.hasNext() ? reqJsonItr.next()
-												: null;
-										currJsonNode = jsonItr.hasNext() ? jsonItr.next() : null;
-									}
-								}
-								if ( id == null ) {
-									id = instr.getRemoteInstructionId();
-								}
-							} else {
-								// assume Datum here
-								datum = (Datum) obj;
-								if ( currJsonNode != null ) {
-									JsonNode createdObj = currJsonNode.path("created");
-									long created = 0;
-									if ( createdObj.isNumber() ) {
-										created = createdObj.longValue();
-									} else if ( createdObj.isTextual() ) {
-										try {
-											// parse as strict ISO8601 (SN returns space date/time delimiter)
-											created = ISO_DATE_TIME_FORMATTER
-													.parseDateTime(
-															createdObj.textValue().replace(' ', 'T'))
-													.getMillis();
-										} catch ( IllegalArgumentException e ) {
-											log.debug("Unexpected created date format: {}", createdObj);
-										}
-									}
-									String sourceId = currJsonNode.path("sourceId").textValue();
-									if ( datum.getCreated().getTime() == created
-											&& datum.getSourceId().equals(sourceId) ) {
-										id = currJsonNode.path("id").textValue();
-										postDatumUploadedEvent(datum, currReqJsonNode);
-										currReqJsonNode = reqJsonItr.hasNext() ? reqJsonItr.next()
-												: null;
-										currJsonNode = jsonItr.hasNext() ? jsonItr.next() : null;
-									}
-								}
-								if ( id == null ) {
-									// generate a synthetic ID string
-									id = DigestUtils.md5DigestAsHex(String
-											.format("%tQ;%s", datum.getCreated(), datum.getSourceId())
-											.getBytes());
-								}
+							responseDatum = new ArrayList<ResponseDatum>(datumArray.size());
+							for ( JsonNode node : datumArray ) {
+								responseDatum.add(new ResponseDatum(node.path("id").textValue(),
+										parseCreated(node.path("created")),
+										node.path("sourceId").textValue()));
 							}
-							result.add(new BulkUploadResult(datum, id));
 						}
+						List<Map<String, Object>> requestProps = new ArrayList<Map<String, Object>>(
+								jsonData.size());
+						for ( JsonNode node : jsonData ) {
+							requestProps.add(datumUploadedEventProperties(node));
+						}
+						result = matchResults(data, responseDatum, requestProps);
 
 						// look for instructions to process
 						JsonNode instrArray = child.path("instructions");
@@ -267,39 +237,307 @@ public class BulkJsonWebPostUploadService extends JsonHttpClientSupport
 		return result;
 	}
 
-	// post DATUM_UPLOADED events; but with the (possibly transformed) uploaded data so we show just
-	// what was actually uploaded
-	private void postDatumUploadedEvent(Datum datum, JsonNode node) {
-		Map<String, Object> props = JsonUtils.getStringMapFromTree(node);
-		if ( props != null && !props.isEmpty() ) {
-			if ( !(props.get("samples") instanceof Map<?, ?>) ) {
-				// no sample data; this must have been filtered out via transform
-				return;
+	/**
+	 * Upload a collection of data objects by streaming them as JSON directly
+	 * to the HTTP request, and parse the response with a streaming parser.
+	 * 
+	 * <p>
+	 * Each object is serialized on its own, applying the same serialization
+	 * (and thus filtering) as {@link #upload(Collection)}, and then copied to
+	 * the request so that a JSON tree of the entire collection is never held
+	 * in memory. The request is sent with chunked transfer encoding, so the
+	 * HTTP connection does not buffer the entire request body either. Only the
+	 * keys needed to match the response to the request are kept from the
+	 * response. The {@link UploadService#EVENT_TOPIC_DATUM_UPLOADED} event
+	 * properties are created from each serialized datum, so like
+	 * {@link #upload(Collection)} they reflect what was actually uploaded.
+	 * </p>
+	 * 
+	 * @param data
+	 *        Datum or Instruction objects to upload
+	 * @return the results
+	 * @throws IOException
+	 *         if any processing error occurs
+	 */
+	private List<BulkUploadResult> uploadStreaming(Collection<?> data) throws IOException {
+		final ObjectMapper mapper = getObjectMapper();
+		final String postUrl = getIdentityService().getSolarInBaseUrl() + url;
+		final List<Map<String, Object>> requestProps = new ArrayList<Map<String, Object>>(
+				data != null ? data.size() : 0);
+		InputStream response = null;
+		try {
+			URLConnection conn = getURLConnection(postUrl, HTTP_METHOD_POST, JSON_MIME_TYPE);
+			if ( conn instanceof HttpURLConnection ) {
+				// stream the body rather than buffering it to compute a Content-Length
+				((HttpURLConnection) conn).setChunkedStreamingMode(0);
+			}
+			conn.setRequestProperty("Content-Type", JSON_MIME_TYPE + ";charset=UTF-8");
+			if ( isCompress() ) {
+				conn.setRequestProperty("Content-Encoding", "gzip");
+			}
+			OutputStream out = conn.getOutputStream();
+			if ( isCompress() ) {
+				out = new GZIPOutputStream(out);
+			}
+			try (JsonGenerator generator = mapper.getFactory().createGenerator(out)) {
+				generator.writeStartArray();
+				if ( data != null ) {
+					for ( Object obj : data ) {
+						TokenBuffer buf = new TokenBuffer(mapper, false);
+						mapper.writeValue(buf, obj);
+						if ( buf.firstToken() == null ) {
+							// filtered out during serialization
+							continue;
+						}
+						if ( obj instanceof Datum ) {
+							log.trace("Posting datum: {}", obj);
+						}
+						buf.serialize(generator);
+						requestProps.add(obj instanceof Datum
+								? datumUploadedEventProperties(mapper.readTree(buf.asParser()))
+								: null);
+					}
+				}
+				generator.writeEndArray();
+			}
+			log.debug("Posted {} JSON objects", requestProps.size());
+			response = getInputStreamFromURLConnection(conn);
+		} catch ( IOException e ) {
+			if ( log.isTraceEnabled() ) {
+				log.trace("IOException bulk posting data to " + postUrl, e);
+			} else if ( log.isDebugEnabled() ) {
+				log.debug("Unable to post data: " + e.getMessage());
+			}
+			throw new RuntimeException(e);
+		}
+
+		List<BulkUploadResult> result = null;
+		try (JsonParser parser = mapper.getFactory().createParser(response)) {
+			if ( parser.nextToken() != JsonToken.START_OBJECT ) {
+				return null;
+			}
+			boolean success = false;
+			String message = null;
+			boolean haveData = false;
+			List<ResponseDatum> responseDatum = null;
+			JsonNode instrArray = null;
+			while ( parser.nextToken() == JsonToken.FIELD_NAME ) {
+				final String field = parser.getCurrentName();
+				final JsonToken t = parser.nextToken();
+				if ( "success".equals(field) ) {
+					success = parser.getValueAsBoolean();
+				} else if ( "message".equals(field) ) {
+					message = parser.getValueAsString();
+				} else if ( "data".equals(field) && t == JsonToken.START_OBJECT ) {
+					haveData = true;
+					while ( parser.nextToken() == JsonToken.FIELD_NAME ) {
+						final String dataField = parser.getCurrentName();
+						final JsonToken dt = parser.nextToken();
+						if ( "datum".equals(dataField) && dt == JsonToken.START_ARRAY ) {
+							responseDatum = parseResponseDatum(parser);
+						} else if ( "instructions".equals(dataField) && dt == JsonToken.START_ARRAY ) {
+							instrArray = mapper.readTree(parser);
+						} else {
+							parser.skipChildren();
+						}
+					}
+				} else {
+					parser.skipChildren();
+				}
+			}
+			if ( !success ) {
+				log.warn("Upload not successful: {}", message == null ? "(no message)" : message);
+			} else if ( !haveData ) {
+				result = new ArrayList<BulkUploadResult>(0);
+				log.debug("Upload returned no data.");
+			} else {
+				result = matchResults(data, responseDatum, requestProps);
+				ReactorService reactor = (reactorService == null ? null : reactorService.service());
+				if ( reactor != null && instrArray != null ) {
+					List<InstructionStatus> status = reactor.processInstruction(
+							getIdentityService().getSolarInBaseUrl(), instrArray, JSON_MIME_TYPE, null);
+					log.debug("Instructions processed: {}", status);
+				}
 			}
+		}
+		return result;
+	}
 
-			// convert samples, which can contain nested maps for a/i/s 
-			@SuppressWarnings("unchecked")
-			Map<String, ?> samples = (Map<String, ?>) props.get("samples");
-			props.remove("samples");
-			for ( Map.Entry<String, ?> me : samples.entrySet() ) {
-				Object val = me.getValue();
-				if ( val instanceof Map<?, ?> ) {
-					@SuppressWarnings("unchecked")
-					Map<String, ?> subMap = (Map<String, ?>) val;
-					props.putAll(subMap);
+	private List<ResponseDatum> parseResponseDatum(JsonParser parser) throws IOException {
+		List<ResponseDatum> result = new ArrayList<ResponseDatum>();
+		JsonToken t;
+		while ( (t = parser.nextToken()) != null && t != JsonToken.END_ARRAY ) {
+			if ( t != JsonToken.START_OBJECT ) {
+				parser.skipChildren();
+				continue;
+			}
+			String id = null;
+			long created = 0;
+			String sourceId = null;
+			while ( parser.nextToken() == JsonToken.FIELD_NAME ) {
+				final String field = parser.getCurrentName();
+				final JsonToken vt = parser.nextToken();
+				if ( "id".equals(field) && vt == JsonToken.VALUE_STRING ) {
+					id = parser.getText();
+				} else if ( "sourceId".equals(field) && vt == JsonToken.VALUE_STRING ) {
+					sourceId = parser.getText();
+				} else if ( "created".equals(field) ) {
+					if ( vt.isNumeric() ) {
+						created = parser.getLongValue();
+					} else if ( vt == JsonToken.VALUE_STRING ) {
+						created = parseCreated(parser.getText());
+					}
 				} else {
-					props.put(me.getKey(), val);
+					parser.skipChildren();
+				}
+			}
+			result.add(new ResponseDatum(id, created, sourceId));
+		}
+		return result;
+	}
+
+	/**
+	 * The keys of an uploaded datum returned in an upload response.
+	 */
+	private static final class ResponseDatum {
+
+		private final String id;
+		private final long created;
+		private final String sourceId;
+
+		private ResponseDatum(String id, long created, String sourceId) {
+			super();
+			this.id = id;
+			this.created = created;
+			this.sourceId = sourceId;
+		}
+	}
+
+	private long parseCreated(JsonNode createdObj) {
+		if ( createdObj.isNumber() ) {
+			return createdObj.longValue();
+		} else if ( createdObj.isTextual() ) {
+			return parseCreated(createdObj.textValue());
+		}
+		return 0;
+	}
+
+	private long parseCreated(String created) {
+		try {
+			// parse as strict ISO8601 (SN returns space date/time delimiter)
+			return ISO_DATE_TIME_FORMATTER.parseDateTime(created.replace(' ', 'T')).getMillis();
+		} catch ( IllegalArgumentException e ) {
+			log.debug("Unexpected created date format: {}", created);
+		}
+		return 0;
+	}
+
+	/**
+	 * Match uploaded objects to the response datum.
+	 * 
+	 * @param data
+	 *        the objects uploaded
+	 * @param responseDatum
+	 *        the datum keys returned in the response, or {@literal null}
+	 * @param requestProps
+	 *        the event properties for each object actually uploaded (that is,
+	 *        not filtered out), in upload order
+	 * @return the results
+	 */
+	private List<BulkUploadResult> matchResults(Collection<?> data,
+			List<ResponseDatum> responseDatum, List<Map<String, Object>> requestProps) {
+		List<BulkUploadResult> result = new ArrayList<BulkUploadResult>(
+				data != null ? data.size() : 0);
+		if ( data == null ) {
+			return result;
+		}
+		Iterator<Map<String, Object>> reqItr = null;
+		Map<String, Object> currReq = null;
+		Iterator<ResponseDatum> respItr = null;
+		ResponseDatum currResp = null;
+		if ( responseDatum != null ) {
+			reqItr = requestProps.iterator();
+			currReq = reqItr.hasNext() ? reqItr.next() : null;
+			respItr = responseDatum.iterator();
+			currResp = respItr.hasNext() ? respItr.next() : null;
+		}
+
+		for ( Object obj : data ) {
+			String id = null;
+			Datum datum = null;
+			if ( obj instanceof Instruction ) {
+				Instruction instr = (Instruction) obj;
+				if ( currResp != null ) {
+					id = currResp.id;
+					if ( instr.getRemoteInstructionId().equals(id) ) {
+						currReq = reqItr.hasNext() ? reqItr.next() : null;
+						currResp = respItr.hasNext() ? respItr.next() : null;
+					}
+				}
+				if ( id == null ) {
+					id = instr.getRemoteInstructionId();
+				}
+			} else {
+				// assume Datum here
+				datum = (Datum) obj;
+				if ( currResp != null ) {
+					if ( datum.getCreated().getTime() == currResp.created
+							&& datum.getSourceId().equals(currResp.sourceId) ) {
+						id = currResp.id;
+						postDatumUploadedEvent(datum, currReq);
+						currReq = reqItr.hasNext() ? reqItr.next() : null;
+						currResp = respItr.hasNext() ? respItr.next() : null;
+					}
+				}
+				if ( id == null ) {
+					// generate a synthetic ID string
+					id = DigestUtils.md5DigestAsHex(
+							String.format("%tQ;%s", datum.getCreated(), datum.getSourceId()).getBytes());
 				}
 			}
+			result.add(new BulkUploadResult(datum, id));
+		}
+		return result;
+	}
 
-			String[] types = BaseDatum.getDatumTypes(datum.getClass());
-			if ( types != null && types.length > 0 ) {
-				props.put(Datum.DATUM_TYPE_PROPERTY, types[0]);
-				props.put(Datum.DATUM_TYPES_PROPERTY, types);
+	// extract DATUM_UPLOADED event properties from the (possibly transformed) uploaded data so we
+	// show just what was actually uploaded
+	private Map<String, Object> datumUploadedEventProperties(JsonNode node) {
+		Map<String, Object> props = JsonUtils.getStringMapFromTree(node);
+		if ( props == null || props.isEmpty() || !(props.get("samples") instanceof Map<?, ?>) ) {
+			// no sample data; this must have been filtered out via transform
+			return null;
+		}
+
+		// convert samples, which can contain nested maps for a/i/s 
+		@SuppressWarnings("unchecked")
+		Map<String, ?> samples = (Map<String, ?>) props.get("samples");
+		props.remove("samples");
+		for ( Map.Entry<String, ?> me : samples.entrySet() ) {
+			Object val = me.getValue();
+			if ( val instanceof Map<?, ?> ) {
+				@SuppressWarnings("unchecked")
+				Map<String, ?> subMap = (Map<String, ?>) val;
+				props.putAll(subMap);
+			} else {
+				props.put(me.getKey(), val);
 			}
-			log.debug("Created {} event with props {}", UploadService.EVENT_TOPIC_DATUM_UPLOADED, props);
-			postEvent(new Event(UploadService.EVENT_TOPIC_DATUM_UPLOADED, props));
 		}
+		return props;
+	}
+
+	// post DATUM_UPLOADED events
+	private void postDatumUploadedEvent(Datum datum, Map<String, Object> props) {
+		if ( props == null ) {
+			return;
+		}
+		String[] types = BaseDatum.getDatumTypes(datum.getClass());
+		if ( types != null && types.length > 0 ) {
+			props.put(Datum.DATUM_TYPE_PROPERTY, types[0]);
+			props.put(Datum.DATUM_TYPES_PROPERTY, types);
+		}
+		log.debug("Created {} event with props {}", UploadService.EVENT_TOPIC_DATUM_UPLOADED, props);
+		postEvent(new Event(UploadService.EVENT_TOPIC_DATUM_UPLOADED, props));
 	}
 
 	private void postEvent(Event event) {
@@ -347,6 +585,7 @@ public class BulkJsonWebPostUploadService extends JsonHttpClientSupport
 		List<SettingSpecifier> result = new ArrayList<SettingSpecifier>();
 		result.add(
 				new BasicToggleSettingSpecifier("uploadEmptyDataset", defaults.isUploadEmptyDataset()));
+		result.add(new BasicToggleSettingSpecifier("streaming", defaults.isStreaming()));
 		return result;
 	}
 
@@ -427,4 +666,33 @@ public class BulkJsonWebPostUploadService extends JsonHttpClientSupport
 	public void setEventAdmin(OptionalService<EventAdmin> eventAdmin) {
 		this.eventAdmin = eventAdmin;
 	}
+
+	/**
+	 * Get the streaming mode.
+	 * 
+	 * @return {@literal true} if data is streamed to SolarIn
+	 * @since 1.6
+	 */
+	public boolean isStreaming() {
+		return streaming;
+	}
+
+	/**
+	 * Toggle streaming mode.
+	 * 
+	 * <p>
+	 * In streaming mode each datum is serialized as JSON directly to the HTTP
+	 * request and the HTTP response is parsed with a streaming parser, keeping
+	 * only what is needed to match the response to the uploaded datum. This
+	 * reduces memory use for large uploads.
+	 * </p>
+	 * 
+	 * @param streaming
+	 *        {@literal true} to stream data to SolarIn; defaults to
+	 *        {@literal false}
+	 * @since 1.6
+	 */
+	public void setStreaming(boolean streaming) {
+		this.streaming = streaming;
+	}
 }
@@ -36,11 +36,13 @@ import static org.junit.Assert.assertThat;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ScheduledFuture;
 import org.easymock.Capture;
 import org.easymock.CaptureType;
 import org.easymock.EasyMock;
@@ -48,6 +50,7 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.osgi.service.event.Event;
+import org.springframework.scheduling.TaskScheduler;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import net.solarnetwork.common.mqtt.MqttConnection;
 import net.solarnetwork.common.mqtt.MqttConnectionFactory;
@@ -64,7 +67,7 @@ import net.solarnetwork.util.JsonUtils;
  * Test cases for the {@link FluxUploadService} class.
  * 
  * @author matt
- * @version 1.0
+ * @version 1.2
  */
 public class FluxUploadServiceTests {
 
@@ -271,6 +274,48 @@ public class FluxUploadServiceTests {
 		assertMessage(publishedMsg, TEST_SOURCE_ID, filteredDatum);
 	}
 
+	@Test
+	public void postDatum_includeProps_configurationChanged() throws Exception {
+		// GIVEN
+		FluxFilterConfig filter = new FluxFilterConfig();
+		filter.setSourceIdRegexValue("^test");
+		filter.setPropIncludeValues(new String[] { "^watt" });
+		filter.configurationChanged(null);
+		service.setFilters(new FluxFilterConfig[] { filter });
+
+		expectMqttConnectionSetup();
+
+		Capture<MqttMessage> msgCaptor = new Capture<>(CaptureType.ALL);
+		expect(connection.publish(capture(msgCaptor))).andReturn(completedFuture(null)).times(2);
+
+		// WHEN
+		replayAll();
+		service.init();
+
+		Map<String, Object> datum = new HashMap<>(4);
+		datum.put(Datum.SOURCE_ID, TEST_SOURCE_ID);
+		datum.put("watts", 1234);
+		datum.put("foo", 3456);
+		postEvent(datum);
+
+		// change the filter, which must invalidate any cached filter decisions
+		filter.setPropIncludeValues(new String[] { "^foo" });
+		service.configurationChanged(null);
+		postEvent(datum);
+
+		// THEN
+		List<MqttMessage> publishedMsgs = msgCaptor.getValues();
+		assertThat("MQTT messages published", publishedMsgs, hasSize(2));
+
+		Map<String, Object> filteredDatum = new LinkedHashMap<>(4);
+		filteredDatum.put("watts", 1234);
+		assertMessage(publishedMsgs.get(0), TEST_SOURCE_ID, filteredDatum);
+
+		filteredDatum = new LinkedHashMap<>(4);
+		filteredDatum.put("foo", 3456);
+		assertMessage(publishedMsgs.get(1), TEST_SOURCE_ID, filteredDatum);
+	}
+
 	@Test
 	public void postDatum_excludeProps() throws Exception {
 		// GIVEN
@@ -427,4 +472,57 @@ public class FluxUploadServiceTests {
 					equalTo(format("node/%d/datum/0/%s", nodeId, "not.throttled.source")));
 		}
 	}
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	@Test
+	public void postDatum_conflated() throws Exception {
+		// GIVEN
+		TaskScheduler taskScheduler = EasyMock.createMock(TaskScheduler.class);
+		service.setTaskScheduler(taskScheduler);
+		service.setPublishIntervalMs(1000);
+
+		expectMqttConnectionSetup();
+		ScheduledFuture<?> future = EasyMock.createNiceMock(ScheduledFuture.class);
+		expect(taskScheduler.scheduleWithFixedDelay(anyObject(Runnable.class), anyObject(Date.class),
+				EasyMock.eq(1000L))).andReturn((ScheduledFuture) future);
+
+		Capture<MqttMessage> msgCaptor = new Capture<>(CaptureType.ALL);
+		expect(connection.publish(capture(msgCaptor))).andReturn(completedFuture(null)).times(2);
+
+		// WHEN
+		replayAll();
+		EasyMock.replay(taskScheduler, future);
+		service.init();
+
+		Map<String, Object> datum = new HashMap<>(4);
+		datum.put(Datum.SOURCE_ID, TEST_SOURCE_ID);
+		for ( int i = 1; i <= 3; i++ ) {
+			datum.put("watts", i);
+			postEvent(datum);
+		}
+		Map<String, Object> latest = new LinkedHashMap<>(datum);
+
+		Map<String, Object> other = new HashMap<>(4);
+		other.put(Datum.SOURCE_ID, "s2");
+		other.put("watts", 4);
+		postEvent(other);
+
+		service.flushPendingDatum();
+
+		// THEN
+		EasyMock.verify(taskScheduler);
+		List<MqttMessage> publishedMsgs = msgCaptor.getValues();
+		assertThat("Only latest datum per source published", publishedMsgs, hasSize(2));
+		MqttMessage s1Msg = (publishedMsgs.get(0).getTopic().endsWith(TEST_SOURCE_ID)
+				? publishedMsgs.get(0)
+				: publishedMsgs.get(1));
+		MqttMessage s2Msg = (s1Msg == publishedMsgs.get(0) ? publishedMsgs.get(1)
+				: publishedMsgs.get(0));
+		assertMessage(s1Msg, TEST_SOURCE_ID, latest);
+		assertMessage(s2Msg, "s2", other);
+		assertThat("Published count", service.getPublishedCount(), equalTo(2L));
+		assertThat("Conflated count", service.getConflatedCount(), equalTo(2L));
+		assertThat("Dropped count", service.getDroppedCount(), equalTo(0L));
+	}
+
 }
@@ -33,6 +33,8 @@ import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 import org.slf4j.Logger;
@@ -49,13 +51,20 @@ import net.solarnetwork.util.ArrayUtils;
  * Configuration for filtering options used by SolarFlux.
  * 
  * @author matt
- * @version 1.0
+ * @version 1.1
  * @since 1.4
  */
 public class FluxFilterConfig implements SettingsChangeObserver {
 
 	private static final Logger log = LoggerFactory.getLogger(FluxFilterConfig.class);
 
+	/**
+	 * The maximum number of entries to hold in each match cache.
+	 * 
+	 * @since 1.1
+	 */
+	public static final int MAX_CACHE_SIZE = 1024;
+
 	private static final class NullStringObjectFactory implements ObjectFactory<String> {
 
 		@Override
@@ -72,6 +81,9 @@ public class FluxFilterConfig implements SettingsChangeObserver {
 	private Pattern[] propIncludes;
 	private Pattern[] propExcludes;
 
+	private final ConcurrentMap<String, Boolean> sourceIdMatches = new ConcurrentHashMap<>(16, 0.9f, 2);
+	private final ConcurrentMap<String, Boolean> propNameMatches = new ConcurrentHashMap<>(16, 0.9f, 2);
+
 	private static Pattern[] patterns(String[] expr) {
 		if ( expr == null ) {
 			return null;
@@ -104,6 +116,76 @@ public class FluxFilterConfig implements SettingsChangeObserver {
 	public void configurationChanged(Map<String, Object> properties) {
 		this.propIncludes = patterns(propIncludeValues);
 		this.propExcludes = patterns(propExcludeValues);
+		sourceIdMatches.clear();
+		propNameMatches.clear();
+	}
+
+	private static void cacheMatch(ConcurrentMap<String, Boolean> cache, String key, Boolean match) {
+		if ( cache.size() >= MAX_CACHE_SIZE ) {
+			cache.clear();
+		}
+		cache.put(key, match);
+	}
+
+	/**
+	 * Test if this filter applies to a given source ID.
+	 * 
+	 * <p>
+	 * The result of matching the {@code sourceIdRegex} against each source ID
+	 * is cached until {@link #configurationChanged(Map)} is called or the
+	 * expression is changed.
+	 * </p>
+	 * 
+	 * @param sourceId
+	 *        the source ID to test, or {@literal null} if none
+	 * @return {@literal true} if this filter should be applied to datum with
+	 *         the given source ID
+	 * @since 1.1
+	 */
+	public boolean appliesToSourceId(String sourceId) {
+		final Pattern regex = this.sourceIdRegex;
+		if ( regex == null || sourceId == null ) {
+			return true;
+		}
+		Boolean match = sourceIdMatches.get(sourceId);
+		if ( match == null ) {
+			match = regex.matcher(sourceId).find();
+			cacheMatch(sourceIdMatches, sourceId, match);
+		}
+		return match;
+	}
+
+	/**
+	 * Test if a property name is allowed by the property include and exclude
+	 * patterns, caching the result.
+	 * 
+	 * @param propName
+	 *        the property name to test
+	 * @param includes
+	 *        the include patterns
+	 * @param excludes
+	 *        the exclude patterns
+	 * @return {@literal true} if the property should be kept
+	 */
+	private boolean isPropertyAllowed(String propName, Pattern[] includes, Pattern[] excludes) {
+		Boolean allowed = propNameMatches.get(propName);
+		if ( allowed == null ) {
+			allowed = matchesAny(propName, includes, true) && !matchesAny(propName, excludes, false);
+			cacheMatch(propNameMatches, propName, allowed);
+		}
+		return allowed;
+	}
+
+	private static boolean matchesAny(String propName, Pattern[] patterns, boolean emptyResult) {
+		if ( patterns == null || patterns.length < 1 ) {
+			return emptyResult;
+		}
+		for ( Pattern p : patterns ) {
+			if ( p != null && p.matcher(propName).find() ) {
+				return true;
+			}
+		}
+		return false;
 	}
 
 	/**
@@ -126,12 +208,9 @@ public class FluxFilterConfig implements SettingsChangeObserver {
 		if ( datum == null ) {
 			return false;
 		}
-		if ( sourceIdRegex != null && sourceId != null ) {
-			boolean match = sourceIdRegex.matcher(sourceId).find();
-			if ( !match ) {
-				// this filter does not apply to the given source ID, so skip
-				return true;
-			}
+		if ( !appliesToSourceId(sourceId) ) {
+			// this filter does not apply to the given source ID, so skip
+			return true;
 		}
 
 		if ( frequencySeconds != null && frequencySeconds > 0 && previousSourceIdPublishDate != null ) {
@@ -153,47 +232,16 @@ public class FluxFilterConfig implements SettingsChangeObserver {
 		}
 
 		final Pattern[] includes = this.propIncludes;
-		if ( includes != null && includes.length > 0 ) {
+		if ( (includes != null && includes.length > 0) || (excludes != null && excludes.length > 0) ) {
 			for ( Iterator<String> itr = datum.keySet().iterator(); itr.hasNext(); ) {
 				String propName = itr.next();
-				if ( propName == null ) {
-					continue;
-				}
-				boolean found = false;
-				for ( Pattern p : includes ) {
-					if ( p == null ) {
-						continue;
-					}
-					if ( p.matcher(propName).find() ) {
-						found = true;
-						break;
-					}
-				}
-				if ( !found ) {
-					if ( log.isTraceEnabled() ) {
-						log.trace("Filtering {} property {} from prop inclusion filters {}", sourceId,
-								propName, Arrays.toString(includes));
-					}
+				if ( propName != null && !isPropertyAllowed(propName, includes, excludes) ) {
+					log.trace("Filtering {} property {} from prop filters {}", sourceId, propName,
+							this);
 					itr.remove();
 				}
 			}
 		}
-
-		if ( excludes != null ) {
-			for ( Pattern p : excludes ) {
-				if ( p == null ) {
-					continue;
-				}
-				for ( Iterator<String> itr = datum.keySet().iterator(); itr.hasNext(); ) {
-					String propName = itr.next();
-					if ( propName != null && p.matcher(propName).find() ) {
-						log.trace("Filtering {} property {} from prop exclusion filter {}", sourceId,
-								propName, p);
-						itr.remove();
-					}
-				}
-			}
-		}
 		return !datum.isEmpty();
 
 	}
@@ -273,6 +321,7 @@ public class FluxFilterConfig implements SettingsChangeObserver {
 	 */
 	public void setSourceIdRegex(Pattern sourceIdRegex) {
 		this.sourceIdRegex = sourceIdRegex;
+		sourceIdMatches.clear();
 	}
 
 	/**
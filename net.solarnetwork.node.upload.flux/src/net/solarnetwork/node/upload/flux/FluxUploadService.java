@@ -28,22 +28,29 @@ import static java.util.Collections.singletonList;
 import static net.solarnetwork.node.OperationalModesService.hasActiveOperationalMode;
 import static net.solarnetwork.node.settings.support.SettingsUtil.dynamicListSettingSpecifier;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Date;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 import org.apache.commons.codec.binary.Hex;
 import org.osgi.service.event.Event;
 import org.osgi.service.event.EventConstants;
 import org.osgi.service.event.EventHandler;
+import org.springframework.context.MessageSource;
+import org.springframework.scheduling.TaskScheduler;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import net.solarnetwork.common.mqtt.BaseMqttConnectionService;
@@ -60,6 +67,7 @@ import net.solarnetwork.node.settings.SettingSpecifier;
 import net.solarnetwork.node.settings.SettingSpecifierProvider;
 import net.solarnetwork.node.settings.support.BasicGroupSettingSpecifier;
 import net.solarnetwork.node.settings.support.BasicTextFieldSettingSpecifier;
+import net.solarnetwork.node.settings.support.BasicTitleSettingSpecifier;
 import net.solarnetwork.node.settings.support.SettingsUtil;
 import net.solarnetwork.settings.SettingsChangeObserver;
 import net.solarnetwork.util.ArrayUtils;
@@ -68,7 +76,7 @@ import net.solarnetwork.util.ArrayUtils;
  * Service to listen to datum events and upload datum to SolarFlux.
  * 
  * @author matt
- * @version 1.5
+ * @version 1.7
  */
 public class FluxUploadService extends BaseMqttConnectionService
 		implements EventHandler, SettingSpecifierProvider, SettingsChangeObserver {
@@ -93,6 +101,20 @@ public class FluxUploadService extends BaseMqttConnectionService
 	/** The default value for the {@code includeVersionTag} property. */
 	public static final boolean DEFAULT_INCLUDE_VERSION_TAG = true;
 
+	/**
+	 * The default value for the {@code publishIntervalMs} property.
+	 * 
+	 * @since 1.6
+	 */
+	public static final long DEFAULT_PUBLISH_INTERVAL_MS = 0L;
+
+	/**
+	 * The default value for the {@code maxPendingSources} property.
+	 * 
+	 * @since 1.6
+	 */
+	public static final int DEFAULT_MAX_PENDING_SOURCES = 1000;
+
 	private final ObjectMapper objectMapper;
 	private final IdentityService identityService;
 	private String requiredOperationalMode;
@@ -101,6 +123,18 @@ public class FluxUploadService extends BaseMqttConnectionService
 	private Executor executor;
 	private FluxFilterConfig[] filters;
 	private boolean includeVersionTag = DEFAULT_INCLUDE_VERSION_TAG;
+	private TaskScheduler taskScheduler;
+	private long publishIntervalMs = DEFAULT_PUBLISH_INTERVAL_MS;
+	private int maxPendingSources = DEFAULT_MAX_PENDING_SOURCES;
+
+	private final ConcurrentMap<String, Event> pendingDatum = new ConcurrentHashMap<>(16, 0.9f, 2);
+	private final AtomicLong publishedCount = new AtomicLong(0);
+	private final AtomicLong conflatedCount = new AtomicLong(0);
+	private final AtomicLong droppedCount = new AtomicLong(0);
+	private final ConcurrentMap<String, FluxFilterConfig[]> sourceFilters = new ConcurrentHashMap<>(16,
+			0.9f, 2);
+	private final Object publisherLock = new Object();
+	private volatile ScheduledFuture<?> publisherFuture;
 
 	/**
 	 * Constructor.
@@ -146,8 +180,17 @@ public class FluxUploadService extends BaseMqttConnectionService
 		return super.startup();
 	}
 
+	@Override
+	public synchronized void shutdown() {
+		cancelPublisher();
+		super.shutdown();
+	}
+
 	@Override
 	public synchronized void configurationChanged(Map<String, Object> properties) {
+		// reschedule the publisher on the next datum, in case the interval changed
+		cancelPublisher();
+		sourceFilters.clear();
 		getMqttConfig().setUid("SolarFluxUpload-" + getMqttConfig().getServerUriValue());
 		MqttConnection conn = connection();
 		if ( conn instanceof ReconfigurableMqttConnection ) {
@@ -173,6 +216,11 @@ public class FluxUploadService extends BaseMqttConnectionService
 				|| DatumDataSource.EVENT_TOPIC_DATUM_CAPTURED.equals(topic)) ) {
 			return;
 		}
+		if ( DatumDataSource.EVENT_TOPIC_DATUM_CAPTURED.equals(topic) && isConflating() ) {
+			// queue latest event per source in the calling thread, to be mapped and published later
+			queueDatum(event);
+			return;
+		}
 		Runnable task = new Runnable() {
 
 			@Override
@@ -205,11 +253,7 @@ public class FluxUploadService extends BaseMqttConnectionService
 					}
 				} else {
 					// EVENT_TOPIC_DATUM_CAPTURED
-					if ( requiredOperationalMode != null && !requiredOperationalMode.isEmpty()
-							&& (opModesService == null || !opModesService
-									.isOperationalModeActive(requiredOperationalMode)) ) {
-						log.trace("Not posting to SolarFlux because operational mode [{}] not active",
-								requiredOperationalMode);
+					if ( !isRequiredOperationalModeActive() ) {
 						return;
 					}
 					Map<String, Object> data = mapForEvent(event);
@@ -229,18 +273,149 @@ public class FluxUploadService extends BaseMqttConnectionService
 		}
 	}
 
+	private boolean isRequiredOperationalModeActive() {
+		if ( requiredOperationalMode != null && !requiredOperationalMode.isEmpty()
+				&& (opModesService == null
+						|| !opModesService.isOperationalModeActive(requiredOperationalMode)) ) {
+			log.trace("Not posting to SolarFlux because operational mode [{}] not active",
+					requiredOperationalMode);
+			return false;
+		}
+		return true;
+	}
+
+	private boolean isConflating() {
+		return (publishIntervalMs > 0 && taskScheduler != null);
+	}
+
+	/**
+	 * Queue a datum captured event for publishing by the conflating publisher,
+	 * replacing any event already pending for the same source.
+	 * 
+	 * <p>
+	 * Only the source ID is extracted here; mapping and filtering the datum is
+	 * left to the publisher, so only the latest datum for each source is
+	 * processed.
+	 * </p>
+	 * 
+	 * @param event
+	 *        the event to queue
+	 */
+	private void queueDatum(Event event) {
+		final Object sourceIdObj = event.getProperty("sourceId");
+		if ( sourceIdObj == null ) {
+			return;
+		}
+		final String sourceId = sourceIdObj.toString().trim();
+		if ( !pendingDatum.containsKey(sourceId) && pendingDatum.size() >= maxPendingSources ) {
+			droppedCount.incrementAndGet();
+			log.debug("Dropping datum {} because {} sources already pending", sourceId,
+					maxPendingSources);
+			return;
+		}
+		if ( pendingDatum.put(sourceId, event) != null ) {
+			conflatedCount.incrementAndGet();
+		}
+		schedulePublisher();
+	}
+
+	private void schedulePublisher() {
+		if ( publisherFuture != null ) {
+			return;
+		}
+		synchronized ( publisherLock ) {
+			final TaskScheduler scheduler = this.taskScheduler;
+			if ( publisherFuture != null || scheduler == null ) {
+				return;
+			}
+			final long interval = publishIntervalMs;
+			publisherFuture = scheduler.scheduleWithFixedDelay(new Runnable() {
+
+				@Override
+				public void run() {
+					publishPendingDatum();
+				}
+			}, new Date(System.currentTimeMillis() + interval), interval);
+		}
+	}
+
+	private void cancelPublisher() {
+		synchronized ( publisherLock ) {
+			if ( publisherFuture != null ) {
+				publisherFuture.cancel(false);
+				publisherFuture = null;
+			}
+		}
+	}
+
+	/**
+	 * Map, filter, and publish the latest pending datum for every source.
+	 */
+	private void publishPendingDatum() {
+		final Long nodeId = identityService.getNodeId();
+		final boolean active = isRequiredOperationalModeActive();
+		for ( String key : pendingDatum.keySet() ) {
+			Event event = pendingDatum.remove(key);
+			if ( event == null || !active ) {
+				continue;
+			}
+			Map<String, Object> data = mapForEvent(event);
+			if ( data == null || data.isEmpty() ) {
+				continue;
+			}
+			String sourceId = publishSourceId(data);
+			if ( sourceId == null ) {
+				continue;
+			}
+			if ( nodeId == null || !publishDatum(nodeId, sourceId, data) ) {
+				droppedCount.incrementAndGet();
+			}
+		}
+	}
+
 	private static ConcurrentMap<String, Long> SOURCE_CAPTURE_TIMES = new ConcurrentHashMap<>(16, 0.9f,
 			2);
 
+	/**
+	 * Get the filters that apply to a given source ID.
+	 * 
+	 * <p>
+	 * The resolved filters are cached per source ID until the configuration
+	 * changes.
+	 * </p>
+	 * 
+	 * @param sourceId
+	 *        the source ID
+	 * @return the filters, or {@literal null} if none apply
+	 */
+	private FluxFilterConfig[] filtersForSource(String sourceId) {
+		final FluxFilterConfig[] filters = getFilters();
+		if ( filters == null || filters.length < 1 ) {
+			return null;
+		}
+		FluxFilterConfig[] result = sourceFilters.get(sourceId);
+		if ( result == null ) {
+			List<FluxFilterConfig> list = new ArrayList<>(filters.length);
+			for ( FluxFilterConfig filter : filters ) {
+				if ( filter != null && filter.appliesToSourceId(sourceId) ) {
+					list.add(filter);
+				}
+			}
+			result = list.toArray(new FluxFilterConfig[list.size()]);
+			if ( sourceFilters.size() >= FluxFilterConfig.MAX_CACHE_SIZE ) {
+				sourceFilters.clear();
+			}
+			sourceFilters.put(sourceId, result);
+		}
+		return result;
+	}
+
 	private boolean shouldPublishDatum(String sourceId, Map<String, Object> data) {
-		FluxFilterConfig[] filters = getFilters();
+		FluxFilterConfig[] filters = filtersForSource(sourceId);
 		Long ts = System.currentTimeMillis();
 		Long prevTs = SOURCE_CAPTURE_TIMES.get(sourceId);
 		if ( filters != null ) {
 			for ( FluxFilterConfig filter : filters ) {
-				if ( filter == null ) {
-					continue;
-				}
 				if ( !filter.isPublishAllowed(prevTs, sourceId, data) ) {
 					return false;
 				}
@@ -257,20 +432,41 @@ public class FluxUploadService extends BaseMqttConnectionService
 		if ( nodeId == null ) {
 			return;
 		}
+		final String sourceId = publishSourceId(data);
+		if ( sourceId == null ) {
+			return;
+		}
+		publishDatum(nodeId, sourceId, data);
+	}
+
+	/**
+	 * Get the source ID to publish a datum to, if the datum should be
+	 * published.
+	 * 
+	 * @param data
+	 *        the datum
+	 * @return the source ID to use in the publish topic, or {@literal null} if
+	 *         the datum should not be published
+	 */
+	private String publishSourceId(Map<String, Object> data) {
 		final Object sourceIdObj = data.get("sourceId");
 		if ( sourceIdObj == null ) {
-			return;
+			return null;
 		}
 		String sourceId = sourceIdObj.toString().trim();
 		if ( !shouldPublishDatum(sourceId, data) ) {
-			return;
+			return null;
 		}
 		if ( sourceId.startsWith("/") ) {
 			sourceId = sourceId.substring(1);
 		}
 		if ( sourceId.isEmpty() ) {
-			return;
+			return null;
 		}
+		return sourceId;
+	}
+
+	private boolean publishDatum(Long nodeId, String sourceId, Map<String, Object> data) {
 		MqttConnection conn = connection();
 		if ( conn != null && conn.isEstablished() ) {
 			String topic = String.format(NODE_DATUM_TOPIC_TEMPLATE, nodeId, sourceId);
@@ -287,6 +483,8 @@ public class FluxUploadService extends BaseMqttConnectionService
 				conn.publish(new BasicMqttMessage(topic, true, getPublishQos(), payload))
 						.get(getMqttConfig().getConnectTimeoutSeconds(), TimeUnit.SECONDS);
 				log.debug("Published to MQTT topic {}: {}", topic, data);
+				publishedCount.incrementAndGet();
+				return true;
 			} catch ( Exception e ) {
 				Throwable root = e;
 				while ( root.getCause() != null ) {
@@ -297,6 +495,7 @@ public class FluxUploadService extends BaseMqttConnectionService
 						getMqttConfig().getServerUri(), msg);
 			}
 		}
+		return false;
 	}
 
 	private Map<String, Object> mapForEvent(Event event) {
@@ -322,6 +521,16 @@ public class FluxUploadService extends BaseMqttConnectionService
 		return map;
 	}
 
+	private String getStatusMessage() {
+		Object[] params = new Object[] { publishedCount.get(), conflatedCount.get(),
+				droppedCount.get(), pendingDatum.size() };
+		MessageSource ms = getMessageSource();
+		if ( ms == null ) {
+			return Arrays.toString(params);
+		}
+		return ms.getMessage("status.msg", params, Locale.getDefault());
+	}
+
 	@Override
 	public String getSettingUID() {
 		return "net.solarnetwork.node.upload.flux";
@@ -335,12 +544,17 @@ public class FluxUploadService extends BaseMqttConnectionService
 	@Override
 	public List<SettingSpecifier> getSettingSpecifiers() {
 		List<SettingSpecifier> results = new ArrayList<>(4);
+		results.add(new BasicTitleSettingSpecifier("status", getStatusMessage(), true));
 		results.add(new BasicTextFieldSettingSpecifier("mqttHost", DEFAULT_MQTT_HOST));
 		results.add(new BasicTextFieldSettingSpecifier("mqttUsername", DEFAULT_MQTT_USERNAME));
 		results.add(new BasicTextFieldSettingSpecifier("mqttPassword", "", true));
 		results.add(new BasicTextFieldSettingSpecifier("excludePropertyNamesRegex",
 				DEFAULT_EXCLUDE_PROPERTY_NAMES_PATTERN.pattern()));
 		results.add(new BasicTextFieldSettingSpecifier("requiredOperationalMode", ""));
+		results.add(new BasicTextFieldSettingSpecifier("publishIntervalMs",
+				String.valueOf(DEFAULT_PUBLISH_INTERVAL_MS)));
+		results.add(new BasicTextFieldSettingSpecifier("maxPendingSources",
+				String.valueOf(DEFAULT_MAX_PENDING_SOURCES)));
 
 		// filter list
 		FluxFilterConfig[] confs = getFilters();
@@ -513,6 +727,7 @@ public class FluxUploadService extends BaseMqttConnectionService
 	 */
 	public void setFilters(FluxFilterConfig[] filters) {
 		this.filters = filters;
+		sourceFilters.clear();
 	}
 
 	/**
@@ -540,6 +755,7 @@ public class FluxUploadService extends BaseMqttConnectionService
 	 */
 	public void setFiltersCount(int count) {
 		this.filters = ArrayUtils.arrayWithLength(this.filters, count, FluxFilterConfig.class, null);
+		sourceFilters.clear();
 	}
 
 	/**
@@ -566,4 +782,119 @@ public class FluxUploadService extends BaseMqttConnectionService
 		this.includeVersionTag = includeVersionTag;
 	}
 
+	/**
+	 * Set the task scheduler to use for the conflating publisher.
+	 * 
+	 * @param taskScheduler
+	 *        the task scheduler
+	 * @since 1.6
+	 */
+	public void setTaskScheduler(TaskScheduler taskScheduler) {
+		this.taskScheduler = taskScheduler;
+	}
+
+	/**
+	 * Get the conflating publish interval.
+	 * 
+	 * @return the interval, in milliseconds; defaults to
+	 *         {@link #DEFAULT_PUBLISH_INTERVAL_MS}
+	 * @since 1.6
+	 */
+	public long getPublishIntervalMs() {
+		return publishIntervalMs;
+	}
+
+	/**
+	 * Set the conflating publish interval.
+	 * 
+	 * <p>
+	 * When greater than {@literal 0} (and a {@code taskScheduler} is
+	 * configured) captured datum are not published immediately. Instead only
+	 * the latest datum captured for each source is kept, and all pending datum
+	 * are published together at this interval by a single scheduled task, which
+	 * also applies the {@code filters} to each latest datum. When
+	 * {@literal 0} every captured datum is published as it is captured.
+	 * </p>
+	 * 
+	 * @param publishIntervalMs
+	 *        the interval, in milliseconds
+	 * @since 1.6
+	 */
+	public void setPublishIntervalMs(long publishIntervalMs) {
+		this.publishIntervalMs = publishIntervalMs;
+	}
+
+	/**
+	 * Get the maximum number of sources to hold pending datum for.
+	 * 
+	 * @return the maximum count; defaults to
+	 *         {@link #DEFAULT_MAX_PENDING_SOURCES}
+	 * @since 1.6
+	 */
+	public int getMaxPendingSources() {
+		return maxPendingSources;
+	}
+
+	/**
+	 * Set the maximum number of sources to hold pending datum for.
+	 * 
+	 * <p>
+	 * When conflating, datum for new sources captured when this many sources
+	 * are already pending are dropped.
+	 * </p>
+	 * 
+	 * @param maxPendingSources
+	 *        the maximum count
+	 * @since 1.6
+	 */
+	public void setMaxPendingSources(int maxPendingSources) {
+		this.maxPendingSources = maxPendingSources;
+	}
+
+	/**
+	 * Get the count of datum successfully published.
+	 * 
+	 * @return the count
+	 * @since 1.6
+	 */
+	public long getPublishedCount() {
+		return publishedCount.get();
+	}
+
+	/**
+	 * Get the count of datum replaced by a newer datum for the same source
+	 * before being published.
+	 * 
+	 * @return the count
+	 * @since 1.6
+	 */
+	public long getConflatedCount() {
+		return conflatedCount.get();
+	}
+
+	/**
+	 * Get the count of pending datum dropped, either because too many sources
+	 * were pending or because publishing failed.
+	 * 
+	 * @return the count
+	 * @since 1.6
+	 */
+	public long getDroppedCount() {
+		return droppedCount.get();
+	}
+
+	/**
+	 * Publish all pending datum now.
+	 * 
+	 * <p>
+	 * This is called periodically by the conflating publisher, but can be
+	 * called directly to flush pending datum immediately.
+	 * </p>
+	 * 
+	 * @since 1.6
+	 */
+	public void flushPendingDatum() {
+		publishPendingDatum();
+	}
+
 }
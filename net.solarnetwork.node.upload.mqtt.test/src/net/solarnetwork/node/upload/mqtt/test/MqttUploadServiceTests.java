@@ -30,6 +30,7 @@ import static org.easymock.EasyMock.isNull;
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.hasSize;
 import static org.junit.Assert.assertThat;
 import java.io.IOException;
@@ -38,13 +39,16 @@ import java.net.URI;
 import java.security.Principal;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import org.easymock.Capture;
 import org.easymock.EasyMock;
 import org.junit.After;
@@ -71,6 +75,8 @@ import net.solarnetwork.common.mqtt.MqttQos;
 import net.solarnetwork.common.mqtt.netty.NettyMqttConnectionFactory;
 import net.solarnetwork.node.IdentityService;
 import net.solarnetwork.node.UploadService;
+import net.solarnetwork.node.dao.DatumDao;
+import net.solarnetwork.node.domain.Datum;
 import net.solarnetwork.node.domain.GeneralLocationDatum;
 import net.solarnetwork.node.domain.GeneralNodeDatum;
 import net.solarnetwork.node.reactor.Instruction;
@@ -83,6 +89,7 @@ import net.solarnetwork.node.support.DatumSerializer;
 import net.solarnetwork.node.support.GeneralNodeDatumSerializer;
 import net.solarnetwork.node.support.InstructionSerializer;
 import net.solarnetwork.node.support.NodeControlInfoSerializer;
+import net.solarnetwork.node.upload.mqtt.MqttDatumBacklogUploader;
 import net.solarnetwork.node.upload.mqtt.MqttUploadService;
 import net.solarnetwork.test.mqtt.MqttServerSupport;
 import net.solarnetwork.test.mqtt.TestingInterceptHandler;
@@ -93,7 +100,7 @@ import net.solarnetwork.util.StaticOptionalService;
  * Test cases for the {@link MqttUploadService} class.
  * 
  * @author matt
- * @version 1.1
+ * @version 1.2
  */
 public class MqttUploadServiceTests extends MqttServerSupport {
 
@@ -340,6 +347,158 @@ public class MqttUploadServiceTests extends MqttServerSupport {
 		assertThat("Event prop 'foo'", datumUploadEvent.getProperty("foo"), equalTo((Object) 123));
 	}
 
+	@Test
+	public void uploadAsyncWithConnectionToMqttServer() throws Exception {
+		// given
+		GeneralNodeDatum datum = new GeneralNodeDatum();
+		datum.putInstantaneousSampleValue("foo", 123);
+
+		Capture<Event> eventCaptor = new Capture<Event>();
+		eventAdminService.postEvent(capture(eventCaptor));
+
+		replayAll();
+
+		// when
+		service.setPublishWindowSize(4);
+		Future<String> f = service.uploadDatumAsync(datum);
+		String txId = f.get(MQTT_TIMEOUT, TimeUnit.SECONDS);
+
+		stopMqttServer(); // to flush messages
+
+		// then
+		assertThat("TX ID", txId, notNullValue());
+
+		TestingInterceptHandler session = getTestingInterceptHandler();
+		assertThat("Published datum", session.publishMessages, hasSize(1));
+		InterceptPublishMessage pubMsg = session.publishMessages.get(0);
+		assertThat("Publish topic", pubMsg.getTopicName(), equalTo(datumTopic(nodeId)));
+
+		datum.addTag(MqttUploadService.TAG_VERSION_2);
+		assertThat("Publish payload", session.getPublishPayloadStringAtIndex(0),
+				equalTo(objectMapper.writeValueAsString(datum)));
+
+		Event datumUploadEvent = eventCaptor.getValue();
+		assertThat("Event topic", datumUploadEvent.getTopic(),
+				equalTo(UploadService.EVENT_TOPIC_DATUM_UPLOADED));
+	}
+
+	@Test
+	public void uploadAsyncCompletesOnExecutor() throws Exception {
+		// given
+		GeneralNodeDatum datum = new GeneralNodeDatum();
+		datum.putInstantaneousSampleValue("foo", 123);
+
+		final String threadName = "test-executor";
+		ExecutorService executor = Executors
+				.newSingleThreadExecutor(r -> new Thread(r, threadName));
+		final AtomicReference<String> eventThreadName = new AtomicReference<>();
+		eventAdminService.postEvent(anyObject(Event.class));
+		EasyMock.expectLastCall().andAnswer(() -> {
+			eventThreadName.set(Thread.currentThread().getName());
+			return null;
+		});
+
+		replayAll();
+
+		// when
+		service.setExecutor(executor);
+		service.setPublishWindowSize(4);
+		try {
+			Future<String> f = service.uploadDatumAsync(datum);
+			String txId = f.get(MQTT_TIMEOUT, TimeUnit.SECONDS);
+
+			// then
+			assertThat("TX ID", txId, notNullValue());
+			assertThat("Acknowledgement handled on executor", eventThreadName.get(),
+					equalTo(threadName));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void uploadAsyncWithoutConnectionToMqttServer() throws Exception {
+		// given
+		GeneralNodeDatum datum = new GeneralNodeDatum();
+		datum.putInstantaneousSampleValue("foo", 123);
+
+		replayAll();
+
+		stopMqttServer(); // shut down server
+
+		// when
+		service.setPublishWindowSize(4);
+		Future<String> f = service.uploadDatumAsync(datum);
+		String txId = f.get(MQTT_TIMEOUT, TimeUnit.SECONDS);
+
+		// then
+		assertThat("TX ID", txId, nullValue());
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void drainBacklog() throws Exception {
+		// given
+		DatumDao<Datum> dao = EasyMock.createMock(DatumDao.class);
+		final String key = service.getKey();
+
+		GeneralNodeDatum d1 = new GeneralNodeDatum();
+		d1.setCreated(new Date(1000L));
+		d1.setSourceId("a");
+		d1.putInstantaneousSampleValue("foo", 1);
+		GeneralNodeDatum d2 = new GeneralNodeDatum();
+		d2.setCreated(new Date(2000L));
+		d2.setSourceId("a");
+		d2.putInstantaneousSampleValue("foo", 2);
+
+		expect(dao.getDatumNotUploaded(key, null, null, 2))
+				.andReturn(Arrays.<Datum> asList(d1, d2));
+		expect(dao.getDatumNotUploaded(key, d2.getCreated(), d2.getSourceId(), 2))
+				.andReturn(Collections.<Datum> emptyList());
+		Capture<Collection<Datum>> uploadedCaptor = new Capture<>();
+		dao.setDatumUploaded(capture(uploadedCaptor), anyObject(Date.class), eq(key));
+
+		eventAdminService.postEvent(anyObject(Event.class));
+		EasyMock.expectLastCall().times(2);
+
+		replayAll();
+		EasyMock.replay(dao);
+
+		// when
+		service.setPublishWindowSize(4);
+		MqttDatumBacklogUploader uploader = new MqttDatumBacklogUploader(service,
+				Collections.singleton(new StaticOptionalService<DatumDao<Datum>>(dao)), null);
+		uploader.setPageSize(2);
+		uploader.run();
+
+		stopMqttServer(); // to flush messages
+
+		// then
+		EasyMock.verify(dao);
+		assertThat("Marked uploaded", uploadedCaptor.getValue(), contains((Datum) d1, d2));
+
+		TestingInterceptHandler session = getTestingInterceptHandler();
+		assertThat("Published datum", session.publishMessages, hasSize(2));
+	}
+
+	@Test
+	public void drainBacklogDaoNotAvailable() throws Exception {
+		// given
+		replayAll();
+
+		// when
+		service.setPublishWindowSize(4);
+		MqttDatumBacklogUploader uploader = new MqttDatumBacklogUploader(service,
+				Collections.singleton(new StaticOptionalService<DatumDao<Datum>>(null)), null);
+		uploader.run();
+
+		stopMqttServer(); // to flush messages
+
+		// then
+		TestingInterceptHandler session = getTestingInterceptHandler();
+		assertThat("Published datum", session.publishMessages, hasSize(0));
+	}
+
 	@Test
 	public void uploadWithoutConnectionToMqttServer() throws IOException {
 		// given
@@ -0,0 +1,259 @@
+/* ==================================================================
+ * MqttDatumBacklogUploader.java - 18/10/2026 1:41:07 PM
+ *
+ * Copyright 2026 SolarNetwork.net Dev Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA
+ * 02111-1307 USA
+ * ==================================================================
+ */
+
+package net.solarnetwork.node.upload.mqtt;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.TaskScheduler;
+import net.solarnetwork.node.dao.DatumDao;
+import net.solarnetwork.node.domain.Datum;
+import net.solarnetwork.util.OptionalService;
+
+/**
+ * Upload datum persisted locally, for example during a network outage, via
+ * the {@link MqttUploadService} while it is connected.
+ *
+ * <p>
+ * Each configured {@link DatumDao} is paged through via
+ * {@link DatumDao#getDatumNotUploaded(String, Date, String, int)}. Each page
+ * is published with
+ * {@link MqttUploadService#uploadDatumAsync(net.solarnetwork.node.domain.Datum)},
+ * so up to the service's {@code publishWindowSize} datum are awaiting
+ * acknowledgement at once, and the acknowledged datum are then marked as
+ * uploaded in a single
+ * {@link DatumDao#setDatumUploaded(Collection, Date, String)} call. Draining
+ * stops when no datum remain, a publish fails, or {@code maxDrainSeconds}
+ * have elapsed.
+ * </p>
+ *
+ * <p>
+ * The DAOs are resolved via {@link OptionalService#service()} on each
+ * execution, and any that are not available are skipped rather than waited
+ * for.
+ * </p>
+ *
+ * @author matt
+ * @version 1.0
+ */
+public class MqttDatumBacklogUploader implements Runnable {
+
+	/** The default value for the {@code pageSize} property. */
+	public static final int DEFAULT_PAGE_SIZE = 500;
+
+	/** The default value for the {@code maxDrainSeconds} property. */
+	public static final int DEFAULT_MAX_DRAIN_SECONDS = 120;
+
+	/** The default value for the {@code intervalSeconds} property. */
+	public static final int DEFAULT_INTERVAL_SECONDS = 300;
+
+	private final MqttUploadService uploadService;
+	private final Collection<OptionalService<DatumDao<Datum>>> daos;
+	private final TaskScheduler taskScheduler;
+	private final AtomicBoolean running = new AtomicBoolean(false);
+
+	private int pageSize = DEFAULT_PAGE_SIZE;
+	private int maxDrainSeconds = DEFAULT_MAX_DRAIN_SECONDS;
+	private int intervalSeconds = DEFAULT_INTERVAL_SECONDS;
+
+	private ScheduledFuture<?> scheduledFuture;
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+
+	/**
+	 * Constructor.
+	 *
+	 * @param uploadService
+	 *        the upload service
+	 * @param daos
+	 *        the DAOs to upload datum from
+	 * @param taskScheduler
+	 *        the scheduler
+	 */
+	public MqttDatumBacklogUploader(MqttUploadService uploadService,
+			Collection<OptionalService<DatumDao<Datum>>> daos, TaskScheduler taskScheduler) {
+		super();
+		this.uploadService = uploadService;
+		this.daos = daos;
+		this.taskScheduler = taskScheduler;
+	}
+
+	/**
+	 * Schedule the uploader to run every {@code intervalSeconds} seconds.
+	 */
+	public synchronized void startup() {
+		if ( scheduledFuture != null || intervalSeconds < 1 ) {
+			return;
+		}
+		final long interval = TimeUnit.SECONDS.toMillis(intervalSeconds);
+		scheduledFuture = taskScheduler.scheduleWithFixedDelay(this,
+				new Date(System.currentTimeMillis() + interval), interval);
+	}
+
+	/**
+	 * Stop the scheduled uploader.
+	 */
+	public synchronized void shutdown() {
+		if ( scheduledFuture != null ) {
+			scheduledFuture.cancel(true);
+			scheduledFuture = null;
+		}
+	}
+
+	@Override
+	public void run() {
+		if ( !running.compareAndSet(false, true) ) {
+			return;
+		}
+		try {
+			if ( daos == null || !uploadService.isDatumUploadAvailable() ) {
+				return;
+			}
+			final long deadline = System.currentTimeMillis()
+					+ TimeUnit.SECONDS.toMillis(maxDrainSeconds);
+			int total = 0;
+			for ( OptionalService<DatumDao<Datum>> daoService : daos ) {
+				DatumDao<Datum> dao = (daoService != null ? daoService.service() : null);
+				if ( dao == null ) {
+					continue;
+				}
+				int count = drainDatum(dao, deadline);
+				if ( count < 0 ) {
+					break;
+				}
+				total += count;
+			}
+			if ( total > 0 ) {
+				log.info("Uploaded {} backlog datum to [{}]", total, uploadService.getKey());
+			}
+		} catch ( RuntimeException e ) {
+			log.warn("Error uploading backlog datum to [{}]: {}", uploadService.getKey(),
+					e.getMessage(), e);
+		} finally {
+			running.set(false);
+		}
+	}
+
+	/**
+	 * Upload pages of datum from a DAO until no more are available, a publish
+	 * fails, or the deadline has passed.
+	 *
+	 * @param dao
+	 *        the DAO to upload from
+	 * @param deadline
+	 *        the drain deadline, as an epoch millisecond
+	 * @return the number of datum uploaded, or {@literal -1} if a publish
+	 *         failed and draining should stop
+	 */
+	private int drainDatum(DatumDao<Datum> dao, long deadline) {
+		final String key = uploadService.getKey();
+		Datum last = null;
+		int total = 0;
+		while ( System.currentTimeMillis() < deadline ) {
+			List<Datum> page = dao.getDatumNotUploaded(key,
+					(last != null ? last.getCreated() : null),
+					(last != null ? last.getSourceId() : null), pageSize);
+			if ( page == null || page.isEmpty() ) {
+				break;
+			}
+			last = page.get(page.size() - 1);
+			List<CompletableFuture<String>> futures = new ArrayList<>(page.size());
+			for ( Datum datum : page ) {
+				futures.add(uploadService.uploadDatumAsync(datum));
+			}
+			List<Datum> uploaded = new ArrayList<>(page.size());
+			boolean failed = false;
+			for ( int i = 0, len = page.size(); i < len; i++ ) {
+				String id = null;
+				try {
+					id = futures.get(i).get(Math.max(1L, deadline - System.currentTimeMillis()),
+							TimeUnit.MILLISECONDS);
+				} catch ( InterruptedException e ) {
+					Thread.currentThread().interrupt();
+					failed = true;
+					break;
+				} catch ( TimeoutException e ) {
+					log.warn("Timeout waiting for backlog datum {} upload acknowledgement", page.get(i));
+				} catch ( Exception e ) {
+					// treat as failure below
+				}
+				if ( id != null ) {
+					uploaded.add(page.get(i));
+				} else {
+					failed = true;
+				}
+			}
+			if ( !uploaded.isEmpty() ) {
+				dao.setDatumUploaded(uploaded, new Date(), key);
+				total += uploaded.size();
+			}
+			if ( failed ) {
+				return -1;
+			}
+			if ( page.size() < pageSize ) {
+				break;
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * Set the maximum number of datum to fetch from each DAO per page.
+	 *
+	 * @param pageSize
+	 *        the page size; defaults to {@link #DEFAULT_PAGE_SIZE}
+	 */
+	public void setPageSize(int pageSize) {
+		this.pageSize = pageSize;
+	}
+
+	/**
+	 * Set the maximum number of seconds to upload datum for, per execution.
+	 *
+	 * @param maxDrainSeconds
+	 *        the seconds; defaults to {@link #DEFAULT_MAX_DRAIN_SECONDS}
+	 */
+	public void setMaxDrainSeconds(int maxDrainSeconds) {
+		this.maxDrainSeconds = maxDrainSeconds;
+	}
+
+	/**
+	 * Set the number of seconds to wait between executions.
+	 *
+	 * @param intervalSeconds
+	 *        the seconds, or {@literal 0} to disable; defaults to
+	 *        {@link #DEFAULT_INTERVAL_SECONDS}
+	 */
+	public void setIntervalSeconds(int intervalSeconds) {
+		this.intervalSeconds = intervalSeconds;
+	}
+
+}
@@ -30,11 +30,15 @@ import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
 import org.osgi.service.event.Event;
 import org.osgi.service.event.EventAdmin;
 import org.springframework.util.DigestUtils;
@@ -70,7 +74,7 @@ import net.solarnetwork.util.OptionalService;
  * {@link UploadService} using MQTT.
  * 
  * @author matt
- * @version 1.3
+ * @version 1.4
  */
 public class MqttUploadService extends BaseMqttConnectionService
 		implements UploadService, MqttMessageHandler, MqttConnectionObserver {
@@ -87,6 +91,13 @@ public class MqttUploadService extends BaseMqttConnectionService
 	/** The default value for the {@code includeVersionTag} property. */
 	public static final boolean DEFAULT_INCLUDE_VERSION_TAG = true;
 
+	/**
+	 * The default value for the {@code publishWindowSize} property.
+	 * 
+	 * @since 1.4
+	 */
+	public static final int DEFAULT_PUBLISH_WINDOW_SIZE = 0;
+
 	/** A tag to indicate that CBOR encoding v2 is in use. */
 	public static final String TAG_VERSION_2 = "_v2";
 
@@ -97,6 +108,8 @@ public class MqttUploadService extends BaseMqttConnectionService
 	private final OptionalService<EventAdmin> eventAdminOpt;
 	private Executor executor;
 	private boolean includeVersionTag = DEFAULT_INCLUDE_VERSION_TAG;
+	private int publishWindowSize = DEFAULT_PUBLISH_WINDOW_SIZE;
+	private volatile Semaphore publishWindow;
 
 	private CompletableFuture<?> startupFuture;
 
@@ -228,60 +241,213 @@ public class MqttUploadService extends BaseMqttConnectionService
 		if ( nodeId != null ) {
 			MqttConnection conn = connection();
 			if ( conn != null ) {
-				String topic = String.format(NODE_DATUM_TOPIC_TEMPLATE, nodeId);
 				try {
-					JsonNode jsonData = objectMapper.valueToTree(data);
-					if ( includeVersionTag ) {
-						JsonNode samplesData = jsonData.path("samples");
-						if ( samplesData.isObject() ) {
-							JsonNode tagsData = samplesData.path("t");
-							ArrayNode tagsArrayNode = null;
-							if ( tagsData.isArray() ) {
-								tagsArrayNode = (ArrayNode) tagsData;
-							} else if ( tagsData.isNull() || tagsData.isMissingNode() ) {
-								tagsArrayNode = ((JsonNodeCreator) samplesData).arrayNode(1);
-								((ObjectNode) samplesData).set("t", tagsArrayNode);
-							}
-							if ( tagsArrayNode != null ) {
-								boolean found = false;
-								for ( JsonNode t : tagsArrayNode ) {
-									if ( TAG_VERSION_2.equals(t.textValue()) ) {
-										found = true;
-										break;
-									}
-								}
-								if ( !found ) {
-									tagsArrayNode.add(TAG_VERSION_2);
-								}
-							}
-						}
-					}
+					JsonNode jsonData = datumJson(data);
 					if ( jsonData != null && !jsonData.isNull() ) {
-						conn.publish(new BasicMqttMessage(topic, false, getPublishQos(),
-								objectMapper.writeValueAsBytes(jsonData)))
+						conn.publish(datumMessage(nodeId, jsonData))
 								.get(getMqttConfig().getConnectTimeoutSeconds(), TimeUnit.SECONDS);
 						postDatumUploadedEvent(data, jsonData);
 					}
-					return DigestUtils.md5DigestAsHex(
-							String.format("%tQ;%s", data.getCreated(), data.getSourceId()).getBytes());
+					return trackingId(data);
 				} catch ( IOException | InterruptedException | ExecutionException
 						| TimeoutException e ) {
-					Throwable root = e;
-					while ( root.getCause() != null ) {
-						root = root.getCause();
+					logDatumPublishError(data, e);
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Test if datum can currently be uploaded, that is the node has an ID and
+	 * the MQTT connection is established.
+	 * 
+	 * @return {@literal true} if datum can be uploaded
+	 * @since 1.4
+	 */
+	public boolean isDatumUploadAvailable() {
+		// check the connection first, as the identity service may be an optional reference
+		return (connection() != null && identityService.getNodeId() != null);
+	}
+
+	/**
+	 * Upload a datum without waiting for the MQTT publish to be acknowledged.
+	 * 
+	 * <p>
+	 * If {@code publishWindowSize} is greater than {@literal 0} then up to that
+	 * many publishes may be awaiting acknowledgement at once, and the returned
+	 * future completes once the broker acknowledges the publish. When the MQTT
+	 * connection returns a {@link CompletionStage} the future is completed from
+	 * its completion callback, so no thread waits on the acknowledgement;
+	 * otherwise a task on the configured executor waits for up to the connect
+	 * timeout. Either way the future is completed on the configured executor
+	 * when one is available, so dependent actions do not run on the MQTT
+	 * client's I/O thread. If the window is full, this method blocks for up to
+	 * the configured connect timeout waiting for a slot to free up. If
+	 * {@code publishWindowSize} is {@literal 0} this method behaves exactly
+	 * like {@link #uploadDatum(Datum)}, and the returned future is already
+	 * complete.
+	 * </p>
+	 * 
+	 * @param data
+	 *        the datum to upload
+	 * @return a future with the tracking ID, which completes with
+	 *         {@literal null} if the datum could not be published
+	 * @since 1.4
+	 */
+	public CompletableFuture<String> uploadDatumAsync(Datum data) {
+		final Semaphore window = this.publishWindow;
+		if ( window == null ) {
+			return CompletableFuture.completedFuture(uploadDatum(data));
+		}
+		final Long nodeId = identityService.getNodeId();
+		final MqttConnection conn = (nodeId != null ? connection() : null);
+		if ( conn == null ) {
+			return CompletableFuture.completedFuture(null);
+		}
+		final int timeout = getMqttConfig().getConnectTimeoutSeconds();
+		try {
+			if ( !window.tryAcquire(timeout, TimeUnit.SECONDS) ) {
+				log.warn(
+						"MQTT publish window full posting datum {} via MQTT @ {}, falling back to batch mode",
+						data, getMqttConfig().getServerUri());
+				return CompletableFuture.completedFuture(null);
+			}
+		} catch ( InterruptedException e ) {
+			return CompletableFuture.completedFuture(null);
+		}
+		final CompletableFuture<String> result = new CompletableFuture<>();
+		try {
+			final JsonNode jsonData = datumJson(data);
+			if ( jsonData == null || jsonData.isNull() ) {
+				window.release();
+				result.complete(trackingId(data));
+				return result;
+			}
+			final Future<?> f = conn.publish(datumMessage(nodeId, jsonData));
+			if ( f instanceof CompletionStage<?> ) {
+				// complete from the client's acknowledgement callback, without tying up a thread;
+				// hand off to our executor so event posting and dependent actions (such as
+				// persisting the datum after a failure) stay off the client's I/O thread
+				final BiConsumer<Object, Throwable> ackHandler = (r, ex) -> {
+					try {
+						if ( ex != null ) {
+							logDatumPublishError(data, ex);
+							result.complete(null);
+						} else {
+							postDatumUploadedEvent(data, jsonData);
+							result.complete(trackingId(data));
+						}
+					} finally {
+						window.release();
 					}
-					String msg = (root instanceof TimeoutException ? "timeout" : root.getMessage());
-					if ( log.isDebugEnabled() ) {
-						log.warn("Error posting datum {} via MQTT @ {}, falling back to batch mode",
-								data, getMqttConfig().getServerUri(), e);
-					} else {
-						log.warn("Error posting datum {} via MQTT @ {}, falling back to batch mode: {}",
-								data, getMqttConfig().getServerUri(), msg);
+				};
+				final Executor e = this.executor;
+				if ( e != null ) {
+					((CompletionStage<?>) f).whenCompleteAsync(ackHandler, callerRunsExecutor(e));
+				} else {
+					((CompletionStage<?>) f).whenComplete(ackHandler);
+				}
+				return result;
+			}
+			Runnable ack = new Runnable() {
+
+				@Override
+				public void run() {
+					try {
+						f.get(timeout, TimeUnit.SECONDS);
+						postDatumUploadedEvent(data, jsonData);
+						result.complete(trackingId(data));
+					} catch ( InterruptedException | ExecutionException | TimeoutException e ) {
+						logDatumPublishError(data, e);
+						result.complete(null);
+					} finally {
+						window.release();
 					}
 				}
+			};
+			Executor e = this.executor;
+			if ( e != null ) {
+				try {
+					e.execute(ack);
+				} catch ( RejectedExecutionException e2 ) {
+					ack.run();
+				}
+			} else {
+				ack.run();
 			}
+		} catch ( IOException | RuntimeException e ) {
+			window.release();
+			logDatumPublishError(data, e);
+			result.complete(null);
+		}
+		return result;
+	}
+
+	private static Executor callerRunsExecutor(Executor e) {
+		return (r) -> {
+			try {
+				e.execute(r);
+			} catch ( RejectedExecutionException e2 ) {
+				r.run();
+			}
+		};
+	}
+
+	private JsonNode datumJson(Datum data) {
+		JsonNode jsonData = objectMapper.valueToTree(data);
+		if ( includeVersionTag ) {
+			JsonNode samplesData = jsonData.path("samples");
+			if ( samplesData.isObject() ) {
+				JsonNode tagsData = samplesData.path("t");
+				ArrayNode tagsArrayNode = null;
+				if ( tagsData.isArray() ) {
+					tagsArrayNode = (ArrayNode) tagsData;
+				} else if ( tagsData.isNull() || tagsData.isMissingNode() ) {
+					tagsArrayNode = ((JsonNodeCreator) samplesData).arrayNode(1);
+					((ObjectNode) samplesData).set("t", tagsArrayNode);
+				}
+				if ( tagsArrayNode != null ) {
+					boolean found = false;
+					for ( JsonNode t : tagsArrayNode ) {
+						if ( TAG_VERSION_2.equals(t.textValue()) ) {
+							found = true;
+							break;
+						}
+					}
+					if ( !found ) {
+						tagsArrayNode.add(TAG_VERSION_2);
+					}
+				}
+			}
+		}
+		return jsonData;
+	}
+
+	private MqttMessage datumMessage(Long nodeId, JsonNode jsonData) throws IOException {
+		String topic = String.format(NODE_DATUM_TOPIC_TEMPLATE, nodeId);
+		return new BasicMqttMessage(topic, false, getPublishQos(),
+				objectMapper.writeValueAsBytes(jsonData));
+	}
+
+	private static String trackingId(Datum data) {
+		return DigestUtils.md5DigestAsHex(
+				String.format("%tQ;%s", data.getCreated(), data.getSourceId()).getBytes());
+	}
+
+	private void logDatumPublishError(Datum data, Throwable e) {
+		Throwable root = e;
+		while ( root.getCause() != null ) {
+			root = root.getCause();
+		}
+		String msg = (root instanceof TimeoutException ? "timeout" : root.getMessage());
+		if ( log.isDebugEnabled() ) {
+			log.warn("Error posting datum {} via MQTT @ {}, falling back to batch mode", data,
+					getMqttConfig().getServerUri(), e);
+		} else {
+			log.warn("Error posting datum {} via MQTT @ {}, falling back to batch mode: {}", data,
+					getMqttConfig().getServerUri(), msg);
 		}
-		return null;
 	}
 
 	// post DATUM_UPLOADED events; but with the (possibly transformed) uploaded data so we show just
@@ -514,4 +680,35 @@ public class MqttUploadService extends BaseMqttConnectionService
 		this.includeVersionTag = includeVersionTag;
 	}
 
+	/**
+	 * Get the maximum number of asynchronous datum publishes that can be
+	 * awaiting acknowledgement at once.
+	 * 
+	 * @return the window size; defaults to
+	 *         {@link #DEFAULT_PUBLISH_WINDOW_SIZE}
+	 * @since 1.4
+	 */
+	public int getPublishWindowSize() {
+		return publishWindowSize;
+	}
+
+	/**
+	 * Set the maximum number of asynchronous datum publishes that can be
+	 * awaiting acknowledgement at once.
+	 * 
+	 * @param publishWindowSize
+	 *        the window size, or {@literal 0} to disable asynchronous
+	 *        publishing so {@link #uploadDatumAsync(Datum)} waits for each
+	 *        acknowledgement
+	 * @see #uploadDatumAsync(Datum)
+	 * @since 1.4
+	 */
+	public synchronized void setPublishWindowSize(int publishWindowSize) {
+		if ( publishWindowSize == this.publishWindowSize ) {
+			return;
+		}
+		this.publishWindowSize = publishWindowSize;
+		this.publishWindow = (publishWindowSize > 0 ? new Semaphore(publishWindowSize) : null);
+	}
+
 }
@@ -23,6 +23,7 @@
 package net.solarnetwork.node.upload.mqtt;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import org.slf4j.Logger;
@@ -44,10 +45,20 @@ import net.solarnetwork.util.OptionalService;
  * and will apply those transformations before uploading.
  * </p>
  * 
+ * <p>
+ * When the {@link UploadService} is a {@link MqttUploadService} configured
+ * with a {@code publishWindowSize} greater than {@literal 0}, datum are
+ * published asynchronously so {@link #storeDatum(Datum)} does not wait for the
+ * broker to acknowledge each publish. Datum are then persisted to the delegate
+ * in the background only if the publish ultimately fails. The upload service
+ * completes the publish future on its executor, so that persistence does not
+ * run on the MQTT client's I/O thread.
+ * </p>
+ * 
  * @param T
  *        the datum type
  * @author matt
- * @version 1.1
+ * @version 1.3
  */
 public class UploadServiceDatumDao<T extends Datum> implements DatumDao<T> {
 
@@ -129,38 +140,95 @@ public class UploadServiceDatumDao<T extends Datum> implements DatumDao<T> {
 				}
 			}
 		}
-		try {
-			String id = uploadService.uploadDatum(datum);
-			if ( id != null ) {
-				// datum posted, no need to persist locally
+		if ( uploadService instanceof MqttUploadService
+				&& ((MqttUploadService) uploadService).getPublishWindowSize() > 0 ) {
+			if ( uploadDatumAsync((MqttUploadService) uploadService, datum) ) {
 				return;
 			}
-		} catch ( RuntimeException e ) {
-			Throwable root = e;
-			while ( root.getCause() != null ) {
-				root = root.getCause();
-			}
-			if ( root instanceof IOException ) {
-				log.info("Communication error posting datum {}; persisting to upload later: {}", datum,
-						root.getMessage());
-			} else {
-				log.warn("Error posting datum {}; persisting to upload later: {}", datum,
-						root.getMessage(), e);
+		} else {
+			try {
+				String id = uploadService.uploadDatum(datum);
+				if ( id != null ) {
+					// datum posted, no need to persist locally
+					return;
+				}
+			} catch ( RuntimeException e ) {
+				logUploadError(datum, e);
 			}
 		}
 		delegate.storeDatum(datum);
 	}
 
+	/**
+	 * Upload a datum asynchronously, persisting to the delegate in the
+	 * background if the upload ultimately fails.
+	 * 
+	 * @param service
+	 *        the service to upload with
+	 * @param datum
+	 *        the datum to upload
+	 * @return {@literal true} if the upload was started, {@literal false} if
+	 *         the upload could not be started and the datum must be persisted
+	 *         by the caller
+	 */
+	private boolean uploadDatumAsync(MqttUploadService service, final T datum) {
+		try {
+			// the service completes the future on its executor, not the MQTT I/O thread
+			service.uploadDatumAsync(datum).whenComplete((id, ex) -> {
+				if ( ex != null ) {
+					logUploadError(datum, ex);
+				}
+				if ( id == null ) {
+					try {
+						delegate.storeDatum(datum);
+					} catch ( RuntimeException e ) {
+						log.error("Error persisting datum {} after failed upload: {}", datum,
+								e.getMessage(), e);
+					}
+				}
+			});
+			return true;
+		} catch ( RuntimeException e ) {
+			logUploadError(datum, e);
+		}
+		return false;
+	}
+
+	private void logUploadError(T datum, Throwable e) {
+		Throwable root = e;
+		while ( root.getCause() != null ) {
+			root = root.getCause();
+		}
+		if ( root instanceof IOException ) {
+			log.info("Communication error posting datum {}; persisting to upload later: {}", datum,
+					root.getMessage());
+		} else {
+			log.warn("Error posting datum {}; persisting to upload later: {}", datum,
+					root.getMessage(), e);
+		}
+	}
+
 	@Override
 	public List<T> getDatumNotUploaded(String destination) {
 		return delegate.getDatumNotUploaded(destination);
 	}
 
+	@Override
+	public List<T> getDatumNotUploaded(String destination, Date afterCreated, String afterSourceId,
+			int max) {
+		return delegate.getDatumNotUploaded(destination, afterCreated, afterSourceId, max);
+	}
+
 	@Override
 	public void setDatumUploaded(T datum, Date date, String destination, String trackingId) {
 		delegate.setDatumUploaded(datum, date, destination, trackingId);
 	}
 
+	@Override
+	public void setDatumUploaded(Collection<T> datumList, Date date, String destination) {
+		delegate.setDatumUploaded(datumList, date, destination);
+	}
+
 	@Override
 	public int deleteUploadedDataOlderThan(int hours) {
 		return delegate.deleteUploadedDataOlderThan(hours);
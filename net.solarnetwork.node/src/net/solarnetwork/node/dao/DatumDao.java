@@ -24,6 +24,8 @@
 
 package net.solarnetwork.node.dao;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import net.solarnetwork.node.domain.Datum;
@@ -32,7 +34,7 @@ import net.solarnetwork.node.domain.Datum;
  * Data Access Object (DAO) API for {@link Datum} objects.
  * 
  * @author matt
- * @version 1.2
+ * @version 1.5
  * @param <T>
  *        the type of Datum this DAO supports
  */
@@ -69,6 +71,30 @@ public interface DatumDao<T extends Datum> {
 	 */
 	void storeDatum(T datum);
 
+	/**
+	 * Store (create or update) a collection of datum.
+	 * 
+	 * <p>
+	 * This method allows implementations to persist many datum more
+	 * efficiently than calling {@link #storeDatum(Datum)} for each one, for
+	 * example by using a single transaction and batched statements. This
+	 * default implementation simply calls {@link #storeDatum(Datum)} for each
+	 * datum in {@code datumList}.
+	 * </p>
+	 * 
+	 * @param datumList
+	 *        the datum to persist
+	 * @since 1.3
+	 */
+	default void storeDatum(Collection<T> datumList) {
+		if ( datumList == null ) {
+			return;
+		}
+		for ( T datum : datumList ) {
+			storeDatum(datum);
+		}
+	}
+
 	/**
 	 * Get a List of Datum instances that have not been uploaded yet to a
 	 * specific destination.
@@ -85,6 +111,61 @@ public interface DatumDao<T extends Datum> {
 	 */
 	List<T> getDatumNotUploaded(String destination);
 
+	/**
+	 * Get a page of Datum instances that have not been uploaded yet to a
+	 * specific destination, starting after a given datum primary key.
+	 * 
+	 * <p>
+	 * This method supports "keyset" pagination over the datum not uploaded,
+	 * ordered by creation date and then source ID. To iterate over all datum
+	 * not uploaded, call this method first with a {@literal null}
+	 * {@code afterCreated} and then again with the creation date and source ID
+	 * of the last datum in the returned list, until an empty list is returned.
+	 * As each page starts where the last ended, datum that fail to upload will
+	 * not be returned again during the same iteration.
+	 * </p>
+	 * 
+	 * <p>
+	 * This default implementation calls {@link #getDatumNotUploaded(String)}
+	 * and filters the results to those after the given key. Implementations
+	 * should override this with a more efficient query.
+	 * </p>
+	 * 
+	 * @param destination
+	 *        the destination to check
+	 * @param afterCreated
+	 *        the creation date of the datum to start after, or {@literal null}
+	 *        to start from the beginning
+	 * @param afterSourceId
+	 *        the source ID of the datum to start after
+	 * @param max
+	 *        the maximum number of datum to return
+	 * @return list of Datum, or empty List if none available
+	 * @since 1.4
+	 */
+	default List<T> getDatumNotUploaded(String destination, Date afterCreated, String afterSourceId,
+			int max) {
+		List<T> all = getDatumNotUploaded(destination);
+		if ( all == null ) {
+			return new ArrayList<T>(0);
+		}
+		List<T> result = new ArrayList<T>(Math.min(all.size(), max));
+		for ( T datum : all ) {
+			if ( result.size() >= max ) {
+				break;
+			}
+			if ( afterCreated != null && datum.getCreated() != null ) {
+				int cmp = datum.getCreated().compareTo(afterCreated);
+				if ( cmp < 0 || (cmp == 0 && (afterSourceId == null || datum.getSourceId() == null
+						|| datum.getSourceId().compareTo(afterSourceId) <= 0)) ) {
+					continue;
+				}
+			}
+			result.add(datum);
+		}
+		return result;
+	}
+
 	/**
 	 * Mark a datum as uploaded.
 	 * 
@@ -99,6 +180,36 @@ public interface DatumDao<T extends Datum> {
 	 */
 	void setDatumUploaded(T datum, Date date, String destination, String trackingId);
 
+	/**
+	 * Mark a collection of datum as uploaded.
+	 * 
+	 * <p>
+	 * This method allows implementations to mark many datum as uploaded more
+	 * efficiently than calling
+	 * {@link #setDatumUploaded(Datum, Date, String, String)} for each one, for
+	 * example by using a single transaction and batched statements. This
+	 * default implementation simply calls
+	 * {@link #setDatumUploaded(Datum, Date, String, String)} for each datum in
+	 * {@code datumList}, with a {@literal null} tracking ID.
+	 * </p>
+	 * 
+	 * @param datumList
+	 *        the Datum that have been uploaded successfully
+	 * @param date
+	 *        the date they were uploaded
+	 * @param destination
+	 *        the destination the Datum were uploaded to
+	 * @since 1.5
+	 */
+	default void setDatumUploaded(Collection<T> datumList, Date date, String destination) {
+		if ( datumList == null ) {
+			return;
+		}
+		for ( T datum : datumList ) {
+			setDatumUploaded(datum, date, destination, null);
+		}
+	}
+
 	/**
 	 * Delete both Datum and DatumUpload objects that have been successfully
 	 * uploaded to at least one destination and are older than the specified
@@ -22,6 +22,8 @@
 
 package net.solarnetwork.node.dao;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import org.slf4j.Logger;
@@ -36,7 +38,7 @@ import net.solarnetwork.util.OptionalService;
  * before persisting.
  * 
  * @author matt
- * @version 1.0
+ * @version 1.1
  * @since 1.66
  */
 public class SampleTransformingGeneralLocationDatumDao implements DatumDao<GeneralLocationDatum> {
@@ -90,6 +92,40 @@ public class SampleTransformingGeneralLocationDatumDao implements DatumDao<Gener
 
 	@Override
 	public void storeDatum(GeneralLocationDatum datum) {
+		GeneralLocationDatum toStore = transformDatum(datum);
+		if ( toStore != null ) {
+			delegate.storeDatum(toStore);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>
+	 * The samples transform service is applied to each datum, and the resulting
+	 * datum are passed to the delegate DAO as a single collection.
+	 * </p>
+	 * 
+	 * @since 1.1
+	 */
+	@Override
+	public void storeDatum(Collection<GeneralLocationDatum> datumList) {
+		if ( datumList == null || datumList.isEmpty() ) {
+			return;
+		}
+		List<GeneralLocationDatum> toStore = new ArrayList<GeneralLocationDatum>(datumList.size());
+		for ( GeneralLocationDatum datum : datumList ) {
+			GeneralLocationDatum d = transformDatum(datum);
+			if ( d != null ) {
+				toStore.add(d);
+			}
+		}
+		if ( !toStore.isEmpty() ) {
+			delegate.storeDatum(toStore);
+		}
+	}
+
+	private GeneralLocationDatum transformDatum(GeneralLocationDatum datum) {
 		GeneralDatumSamplesTransformService xformService = (samplesTransformService != null
 				? samplesTransformService.service()
 				: null);
@@ -99,17 +135,16 @@ public class SampleTransformingGeneralLocationDatumDao implements DatumDao<Gener
 				log.info(
 						"Samples transform service filtered out location datum {} @ {}; will not persist",
 						datum.getSourceId(), datum.getCreated());
-				return;
+				return null;
 			} else if ( !samples.equals(datum.getSamples()) ) {
 				log.info("Samples transform service modified location datum {} @ {} properties to {}",
 						datum.getSourceId(), datum.getCreated(), samples.getSampleData());
 				GeneralLocationDatum copy = (GeneralLocationDatum) datum.clone();
 				copy.setSamples(samples);
-				delegate.storeDatum(copy);
-				return;
+				return copy;
 			}
 		}
-		delegate.storeDatum(datum);
+		return datum;
 	}
 
 	@Override
@@ -117,12 +152,23 @@ public class SampleTransformingGeneralLocationDatumDao implements DatumDao<Gener
 		return delegate.getDatumNotUploaded(destination);
 	}
 
+	@Override
+	public List<GeneralLocationDatum> getDatumNotUploaded(String destination, Date afterCreated,
+			String afterSourceId, int max) {
+		return delegate.getDatumNotUploaded(destination, afterCreated, afterSourceId, max);
+	}
+
 	@Override
 	public void setDatumUploaded(GeneralLocationDatum datum, Date date, String destination,
 			String trackingId) {
 		delegate.setDatumUploaded(datum, date, destination, trackingId);
 	}
 
+	@Override
+	public void setDatumUploaded(Collection<GeneralLocationDatum> datumList, Date date, String destination) {
+		delegate.setDatumUploaded(datumList, date, destination);
+	}
+
 	@Override
 	public int deleteUploadedDataOlderThan(int hours) {
 		return delegate.deleteUploadedDataOlderThan(hours);
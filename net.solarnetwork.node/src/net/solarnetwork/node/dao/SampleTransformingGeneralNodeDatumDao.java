@@ -22,6 +22,8 @@
 
 package net.solarnetwork.node.dao;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import org.slf4j.Logger;
@@ -36,7 +38,7 @@ import net.solarnetwork.util.OptionalService;
  * persisting.
  * 
  * @author matt
- * @version 1.0
+ * @version 1.1
  * @since 1.66
  */
 public class SampleTransformingGeneralNodeDatumDao implements DatumDao<GeneralNodeDatum> {
@@ -90,6 +92,40 @@ public class SampleTransformingGeneralNodeDatumDao implements DatumDao<GeneralNo
 
 	@Override
 	public void storeDatum(GeneralNodeDatum datum) {
+		GeneralNodeDatum toStore = transformDatum(datum);
+		if ( toStore != null ) {
+			delegate.storeDatum(toStore);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>
+	 * The samples transform service is applied to each datum, and the resulting
+	 * datum are passed to the delegate DAO as a single collection.
+	 * </p>
+	 * 
+	 * @since 1.1
+	 */
+	@Override
+	public void storeDatum(Collection<GeneralNodeDatum> datumList) {
+		if ( datumList == null || datumList.isEmpty() ) {
+			return;
+		}
+		List<GeneralNodeDatum> toStore = new ArrayList<GeneralNodeDatum>(datumList.size());
+		for ( GeneralNodeDatum datum : datumList ) {
+			GeneralNodeDatum d = transformDatum(datum);
+			if ( d != null ) {
+				toStore.add(d);
+			}
+		}
+		if ( !toStore.isEmpty() ) {
+			delegate.storeDatum(toStore);
+		}
+	}
+
+	private GeneralNodeDatum transformDatum(GeneralNodeDatum datum) {
 		GeneralDatumSamplesTransformService xformService = (samplesTransformService != null
 				? samplesTransformService.service()
 				: null);
@@ -98,17 +134,16 @@ public class SampleTransformingGeneralNodeDatumDao implements DatumDao<GeneralNo
 			if ( samples == null || samples.isEmpty() ) {
 				log.info("Samples transform service filtered out datum {} @ {}; will not persist",
 						datum.getSourceId(), datum.getCreated());
-				return;
+				return null;
 			} else if ( !samples.equals(datum.getSamples()) ) {
 				log.info("Samples transform service modified datum {} @ {} properties to {}",
 						datum.getSourceId(), datum.getCreated(), samples.getSampleData());
 				GeneralNodeDatum copy = (GeneralNodeDatum) datum.clone();
 				copy.setSamples(samples);
-				delegate.storeDatum(copy);
-				return;
+				return copy;
 			}
 		}
-		delegate.storeDatum(datum);
+		return datum;
 	}
 
 	@Override
@@ -116,12 +151,23 @@ public class SampleTransformingGeneralNodeDatumDao implements DatumDao<GeneralNo
 		return delegate.getDatumNotUploaded(destination);
 	}
 
+	@Override
+	public List<GeneralNodeDatum> getDatumNotUploaded(String destination, Date afterCreated,
+			String afterSourceId, int max) {
+		return delegate.getDatumNotUploaded(destination, afterCreated, afterSourceId, max);
+	}
+
 	@Override
 	public void setDatumUploaded(GeneralNodeDatum datum, Date date, String destination,
 			String trackingId) {
 		delegate.setDatumUploaded(datum, date, destination, trackingId);
 	}
 
+	@Override
+	public void setDatumUploaded(Collection<GeneralNodeDatum> datumList, Date date, String destination) {
+		delegate.setDatumUploaded(datumList, date, destination);
+	}
+
 	@Override
 	public int deleteUploadedDataOlderThan(int hours) {
 		return delegate.deleteUploadedDataOlderThan(hours);
@@ -26,9 +26,12 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import org.quartz.DisallowConcurrentExecution;
 import org.quartz.JobExecutionContext;
 import org.quartz.PersistJobDataAfterExecution;
@@ -47,9 +50,9 @@ import net.solarnetwork.node.setup.SetupException;
  * configured {@link DatumDao} and combine them into a single collection to pass
  * to {@link BulkUploadService#uploadBulkDatum(java.util.Collection)}. For each
  * non-null {@link BulkUploadResult#getId()} tracking ID returned, the
- * associated {@link BulkUploadResult#getDatum()} will be passed to the
- * appropriate {@link DatumDao} instance's
- * {@link DatumDao#setDatumUploaded(Datum, Date, String, String)} method.
+ * associated {@link BulkUploadResult#getDatum()} will be collected and passed
+ * to the appropriate {@link DatumDao} instance's
+ * {@link DatumDao#setDatumUploaded(Collection, Date, String)} method.
  * </p>
  * 
  * <p>
@@ -63,22 +66,42 @@ import net.solarnetwork.node.setup.SetupException;
  * 
  * <dt>uploadService</dt>
  * <dd>The {@link BulkUploadService} to upload the data with.</dd>
+ * 
+ * <dt>maxDrainSeconds</dt>
+ * <dd>If greater than {@literal 0} then continue uploading pages of datum
+ * until none remain or this many seconds have elapsed.</dd>
+ * 
+ * <dt>drainPageSize</dt>
+ * <dd>The maximum number of datum to fetch from each DAO per page, when
+ * {@code maxDrainSeconds} is configured.</dd>
  * </dl>
  * 
  * @author matt
- * @version 2.0
+ * @version 2.2
  */
 @PersistJobDataAfterExecution
 @DisallowConcurrentExecution
 public class DatumDaoBulkUploadJob extends AbstractJob {
 
+	/** The default value for the {@code drainPageSize} property. */
+	public static final int DEFAULT_DRAIN_PAGE_SIZE = 60;
+
 	private Collection<DatumDao<Datum>> daos;
 	private BulkUploadService uploadService;
+	private int maxDrainSeconds = 0;
+	private int drainPageSize = DEFAULT_DRAIN_PAGE_SIZE;
 
 	@Override
 	protected void executeInternal(JobExecutionContext jobContext) throws Exception {
 		Map<Class<? extends Datum>, DatumDao<Datum>> daoMapping = new LinkedHashMap<Class<? extends Datum>, DatumDao<Datum>>(
 				daos.size());
+		for ( DatumDao<Datum> datumDao : daos ) {
+			daoMapping.put(datumDao.getDatumType(), datumDao);
+		}
+		if ( maxDrainSeconds > 0 ) {
+			drainDatum(daoMapping);
+			return;
+		}
 
 		List<Datum> uploadList = new ArrayList<Datum>();
 
@@ -88,8 +111,6 @@ public class DatumDaoBulkUploadJob extends AbstractJob {
 						datumDao.getDatumType().getSimpleName(), uploadService.getKey());
 			}
 
-			daoMapping.put(datumDao.getDatumType(), datumDao);
-
 			List<Datum> toUpload = datumDao.getDatumNotUploaded(uploadService.getKey());
 
 			if ( log.isDebugEnabled() ) {
@@ -99,6 +120,83 @@ public class DatumDaoBulkUploadJob extends AbstractJob {
 
 			uploadList.addAll(toUpload);
 		}
+		uploadDatum(uploadList, daoMapping);
+	}
+
+	/**
+	 * Upload pages of datum until no more are available or the maximum drain
+	 * time has elapsed.
+	 * 
+	 * <p>
+	 * Each DAO is paged through via
+	 * {@link DatumDao#getDatumNotUploaded(String, Date, String, int)}, so that
+	 * each page starts where the previous page ended.
+	 * </p>
+	 * 
+	 * @param daoMapping
+	 *        the DAO mapping
+	 */
+	private void drainDatum(Map<Class<? extends Datum>, DatumDao<Datum>> daoMapping) {
+		final long deadline = System.currentTimeMillis() + (maxDrainSeconds * 1000L);
+		final Map<DatumDao<Datum>, Datum> lastDatum = new HashMap<DatumDao<Datum>, Datum>(
+				daos.size());
+		final Set<DatumDao<Datum>> exhausted = new HashSet<DatumDao<Datum>>(daos.size());
+		int total = 0;
+		int pages = 0;
+		while ( exhausted.size() < daos.size() && System.currentTimeMillis() < deadline ) {
+			List<Datum> uploadList = new ArrayList<Datum>();
+			for ( DatumDao<Datum> datumDao : daos ) {
+				if ( exhausted.contains(datumDao) ) {
+					continue;
+				}
+				Datum last = lastDatum.get(datumDao);
+				List<Datum> toUpload = datumDao.getDatumNotUploaded(uploadService.getKey(),
+						(last != null ? last.getCreated() : null),
+						(last != null ? last.getSourceId() : null), drainPageSize);
+				if ( log.isDebugEnabled() ) {
+					log.debug("Found " + toUpload.size() + " ["
+							+ datumDao.getDatumType().getSimpleName() + "] data to bulk upload to ["
+							+ uploadService.getKey() + ']');
+				}
+				if ( toUpload.isEmpty() ) {
+					exhausted.add(datumDao);
+					continue;
+				}
+				if ( toUpload.size() < drainPageSize ) {
+					exhausted.add(datumDao);
+				}
+				lastDatum.put(datumDao, toUpload.get(toUpload.size() - 1));
+				uploadList.addAll(toUpload);
+			}
+			if ( uploadList.isEmpty() ) {
+				break;
+			}
+			int count = uploadDatum(uploadList, daoMapping);
+			if ( count < 1 ) {
+				// upload failed; try again on next execution
+				break;
+			}
+			total += count;
+			pages++;
+		}
+		if ( pages > 1 && log.isInfoEnabled() ) {
+			log.info("Bulk uploaded {} objects in {} pages to [{}]", total, pages,
+					uploadService.getKey());
+		}
+	}
+
+	/**
+	 * Upload a list of datum and mark them as uploaded.
+	 * 
+	 * @param uploadList
+	 *        the datum to upload
+	 * @param daoMapping
+	 *        the DAO mapping
+	 * @return the number of datum uploaded, or {@literal -1} if an error
+	 *         occurred
+	 */
+	private int uploadDatum(List<Datum> uploadList,
+			Map<Class<? extends Datum>, DatumDao<Datum>> daoMapping) {
 		if ( log.isInfoEnabled() ) {
 			log.info("Collected {} datum to bulk upload to [{}]", uploadList.size(),
 					uploadService.getKey());
@@ -107,6 +205,8 @@ public class DatumDaoBulkUploadJob extends AbstractJob {
 		try {
 			int count = 0;
 			List<BulkUploadResult> results = uploadService.uploadBulkDatum(uploadList);
+			Map<DatumDao<Datum>, List<Datum>> uploaded = new LinkedHashMap<DatumDao<Datum>, List<Datum>>(
+					daoMapping.size());
 			if ( results != null ) {
 				for ( BulkUploadResult result : results ) {
 					String tid = result.getId();
@@ -120,15 +220,23 @@ public class DatumDaoBulkUploadJob extends AbstractJob {
 
 					if ( tid != null ) {
 						DatumDao<Datum> datumDao = daoMapping.get(result.getDatum().getClass());
-						datumDao.setDatumUploaded(result.getDatum(), uploadDate, uploadService.getKey(),
-								tid);
+						List<Datum> daoUploaded = uploaded.get(datumDao);
+						if ( daoUploaded == null ) {
+							daoUploaded = new ArrayList<Datum>(results.size());
+							uploaded.put(datumDao, daoUploaded);
+						}
+						daoUploaded.add(result.getDatum());
 						count++;
 					}
 				}
 			}
+			for ( Map.Entry<DatumDao<Datum>, List<Datum>> me : uploaded.entrySet() ) {
+				me.getKey().setDatumUploaded(me.getValue(), uploadDate, uploadService.getKey());
+			}
 			if ( log.isInfoEnabled() ) {
 				log.info("Bulk uploaded {} objects to [{}]", count, uploadService.getKey());
 			}
+			return count;
 		} catch ( RuntimeException e ) {
 			Throwable root = e;
 			while ( root.getCause() != null ) {
@@ -147,6 +255,7 @@ public class DatumDaoBulkUploadJob extends AbstractJob {
 				}
 			}
 		}
+		return -1;
 	}
 
 	public void setDaos(Collection<DatumDao<Datum>> daos) {
@@ -157,4 +266,39 @@ public class DatumDaoBulkUploadJob extends AbstractJob {
 		this.uploadService = uploadService;
 	}
 
+	/**
+	 * Set the maximum number of seconds to continue uploading pages of datum
+	 * for, in a single job execution.
+	 * 
+	 * <p>
+	 * If set to anything greater than {@literal 0} then pages of
+	 * {@code drainPageSize} datum will be uploaded until no more datum are
+	 * available or this much time has elapsed. Otherwise only one batch of
+	 * datum will be uploaded per execution. Defaults to {@literal 0}.
+	 * </p>
+	 * 
+	 * @param maxDrainSeconds
+	 *        the maximum number of seconds to drain datum for
+	 * @since 2.1
+	 */
+	public void setMaxDrainSeconds(int maxDrainSeconds) {
+		this.maxDrainSeconds = maxDrainSeconds;
+	}
+
+	/**
+	 * Set the maximum number of datum to fetch from each DAO per page, when
+	 * {@code maxDrainSeconds} is configured.
+	 * 
+	 * <p>
+	 * Defaults to {@link #DEFAULT_DRAIN_PAGE_SIZE}.
+	 * </p>
+	 * 
+	 * @param drainPageSize
+	 *        the page size
+	 * @since 2.1
+	 */
+	public void setDrainPageSize(int drainPageSize) {
+		this.drainPageSize = drainPageSize;
+	}
+
 }
@@ -54,9 +54,15 @@ import net.solarnetwork.node.domain.Datum;
  * {@link MultiDatumDataSource#getMultiDatumType()} is assignable to the Class
  * returned by {@link DatumDataSource#getDatumType()} then
  * {@link MultiDatumDataSource#readMultipleDatum()} will be called instead of
- * {@link DatumDataSource#readCurrentDatum()}. Each {@code Datum} returned in
- * the resulting Collection will be persisted to the configured {@link DatumDao}
- * .
+ * {@link DatumDataSource#readCurrentDatum()}. The resulting Collection will be
+ * persisted to the configured {@link DatumDao}.
+ * </p>
+ * 
+ * <p>
+ * All datum collected from all configured data sources are persisted as a
+ * single batch via {@link DatumDao#storeDatum(Collection)}. If the batch
+ * fails, each datum is then persisted individually and any datum that still
+ * fails is logged and skipped.
  * </p>
  * 
  * <p>
@@ -79,7 +85,7 @@ import net.solarnetwork.node.domain.Datum;
  * @param <T>
  *        the Datum type for this job
  * @author matt
- * @version 2.0
+ * @version 2.1
  */
 @PersistJobDataAfterExecution
 @DisallowConcurrentExecution
@@ -90,6 +96,7 @@ public class DatumDataSourceLoggerJob<T extends Datum> extends AbstractJob {
 
 	@Override
 	protected void executeInternal(JobExecutionContext jobContext) throws Exception {
+		final List<T> toPersist = new ArrayList<T>(datumDataSources.size());
 		for ( DatumDataSource<T> datumDataSource : datumDataSources ) {
 			try {
 				if ( log.isDebugEnabled() ) {
@@ -120,16 +127,39 @@ public class DatumDataSourceLoggerJob<T extends Datum> extends AbstractJob {
 							(datumList.size() == 1 ? datumList.iterator().next().toString()
 									: datumList.toString()));
 				}
-				for ( T datum : datumList ) {
-					try {
-						datumDao.storeDatum(datum);
-						log.debug("Persisted Datum {}", datum);
-					} catch ( DuplicateKeyException e ) {
-						// we ignore duplicate key exceptions, as we sometimes collect the same 
-						// datum multiple times for redundancy
-						log.info("Duplicate datum {}; not persisting", datum);
-					}
-				}
+				toPersist.addAll(datumList);
+			} catch ( Throwable e ) {
+				logThrowable(e);
+			}
+		}
+		if ( toPersist.isEmpty() ) {
+			return;
+		}
+		try {
+			// persist all collected datum as a single batch
+			datumDao.storeDatum(toPersist);
+			log.debug("Persisted {} Datum", toPersist.size());
+		} catch ( DuplicateKeyException e ) {
+			// fall back to persisting individually, so non-duplicates are still stored
+			log.debug("Duplicate datum in batch; persisting individually: {}", e.getMessage());
+			storeDatumIndividually(toPersist);
+		} catch ( RuntimeException e ) {
+			// fall back to persisting individually, so one bad datum does not cost the others
+			log.warn("Error persisting {} datum in batch; persisting individually: {}",
+					toPersist.size(), e.getMessage());
+			storeDatumIndividually(toPersist);
+		}
+	}
+
+	private void storeDatumIndividually(Collection<T> datumList) {
+		for ( T datum : datumList ) {
+			try {
+				datumDao.storeDatum(datum);
+				log.debug("Persisted Datum {}", datum);
+			} catch ( DuplicateKeyException e ) {
+				// we ignore duplicate key exceptions, as we sometimes collect the same 
+				// datum multiple times for redundancy
+				log.info("Duplicate datum {}; not persisting", datum);
 			} catch ( Throwable e ) {
 				logThrowable(e);
 			}
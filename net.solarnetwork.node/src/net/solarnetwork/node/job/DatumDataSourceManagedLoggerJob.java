@@ -50,7 +50,7 @@ import net.solarnetwork.util.OptionalService;
  * </p>
  * 
  * @author matt
- * @version 2.0
+ * @version 2.1
  */
 @PersistJobDataAfterExecution
 @DisallowConcurrentExecution
@@ -113,6 +113,18 @@ public class DatumDataSourceManagedLoggerJob<T extends Datum> extends AbstractJo
 			log.info("No DatumDao available to persist {}, not saving", datumList);
 			return;
 		}
+		try {
+			dao.storeDatum(datumList);
+			log.debug("Persisted {} Datum", datumList.size());
+			return;
+		} catch ( DuplicateKeyException e ) {
+			// fall back to persisting individually, so non-duplicates are still stored
+			log.debug("Duplicate datum in batch; persisting individually: {}", e.getMessage());
+		} catch ( RuntimeException e ) {
+			// fall back to persisting individually, so one bad datum does not cost the others
+			log.warn("Error persisting {} datum in batch; persisting individually: {}",
+					datumList.size(), e.getMessage());
+		}
 		for ( T datum : datumList ) {
 			try {
 				dao.storeDatum(datum);
@@ -121,6 +133,8 @@ public class DatumDataSourceManagedLoggerJob<T extends Datum> extends AbstractJo
 				// we ignore duplicate key exceptions, as we sometimes collect the same 
 				// datum multiple times for redundancy
 				log.info("Duplicate datum {}; not persisting", datum);
+			} catch ( RuntimeException e ) {
+				logThrowable(e);
 			}
 		}
 	}
@@ -22,7 +22,16 @@
 
 package net.solarnetwork.node.reactor;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import org.quartz.DisallowConcurrentExecution;
 import org.quartz.JobExecutionContext;
 import org.quartz.PersistJobDataAfterExecution;
@@ -63,8 +72,25 @@ import net.solarnetwork.node.reactor.support.DefaultInstructionExecutionService;
  * instruction's previous status that new status will be persisted.
  * </p>
  * 
+ * <p>
+ * If an {@code executor} is configured and {@code concurrency} is greater than
+ * {@literal 1}, instructions are executed concurrently by up to
+ * {@code concurrency} threads. Instructions are grouped into ordered lanes: a
+ * {@link InstructionHandler#TOPIC_SET_CONTROL_PARAMETER} instruction for a
+ * single control is assigned to a lane for that control ID, and all other
+ * instructions share a single lane. Instructions within a lane are executed one
+ * at a time in the order they were found, while different lanes execute in
+ * parallel. In this way a slow instruction for one control does not hold up
+ * instructions for other controls. When the configured service is a
+ * {@link DefaultInstructionExecutionService} the lanes call its
+ * {@link DefaultInstructionExecutionService#executeInstructionConcurrently(Instruction)}
+ * method, as its {@code executeInstruction()} method would otherwise execute
+ * them one at a time. The default {@code concurrency} of {@literal 1}
+ * executes all instructions one at a time on the job thread.
+ * </p>
+ * 
  * @author matt
- * @version 2.3
+ * @version 2.4
  */
 @PersistJobDataAfterExecution
 @DisallowConcurrentExecution
@@ -73,42 +99,134 @@ public class InstructionExecutionJob extends AbstractJob {
 	/** Default value for the {@code executionReceivedHourLimit} property. */
 	public static final int DEFAULT_EXECUTION_RECEIVED_HOUR_LIMIT = DefaultInstructionExecutionService.DEFAULT_EXECUTION_RECEIVED_HOUR_LIMIT;
 
+	/**
+	 * The default value for the {@code concurrency} property.
+	 * 
+	 * @since 2.4
+	 */
+	public static final int DEFAULT_CONCURRENCY = 1;
+
 	private InstructionDao instructionDao;
 	private InstructionExecutionService service = new DefaultInstructionExecutionService();
+	private Executor executor;
+	private int concurrency = DEFAULT_CONCURRENCY;
 
 	@Override
 	protected void executeInternal(JobExecutionContext jobContext) throws Exception {
 		List<Instruction> instructions = instructionDao
 				.findInstructionsForState(InstructionState.Received);
 		log.debug("Found {} instructions in Received state", instructions.size());
-		for ( Instruction instruction : instructions ) {
-			InstructionStatus receivedStatus = instruction.getStatus();
+		if ( instructions.isEmpty() ) {
+			return;
+		}
+		final Queue<List<Instruction>> lanes = new ConcurrentLinkedQueue<>(lanes(instructions));
+		final int threads = (executor != null ? Math.min(concurrency, lanes.size()) : 1);
+		if ( threads < 2 ) {
+			executeLanes(lanes, false);
+			return;
+		}
+		log.debug("Executing {} instructions in {} lanes with {} threads", instructions.size(),
+				lanes.size(), threads);
+		final CountDownLatch latch = new CountDownLatch(threads - 1);
+		for ( int i = 1; i < threads; i++ ) {
+			Runnable task = new Runnable() {
 
-			final InstructionStatus execStatus = receivedStatus
-					.newCopyWithState(InstructionStatus.InstructionState.Executing);
-			InstructionStatus status = null;
-			boolean canExecute = false;
-			try {
-				// update state to Executing
-				canExecute = instructionDao.compareAndStoreInstructionStatus(instruction.getId(),
-						InstructionState.Received, execStatus);
-				if ( canExecute ) {
-					status = service.executeInstruction(instruction);
+				@Override
+				public void run() {
+					try {
+						executeLanes(lanes, true);
+					} finally {
+						latch.countDown();
+					}
 				}
-			} catch ( Exception e ) {
-				log.error("Execution of instruction {} ({}) threw exception", instruction.getId(),
-						instruction.getTopic(), e);
-			} finally {
-				if ( status == null ) {
-					// roll back to received status to try again later
-					status = receivedStatus;
+			};
+			try {
+				executor.execute(task);
+			} catch ( RejectedExecutionException e ) {
+				latch.countDown();
+			}
+		}
+		// this thread works through lanes as well
+		executeLanes(lanes, true);
+		latch.await();
+	}
+
+	/**
+	 * Group instructions into ordered lanes of execution.
+	 * 
+	 * @param instructions
+	 *        the instructions to group
+	 * @return the lanes
+	 */
+	private static List<List<Instruction>> lanes(List<Instruction> instructions) {
+		Map<String, List<Instruction>> lanes = new LinkedHashMap<>(8);
+		for ( Instruction instruction : instructions ) {
+			String key = laneKey(instruction);
+			List<Instruction> lane = lanes.get(key);
+			if ( lane == null ) {
+				lane = new ArrayList<>(4);
+				lanes.put(key, lane);
+			}
+			lane.add(instruction);
+		}
+		return new ArrayList<>(lanes.values());
+	}
+
+	private static String laneKey(Instruction instruction) {
+		if ( InstructionHandler.TOPIC_SET_CONTROL_PARAMETER.equals(instruction.getTopic()) ) {
+			Iterable<String> paramNames = instruction.getParameterNames();
+			Iterator<String> itr = (paramNames != null ? paramNames.iterator() : null);
+			if ( itr != null && itr.hasNext() ) {
+				String controlId = itr.next();
+				if ( controlId != null && !itr.hasNext() ) {
+					return InstructionHandler.TOPIC_SET_CONTROL_PARAMETER + ':' + controlId;
 				}
-				if ( instructionDao.compareAndStoreInstructionStatus(instruction.getId(),
-						InstructionState.Executing, status) ) {
-					log.info("Instruction {} {} status changed to {}", instruction.getId(),
-							instruction.getTopic(), status.getInstructionState());
+			}
+		}
+		return "";
+	}
+
+	private void executeLanes(Queue<List<Instruction>> lanes, boolean concurrent) {
+		List<Instruction> lane;
+		while ( (lane = lanes.poll()) != null ) {
+			for ( Instruction instruction : lane ) {
+				executeInstruction(instruction, concurrent);
+			}
+		}
+	}
+
+	private void executeInstruction(Instruction instruction, boolean concurrent) {
+		InstructionStatus receivedStatus = instruction.getStatus();
+
+		final InstructionStatus execStatus = receivedStatus
+				.newCopyWithState(InstructionStatus.InstructionState.Executing);
+		InstructionStatus status = null;
+		boolean canExecute = false;
+		try {
+			// update state to Executing
+			canExecute = instructionDao.compareAndStoreInstructionStatus(instruction.getId(),
+					InstructionState.Received, execStatus);
+			if ( canExecute ) {
+				if ( concurrent && service instanceof DefaultInstructionExecutionService ) {
+					status = ((DefaultInstructionExecutionService) service)
+							.executeInstructionConcurrently(instruction);
+				} else {
+					status = service.executeInstruction(instruction);
 				}
 			}
+		} catch ( Exception e ) {
+			log.error("Execution of instruction {} ({}) threw exception", instruction.getId(),
+					instruction.getTopic(), e);
+		} finally {
+			if ( status == null ) {
+				// roll back to received status to try again later
+				status = receivedStatus;
+			}
+			if ( instructionDao.compareAndStoreInstructionStatus(instruction.getId(),
+					InstructionState.Executing, status) ) {
+				log.info("Instruction {} {} status changed to {}", instruction.getId(),
+						instruction.getTopic(), status.getInstructionState());
+			}
 		}
 	}
 
@@ -127,6 +245,34 @@ public class InstructionExecutionJob extends AbstractJob {
 		this.instructionDao = instructionDao;
 	}
 
+	/**
+	 * Set an executor to use for executing instructions concurrently.
+	 * 
+	 * @param executor
+	 *        the executor, or {@literal null} to execute all instructions on
+	 *        the job thread
+	 * @since 2.4
+	 */
+	public void setExecutor(Executor executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * Set the maximum number of threads to execute instructions with.
+	 * 
+	 * <p>
+	 * This requires an {@code executor} to be configured to have any effect.
+	 * </p>
+	 * 
+	 * @param concurrency
+	 *        the maximum number of concurrent instruction lanes; defaults to
+	 *        {@link #DEFAULT_CONCURRENCY}
+	 * @since 2.4
+	 */
+	public void setConcurrency(int concurrency) {
+		this.concurrency = concurrency;
+	}
+
 	public List<InstructionHandler> getHandlers() {
 		return null;
 	}
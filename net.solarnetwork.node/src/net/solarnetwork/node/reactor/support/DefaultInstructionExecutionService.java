@@ -26,10 +26,14 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import net.solarnetwork.node.reactor.FeedbackInstructionHandler;
 import net.solarnetwork.node.reactor.Instruction;
+import net.solarnetwork.node.reactor.InstructionExecutionJob;
 import net.solarnetwork.node.reactor.InstructionExecutionService;
 import net.solarnetwork.node.reactor.InstructionHandler;
 import net.solarnetwork.node.reactor.InstructionStatus;
@@ -38,8 +42,24 @@ import net.solarnetwork.node.reactor.InstructionStatus.InstructionState;
 /**
  * Default implementation of {@link InstructionExecutionService}.
  * 
+ * <p>
+ * The handlers that handle each instruction topic are resolved once and
+ * cached in an index. The index is cleared whenever the configured handler
+ * lists change, or whenever {@link #onBind(Object, Map)} or
+ * {@link #onUnbind(Object, Map)} are called, which can be configured as a
+ * service reference listener for dynamic handler lists.
+ * </p>
+ * 
+ * <p>
+ * {@link #executeInstruction(Instruction)} is synchronized, so instructions
+ * are executed one at a time. A caller that itself orders instructions that
+ * must not run at the same time, such as the lanes of the
+ * {@link InstructionExecutionJob}, can use
+ * {@link #executeInstructionConcurrently(Instruction)} instead.
+ * </p>
+ * 
  * @author matt
- * @version 1.2
+ * @version 1.3
  * @since 1.58
  */
 public class DefaultInstructionExecutionService implements InstructionExecutionService {
@@ -50,11 +70,121 @@ public class DefaultInstructionExecutionService implements InstructionExecutionS
 	private List<InstructionHandler> handlers = Collections.emptyList();
 	private List<FeedbackInstructionHandler> feedbackHandlers = Collections.emptyList();
 	private int executionReceivedHourLimit = DEFAULT_EXECUTION_RECEIVED_HOUR_LIMIT;
+	private final ConcurrentMap<String, List<InstructionHandler>> topicHandlers = new ConcurrentHashMap<>(
+			8, 0.9f, 2);
+	private long topicHandlersGeneration = 0;
 
 	private final Logger log = LoggerFactory.getLogger(getClass());
 
+	/**
+	 * Callback when a handler has been bound.
+	 * 
+	 * @param handler
+	 *        the handler
+	 * @param properties
+	 *        the service properties
+	 * @since 1.3
+	 */
+	public void onBind(Object handler, Map<String, ?> properties) {
+		resetTopicHandlers();
+	}
+
+	/**
+	 * Callback when a handler has been un-bound.
+	 * 
+	 * @param handler
+	 *        the handler
+	 * @param properties
+	 *        the service properties
+	 * @since 1.3
+	 */
+	public void onUnbind(Object handler, Map<String, ?> properties) {
+		resetTopicHandlers();
+	}
+
+	private void resetTopicHandlers() {
+		synchronized ( topicHandlers ) {
+			topicHandlersGeneration++;
+			topicHandlers.clear();
+		}
+	}
+
+	/**
+	 * Get the handlers that handle a given topic, in the order they should be
+	 * tried.
+	 * 
+	 * <p>
+	 * The handlers are resolved outside of any lock, but only cached if the
+	 * handlers have not changed in the meantime, so a concurrent bind or unbind
+	 * cannot leave a stale list in the index.
+	 * </p>
+	 * 
+	 * @param topic
+	 *        the topic
+	 * @return the handlers, never {@literal null}
+	 */
+	private List<InstructionHandler> handlersForTopic(String topic) {
+		if ( topic == null ) {
+			return Collections.emptyList();
+		}
+		List<InstructionHandler> result = topicHandlers.get(topic);
+		if ( result == null ) {
+			final long generation;
+			synchronized ( topicHandlers ) {
+				generation = topicHandlersGeneration;
+			}
+			List<InstructionHandler> list = new ArrayList<InstructionHandler>(4);
+			addTopicHandlers(topic, handlers, list);
+			addTopicHandlers(topic, feedbackHandlers, list);
+			result = Collections.unmodifiableList(list);
+			synchronized ( topicHandlers ) {
+				if ( generation == topicHandlersGeneration ) {
+					topicHandlers.put(topic, result);
+				}
+			}
+		}
+		return result;
+	}
+
+	private void addTopicHandlers(String topic, List<? extends InstructionHandler> handlers,
+			List<InstructionHandler> result) {
+		for ( InstructionHandler handler : handlers ) {
+			try {
+				boolean handles = handler.handlesTopic(topic);
+				log.trace("Handler {} handles topic {}: {}", handler, topic, handles);
+				if ( handles ) {
+					result.add(handler);
+				}
+			} catch ( RuntimeException e ) {
+				// a dynamic service proxy might have gone away
+				log.debug("Handler {} threw exception checking topic {}: {}", handler, topic,
+						e.toString());
+			}
+		}
+	}
+
 	@Override
 	public synchronized InstructionStatus executeInstruction(Instruction instruction) {
+		return executeInstructionConcurrently(instruction);
+	}
+
+	/**
+	 * Execute an instruction without waiting for other instructions to finish.
+	 * 
+	 * <p>
+	 * Unlike {@link #executeInstruction(Instruction)} this method is not
+	 * synchronized, so the caller is responsible for not passing instructions
+	 * that handlers cannot process at the same time.
+	 * </p>
+	 * 
+	 * @param instruction
+	 *        the instruction to execute
+	 * @return the execution status, or {@literal null} if the instruction was
+	 *         not handled
+	 * @see #executeInstruction(Instruction)
+	 * @since 1.3
+	 */
+	public InstructionStatus executeInstructionConcurrently(Instruction instruction) {
 		if ( instruction == null ) {
 			return null;
 		}
@@ -65,44 +195,37 @@ public class DefaultInstructionExecutionService implements InstructionExecutionS
 				? startingStatus.getInstructionState()
 				: InstructionState.Received);
 
-		List<InstructionHandler> allHandlers = new ArrayList<InstructionHandler>(handlers);
-		allHandlers.addAll(feedbackHandlers);
-		if ( allHandlers.isEmpty() ) {
+		final String topic = instruction.getTopic();
+		if ( handlers.isEmpty() && feedbackHandlers.isEmpty() ) {
 			log.trace("No InstructionHandler instances available");
 			return null;
 		}
-		final String topic = instruction.getTopic();
-		log.trace("Passing instruction {} {} to {} handlers",
-				new Object[] { instruction.getRemoteInstructionId(), topic, allHandlers.size() });
-		for ( InstructionHandler handler : allHandlers ) {
-			log.trace("Handler {} handles topic {}: {}",
-					new Object[] { handler, topic, handler.handlesTopic(topic) });
-			if ( handler.handlesTopic(topic) ) {
-				try {
-					if ( handler instanceof FeedbackInstructionHandler ) {
-						InstructionStatus status = ((FeedbackInstructionHandler) handler)
-								.processInstructionWithFeedback(instruction);
-						if ( status != null
-								&& (startingStatus == null || !startingStatus.equals(status)) ) {
-							log.info("Instruction {} {} state changed to {}",
-									instruction.getRemoteInstructionId(), topic,
-									status.getInstructionState());
-							return status;
-						}
-					} else {
-						InstructionState state = handler.processInstruction(instruction);
-						if ( state != null && !startingState.equals(state) ) {
-							log.info("Instruction {} {} state changed to {}",
-									instruction.getRemoteInstructionId(), topic, state);
-							return (startingStatus != null ? startingStatus.newCopyWithState(state)
-									: new BasicInstructionStatus(instruction.getId(), state,
-											new Date()));
-						}
+		final List<InstructionHandler> candidates = handlersForTopic(topic);
+		log.trace("Passing instruction {} {} to {} handlers", instruction.getRemoteInstructionId(),
+				topic, candidates.size());
+		for ( InstructionHandler handler : candidates ) {
+			try {
+				if ( handler instanceof FeedbackInstructionHandler ) {
+					InstructionStatus status = ((FeedbackInstructionHandler) handler)
+							.processInstructionWithFeedback(instruction);
+					if ( status != null
+							&& (startingStatus == null || !startingStatus.equals(status)) ) {
+						log.info("Instruction {} {} state changed to {}",
+								instruction.getRemoteInstructionId(), topic, status.getInstructionState());
+						return status;
+					}
+				} else {
+					InstructionState state = handler.processInstruction(instruction);
+					if ( state != null && !startingState.equals(state) ) {
+						log.info("Instruction {} {} state changed to {}",
+								instruction.getRemoteInstructionId(), topic, state);
+						return (startingStatus != null ? startingStatus.newCopyWithState(state)
+								: new BasicInstructionStatus(instruction.getId(), state, new Date()));
 					}
-				} catch ( Exception e ) {
-					log.error("Handler {} threw exception processing instruction {} ({})", handler,
-							instruction.getRemoteInstructionId(), topic, e);
 				}
+			} catch ( Exception e ) {
+				log.error("Handler {} threw exception processing instruction {} ({})", handler,
+						instruction.getRemoteInstructionId(), topic, e);
 			}
 		}
 		if ( instruction.getInstructionDate() != null ) {
@@ -135,6 +258,7 @@ public class DefaultInstructionExecutionService implements InstructionExecutionS
 	 */
 	public void setHandlers(List<InstructionHandler> handlers) {
 		this.handlers = (handlers != null ? handlers : Collections.<InstructionHandler> emptyList());
+		resetTopicHandlers();
 	}
 
 	/**
@@ -147,6 +271,7 @@ public class DefaultInstructionExecutionService implements InstructionExecutionS
 	public void setFeedbackHandlers(List<FeedbackInstructionHandler> feedbackHandlers) {
 		this.feedbackHandlers = (feedbackHandlers != null ? feedbackHandlers
 				: Collections.<FeedbackInstructionHandler> emptyList());
+		resetTopicHandlers();
 	}
 
 	/**
@@ -26,14 +26,16 @@ import static java.util.Collections.emptySet;
 import static java.util.Collections.singletonMap;
 import static net.solarnetwork.util.StringUtils.commaDelimitedStringFromCollection;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
-import java.util.Iterator;
+import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 import org.joda.time.DateTime;
 import org.osgi.service.event.Event;
@@ -52,8 +54,18 @@ import net.solarnetwork.util.OptionalService;
 /**
  * Default implementation of {@link OperationalModesService}.
  * 
+ * <p>
+ * The active operational modes and their expiration dates are maintained in an
+ * immutable in-memory snapshot, loaded from the {@link SettingDao} on first
+ * use and replaced atomically whenever modes are enabled, disabled, or
+ * expire. Changes are written through to the {@link SettingDao}, so querying
+ * the active modes does not touch the database. The snapshot is also reloaded
+ * from the {@link SettingDao} each time the auto-expire task runs, to pick up
+ * any changes made directly to the settings.
+ * </p>
+ * 
  * @author matt
- * @version 1.1
+ * @version 1.2
  */
 @SuppressWarnings("deprecation")
 public class DefaultOperationalModesService implements OperationalModesService, InstructionHandler {
@@ -82,6 +94,8 @@ public class DefaultOperationalModesService implements OperationalModesService,
 
 	private ScheduledFuture<?> autoExpireScheduledFuture;
 
+	private final AtomicReference<ModesState> state = new AtomicReference<>();
+
 	private final Logger log = LoggerFactory.getLogger(getClass());
 
 	/**
@@ -130,6 +144,138 @@ public class DefaultOperationalModesService implements OperationalModesService,
 		}
 	}
 
+	/**
+	 * Immutable snapshot of the active operational modes.
+	 */
+	private static final class ModesState {
+
+		private static final ModesState EMPTY = new ModesState(Collections.emptySet(),
+				Collections.emptyMap());
+
+		/** The active modes, sorted. */
+		private final Set<String> modes;
+
+		/** Expiration dates for active modes, as epoch milliseconds. */
+		private final Map<String, Long> expirations;
+
+		/** The earliest expiration date, or {@literal Long.MAX_VALUE}. */
+		private final long nextExpiration;
+
+		private ModesState(Set<String> modes, Map<String, Long> expirations) {
+			super();
+			this.modes = Collections.unmodifiableSet(modes.stream()
+					.sorted(String::compareToIgnoreCase)
+					.collect(Collectors.toCollection(LinkedHashSet::new)));
+			Map<String, Long> exp = new HashMap<>(expirations);
+			exp.keySet().retainAll(this.modes);
+			this.expirations = Collections.unmodifiableMap(exp);
+			long next = Long.MAX_VALUE;
+			for ( Long date : exp.values() ) {
+				if ( date < next ) {
+					next = date;
+				}
+			}
+			this.nextExpiration = next;
+		}
+
+		private boolean isActive(String mode, long now) {
+			if ( !modes.contains(mode) ) {
+				return false;
+			}
+			if ( now < nextExpiration ) {
+				return true;
+			}
+			Long date = expirations.get(mode);
+			return (date == null || date >= now);
+		}
+
+		private Set<String> activeModes(long now) {
+			if ( now < nextExpiration ) {
+				return modes;
+			}
+			return Collections.unmodifiableSet(modes.stream().filter(m -> isActive(m, now))
+					.collect(Collectors.toCollection(LinkedHashSet::new)));
+		}
+
+		private Set<String> expiredModes(long now) {
+			if ( now < nextExpiration ) {
+				return emptySet();
+			}
+			return modes.stream().filter(m -> !isActive(m, now))
+					.collect(Collectors.toCollection(LinkedHashSet::new));
+		}
+
+		private ModesState withModes(Set<String> enabled, Set<String> disabled, Long expire) {
+			Set<String> newModes = new LinkedHashSet<>(this.modes);
+			Map<String, Long> newExpirations = new HashMap<>(this.expirations);
+			if ( enabled != null ) {
+				newModes.addAll(enabled);
+				for ( String mode : enabled ) {
+					if ( expire != null ) {
+						newExpirations.put(mode, expire);
+					} else {
+						newExpirations.remove(mode);
+					}
+				}
+			}
+			if ( disabled != null ) {
+				newModes.removeAll(disabled);
+			}
+			return new ModesState(newModes, newExpirations);
+		}
+	}
+
+	private ModesState loadState(SettingDao dao) {
+		Set<String> modes = new LinkedHashSet<>(8);
+		List<KeyValuePair> modeSettings = dao.getSettings(SETTING_OP_MODE);
+		if ( modeSettings != null ) {
+			for ( KeyValuePair mode : modeSettings ) {
+				if ( mode.getValue() != null ) {
+					modes.add(mode.getValue());
+				}
+			}
+		}
+		if ( modes.isEmpty() ) {
+			return ModesState.EMPTY;
+		}
+		Map<String, Long> expirations = new HashMap<>(8);
+		List<KeyValuePair> expireSettings = dao.getSettings(SETTING_OP_MODE_EXPIRE);
+		if ( expireSettings != null ) {
+			for ( KeyValuePair exp : expireSettings ) {
+				if ( exp.getKey() == null || exp.getValue() == null ) {
+					continue;
+				}
+				try {
+					expirations.put(exp.getKey(), Long.parseLong(exp.getValue()));
+				} catch ( NumberFormatException e ) {
+					// ignore
+				}
+			}
+		}
+		return new ModesState(modes, expirations);
+	}
+
+	/**
+	 * Get the current state, loading it from the DAO if not already loaded.
+	 * 
+	 * @param dao
+	 *        the DAO
+	 * @return the state, never {@literal null}
+	 */
+	private ModesState state(SettingDao dao) {
+		ModesState s = state.get();
+		if ( s == null ) {
+			synchronized ( state ) {
+				s = state.get();
+				if ( s == null ) {
+					s = loadState(dao);
+					state.set(s);
+				}
+			}
+		}
+		return s;
+	}
+
 	private final class AutoExpireModesTask implements Runnable {
 
 		@Override
@@ -138,24 +284,24 @@ public class DefaultOperationalModesService implements OperationalModesService,
 			if ( dao == null ) {
 				return;
 			}
-			List<KeyValuePair> modes = dao.getSettings(SETTING_OP_MODE);
-			if ( modes == null || modes.isEmpty() ) {
-				return;
-			}
-			Set<String> removed = new LinkedHashSet<>(8);
-			for ( Iterator<KeyValuePair> itr = modes.iterator(); itr.hasNext(); ) {
-				KeyValuePair mode = itr.next();
-				if ( isModeExpired(dao, mode.getValue()) ) {
-					dao.deleteSetting(SETTING_OP_MODE, mode.getValue());
-					dao.deleteSetting(SETTING_OP_MODE_EXPIRE, mode.getValue());
-					itr.remove();
-					removed.add(mode.getValue());
+			Set<String> removed;
+			Set<String> newActive;
+			synchronized ( state ) {
+				// refresh from the DAO, in case the settings were changed directly
+				ModesState s = loadState(dao);
+				final long now = System.currentTimeMillis();
+				removed = s.expiredModes(now);
+				for ( String mode : removed ) {
+					dao.deleteSetting(SETTING_OP_MODE, mode);
+					dao.deleteSetting(SETTING_OP_MODE_EXPIRE, mode);
+				}
+				if ( !removed.isEmpty() ) {
+					s = s.withModes(null, removed, null);
 				}
+				state.set(s);
+				newActive = s.modes;
 			}
 			if ( !removed.isEmpty() ) {
-				Set<String> newActive = modes.stream().map(m -> m.getValue())
-						.sorted(String::compareToIgnoreCase)
-						.collect(Collectors.toCollection(LinkedHashSet::new));
 				log.info("Expired operational modes [{}]; active modes now [{}]",
 						commaDelimitedStringFromCollection(removed),
 						commaDelimitedStringFromCollection(newActive));
@@ -214,49 +360,42 @@ public class DefaultOperationalModesService implements OperationalModesService,
 			return true;
 		}
 		mode = mode.toLowerCase();
-		SettingDao dao = settingDao.service();
-		if ( dao == null ) {
-			return false;
+		ModesState s = state.get();
+		if ( s == null ) {
+			SettingDao dao = settingDao.service();
+			if ( dao == null ) {
+				return false;
+			}
+			s = state(dao);
 		}
-		String active = dao.getSetting(SETTING_OP_MODE, mode);
-		return active != null;
+		// an expired mode remains active here until the auto-expire task disables it
+		return s.modes.contains(mode);
 	}
 
 	@Override
 	public Set<String> activeOperationalModes() {
-		SettingDao dao = settingDao.service();
-		if ( dao == null ) {
-			return emptySet();
-		}
-		return activeModesFromSettings(dao);
-	}
-
-	private boolean isModeExpired(SettingDao dao, String mode) {
-		if ( dao == null ) {
-			return false;
-		}
-		String exp = dao.getSetting(SETTING_OP_MODE_EXPIRE, mode);
-		if ( exp != null ) {
-			try {
-				long date = Long.parseLong(exp);
-				if ( date < System.currentTimeMillis() ) {
-					return true;
-				}
-			} catch ( NumberFormatException e ) {
-				// ignore
+		ModesState s = state.get();
+		if ( s == null ) {
+			SettingDao dao = settingDao.service();
+			if ( dao == null ) {
+				return emptySet();
 			}
+			s = state(dao);
 		}
-		return false;
+		return s.activeModes(System.currentTimeMillis());
 	}
 
-	private Set<String> activeModesFromSettings(SettingDao dao) {
-		List<KeyValuePair> modes = dao.getSettings(SETTING_OP_MODE);
+	private static Set<String> normalizedModes(Set<String> modes) {
 		if ( modes == null || modes.isEmpty() ) {
 			return emptySet();
 		}
-		return modes.stream().map(m -> m.getValue()).filter(m -> !isModeExpired(dao, m))
-				.sorted(String::compareToIgnoreCase)
-				.collect(Collectors.toCollection(LinkedHashSet::new));
+		Set<String> result = new LinkedHashSet<>(modes.size());
+		for ( String mode : modes ) {
+			if ( mode != null ) {
+				result.add(mode.toLowerCase());
+			}
+		}
+		return result;
 	}
 
 	@Override
@@ -270,21 +409,25 @@ public class DefaultOperationalModesService implements OperationalModesService,
 		if ( dao == null ) {
 			return emptySet();
 		}
-		if ( modes != null && !modes.isEmpty() ) {
-			for ( String mode : modes ) {
-				if ( mode == null ) {
-					continue;
-				}
-				mode = mode.toLowerCase();
+		final Set<String> enabled = normalizedModes(modes);
+		final Long expireDate = (expire != null ? expire.getMillis() : null);
+		Set<String> active;
+		synchronized ( state ) {
+			ModesState s = state(dao);
+			for ( String mode : enabled ) {
 				dao.storeSetting(SETTING_OP_MODE, mode, mode);
-				if ( expire != null ) {
-					dao.storeSetting(SETTING_OP_MODE_EXPIRE, mode, String.valueOf(expire.getMillis()));
+				if ( expireDate != null ) {
+					dao.storeSetting(SETTING_OP_MODE_EXPIRE, mode, expireDate.toString());
 				} else {
 					dao.deleteSetting(SETTING_OP_MODE_EXPIRE, mode);
 				}
 			}
+			if ( !enabled.isEmpty() ) {
+				s = s.withModes(enabled, null, expireDate);
+				state.set(s);
+			}
+			active = s.activeModes(System.currentTimeMillis());
 		}
-		Set<String> active = activeModesFromSettings(dao);
 		if ( log.isInfoEnabled() ) {
 			log.info("Enabled operational modes [{}], expiring [{}]; active modes now [{}]",
 					commaDelimitedStringFromCollection(modes), (expire != null ? expire : "never"),
@@ -300,16 +443,19 @@ public class DefaultOperationalModesService implements OperationalModesService,
 		if ( dao == null ) {
 			return emptySet();
 		}
-		if ( modes != null && !modes.isEmpty() ) {
-			for ( String mode : modes ) {
-				if ( mode == null ) {
-					continue;
-				}
-				mode = mode.toLowerCase();
+		final Set<String> disabled = normalizedModes(modes);
+		Set<String> active;
+		synchronized ( state ) {
+			ModesState s = state(dao);
+			for ( String mode : disabled ) {
 				dao.deleteSetting(SETTING_OP_MODE, mode);
 			}
+			if ( !disabled.isEmpty() ) {
+				s = s.withModes(null, disabled, null);
+				state.set(s);
+			}
+			active = s.activeModes(System.currentTimeMillis());
 		}
-		Set<String> active = activeModesFromSettings(dao);
 		if ( log.isInfoEnabled() ) {
 			log.info("Disabled operational modes [{}]; active modes now [{}]",
 					commaDelimitedStringFromCollection(modes),